@@ -20,7 +20,11 @@ package org.sweble.engine.serialization;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.math3.stat.descriptive.moment.Mean;
@@ -31,7 +35,9 @@ import org.sweble.engine.serialization.WomSerializer.SerializationFormat;
 import org.sweble.wikitext.engine.EngineException;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
 import org.sweble.wom3.Wom3Document;
+import org.sweble.wom3.binary.BinaryWomCodec;
 import org.sweble.wom3.swcadapter.utils.WtWom3Toolbox.Artifacts;
+import org.w3c.dom.Node;
 
 import de.fau.cs.osr.utils.SimpleConsoleOutput;
 import de.fau.cs.osr.utils.StringTools;
@@ -53,17 +59,28 @@ public class TimeSerialization
 	private static final CompressionFormat[] compressionFormats = {
 			CompressionFormat.BZIP2,
 			CompressionFormat.GZIP,
-			CompressionFormat.XZ
+			CompressionFormat.XZ,
+			CompressionFormat.LZ4,
+			CompressionFormat.ZSTD
 	};
 
 	private static final SerializationFormat[] serializationFormats = {
 			SerializationFormat.JAVA,
 			SerializationFormat.JSON,
-			SerializationFormat.XML
+			SerializationFormat.XML,
+			SerializationFormat.BINARY
 	};
 
 	private static final Charset CHARSET = Charset.forName("UTF8");
 
+	/**
+	 * Elements whose binary serialization is at most this large are treated
+	 * as one blob in the blob compression evaluation.
+	 */
+	private static final int MAX_BLOB_SIZE = 4 * 1024;
+
+	private static final int ZSTD_DICT_SIZE = 16 * 1024;
+
 	// =========================================================================
 
 	public static void main(String[] args) throws IOException, CompressionException, SerializationException, DeserializationException, LinkTargetException, EngineException
@@ -75,6 +92,8 @@ public class TimeSerialization
 
 	private final WomSerializer serializer = new WomSerializer();
 
+	private final BinaryWomCodec blobCodec = new BinaryWomCodec();
+
 	public TimeSerialization(TestResourcesFixture resources)
 	{
 		super(resources);
@@ -85,6 +104,8 @@ public class TimeSerialization
 		TestResourcesFixture resources = getTestResourcesFixture();
 		List<File> inputs = resources.gather(INPUT_SUB_DIR, FILTER_RX, false);
 
+		List<byte[]> blobs = new ArrayList<byte[]>();
+
 		for (File file : inputs)
 		{
 			String title = file.getName();
@@ -93,6 +114,8 @@ public class TimeSerialization
 			Artifacts af = timeParsing(file);
 			Wom3Document wom = af.womDoc;
 
+			collectBlobs(wom.getDocumentElement(), blobs);
+
 			System.out.println();
 			long uncompressedWikiMarkupSize = getSize(af.wm);
 			printSize(2, "wiki markup", uncompressedWikiMarkupSize);
@@ -153,6 +176,87 @@ public class TimeSerialization
 				}
 			}
 		}
+
+		timeBlobCompression(blobs);
+	}
+
+	// =========================================================================
+
+	/**
+	 * Splits a document into small blobs the way a store of many small WOM
+	 * fragments would see them.
+	 */
+	private void collectBlobs(Node node, List<byte[]> blobs) throws IOException
+	{
+		byte[] blob = blobCodec.encode(node);
+		if (blob.length <= MAX_BLOB_SIZE)
+		{
+			blobs.add(blob);
+			return;
+		}
+
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling())
+		{
+			if (child.getNodeType() == Node.ELEMENT_NODE)
+				collectBlobs(child, blobs);
+		}
+	}
+
+	/**
+	 * Compares the blob compressors. Every other blob is used to train the
+	 * Zstandard dictionary, the remaining blobs are compressed.
+	 */
+	private void timeBlobCompression(List<byte[]> blobs) throws CompressionException
+	{
+		List<byte[]> samples = new ArrayList<byte[]>();
+		List<byte[]> evalBlobs = new ArrayList<byte[]>();
+		for (int i = 0; i < blobs.size(); ++i)
+			((i % 2 == 0) ? samples : evalBlobs).add(blobs.get(i));
+
+		SimpleConsoleOutput.printBigSep("Blob compression");
+
+		System.out.println();
+		long uncompressedSize = 0;
+		for (byte[] blob : evalBlobs)
+			uncompressedSize += blob.length;
+		printSize(2, evalBlobs.size() + " uncompressed blobs", uncompressedSize);
+
+		Map<String, BlobCompressor> compressors = new LinkedHashMap<String, BlobCompressor>();
+		compressors.put("LZ4", BlobCompressor.createLz4());
+		compressors.put("ZSTD", BlobCompressor.createZstd(CompressorFactory.ZSTD_DEFAULT_LEVEL));
+
+		try
+		{
+			byte[] dictionary = BlobCompressor.trainZstdDictionary(samples, ZSTD_DICT_SIZE);
+			compressors.put("ZSTD with dictionary", BlobCompressor.createZstd(CompressorFactory.ZSTD_DEFAULT_LEVEL, dictionary));
+		}
+		catch (CompressionException e)
+		{
+			// Too few samples in the input set to train a dictionary
+			System.out.println();
+			System.out.println("  Skipping dictionary compression: " + e.getCause().getMessage());
+		}
+
+		for (Entry<String, BlobCompressor> e : compressors.entrySet())
+		{
+			System.out.println();
+			SimpleConsoleOutput.printSep(2, "Blob compressor: " + e.getKey());
+
+			System.out.println();
+			List<byte[]> compressed = timeBlobCompression(evalBlobs, e.getValue());
+			timeBlobDecompression(compressed, e.getValue());
+
+			long compressedSize = 0;
+			for (byte[] blob : compressed)
+				compressedSize += blob.length;
+
+			System.out.println();
+			printSize(4,
+					"compressed blobs", compressedSize,
+					"uncompressed blobs", uncompressedSize);
+
+			e.getValue().close();
+		}
 	}
 
 	private void saveSerialized(
@@ -273,6 +377,43 @@ public class TimeSerialization
 		return serializer.serializeAndCompress(wom, compressionFormat, serializationFormat, compact, pretty);
 	}
 
+	private List<byte[]> timeBlobCompression(
+			final List<byte[]> blobs,
+			final BlobCompressor compressor) throws CompressionException
+	{
+		RunMe runMe = new RunMe()
+		{
+			@Override
+			public void run() throws CompressionException
+			{
+				for (byte[] blob : blobs)
+					compressor.compress(blob);
+			}
+		};
+		print(4, "Compression of all blobs", timeIt(runMe, WARM_UP, ITERATIONS));
+
+		List<byte[]> compressed = new ArrayList<byte[]>(blobs.size());
+		for (byte[] blob : blobs)
+			compressed.add(compressor.compress(blob));
+		return compressed;
+	}
+
+	private void timeBlobDecompression(
+			final List<byte[]> compressed,
+			final BlobCompressor compressor)
+	{
+		RunMe runMe = new RunMe()
+		{
+			@Override
+			public void run() throws CompressionException
+			{
+				for (byte[] blob : compressed)
+					compressor.decompress(blob);
+			}
+		};
+		print(4, "Decompression of all blobs", timeIt(runMe, WARM_UP, ITERATIONS));
+	}
+
 	private void timeCompressedDeserialization(
 			final byte[] compressed,
 			final CompressionFormat compressionFormat,
@@ -0,0 +1,122 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.engine.serialization;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized.Parameters;
+import org.sweble.wom3.Wom3Document;
+import org.sweble.wom3.binary.BinaryWomCodec;
+import org.sweble.wom3.impl.BackboneWithChildren;
+import org.sweble.wom3.impl.DocumentImpl;
+import org.sweble.wom3.swcadapter.utils.WtWom3Toolbox.Artifacts;
+import org.sweble.wom3.util.SaxonWomTransformations;
+
+import de.fau.cs.osr.utils.NamedParametrized;
+import de.fau.cs.osr.utils.TestResourcesFixture;
+
+@RunWith(value = NamedParametrized.class)
+public class LoadWomFromBinaryTest
+		extends
+			SerializationTestBase
+{
+	private static final String INPUT_SUB_DIR = "/various";
+
+	private static final String FILTER_RX = ".*?\\.wikitext";
+
+	// =========================================================================
+
+	@Parameters
+	public static List<Object[]> enumerateInputs() throws Exception
+	{
+		TestResourcesFixture resources = getTestResourcesFixture();
+		return resources.gatherAsParameters(INPUT_SUB_DIR, FILTER_RX, false);
+	}
+
+	// =========================================================================
+
+	@Rule
+	public TemporaryFolder tmpFolder = new TemporaryFolder();
+
+	private Wom3Document wom;
+
+	private File inputFile;
+
+	// =========================================================================
+
+	public LoadWomFromBinaryTest(
+			String title,
+			TestResourcesFixture resources,
+			File inputFile)
+	{
+		super(resources);
+		this.inputFile = inputFile;
+	}
+
+	// =========================================================================
+
+	@Before
+	public void before() throws Exception
+	{
+		Artifacts af = wmToWom(inputFile);
+		this.wom = af.womDoc;
+	}
+
+	@Test
+	public void testLoadWomFromBinary() throws Exception
+	{
+		String womXml = SaxonWomTransformations.printWom(this.wom);
+
+		BinaryWomCodec codec = new BinaryWomCodec();
+		Wom3Document loadedWomBinaryDoc = (Wom3Document) codec.decode(codec.encode(this.wom));
+
+		// Only the document element has been created so far
+		BackboneWithChildren root = (BackboneWithChildren) loadedWomBinaryDoc.getDocumentElement();
+		Assert.assertTrue(root.hasPendingChildNodes());
+
+		String loadedWomXml = SaxonWomTransformations.printWom(loadedWomBinaryDoc);
+		Assert.assertEquals(womXml, loadedWomXml);
+	}
+
+	@Test
+	public void testLoadReadOnlyWomFromMappedBinaryFile() throws Exception
+	{
+		String womXml = SaxonWomTransformations.printWom(this.wom);
+
+		BinaryWomCodec codec = new BinaryWomCodec();
+		// Force literal strings
+		codec.setMaxInternedStringLength(0);
+
+		File file = tmpFolder.newFile();
+		FileUtils.writeByteArrayToFile(file, codec.encode(this.wom));
+
+		DocumentImpl loadedWomBinaryDoc = (DocumentImpl) codec.open(file);
+		loadedWomBinaryDoc.setReadOnly(true);
+
+		String loadedWomXml = SaxonWomTransformations.printWom(loadedWomBinaryDoc);
+		Assert.assertEquals(womXml, loadedWomXml);
+	}
+}
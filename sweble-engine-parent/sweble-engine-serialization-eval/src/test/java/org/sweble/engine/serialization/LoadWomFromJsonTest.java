@@ -28,8 +28,10 @@ import org.junit.runners.Parameterized.Parameters;
 import org.sweble.wom3.Wom3Document;
 import org.sweble.wom3.Wom3Node;
 import org.sweble.wom3.swcadapter.utils.WtWom3Toolbox.Artifacts;
+import org.w3c.dom.Node;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
 
 import de.fau.cs.osr.utils.NamedParametrized;
 import de.fau.cs.osr.utils.TestResourcesFixture;
@@ -92,6 +94,22 @@ public class LoadWomFromJsonTest
 		doIt(false, false);
 	}
 
+	@Test
+	public void testStreamingAdapterWritesSameJsonAsTreeAdapter() throws Exception
+	{
+		for (boolean compact : new boolean[] { true, false })
+		{
+			GsonBuilder builder = new GsonBuilder();
+			builder.registerTypeHierarchyAdapter(Node.class, createWom3JsonTypeAdapter(compact));
+			builder.serializeNulls();
+			String treeJson = builder.create().toJson(wom);
+
+			String streamedJson = createWom3Gson(compact, false).toJson(wom);
+
+			Assert.assertEquals(treeJson, streamedJson);
+		}
+	}
+
 	private void doIt(boolean compact, boolean pretty)
 	{
 		Gson gson = createWom3Gson(compact, pretty);
@@ -0,0 +1,400 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.engine.serialization;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdException;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/**
+ * Compresses many small, independent blobs (e.g. serialized WOM documents or
+ * ASTs) as a whole, without the per-call setup cost of the stream based
+ * formats in {@link CompressorFactory}.
+ * 
+ * Native codec contexts are kept per thread and reused. They are released
+ * by {@link #close()}, a compressor must not be used afterwards. A Zstandard
+ * dictionary trained on typical blobs (see
+ * {@link #trainZstdDictionary(Iterable, int)}) improves the compression ratio
+ * of small blobs considerably. The same dictionary has to be used for
+ * compression and decompression.
+ * 
+ * Blobs are not trusted when decompressing: a blob that claims to
+ * decompress to more than {@link #getMaxDecompressedLength()} bytes is
+ * rejected before memory is allocated for it.
+ * 
+ * Instances are thread-safe.
+ */
+public abstract class BlobCompressor
+		implements
+			Closeable
+{
+	public static final int DEFAULT_MAX_DECOMPRESSED_LENGTH = 64 * 1024 * 1024;
+
+	public static BlobCompressor createLz4()
+	{
+		return new Lz4BlobCompressor();
+	}
+
+	public static BlobCompressor createZstd(int level)
+	{
+		return new ZstdBlobCompressor(level, null);
+	}
+
+	/**
+	 * @param dictionary
+	 *            A dictionary created by
+	 *            {@link #trainZstdDictionary(Iterable, int)} or {@code null}.
+	 */
+	public static BlobCompressor createZstd(int level, byte[] dictionary)
+	{
+		return new ZstdBlobCompressor(level, dictionary);
+	}
+
+	/**
+	 * Trains a Zstandard dictionary.
+	 * 
+	 * @param samples
+	 *            Blobs that are representative for the blobs that will be
+	 *            compressed with the dictionary. A few hundred samples are
+	 *            usually sufficient.
+	 * @param dictSize
+	 *            The maximum size of the dictionary in bytes. About 100 KiB
+	 *            is a reasonable choice.
+	 */
+	public static byte[] trainZstdDictionary(Iterable<byte[]> samples, int dictSize) throws CompressionException
+	{
+		int samplesSize = 0;
+		for (byte[] sample : samples)
+			samplesSize += sample.length;
+
+		try
+		{
+			ZstdDictTrainer trainer = new ZstdDictTrainer(samplesSize, dictSize);
+			for (byte[] sample : samples)
+				trainer.addSample(sample);
+			return trainer.trainSamples();
+		}
+		catch (ZstdException e)
+		{
+			throw new CompressionException("Failed to train dictionary", e);
+		}
+	}
+
+	// =========================================================================
+
+	private volatile int maxDecompressedLength = DEFAULT_MAX_DECOMPRESSED_LENGTH;
+
+	// =========================================================================
+
+	public int getMaxDecompressedLength()
+	{
+		return maxDecompressedLength;
+	}
+
+	public void setMaxDecompressedLength(int maxDecompressedLength)
+	{
+		if (maxDecompressedLength < 0)
+			throw new IllegalArgumentException("Maximum length must not be negative");
+		this.maxDecompressedLength = maxDecompressedLength;
+	}
+
+	// =========================================================================
+
+	public abstract byte[] compress(byte[] data) throws CompressionException;
+
+	public abstract byte[] decompress(byte[] compressed) throws CompressionException;
+
+	/**
+	 * Releases native resources. Contexts of other threads are released as
+	 * well, those threads must not use this compressor any more.
+	 */
+	@Override
+	public void close()
+	{
+	}
+
+	protected void checkDecompressedLength(long length) throws CompressionException
+	{
+		if (length > maxDecompressedLength)
+			throw new CompressionException("Decompressed blob exceeds maximum length: " + length);
+	}
+
+	// =========================================================================
+
+	/**
+	 * LZ4 block format prefixed with the uncompressed length. The LZ4
+	 * compressors and decompressors are stateless and can be shared by all
+	 * threads.
+	 */
+	private static final class Lz4BlobCompressor
+			extends
+				BlobCompressor
+	{
+		/**
+		 * LZ4 cannot compress better than about 255:1 since a match length
+		 * grows by at most 255 per byte.
+		 */
+		private static final int MAX_RATIO = 255;
+
+		private final LZ4Compressor compressor;
+
+		private final LZ4SafeDecompressor decompressor;
+
+		public Lz4BlobCompressor()
+		{
+			LZ4Factory factory = LZ4Factory.fastestInstance();
+			this.compressor = factory.fastCompressor();
+			this.decompressor = factory.safeDecompressor();
+		}
+
+		@Override
+		public byte[] compress(byte[] data) throws CompressionException
+		{
+			int maxLength = compressor.maxCompressedLength(data.length);
+			byte[] buffer = new byte[4 + maxLength];
+			writeInt(buffer, data.length);
+			int length = compressor.compress(data, 0, data.length, buffer, 4, maxLength);
+			return Arrays.copyOf(buffer, 4 + length);
+		}
+
+		@Override
+		public byte[] decompress(byte[] compressed) throws CompressionException
+		{
+			if (compressed.length < 4)
+				throw new CompressionException("Truncated LZ4 blob");
+
+			int length = readInt(compressed);
+			if (length < 0 || length > (long) (compressed.length - 4) * MAX_RATIO)
+				throw new CompressionException("Corrupt LZ4 blob");
+			checkDecompressedLength(length);
+
+			byte[] data = new byte[length];
+			try
+			{
+				int actual = decompressor.decompress(compressed, 4, compressed.length - 4, data, 0, length);
+				if (actual != length)
+					throw new CompressionException("Corrupt LZ4 blob");
+			}
+			catch (LZ4Exception e)
+			{
+				throw new CompressionException(e);
+			}
+			return data;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Zstandard frames which record their uncompressed length.
+	 */
+	private static final class ZstdBlobCompressor
+			extends
+				BlobCompressor
+	{
+		private static final int MIN_BUFFER_SIZE = 1024;
+
+		private final int level;
+
+		/**
+		 * All contexts handed out to threads, closed by {@link #close()}.
+		 */
+		private final ConcurrentLinkedQueue<Closeable> contexts =
+				new ConcurrentLinkedQueue<Closeable>();
+
+		private final ZstdDictCompress compressDict;
+
+		private final ZstdDictDecompress decompressDict;
+
+		private final ThreadLocal<ZstdCompressCtx> compressCtx =
+				new ThreadLocal<ZstdCompressCtx>()
+				{
+					@Override
+					protected ZstdCompressCtx initialValue()
+					{
+						ZstdCompressCtx ctx = new ZstdCompressCtx();
+						ctx.setLevel(level);
+						if (compressDict != null)
+							ctx.loadDict(compressDict);
+						contexts.add(ctx);
+						return ctx;
+					}
+				};
+
+		private final ThreadLocal<ZstdDecompressCtx> decompressCtx =
+				new ThreadLocal<ZstdDecompressCtx>()
+				{
+					@Override
+					protected ZstdDecompressCtx initialValue()
+					{
+						ZstdDecompressCtx ctx = new ZstdDecompressCtx();
+						if (decompressDict != null)
+							ctx.loadDict(decompressDict);
+						contexts.add(ctx);
+						return ctx;
+					}
+				};
+
+		public ZstdBlobCompressor(int level, byte[] dictionary)
+		{
+			this.level = level;
+			if (dictionary != null)
+			{
+				// Digest the dictionary once, contexts only reference it
+				this.compressDict = new ZstdDictCompress(dictionary, level);
+				this.decompressDict = new ZstdDictDecompress(dictionary);
+			}
+			else
+			{
+				this.compressDict = null;
+				this.decompressDict = null;
+			}
+		}
+
+		@Override
+		public byte[] compress(byte[] data) throws CompressionException
+		{
+			try
+			{
+				return compressCtx.get().compress(data);
+			}
+			catch (ZstdException e)
+			{
+				throw new CompressionException(e);
+			}
+		}
+
+		@Override
+		public byte[] decompress(byte[] compressed) throws CompressionException
+		{
+			long length = Zstd.decompressedSize(compressed);
+			if (length < 0 || length > Integer.MAX_VALUE)
+				throw new CompressionException("Corrupt Zstandard blob");
+			checkDecompressedLength(length);
+
+			try
+			{
+				if (length == 0)
+				{
+					// The frame is empty, does not record its length or is
+					// not a frame at all
+					return decompressUnknownLength(compressed);
+				}
+
+				byte[] data = new byte[(int) length];
+				int actual = decompressCtx.get().decompressByteArray(
+						data, 0, data.length, compressed, 0, compressed.length);
+				if (actual != length)
+					throw new CompressionException("Corrupt Zstandard blob");
+				return data;
+			}
+			catch (ZstdException e)
+			{
+				throw new CompressionException(e);
+			}
+		}
+
+		/**
+		 * Decompresses into a growing buffer until the data fits or the
+		 * maximum length is exceeded.
+		 */
+		private byte[] decompressUnknownLength(byte[] compressed) throws CompressionException
+		{
+			ZstdDecompressCtx ctx = decompressCtx.get();
+			long size = Math.max(MIN_BUFFER_SIZE, 4L * compressed.length);
+			while (true)
+			{
+				int bufferSize = (int) Math.min(size, getMaxDecompressedLength());
+				byte[] buffer = new byte[bufferSize];
+				try
+				{
+					int actual = ctx.decompressByteArray(
+							buffer, 0, buffer.length, compressed, 0, compressed.length);
+					return Arrays.copyOf(buffer, actual);
+				}
+				catch (ZstdException e)
+				{
+					if (e.getErrorCode() != Zstd.errDstSizeTooSmall())
+						throw new CompressionException(e);
+					if (bufferSize == getMaxDecompressedLength())
+						throw new CompressionException("Decompressed blob exceeds maximum length", e);
+				}
+				size *= 2;
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			Closeable ctx;
+			while ((ctx = contexts.poll()) != null)
+				closeQuietly(ctx);
+			compressCtx.remove();
+			decompressCtx.remove();
+
+			if (compressDict != null)
+				closeQuietly(compressDict);
+			if (decompressDict != null)
+				closeQuietly(decompressDict);
+		}
+	}
+
+	// =========================================================================
+
+	private static void closeQuietly(Closeable closeable)
+	{
+		try
+		{
+			closeable.close();
+		}
+		catch (IOException e)
+		{
+			// Native contexts do not throw
+		}
+	}
+
+	private static void writeInt(byte[] buffer, int value)
+	{
+		buffer[0] = (byte) (value >>> 24);
+		buffer[1] = (byte) (value >>> 16);
+		buffer[2] = (byte) (value >>> 8);
+		buffer[3] = (byte) value;
+	}
+
+	private static int readInt(byte[] buffer)
+	{
+		return ((buffer[0] & 0xFF) << 24)
+				| ((buffer[1] & 0xFF) << 16)
+				| ((buffer[2] & 0xFF) << 8)
+				| (buffer[3] & 0xFF);
+	}
+}
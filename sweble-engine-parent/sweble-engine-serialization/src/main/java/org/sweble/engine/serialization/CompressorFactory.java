@@ -17,14 +17,35 @@
  */
 package org.sweble.engine.serialization;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.apache.commons.compress.compressors.CompressorException;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
 
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
 public class CompressorFactory
 {
+	/**
+	 * The factory holds no per-stream state and can be shared.
+	 */
+	private static final CompressorStreamFactory STREAM_FACTORY =
+			new CompressorStreamFactory();
+
+	/**
+	 * Default compression level of Zstandard.
+	 */
+	public static final int ZSTD_DEFAULT_LEVEL = 3;
+
+	// =========================================================================
+
 	public static enum CompressionFormat
 	{
 		BZIP2
@@ -32,7 +53,7 @@ public class CompressorFactory
 			@Override
 			public OutputStream createCompressorOutputStream(OutputStream out) throws CompressorException
 			{
-				return (new CompressorStreamFactory()).createCompressorOutputStream(
+				return STREAM_FACTORY.createCompressorOutputStream(
 						CompressorStreamFactory.BZIP2, out);
 
 			}
@@ -40,7 +61,7 @@ public class CompressorFactory
 			@Override
 			public InputStream createCompressorInputStream(InputStream in) throws CompressorException
 			{
-				return (new CompressorStreamFactory()).createCompressorInputStream(
+				return STREAM_FACTORY.createCompressorInputStream(
 						CompressorStreamFactory.BZIP2, in);
 			}
 		},
@@ -49,7 +70,7 @@ public class CompressorFactory
 			@Override
 			public OutputStream createCompressorOutputStream(OutputStream out) throws CompressorException
 			{
-				return (new CompressorStreamFactory()).createCompressorOutputStream(
+				return STREAM_FACTORY.createCompressorOutputStream(
 						CompressorStreamFactory.GZIP, out);
 
 			}
@@ -57,7 +78,7 @@ public class CompressorFactory
 			@Override
 			public InputStream createCompressorInputStream(InputStream in) throws CompressorException
 			{
-				return (new CompressorStreamFactory()).createCompressorInputStream(
+				return STREAM_FACTORY.createCompressorInputStream(
 						CompressorStreamFactory.GZIP, in);
 			}
 		},
@@ -66,7 +87,7 @@ public class CompressorFactory
 			@Override
 			public OutputStream createCompressorOutputStream(OutputStream out) throws CompressorException
 			{
-				return (new CompressorStreamFactory()).createCompressorOutputStream(
+				return STREAM_FACTORY.createCompressorOutputStream(
 						CompressorStreamFactory.XZ, out);
 
 			}
@@ -74,16 +95,55 @@ public class CompressorFactory
 			@Override
 			public InputStream createCompressorInputStream(InputStream in) throws CompressorException
 			{
-				return (new CompressorStreamFactory()).createCompressorInputStream(
+				return STREAM_FACTORY.createCompressorInputStream(
 						CompressorStreamFactory.XZ, in);
 			}
+		},
+		/**
+		 * LZ4 frame format. Very fast, but compresses less than the other
+		 * formats.
+		 */
+		LZ4
+		{
+			@Override
+			public OutputStream createCompressorOutputStream(OutputStream out) throws IOException
+			{
+				return new LZ4FrameOutputStream(out);
+			}
+
+			@Override
+			public InputStream createCompressorInputStream(InputStream in) throws IOException
+			{
+				return new LZ4FrameInputStream(in);
+			}
+		},
+		/**
+		 * Zstandard. Compresses about as well as GZIP at a fraction of the
+		 * time. Requires the native zstd-jni library for the current platform.
+		 */
+		ZSTD
+		{
+			@Override
+			public OutputStream createCompressorOutputStream(OutputStream out) throws IOException
+			{
+				// Recycle the stream's buffers between calls
+				ZstdOutputStream zout = new ZstdOutputStream(out, RecyclingBufferPool.INSTANCE);
+				zout.setLevel(ZSTD_DEFAULT_LEVEL);
+				return zout;
+			}
+
+			@Override
+			public InputStream createCompressorInputStream(InputStream in) throws IOException
+			{
+				return new ZstdInputStream(in, RecyclingBufferPool.INSTANCE);
+			}
 		};
 
 		public abstract OutputStream createCompressorOutputStream(
-				OutputStream out) throws CompressorException;
+				OutputStream out) throws CompressorException, IOException;
 
 		public abstract InputStream createCompressorInputStream(
-				InputStream in) throws CompressorException;
+				InputStream in) throws CompressorException, IOException;
 	}
 
 	public static OutputStream createCompressorOutputStream(
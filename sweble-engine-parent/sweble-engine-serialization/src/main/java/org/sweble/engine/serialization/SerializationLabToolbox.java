@@ -18,8 +18,11 @@
 package org.sweble.engine.serialization;
 
 import org.sweble.wom3.Wom3Node;
+import org.sweble.wom3.serialization.Wom3JsonStreamingTypeAdapterBase;
 import org.sweble.wom3.serialization.Wom3JsonTypeAdapterInterface;
+import org.sweble.wom3.serialization.Wom3NodeCompactJsonStreamingTypeAdapter;
 import org.sweble.wom3.serialization.Wom3NodeCompactJsonTypeAdapter;
+import org.sweble.wom3.serialization.Wom3NodeJsonStreamingTypeAdapter;
 import org.sweble.wom3.serialization.Wom3NodeJsonTypeAdapter;
 import org.w3c.dom.Node;
 
@@ -36,11 +39,19 @@ public class SerializationLabToolbox
 				(new Wom3NodeJsonTypeAdapter()));
 	}
 
+	public static Wom3JsonStreamingTypeAdapterBase createWom3JsonStreamingTypeAdapter(
+			boolean compact)
+	{
+		return (compact ?
+				(new Wom3NodeCompactJsonStreamingTypeAdapter()) :
+				(new Wom3NodeJsonStreamingTypeAdapter()));
+	}
+
 	public static GsonBuilder registerWom3GsonAdapter(
 			GsonBuilder builder,
 			boolean compact)
 	{
-		Wom3JsonTypeAdapterInterface converter = createWom3JsonTypeAdapter(compact);
+		Wom3JsonStreamingTypeAdapterBase converter = createWom3JsonStreamingTypeAdapter(compact);
 		builder.registerTypeHierarchyAdapter(Node.class, converter);
 		builder.serializeNulls();
 		return builder;
@@ -23,15 +23,11 @@ import java.nio.charset.Charset;
 
 import org.sweble.wikitext.engine.EngineException;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
-import org.sweble.wom3.serialization.Wom3NodeCompactJsonTypeAdapter;
-import org.sweble.wom3.serialization.Wom3NodeJsonTypeAdapter;
 import org.sweble.wom3.swcadapter.utils.WtWom3Toolbox;
 import org.sweble.wom3.swcadapter.utils.WtWom3Toolbox.Artifacts;
 import org.w3c.dom.Node;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonSerializer;
 
 public class WmToWomJsonApp
 		extends
@@ -70,18 +66,8 @@ public class WmToWomJsonApp
 		WtWom3Toolbox wtWomToolbox = new WtWom3Toolbox();
 		Artifacts af = wtWomToolbox.wmToWom(new File(args[0]), Charset.defaultCharset().name());
 
-		JsonSerializer<Node> converter =
-				compact ?
-						new Wom3NodeCompactJsonTypeAdapter() :
-						new Wom3NodeJsonTypeAdapter();
+		Gson gson = createWom3Gson(compact, pretty);
 
-		GsonBuilder builder = new GsonBuilder();
-		builder.registerTypeHierarchyAdapter(Node.class, converter);
-		builder.serializeNulls();
-		if (pretty)
-			builder.setPrettyPrinting();
-		Gson gson = builder.create();
-
-		gson.toJson(af.womDoc, System.out);
+		gson.toJson(af.womDoc, Node.class, System.out);
 	}
 }
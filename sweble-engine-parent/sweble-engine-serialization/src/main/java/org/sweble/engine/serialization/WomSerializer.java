@@ -19,6 +19,7 @@ package org.sweble.engine.serialization;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -26,6 +27,7 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 import javax.xml.transform.Transformer;
@@ -39,9 +41,11 @@ import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.io.IOUtils;
 import org.apache.xerces.parsers.DOMParser;
 import org.sweble.engine.serialization.CompressorFactory.CompressionFormat;
-import org.sweble.wom3.serialization.Wom3JsonTypeAdapterBase;
-import org.sweble.wom3.serialization.Wom3NodeCompactJsonTypeAdapter;
-import org.sweble.wom3.serialization.Wom3NodeJsonTypeAdapter;
+import org.sweble.wom3.binary.BinaryWomCodec;
+import org.sweble.wom3.impl.DocumentImpl;
+import org.sweble.wom3.serialization.Wom3JsonStreamingTypeAdapterBase;
+import org.sweble.wom3.serialization.Wom3NodeCompactJsonStreamingTypeAdapter;
+import org.sweble.wom3.serialization.Wom3NodeJsonStreamingTypeAdapter;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
 import org.w3c.dom.Node;
@@ -63,7 +67,13 @@ public class WomSerializer
 	{
 		JAVA,
 		JSON,
-		XML
+		XML,
+		/**
+		 * Binary WOM format, see {@link BinaryWomCodec}. Deserialized
+		 * documents are loaded lazily. The compact and pretty flags are
+		 * ignored.
+		 */
+		BINARY
 	}
 
 	// =========================================================================
@@ -72,6 +82,8 @@ public class WomSerializer
 
 	private Transformer normalXmlTransformer;
 
+	private BinaryWomCodec binaryCodec;
+
 	private String documentImplClassName = org.sweble.wom3.impl.DocumentImpl.class.getName();
 
 	// =========================================================================
@@ -123,9 +135,22 @@ public class WomSerializer
 			}
 			case JSON:
 			{
-				result = getGson(createDocumentForSerialization(), compact, pretty)
-						.toJson(wom)
-						.getBytes(CHARSET);
+				ByteArrayOutputStream baos = null;
+				OutputStreamWriter osw = null;
+				try
+				{
+					baos = new ByteArrayOutputStream();
+					osw = new OutputStreamWriter(baos, CHARSET);
+					getGson(createDocumentForSerialization(), compact, pretty)
+							.toJson(wom, Node.class, osw);
+					osw.flush();
+				}
+				finally
+				{
+					IOUtils.closeQuietly(osw);
+					IOUtils.closeQuietly(baos);
+				}
+				result = baos.toByteArray();
 				break;
 			}
 			case XML:
@@ -149,6 +174,11 @@ public class WomSerializer
 				result = baos.toByteArray();
 				break;
 			}
+			case BINARY:
+			{
+				result = getBinaryCodec().encode(wom);
+				break;
+			}
 			default:
 				throw new IllegalArgumentException();
 		}
@@ -186,20 +216,17 @@ public class WomSerializer
 			}
 			case JSON:
 			{
-				DocumentFragment fragment = (DocumentFragment)
-						getGson(createDocumentForDeserialization(), compact, false)
-								.fromJson(new String(serialized, CHARSET), Node.class);
-
-				Node firstChild = fragment.getFirstChild();
-				if (firstChild.getParentNode() != null)
-					firstChild.getParentNode().removeChild(firstChild);
-
-				Document doc = (Document) fragment.getOwnerDocument();
-				if (doc.getDocumentElement() != null)
-					doc.removeChild(doc.getDocumentElement());
-				doc.appendChild(firstChild);
-
-				result = doc;
+				InputStreamReader isr = null;
+				try
+				{
+					isr = new InputStreamReader(new ByteArrayInputStream(serialized), CHARSET);
+					Gson gson = getGson(createDocumentForDeserialization(), compact, false);
+					result = fragmentToDocument(gson.fromJson(isr, Node.class));
+				}
+				finally
+				{
+					IOUtils.closeQuietly(isr);
+				}
 				break;
 			}
 			case XML:
@@ -223,12 +250,28 @@ public class WomSerializer
 				}
 				break;
 			}
+			case BINARY:
+			{
+				result = getBinaryCodec().decode(
+						ByteBuffer.wrap(serialized),
+						createDocumentImplForDeserialization());
+				break;
+			}
 			default:
 				throw new IllegalArgumentException();
 		}
 		return result;
 	}
 
+	/**
+	 * Memory-maps a file containing a document in the binary WOM format. The
+	 * document's nodes are only decoded when they are navigated to.
+	 */
+	public Document openBinary(File file) throws IOException, DeserializationException
+	{
+		return getBinaryCodec().open(file, createDocumentImplForDeserialization());
+	}
+
 	public byte[] compress(
 			byte[] serialized,
 			CompressionFormat compressionFormat) throws IOException, CompressionException
@@ -319,7 +362,7 @@ public class WomSerializer
 					{
 						osw = new OutputStreamWriter(cos, CHARSET);
 						Gson gson = getGson(createDocumentForSerialization(), compact, pretty);
-						gson.toJson(wom, osw);
+						gson.toJson(wom, Node.class, osw);
 					}
 					finally
 					{
@@ -334,6 +377,11 @@ public class WomSerializer
 							new StreamResult(cos));
 					break;
 				}
+				case BINARY:
+				{
+					getBinaryCodec().encode(wom, cos);
+					break;
+				}
 				default:
 					throw new IllegalArgumentException();
 			}
@@ -395,7 +443,7 @@ public class WomSerializer
 					{
 						isr = new InputStreamReader(cin, CHARSET);
 						Gson gson = getGson(createDocumentForDeserialization(), compact, false);
-						result = gson.fromJson(isr, Document.class);
+						result = fragmentToDocument(gson.fromJson(isr, Node.class));
 					}
 					finally
 					{
@@ -411,6 +459,14 @@ public class WomSerializer
 					result = parser.getDocument();
 					break;
 				}
+				case BINARY:
+				{
+					// Lazy loading requires random access to the whole document
+					result = getBinaryCodec().decode(
+							ByteBuffer.wrap(IOUtils.toByteArray(cin)),
+							createDocumentImplForDeserialization());
+					break;
+				}
 				default:
 					throw new IllegalArgumentException();
 			}
@@ -466,6 +522,13 @@ public class WomSerializer
 				getNormalXmlTransformer();
 	}
 
+	private BinaryWomCodec getBinaryCodec()
+	{
+		if (binaryCodec == null)
+			binaryCodec = new BinaryWomCodec();
+		return binaryCodec;
+	}
+
 	private DOMParser getXmlParser() throws SAXNotRecognizedException, SAXNotSupportedException
 	{
 		DOMParser parser = new DOMParser();
@@ -481,9 +544,9 @@ public class WomSerializer
 	{
 		GsonBuilder builder = new GsonBuilder();
 
-		Wom3JsonTypeAdapterBase typeAdapter = compact ?
-				(new Wom3NodeCompactJsonTypeAdapter()) :
-				(new Wom3NodeJsonTypeAdapter());
+		Wom3JsonStreamingTypeAdapterBase typeAdapter = compact ?
+				(new Wom3NodeCompactJsonStreamingTypeAdapter()) :
+				(new Wom3NodeJsonStreamingTypeAdapter());
 
 		typeAdapter.setDoc(doc);
 
@@ -497,6 +560,26 @@ public class WomSerializer
 		return builder.create();
 	}
 
+	/**
+	 * The JSON type adapters wrap the deserialized element in a document
+	 * fragment. Move it into the fragment's owner document.
+	 */
+	private static Document fragmentToDocument(Node node)
+	{
+		DocumentFragment fragment = (DocumentFragment) node;
+
+		Node firstChild = fragment.getFirstChild();
+		if (firstChild.getParentNode() != null)
+			firstChild.getParentNode().removeChild(firstChild);
+
+		Document doc = (Document) fragment.getOwnerDocument();
+		if (doc.getDocumentElement() != null)
+			doc.removeChild(doc.getDocumentElement());
+		doc.appendChild(firstChild);
+
+		return doc;
+	}
+
 	private Document createDocumentForDeserialization() throws DeserializationException
 	{
 		try
@@ -517,6 +600,16 @@ public class WomSerializer
 		}
 	}
 
+	private DocumentImpl createDocumentImplForDeserialization() throws DeserializationException
+	{
+		Document doc = createDocumentForDeserialization();
+		if (!(doc instanceof DocumentImpl))
+			throw new DeserializationException(
+					"The binary WOM format requires a document class derived from "
+							+ DocumentImpl.class.getName());
+		return (DocumentImpl) doc;
+	}
+
 	private Document createDocumentForSerialization() throws SerializationException
 	{
 		try
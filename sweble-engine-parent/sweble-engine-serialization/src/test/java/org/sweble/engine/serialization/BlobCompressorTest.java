@@ -0,0 +1,196 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.engine.serialization;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdOutputStream;
+
+public class BlobCompressorTest
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Random RANDOM = new Random(42);
+
+	// =========================================================================
+
+	@Test
+	public void testLz4RoundTrip() throws Exception
+	{
+		BlobCompressor lz4 = BlobCompressor.createLz4();
+		assertRoundTrips(lz4);
+		lz4.close();
+	}
+
+	@Test
+	public void testZstdRoundTrip() throws Exception
+	{
+		BlobCompressor zstd = BlobCompressor.createZstd(3);
+		assertRoundTrips(zstd);
+		zstd.close();
+	}
+
+	@Test
+	public void testZstdRoundTripWithDictionary() throws Exception
+	{
+		List<byte[]> samples = new ArrayList<byte[]>();
+		for (int i = 0; i < 500; ++i)
+			samples.add(blob(i));
+
+		byte[] dictionary = BlobCompressor.trainZstdDictionary(samples, 16 * 1024);
+		BlobCompressor withDict = BlobCompressor.createZstd(3, dictionary);
+		BlobCompressor withoutDict = BlobCompressor.createZstd(3);
+		try
+		{
+			assertRoundTrips(withDict);
+
+			byte[] data = blob(1000);
+			byte[] compressed = withDict.compress(data);
+			assertTrue(compressed.length < withoutDict.compress(data).length);
+
+			try
+			{
+				withoutDict.decompress(compressed);
+				fail("Decompressed without dictionary");
+			}
+			catch (CompressionException e)
+			{
+				// Expected
+			}
+		}
+		finally
+		{
+			withDict.close();
+			withoutDict.close();
+		}
+	}
+
+	@Test
+	public void testZstdFrameWithoutContentSize() throws Exception
+	{
+		// Frames written by streaming compressors do not record their length
+		byte[] data = blob(7);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ZstdOutputStream out = new ZstdOutputStream(baos);
+		out.write(data);
+		out.close();
+		byte[] compressed = baos.toByteArray();
+
+		BlobCompressor zstd = BlobCompressor.createZstd(3);
+		assertEquals(0, Zstd.decompressedSize(compressed));
+		assertArrayEquals(data, zstd.decompress(compressed));
+
+		zstd.setMaxDecompressedLength(data.length - 1);
+		assertCorrupt(zstd, compressed);
+		zstd.close();
+	}
+
+	@Test
+	public void testCorruptLz4BlobIsRejected() throws Exception
+	{
+		BlobCompressor lz4 = BlobCompressor.createLz4();
+		byte[] compressed = lz4.compress(blob(3));
+
+		assertCorrupt(lz4, new byte[] { 0, 0 });
+
+		// Length header larger than the input can possibly decompress to
+		byte[] huge = compressed.clone();
+		huge[0] = 0x7F;
+		assertCorrupt(lz4, huge);
+
+		byte[] truncated = Arrays.copyOf(compressed, compressed.length / 2);
+		assertCorrupt(lz4, truncated);
+
+		lz4.setMaxDecompressedLength(blob(3).length - 1);
+		assertCorrupt(lz4, compressed);
+	}
+
+	@Test
+	public void testCorruptZstdBlobIsRejected() throws Exception
+	{
+		BlobCompressor zstd = BlobCompressor.createZstd(3);
+		byte[] compressed = zstd.compress(blob(3));
+
+		assertCorrupt(zstd, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		assertCorrupt(zstd, Arrays.copyOf(compressed, compressed.length / 2));
+
+		zstd.setMaxDecompressedLength(blob(3).length - 1);
+		assertCorrupt(zstd, compressed);
+
+		zstd.close();
+	}
+
+	// =========================================================================
+
+	private static void assertRoundTrips(BlobCompressor compressor) throws Exception
+	{
+		assertArrayEquals(new byte[0], compressor.decompress(compressor.compress(new byte[0])));
+		for (int i = 0; i < 20; ++i)
+		{
+			byte[] data = blob(i);
+			assertArrayEquals(data, compressor.decompress(compressor.compress(data)));
+		}
+
+		byte[] noise = new byte[4096];
+		RANDOM.nextBytes(noise);
+		assertArrayEquals(noise, compressor.decompress(compressor.compress(noise)));
+	}
+
+	private static void assertCorrupt(BlobCompressor compressor, byte[] compressed)
+	{
+		try
+		{
+			compressor.decompress(compressed);
+			fail("Decompressed corrupt blob");
+		}
+		catch (CompressionException e)
+		{
+			// Expected
+		}
+	}
+
+	/**
+	 * A small, structured blob resembling a serialized document.
+	 */
+	private static byte[] blob(int i)
+	{
+		StringBuilder b = new StringBuilder();
+		b.append("{\"type\":\"page\",\"id\":").append(i).append(",\"children\":[");
+		for (int j = 0; j < 10 + i % 7; ++j)
+		{
+			if (j > 0)
+				b.append(',');
+			b.append("{\"type\":\"text\",\"content\":\"Paragraph ").append(j * i).append("\"}");
+		}
+		b.append("]}");
+		return b.toString().getBytes(UTF8);
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An expansion callback that can retrieve pages without blocking the
+ * expansion.
+ * 
+ * Wrap it in a
+ * {@link org.sweble.wikitext.engine.utils.PrefetchingExpansionCallback} to
+ * have the engine request all templates of a page at once before the page is
+ * expanded.
+ */
+public interface AsyncExpansionCallback
+		extends
+			ExpansionCallback
+{
+	/**
+	 * Starts retrieving the latest revision of the article and returns
+	 * without waiting for it. This method can be called from any thread.
+	 * 
+	 * @return A future that yields the requested article or null if no such
+	 *         article could be found.
+	 */
+	CompletableFuture<FullPage> retrieveWikitextAsync(PageTitle pageTitle);
+}
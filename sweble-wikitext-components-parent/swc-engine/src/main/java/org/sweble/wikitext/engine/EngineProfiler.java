@@ -0,0 +1,347 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sweble.wikitext.engine.utils.ThreadResourceMeter;
+
+/**
+ * Collects wall time, CPU time and allocated bytes of template and parser
+ * function resolutions across any number of pages.
+ * 
+ * Profiling is enabled by passing a profiler to
+ * {@link WtEngineImpl#setProfiler(EngineProfiler)}. The engine then also
+ * records CPU time and allocated bytes in the log nodes of all passes and
+ * resolutions of an {@link org.sweble.wikitext.engine.nodes.EngProcessedPage}.
+ * 
+ * Resolutions nest: A template can transclude other templates or call
+ * parser functions. Statistics therefore report an inclusive ("total") and
+ * an exclusive ("self") figure. The self figures of a resolution exclude
+ * the cost of all nested resolutions but include the cost of preprocessing,
+ * expanding and parsing the transcluded page itself.
+ * 
+ * A profiler can be shared by engines running on different threads.
+ */
+public class EngineProfiler
+{
+	public static enum ResolutionKind
+	{
+		TEMPLATE,
+		PARSER_FUNCTION
+	}
+
+	// =========================================================================
+
+	private final ConcurrentMap<String, Stats> templates =
+			new ConcurrentHashMap<String, Stats>();
+
+	private final ConcurrentMap<String, Stats> parserFunctions =
+			new ConcurrentHashMap<String, Stats>();
+
+	private final ThreadLocal<ArrayList<Probe>> probes =
+			new ThreadLocal<ArrayList<Probe>>()
+			{
+				@Override
+				protected ArrayList<Probe> initialValue()
+				{
+					return new ArrayList<Probe>();
+				}
+			};
+
+	// =========================================================================
+
+	/**
+	 * Starts measuring a resolution on the current thread. Each call must be
+	 * followed by a call to {@link #end(Probe, ResolutionKind, String)} on the
+	 * same thread.
+	 */
+	public Probe begin()
+	{
+		Probe probe = new Probe();
+		probes.get().add(probe);
+		probe.meter.start();
+		return probe;
+	}
+
+	/**
+	 * Stops measuring a resolution and adds the measurement to the statistics
+	 * of the given template or parser function.
+	 */
+	public void end(Probe probe, ResolutionKind kind, String name)
+	{
+		ThreadResourceMeter meter = probe.meter;
+		meter.stop();
+
+		ArrayList<Probe> stack = probes.get();
+		int top = stack.size() - 1;
+		if (top < 0 || stack.get(top) != probe)
+			throw new IllegalStateException("Probes must be ended in reverse order of their creation");
+		stack.remove(top);
+
+		if (top > 0)
+		{
+			Probe parent = stack.get(top - 1);
+			parent.childWallTime += meter.getWallTime();
+			parent.childCpuTime += meter.getCpuTime();
+			parent.childAllocatedBytes += meter.getAllocatedBytes();
+		}
+
+		getOrCreateStats(kind, name).add(probe);
+	}
+
+	private Stats getOrCreateStats(ResolutionKind kind, String name)
+	{
+		ConcurrentMap<String, Stats> map = getMap(kind);
+		Stats stats = map.get(name);
+		if (stats == null)
+		{
+			Stats newStats = new Stats(kind, name);
+			stats = map.putIfAbsent(name, newStats);
+			if (stats == null)
+				stats = newStats;
+		}
+		return stats;
+	}
+
+	private ConcurrentMap<String, Stats> getMap(ResolutionKind kind)
+	{
+		switch (kind)
+		{
+			case TEMPLATE:
+				return templates;
+			case PARSER_FUNCTION:
+				return parserFunctions;
+			default:
+				throw new IllegalArgumentException();
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the statistics of all resolutions of the given kind in no
+	 * particular order.
+	 */
+	public List<Stats> getStats(ResolutionKind kind)
+	{
+		return new ArrayList<Stats>(getMap(kind).values());
+	}
+
+	/**
+	 * Returns the statistics of the n most expensive templates or parser
+	 * functions. Resolutions are ranked by their self CPU time or, if the JVM
+	 * cannot measure CPU time, by their self wall time.
+	 */
+	public List<Stats> getTopN(ResolutionKind kind, int n)
+	{
+		List<Stats> stats = getStats(kind);
+		Collections.sort(stats, BY_SELF_COST);
+		return (stats.size() > n) ? stats.subList(0, n) : stats;
+	}
+
+	public void reset()
+	{
+		templates.clear();
+		parserFunctions.clear();
+	}
+
+	/**
+	 * Renders a table of the n most expensive templates and parser functions.
+	 */
+	public String createReport(int n)
+	{
+		StringBuilder sb = new StringBuilder();
+		appendReport(sb, "Templates", getTopN(ResolutionKind.TEMPLATE, n));
+		sb.append('\n');
+		appendReport(sb, "Parser functions", getTopN(ResolutionKind.PARSER_FUNCTION, n));
+		return sb.toString();
+	}
+
+	private static void appendReport(StringBuilder sb, String title, List<Stats> stats)
+	{
+		sb.append(title);
+		sb.append(":\n");
+		sb.append(String.format(Locale.ROOT,
+				"  %8s  %12s  %12s  %14s  %14s  %12s  %s\n",
+				"calls",
+				"self cpu ms",
+				"total cpu ms",
+				"self alloc KiB",
+				"total alloc KiB",
+				"total ms",
+				"name"));
+
+		for (Stats s : stats)
+		{
+			sb.append(String.format(Locale.ROOT,
+					"  %8d  %12.2f  %12.2f  %14d  %14d  %12.2f  %s\n",
+					s.getCount(),
+					s.getSelfCpuTime() / 1e6,
+					s.getCpuTime() / 1e6,
+					s.getSelfAllocatedBytes() / 1024,
+					s.getAllocatedBytes() / 1024,
+					s.getWallTime() / 1e6,
+					s.getName()));
+		}
+	}
+
+	// =========================================================================
+
+	private static final Comparator<Stats> BY_SELF_COST = new Comparator<Stats>()
+	{
+		@Override
+		public int compare(Stats a, Stats b)
+		{
+			long ca = ThreadResourceMeter.isCpuTimeSupported() ? a.getSelfCpuTime() : a.getSelfWallTime();
+			long cb = ThreadResourceMeter.isCpuTimeSupported() ? b.getSelfCpuTime() : b.getSelfWallTime();
+			return (ca < cb) ? 1 : ((ca == cb) ? 0 : -1);
+		}
+	};
+
+	// =========================================================================
+
+	/**
+	 * An ongoing measurement of a single resolution.
+	 */
+	public static final class Probe
+	{
+		private final ThreadResourceMeter meter = new ThreadResourceMeter();
+
+		private long childWallTime;
+
+		private long childCpuTime;
+
+		private long childAllocatedBytes;
+
+		private Probe()
+		{
+		}
+
+		/**
+		 * The meter of this probe. Valid after the probe was ended.
+		 */
+		public ThreadResourceMeter getMeter()
+		{
+			return meter;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Accumulated measurements of one template or parser function. Times are
+	 * given in nanoseconds. CPU times and allocated bytes are -1 if the JVM
+	 * does not support the respective measurement.
+	 */
+	public static final class Stats
+	{
+		private final ResolutionKind kind;
+
+		private final String name;
+
+		private final AtomicLong count = new AtomicLong();
+
+		private final AtomicLong wallTime = new AtomicLong();
+
+		private final AtomicLong cpuTime = new AtomicLong();
+
+		private final AtomicLong allocatedBytes = new AtomicLong();
+
+		private final AtomicLong selfWallTime = new AtomicLong();
+
+		private final AtomicLong selfCpuTime = new AtomicLong();
+
+		private final AtomicLong selfAllocatedBytes = new AtomicLong();
+
+		private Stats(ResolutionKind kind, String name)
+		{
+			this.kind = kind;
+			this.name = name;
+		}
+
+		private void add(Probe probe)
+		{
+			ThreadResourceMeter meter = probe.meter;
+			count.incrementAndGet();
+			wallTime.addAndGet(meter.getWallTime());
+			cpuTime.addAndGet(meter.getCpuTime());
+			allocatedBytes.addAndGet(meter.getAllocatedBytes());
+			selfWallTime.addAndGet(meter.getWallTime() - probe.childWallTime);
+			selfCpuTime.addAndGet(meter.getCpuTime() - probe.childCpuTime);
+			selfAllocatedBytes.addAndGet(meter.getAllocatedBytes() - probe.childAllocatedBytes);
+		}
+
+		public ResolutionKind getKind()
+		{
+			return kind;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		public long getCount()
+		{
+			return count.get();
+		}
+
+		public long getWallTime()
+		{
+			return wallTime.get();
+		}
+
+		public long getCpuTime()
+		{
+			return ThreadResourceMeter.isCpuTimeSupported() ? cpuTime.get() : -1;
+		}
+
+		public long getAllocatedBytes()
+		{
+			return ThreadResourceMeter.isAllocatedBytesSupported() ? allocatedBytes.get() : -1;
+		}
+
+		public long getSelfWallTime()
+		{
+			return selfWallTime.get();
+		}
+
+		public long getSelfCpuTime()
+		{
+			return ThreadResourceMeter.isCpuTimeSupported() ? selfCpuTime.get() : -1;
+		}
+
+		public long getSelfAllocatedBytes()
+		{
+			return ThreadResourceMeter.isAllocatedBytesSupported() ? selfAllocatedBytes.get() : -1;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Stats [kind=" + kind + ", name=" + name + ", count=" + count + ", cpuTime=" + cpuTime + ", selfCpuTime=" + selfCpuTime + ", allocatedBytes=" + allocatedBytes + "]";
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+/**
+ * An expansion callback which can tell whether a page exists without
+ * retrieving it. If the callback of an {@link ExpansionFrame} implements
+ * this interface, {@link ExpansionFrame#existsPage(PageTitle)} (and thus
+ * <code>#ifexist</code>) uses {@link #exists(ExpansionFrame, PageTitle)}.
+ * Otherwise it retrieves the wikitext and the file URL of the page.
+ * 
+ * @see org.sweble.wikitext.engine.utils.IndexedExpansionCallback
+ */
+public interface ExistenceCheckingCallback
+		extends
+			ExpansionCallback
+{
+	/**
+	 * Determines whether a page or file exists.
+	 */
+	boolean exists(ExpansionFrame expansionFrame, PageTitle pageTitle);
+}
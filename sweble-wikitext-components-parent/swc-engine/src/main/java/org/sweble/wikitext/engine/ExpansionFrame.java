@@ -22,12 +22,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.sweble.wikitext.engine.config.FrozenWikiRuntimeInfo;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngLogContainer;
 import org.sweble.wikitext.engine.utils.UrlService;
 import org.sweble.wikitext.parser.WtEntityMap;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.utils.StringConversionException;
 
 import de.fau.cs.osr.ptk.common.Warning;
 
@@ -57,6 +59,9 @@ public class ExpansionFrame
 
 	private ExpansionVisitor expansionVisitor;
 
+	/** Only set on the root frame. */
+	private FrozenWikiRuntimeInfo runtimeInfo;
+
 	// FIXME: That should have been initialized from a request!
 	//        And only once for the whole expansion process!
 	private UrlService urlService = new UrlService();
@@ -158,6 +163,33 @@ public class ExpansionFrame
 		return arguments;
 	}
 
+	/**
+	 * Returns the text of an argument that was passed to this frame. The text
+	 * of the arguments of a transclusion is memoized (see
+	 * {@link TemplateArguments#getText(String)}).
+	 * 
+	 * @return The text or <code>null</code> if there is no such argument or
+	 *         if its value cannot be converted to text.
+	 */
+	public String getArgumentText(String name)
+	{
+		if (arguments instanceof TemplateArguments)
+			return ((TemplateArguments) arguments).getText(name);
+
+		WtNodeList value = arguments.get(name);
+		if (value == null)
+			return null;
+
+		try
+		{
+			return getWikiConfig().getAstTextUtils().astToText(value);
+		}
+		catch (StringConversionException e)
+		{
+			return null;
+		}
+	}
+
 	public boolean isForInclusion()
 	{
 		return forInclusion;
@@ -208,6 +240,20 @@ public class ExpansionFrame
 		return urlService;
 	}
 
+	/**
+	 * The runtime info of the expansion run this frame belongs to. All frames
+	 * of an expansion run share the runtime info of their root frame which
+	 * reports the same date and time for the whole run.
+	 */
+	public FrozenWikiRuntimeInfo getRuntimeInfo()
+	{
+		if (rootFrame != this)
+			return rootFrame.getRuntimeInfo();
+		if (runtimeInfo == null)
+			runtimeInfo = new FrozenWikiRuntimeInfo(getWikiConfig().getRuntimeInfo());
+		return runtimeInfo;
+	}
+
 	// =========================================================================
 
 	public WtNode expand(WtNode ppAst) throws ExpansionException
@@ -226,6 +272,9 @@ public class ExpansionFrame
 
 	public boolean existsPage(PageTitle pageTitle)
 	{
+		if (callback instanceof ExistenceCheckingCallback)
+			return ((ExistenceCheckingCallback) callback).exists(this, pageTitle);
+
 		return (callback.retrieveWikitext(this, pageTitle) != null) ||
 				(callback.fileUrl(pageTitle, -1, -1) != null);
 	}
@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.sweble.wikitext.engine.EngineProfiler.ResolutionKind;
 import org.sweble.wikitext.engine.config.Namespace;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngLogContainer;
@@ -83,6 +84,8 @@ public final class ExpansionVisitor
 
 	private final boolean catchAll;
 
+	private final EngineProfiler profiler;
+
 	private final EngineNodeFactory nf;
 
 	private final EngineAstTextUtils tu;
@@ -103,6 +106,7 @@ public final class ExpansionVisitor
 		this.hooks = hooks;
 		this.timingEnabled = timingEnabled;
 		this.catchAll = catchAll;
+		this.profiler = expFrame.getEngine().getProfiler();
 		this.nf = expFrame.getWikiConfig().getNodeFactory();
 		this.tu = expFrame.getWikiConfig().getAstTextUtils();
 	}
@@ -713,6 +717,10 @@ public final class ExpansionVisitor
 			stopWatch.start();
 		}
 
+		EngineProfiler.Probe probe = null;
+		if (profiler != null)
+			probe = profiler.begin();
+
 		WtNode result = null;
 		try
 		{
@@ -739,6 +747,9 @@ public final class ExpansionVisitor
 		{
 			if (timingEnabled && log != null)
 				log.setTimeNeeded(stopWatch.getElapsedTime());
+
+			if (probe != null)
+				endProbe(probe, ResolutionKind.PARSER_FUNCTION, pfn.getId(), log);
 		}
 
 		return (hooks != null) ?
@@ -781,6 +792,10 @@ public final class ExpansionVisitor
 			stopWatch.start();
 		}
 
+		EngineProfiler.Probe probe = null;
+		if (profiler != null)
+			probe = profiler.begin();
+
 		WtNode result = null;
 		try
 		{
@@ -800,6 +815,12 @@ public final class ExpansionVisitor
 		{
 			if (timingEnabled && log != null)
 				log.setTimeNeeded(stopWatch.getElapsedTime());
+
+			if (probe != null)
+			{
+				String name = (log != null && log.getCanonical() != null) ? log.getCanonical() : title;
+				endProbe(probe, ResolutionKind.TEMPLATE, name, log);
+			}
 		}
 
 		return (hooks != null) ?
@@ -907,9 +928,8 @@ public final class ExpansionVisitor
 			List<WtTemplateArgument> args,
 			EngLogTransclusionResolution log)
 	{
-		HashMap<String, WtNodeList> transclArgs = new HashMap<String, WtNodeList>();
+		TemplateArguments transclArgs = new TemplateArguments(tu);
 
-		int index = 1;
 		for (WtTemplateArgument arg : args)
 		{
 			// EXPAND VALUE!
@@ -921,16 +941,13 @@ public final class ExpansionVisitor
 				// ONLY TRIM NAMED VALUES!
 				value = (WtValue) tu.trim(value);
 
-				// EXPAND NAME!
-				WtName name = (WtName) dispatch(arg.getName());
-
 				try
 				{
-					String nameStr = tu.astToText(name).trim();
+					String nameStr = expandName(arg.getName()).trim();
 
 					if (!nameStr.isEmpty())
 					{
-						transclArgs.put(nameStr, nf.toList(value));
+						transclArgs.putNamed(nameStr, nf.toList(value));
 						named = true;
 					}
 				}
@@ -943,23 +960,29 @@ public final class ExpansionVisitor
 				}
 			}
 
+			// Only unnamed arguments increase the index. Automatic indices 
+			// never overwrite named arguments!
 			if (!named)
-			{
-				String id = String.valueOf(index);
-
-				WtNodeList prev = transclArgs.put(id, nf.toList(value));
-				// Automatic indices never overwrite!
-				if (prev != null)
-					transclArgs.put(id, prev);
-
-				// Only unnamed arguments increase the index
-				index++;
-			}
+				transclArgs.addUnnamed(nf.toList(value));
 		}
 
 		return transclArgs;
 	}
 
+	/**
+	 * Fully expands the name of a template argument or parameter and converts
+	 * it to text. Names that are static text (which most are) are neither
+	 * expanded nor converted.
+	 */
+	private String expandName(WtName name) throws StringConversionException
+	{
+		if (name.isResolved())
+			return name.getAsString();
+
+		// EXPAND NAME!
+		return tu.astToText((WtName) dispatch(name));
+	}
+
 	// =========================================================================
 	// ==
 	// ==  T e m p l a t e  P a r a m e t e r
@@ -982,12 +1005,10 @@ public final class ExpansionVisitor
 			return n;
 
 		// Fully expand name!
-		WtName name = (WtName) dispatch(n.getName());
-
 		String nameStr = null;
 		try
 		{
-			nameStr = tu.astToText(name);
+			nameStr = expandName(n.getName());
 		}
 		catch (StringConversionException e)
 		{
@@ -1351,6 +1372,17 @@ public final class ExpansionVisitor
 		log.add(nf.logUnhandledError(e, w.toString()));
 	}
 
+	private void endProbe(
+			EngineProfiler.Probe probe,
+			ResolutionKind kind,
+			String name,
+			EngLogContainer log)
+	{
+		profiler.end(probe, kind, name);
+		if (log != null)
+			WtEngineImpl.setResourceUsage(log, probe.getMeter());
+	}
+
 	private void fileInvalidPageNameWarning(WtNode n, String target)
 	{
 		expFrame.fileWarning(new InvalidPagenameWarning(
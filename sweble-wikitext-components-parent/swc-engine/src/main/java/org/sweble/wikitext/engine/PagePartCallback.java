@@ -0,0 +1,35 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine;
+
+import java.io.IOException;
+
+import org.sweble.wikitext.engine.nodes.EngPage;
+
+/**
+ * Receives a page from
+ * {@link WtEngineImpl#postprocess(PageId, String, ExpansionCallback, PagePartCallback)}
+ * in parts.
+ */
+public interface PagePartCallback
+{
+	/**
+	 * Called for each part of the page in order. A part holds consecutive
+	 * top-level nodes of the postprocessed page.
+	 */
+	void postprocessed(EngPage part) throws IOException;
+}
@@ -25,6 +25,7 @@ import java.util.Map;
 import org.apache.commons.lang3.StringUtils;
 import org.sweble.wikitext.engine.config.Interwiki;
 import org.sweble.wikitext.engine.config.Namespace;
+import org.sweble.wikitext.engine.config.PageTitleCacheProvider;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.config.WikiConfigurationException;
 import org.sweble.wikitext.engine.utils.UrlService;
@@ -59,6 +60,8 @@ public class PageTitle
 
 	private final boolean isDefaultNs;
 
+	private final int hashCode;
+
 	// =========================================================================
 
 	/**
@@ -278,6 +281,7 @@ public class PageTitle
 		this.interwiki = interwiki;
 		this.initialColon = initialColon;
 		this.isDefaultNs = isDefaultNs;
+		this.hashCode = computeHashCode();
 	}
 
 	public static PageTitle make(
@@ -287,10 +291,32 @@ public class PageTitle
 		return make(config, target, null);
 	}
 
+	/**
+	 * If the given configuration is a {@link PageTitleCacheProvider}, titles
+	 * are looked up in and added to its page title cache. Repeatedly making a
+	 * title from the same target then returns the same instance.
+	 */
 	public static PageTitle make(
 			WikiConfig config,
 			String target,
 			Namespace defaultNamespace) throws LinkTargetException
+	{
+		PageTitleCache cache = null;
+		if (config instanceof PageTitleCacheProvider)
+			cache = ((PageTitleCacheProvider) config).getPageTitleCache();
+		if (cache == null)
+			return parse(config, target, defaultNamespace);
+
+		PageTitle title = cache.get(target, defaultNamespace);
+		if (title == null)
+			title = cache.put(target, defaultNamespace, parse(config, target, defaultNamespace));
+		return title;
+	}
+
+	private static PageTitle parse(
+			WikiConfig config,
+			String target,
+			Namespace defaultNamespace) throws LinkTargetException
 	{
 		// FIXME: Review the implementation!
 
@@ -363,6 +389,11 @@ public class PageTitle
 
 	@Override
 	public int hashCode()
+	{
+		return hashCode;
+	}
+
+	private int computeHashCode()
 	{
 		final int prime = 31;
 		int result = 1;
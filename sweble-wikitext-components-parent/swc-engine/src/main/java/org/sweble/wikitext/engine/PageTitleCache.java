@@ -0,0 +1,136 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import org.sweble.wikitext.engine.config.Namespace;
+import org.sweble.wikitext.engine.utils.BoundedCache;
+
+/**
+ * A bounded, thread-safe cache that maps raw link targets to the
+ * {@link PageTitle}s created from them.
+ *
+ * Each {@link org.sweble.wikitext.engine.config.PageTitleCacheProvider}
+ * owns one cache which is consulted by {@link PageTitle#make}.
+ * Only titles that could be parsed successfully are cached; invalid targets
+ * are parsed (and rejected) again each time.
+ *
+ * The titles are kept in a {@link BoundedCache}, so frequently used titles
+ * stay in the cache and at most twice the capacity of titles is held at any
+ * time.
+ */
+public final class PageTitleCache
+{
+	public static final int DEFAULT_CAPACITY = 8192;
+
+	// =========================================================================
+
+	private final BoundedCache<Key, PageTitle> cache;
+
+	// =========================================================================
+
+	public PageTitleCache()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	public PageTitleCache(int capacity)
+	{
+		this.cache = new BoundedCache<Key, PageTitle>(capacity);
+	}
+
+	// =========================================================================
+
+	public int getCapacity()
+	{
+		return cache.getCapacity();
+	}
+
+	/**
+	 * Returns the title that was cached for the given target and default
+	 * namespace or <code>null</code> if there is no such title.
+	 */
+	public PageTitle get(String target, Namespace defaultNamespace)
+	{
+		return cache.get(new Key(target, defaultNamespace));
+	}
+
+	/**
+	 * Caches a title. If another thread cached a title for the same target
+	 * and default namespace in the meantime, that title is returned instead
+	 * of the given one.
+	 */
+	public PageTitle put(String target, Namespace defaultNamespace, PageTitle title)
+	{
+		return cache.put(new Key(target, defaultNamespace), title);
+	}
+
+	/**
+	 * Removes all titles from the cache. Must be called whenever the
+	 * configuration changes in a way that affects the parsing of link
+	 * targets.
+	 */
+	public void clear()
+	{
+		cache.clear();
+	}
+
+	public int size()
+	{
+		return cache.size();
+	}
+
+	// =========================================================================
+
+	private static final class Key
+	{
+		private final String target;
+
+		private final Namespace defaultNamespace;
+
+		private final int hashCode;
+
+		public Key(String target, Namespace defaultNamespace)
+		{
+			this.target = target;
+			this.defaultNamespace = defaultNamespace;
+			this.hashCode = 31 * target.hashCode() +
+					((defaultNamespace == null) ? 0 : defaultNamespace.hashCode());
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			if (hashCode != other.hashCode || !target.equals(other.target))
+				return false;
+			if (defaultNamespace == null)
+				return other.defaultNamespace == null;
+			return defaultNamespace.equals(other.defaultNamespace);
+		}
+	}
+}
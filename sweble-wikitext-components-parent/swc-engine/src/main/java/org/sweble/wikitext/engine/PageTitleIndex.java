@@ -0,0 +1,33 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+/**
+ * An index of the titles of all existing pages of a wiki. Used to answer
+ * existence checks without retrieving pages.
+ * 
+ * @see org.sweble.wikitext.engine.utils.CompactTitleIndex
+ */
+public interface PageTitleIndex
+{
+	/**
+	 * Returns true if a page with the given title exists. The fragment of the
+	 * title is ignored.
+	 */
+	boolean contains(PageTitle pageTitle);
+}
@@ -29,6 +29,10 @@ public enum PfnArgumentMode
 	/**
 	 * The original template arguments will be collapsed as is done by
 	 * UNEXPANDED_VALUES. Then the collapsed value is expanded and trimmed.
+	 * 
+	 * All arguments are expanded, even those the parser function does not
+	 * look at. Use UNEXPANDED_VALUES together with {@link PfnArguments} to
+	 * expand arguments on demand.
 	 */
 	EXPANDED_AND_TRIMMED_VALUES,
 
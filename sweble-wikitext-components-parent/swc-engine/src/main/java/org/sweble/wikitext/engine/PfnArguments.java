@@ -0,0 +1,245 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.List;
+
+import org.sweble.wikitext.engine.utils.EngineAstTextUtils;
+import org.sweble.wikitext.parser.nodes.WtName;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtTemplateParameter;
+import org.sweble.wikitext.parser.nodes.WtText;
+import org.sweble.wikitext.parser.utils.StringConversionException;
+
+/**
+ * The arguments of a parser function invocation, expanded on demand.
+ * 
+ * Each argument is a thunk: It is expanded when it is requested for the first
+ * time and the expanded AST as well as its text conversion are memoized. A
+ * parser function that only looks at some of its arguments (e.g. the branch
+ * of an <code>#if</code> that is taken) therefore only expands those and
+ * requesting an argument several times expands it only once.
+ * 
+ * The arguments must be passed unexpanded (see
+ * {@link PfnArgumentMode#UNEXPANDED_VALUES}). Expansion and trimming work in
+ * place, the unexpanded argument must not be used after the argument was
+ * expanded.
+ */
+public final class PfnArguments
+{
+	private static final int EXPANDED = 1;
+
+	private static final int TRIMMED = 2;
+
+	private static final int CONVERTED = 4;
+
+	// =========================================================================
+
+	private final ExpansionFrame frame;
+
+	private final List<? extends WtNode> args;
+
+	private final EngineAstTextUtils tu;
+
+	private final WtNode[] values;
+
+	private final String[] texts;
+
+	private final byte[] state;
+
+	// =========================================================================
+
+	public PfnArguments(ExpansionFrame frame, List<? extends WtNode> args)
+	{
+		this.frame = frame;
+		this.args = args;
+		this.tu = frame.getWikiConfig().getAstTextUtils();
+
+		int size = args.size();
+		this.values = new WtNode[size];
+		this.texts = new String[size];
+		this.state = new byte[size];
+	}
+
+	// =========================================================================
+
+	public int size()
+	{
+		return args.size();
+	}
+
+	/**
+	 * Returns the argument as it was passed to the parser function.
+	 */
+	public WtNode get(int index)
+	{
+		return args.get(index);
+	}
+
+	/**
+	 * Returns the arguments as they were passed to the parser function.
+	 */
+	public List<? extends WtNode> getUnexpanded()
+	{
+		return args;
+	}
+
+	/**
+	 * Returns the expanded argument. The argument is expanded when this method
+	 * is called for the first time.
+	 */
+	public WtNode expand(int index)
+	{
+		if ((state[index] & EXPANDED) == 0)
+		{
+			values[index] = frame.expand(args.get(index));
+			state[index] |= EXPANDED;
+		}
+		return values[index];
+	}
+
+	/**
+	 * Returns the expanded argument with leading and trailing whitespace
+	 * removed. The same node is returned by {@link #expand(int)} afterwards.
+	 */
+	public WtNode expandAndTrim(int index)
+	{
+		WtNode value = expand(index);
+		if ((state[index] & TRIMMED) == 0)
+		{
+			values[index] = value = tu.trim(value);
+			// The text conversion of the untrimmed value is outdated
+			state[index] = (byte) ((state[index] | TRIMMED) & ~CONVERTED);
+			texts[index] = null;
+		}
+		return value;
+	}
+
+	/**
+	 * Returns the text of the expanded argument.
+	 * 
+	 * @return The text or <code>null</code> if the expanded argument cannot be
+	 *         converted to text.
+	 */
+	public String expandToText(int index)
+	{
+		if ((state[index] & (EXPANDED | CONVERTED)) == 0)
+		{
+			// Expansion replaces parameters in place, whether the argument 
+			// is a reference to an argument of the frame can only be decided 
+			// before the argument is expanded.
+			texts[index] = toTextViaFrameArgument(args.get(index));
+			if (texts[index] != null)
+				state[index] |= CONVERTED;
+		}
+
+		WtNode value = expand(index);
+		if ((state[index] & CONVERTED) == 0)
+		{
+			try
+			{
+				texts[index] = tu.astToText(value);
+			}
+			catch (StringConversionException e)
+			{
+				texts[index] = null;
+			}
+			state[index] |= CONVERTED;
+		}
+		return texts[index];
+	}
+
+	/**
+	 * Returns the text of the expanded argument with leading and trailing
+	 * whitespace removed.
+	 * 
+	 * @return The text or <code>null</code> if the expanded argument cannot be
+	 *         converted to text.
+	 */
+	public String expandToTrimmedText(int index)
+	{
+		String text = expandToText(index);
+		return (text != null) ? text.trim() : null;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Citation templates and the like pass their parameters to parser 
+	 * functions over and over again (e.g. <code>{{#if:{{{title|}}}|...}}</code>).
+	 * The text of an argument that consists of text and a single reference to
+	 * an argument of the frame is composed from the frame's memoized text of 
+	 * that argument.
+	 * 
+	 * @return The text or <code>null</code> if the argument is not of that
+	 *         form.
+	 */
+	private String toTextViaFrameArgument(WtNode arg)
+	{
+		StringBuilder b = new StringBuilder();
+		return (appendText(b, arg) == 1) ? b.toString() : null;
+	}
+
+	/**
+	 * @return The count of parameters that were appended or -1 if the node
+	 *         cannot be handled.
+	 */
+	private int appendText(StringBuilder b, WtNode n)
+	{
+		switch (n.getNodeType())
+		{
+			case WtNode.NT_TEXT:
+				b.append(((WtText) n).getContent());
+				return 0;
+
+			case WtNode.NT_NODE_LIST:
+			{
+				int count = 0;
+				for (WtNode c : n)
+				{
+					if (c == null)
+						continue;
+					int appended = appendText(b, c);
+					if (appended < 0)
+						return -1;
+					count += appended;
+					if (count > 1)
+						return -1;
+				}
+				return count;
+			}
+
+			case WtNode.NT_TEMPLATE_PARAMETER:
+			{
+				WtName name = ((WtTemplateParameter) n).getName();
+				if (!name.isResolved())
+					return -1;
+
+				String text = frame.getArgumentText(name.getAsString().trim());
+				if (text == null)
+					return -1;
+
+				b.append(text);
+				return 1;
+			}
+
+			default:
+				return -1;
+		}
+	}
+}
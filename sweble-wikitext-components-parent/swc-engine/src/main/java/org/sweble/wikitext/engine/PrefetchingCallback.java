@@ -0,0 +1,40 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+/**
+ * An expansion callback which wants to learn about the templates of a page
+ * before the page is expanded. If the callback passed to the engine
+ * implements this interface, the engine calls
+ * {@link #prefetchTemplates(WtNode)} with each preprocessed page (the page
+ * itself or a transcluded page) before it expands that page.
+ * 
+ * @see org.sweble.wikitext.engine.utils.PrefetchingExpansionCallback
+ */
+public interface PrefetchingCallback
+		extends
+			ExpansionCallback
+{
+	/**
+	 * Starts retrieving the templates used in the given AST. Must not wait
+	 * for the retrieval to finish.
+	 */
+	void prefetchTemplates(WtNode ast);
+}
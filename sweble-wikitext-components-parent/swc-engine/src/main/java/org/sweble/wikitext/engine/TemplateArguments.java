@@ -0,0 +1,294 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sweble.wikitext.engine.utils.EngineAstTextUtils;
+import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.utils.StringConversionException;
+
+/**
+ * The arguments passed to a transcluded page.
+ *
+ * Unnamed arguments are stored in an array indexed by their position, named
+ * arguments in an open-addressing hash table. Looking up an argument by its
+ * one-based index (e.g. "2") therefore does not need a hash table look-up
+ * unless a named argument with the same name was given. A named argument
+ * always takes precedence over an unnamed argument with the same index.
+ *
+ * The text of an argument is converted when it is requested for the first
+ * time and memoized, see {@link #getText(String)}.
+ *
+ * The map view is read-only, arguments are added with
+ * {@link #addUnnamed(WtNodeList)} and {@link #putNamed(String, WtNodeList)}.
+ */
+public final class TemplateArguments
+		extends
+			AbstractMap<String, WtNodeList>
+{
+	private static final int MAX_INDEX_DIGITS = 9;
+
+	/** Marks arguments that cannot be converted to text. */
+	private static final String NO_TEXT = new String();
+
+	// =========================================================================
+
+	private final EngineAstTextUtils tu;
+
+	private WtNodeList[] unnamed = new WtNodeList[4];
+
+	private String[] unnamedTexts = new String[4];
+
+	private int unnamedCount;
+
+	private String[] keys = new String[8];
+
+	private WtNodeList[] values = new WtNodeList[8];
+
+	private String[] texts = new String[8];
+
+	private int namedCount;
+
+	// =========================================================================
+
+	public TemplateArguments(EngineAstTextUtils tu)
+	{
+		this.tu = tu;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Adds an unnamed argument. Its key is its one-based position among the
+	 * unnamed arguments.
+	 */
+	public void addUnnamed(WtNodeList value)
+	{
+		if (unnamedCount == unnamed.length)
+		{
+			unnamed = Arrays.copyOf(unnamed, unnamedCount * 2);
+			unnamedTexts = Arrays.copyOf(unnamedTexts, unnamedCount * 2);
+		}
+		unnamed[unnamedCount++] = value;
+	}
+
+	/**
+	 * Adds a named argument. An argument with the same name that was added
+	 * before is replaced.
+	 */
+	public void putNamed(String name, WtNodeList value)
+	{
+		if ((namedCount + 1) * 2 > keys.length)
+			rehash(keys.length * 2);
+
+		int i = find(keys, name);
+		if (keys[i] == null)
+		{
+			keys[i] = name;
+			++namedCount;
+		}
+		values[i] = value;
+		texts[i] = null;
+	}
+
+	/**
+	 * Returns the text of an argument. The text is converted when it is
+	 * requested for the first time.
+	 *
+	 * @return The text or <code>null</code> if there is no such argument or
+	 *         if its value cannot be converted to text.
+	 */
+	public String getText(String name)
+	{
+		String text;
+		int i = find(keys, name);
+		if (keys[i] != null)
+		{
+			text = texts[i];
+			if (text == null)
+				texts[i] = text = toText(values[i]);
+		}
+		else
+		{
+			int index = parseIndex(name);
+			if (index < 0)
+				return null;
+
+			text = unnamedTexts[index];
+			if (text == null)
+				unnamedTexts[index] = text = toText(unnamed[index]);
+		}
+		return (text != NO_TEXT) ? text : null;
+	}
+
+	// =========================================================================
+
+	@Override
+	public WtNodeList get(Object key)
+	{
+		if (!(key instanceof String))
+			return null;
+
+		String name = (String) key;
+		int i = find(keys, name);
+		if (keys[i] != null)
+			return values[i];
+
+		int index = parseIndex(name);
+		return (index >= 0) ? unnamed[index] : null;
+	}
+
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return get(key) != null;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return namedCount == 0 && unnamedCount == 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return entries().size();
+	}
+
+	@Override
+	public Set<Map.Entry<String, WtNodeList>> entrySet()
+	{
+		return new AbstractSet<Map.Entry<String, WtNodeList>>()
+		{
+			@Override
+			public Iterator<Map.Entry<String, WtNodeList>> iterator()
+			{
+				return entries().iterator();
+			}
+
+			@Override
+			public int size()
+			{
+				return entries().size();
+			}
+		};
+	}
+
+	// =========================================================================
+
+	private List<Map.Entry<String, WtNodeList>> entries()
+	{
+		List<Map.Entry<String, WtNodeList>> entries =
+				new ArrayList<Map.Entry<String, WtNodeList>>(namedCount + unnamedCount);
+
+		for (int i = 0; i < keys.length; ++i)
+		{
+			if (keys[i] != null)
+				entries.add(new SimpleImmutableEntry<String, WtNodeList>(keys[i], values[i]));
+		}
+
+		for (int i = 0; i < unnamedCount; ++i)
+		{
+			String key = String.valueOf(i + 1);
+			if (keys[find(keys, key)] == null)
+				entries.add(new SimpleImmutableEntry<String, WtNodeList>(key, unnamed[i]));
+		}
+
+		return entries;
+	}
+
+	/**
+	 * @return The zero-based index of the unnamed argument or -1 if the name
+	 *         is not the decimal representation of the one-based position of
+	 *         an unnamed argument.
+	 */
+	private int parseIndex(String name)
+	{
+		int length = name.length();
+		if (length == 0 || length > MAX_INDEX_DIGITS || name.charAt(0) == '0')
+			return -1;
+
+		int index = 0;
+		for (int i = 0; i < length; ++i)
+		{
+			char ch = name.charAt(i);
+			if (ch < '0' || ch > '9')
+				return -1;
+			index = index * 10 + (ch - '0');
+		}
+
+		return (index <= unnamedCount) ? index - 1 : -1;
+	}
+
+	private String toText(WtNodeList value)
+	{
+		try
+		{
+			return tu.astToText(value);
+		}
+		catch (StringConversionException e)
+		{
+			return NO_TEXT;
+		}
+	}
+
+	/**
+	 * @return The slot of the key or the empty slot where the key would have
+	 *         to be inserted.
+	 */
+	private static int find(String[] keys, String key)
+	{
+		int mask = keys.length - 1;
+		int h = key.hashCode();
+		int i = (h ^ (h >>> 16)) & mask;
+		while (keys[i] != null && !keys[i].equals(key))
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private void rehash(int capacity)
+	{
+		String[] oldKeys = keys;
+		WtNodeList[] oldValues = values;
+		String[] oldTexts = texts;
+
+		keys = new String[capacity];
+		values = new WtNodeList[capacity];
+		texts = new String[capacity];
+
+		for (int i = 0; i < oldKeys.length; ++i)
+		{
+			if (oldKeys[i] != null)
+			{
+				int j = find(keys, oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+				texts[j] = oldTexts[i];
+			}
+		}
+	}
+}
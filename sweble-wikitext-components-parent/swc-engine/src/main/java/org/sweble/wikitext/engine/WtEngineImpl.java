@@ -17,8 +17,10 @@
 
 package org.sweble.wikitext.engine;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -39,6 +41,8 @@ import org.sweble.wikitext.engine.nodes.EngLogProcessingPass;
 import org.sweble.wikitext.engine.nodes.EngLogValidatorPass;
 import org.sweble.wikitext.engine.nodes.EngProcessedPage;
 import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
+import org.sweble.wikitext.engine.utils.ThreadResourceMeter;
+import org.sweble.wikitext.parser.ParallelWikitextParser;
 import org.sweble.wikitext.parser.ParserConfig;
 import org.sweble.wikitext.parser.WikitextEncodingValidator;
 import org.sweble.wikitext.parser.WikitextParser;
@@ -78,6 +82,10 @@ public class WtEngineImpl
 
 	private boolean catchAll = true;
 
+	private EngineProfiler profiler;
+
+	private int minPartSize = ParallelWikitextParser.DEFAULT_MIN_CHUNK_SIZE;
+
 	// =========================================================================
 
 	public WtEngineImpl(WikiConfig wikiConfig)
@@ -110,6 +118,34 @@ public class WtEngineImpl
 		this.catchAll = catchAll;
 	}
 
+	/**
+	 * Enables profiling if a profiler is given. The profiler aggregates the
+	 * cost of template and parser function resolutions. Additionally the CPU
+	 * time and the number of allocated bytes of each pass and resolution are
+	 * recorded in the log of the processed page.
+	 * 
+	 * Enabling profiling also enables CPU time measurement in the JVM (see
+	 * {@link ThreadResourceMeter#enableCpuTime()}) if it is not enabled yet.
+	 */
+	public void setProfiler(EngineProfiler profiler)
+	{
+		if (profiler != null)
+			ThreadResourceMeter.enableCpuTime();
+		this.profiler = profiler;
+	}
+
+	/**
+	 * The minimum number of characters of expanded wikitext in a part of a
+	 * page that is postprocessed in parts, see
+	 * {@link #postprocess(PageId, String, ExpansionCallback, PagePartCallback)}.
+	 */
+	public void setMinPartSize(int minPartSize)
+	{
+		if (minPartSize < 1)
+			throw new IllegalArgumentException();
+		this.minPartSize = minPartSize;
+	}
+
 	public WikiConfig getWikiConfig()
 	{
 		return wikiConfig;
@@ -135,6 +171,16 @@ public class WtEngineImpl
 		return catchAll;
 	}
 
+	public EngineProfiler getProfiler()
+	{
+		return profiler;
+	}
+
+	public int getMinPartSize()
+	{
+		return minPartSize;
+	}
+
 	public EngineNodeFactory nf()
 	{
 		return wikiConfig.getNodeFactory();
@@ -438,6 +484,68 @@ public class WtEngineImpl
 				pAst.getWarnings());
 	}
 
+	/**
+	 * Like {@link #postprocess(PageId, String, ExpansionCallback)} but passes
+	 * the postprocessed page to the given callback in parts as soon as they
+	 * are ready. The page is split in front of top-level sections that the
+	 * {@link ParallelWikitextParser} can parse and postprocess separately.
+	 * The parts are parsed and postprocessed in parallel. Parts have at least
+	 * {@link #getMinPartSize()} characters, so small pages are passed on in
+	 * one part.
+	 * 
+	 * The engine does not keep a reference to a part after it was passed on.
+	 * A caller which writes each part out and drops it therefore never holds
+	 * the whole postprocessed page. The returned page is empty, it only
+	 * carries the log and the warnings. The parser pass in the log includes
+	 * the time spent in postprocessing and in the callback.
+	 */
+	public EngProcessedPage postprocess(
+			PageId pageId,
+			String wikitext,
+			ExpansionCallback callback,
+			PagePartCallback partCallback)
+			throws EngineException
+	{
+		if (pageId == null || partCallback == null)
+			throw new NullPointerException();
+
+		PageTitle title = pageId.getTitle();
+
+		EngLogProcessingPass log = nf().logProcessingPass();
+		log.setTitle(title.getDenormalizedFullTitle());
+		log.setRevision(pageId.getRevision());
+
+		List<Warning> warnings;
+		try
+		{
+			ValidatedWikitext validatedWikitext =
+					validate(title, wikitext, log, null);
+
+			WtPreproWikitextPage ppAst =
+					preprocess(title, validatedWikitext, false, log);
+
+			WtPreproWikitextPage pprAst = ppAst;
+			if (callback != null)
+				pprAst = expand(callback, title, ppAst, null, false, log);
+
+			warnings = parseAndPostprocess(title, pprAst, partCallback, log);
+		}
+		catch (EngineException e)
+		{
+			e.attachLog(log);
+			throw e;
+		}
+		catch (Throwable e)
+		{
+			throw new EngineException(title, "Compilation failed!", e, log);
+		}
+
+		return nf().processedPage(
+				nf().page(nf().list()),
+				log,
+				warnings);
+	}
+
 	/**
 	 * Takes an AST after preprocessing or after expansion and performs the
 	 * following steps:
@@ -625,6 +733,8 @@ public class WtEngineImpl
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		ThreadResourceMeter meter = startMeter();
+
 		try
 		{
 			WikitextEncodingValidator validator = new WikitextEncodingValidator();
@@ -654,6 +764,7 @@ public class WtEngineImpl
 		{
 			stopWatch.stop();
 			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
 		}
 	}
 
@@ -675,6 +786,8 @@ public class WtEngineImpl
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		ThreadResourceMeter meter = startMeter();
+
 		try
 		{
 			WikitextPreprocessor preprocessor = new WikitextPreprocessor(parserConfig);
@@ -718,6 +831,7 @@ public class WtEngineImpl
 		{
 			stopWatch.stop();
 			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
 		}
 	}
 
@@ -768,6 +882,8 @@ public class WtEngineImpl
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		ThreadResourceMeter meter = startMeter();
+
 		try
 		{
 			// Copy in case ppAst stores an immutable (empty) warning list.
@@ -808,6 +924,9 @@ public class WtEngineImpl
 						catchAll);
 			}
 
+			if (callback instanceof PrefetchingCallback)
+				((PrefetchingCallback) callback).prefetchTemplates(ppAst);
+
 			WtPreproWikitextPage expanded =
 					(WtPreproWikitextPage) frame.expand(ppAst);
 
@@ -830,6 +949,7 @@ public class WtEngineImpl
 		{
 			stopWatch.stop();
 			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
 		}
 	}
 
@@ -848,15 +968,20 @@ public class WtEngineImpl
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		ThreadResourceMeter meter = startMeter();
+
 		try
 		{
 			WikitextParser parser = new WikitextParser(parserConfig);
+			parser.setCollectStats(profiler != null);
 
 			WtParsedWikitextPage parsedAst =
 					(WtParsedWikitextPage) parser.parseArticle(
 							wikitext,
 							title.getTitle());
 
+			log.setParserStats(parser.getStats());
+
 			return parsedAst;
 		}
 		catch (xtc.parser.ParseException e)
@@ -879,6 +1004,7 @@ public class WtEngineImpl
 		{
 			stopWatch.stop();
 			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
 		}
 	}
 
@@ -898,6 +1024,8 @@ public class WtEngineImpl
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		ThreadResourceMeter meter = startMeter();
+
 		try
 		{
 			PreprocessedWikitext preprocessedWikitext =
@@ -906,12 +1034,15 @@ public class WtEngineImpl
 							engineConfig.isTrimTransparentBeforeParsing());
 
 			WikitextParser parser = new WikitextParser(parserConfig);
+			parser.setCollectStats(profiler != null);
 
 			WtParsedWikitextPage parsedAst =
 					(WtParsedWikitextPage) parser.parseArticle(
 							preprocessedWikitext,
 							title.getTitle());
 
+			log.setParserStats(parser.getStats());
+
 			// if there were no warnings we would try to add to the EMPTY_LIST
 			if (parsedAst.getWarnings() == Collections.EMPTY_LIST)
 			{
@@ -944,6 +1075,78 @@ public class WtEngineImpl
 		{
 			stopWatch.stop();
 			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
+		}
+	}
+
+	/**
+	 * Parses and postprocesses a preprocessed page in parts.
+	 * 
+	 * @return The warnings of all parts.
+	 */
+	private List<Warning> parseAndPostprocess(
+			PageTitle title,
+			WtPreproWikitextPage ppAst,
+			final PagePartCallback partCallback,
+			EngLogContainer parentLog)
+			throws EngineException
+	{
+		EngLogParserPass log = nf().logParserPass();
+		parentLog.add(log);
+
+		StopWatch stopWatch = new StopWatch();
+		stopWatch.start();
+
+		ThreadResourceMeter meter = startMeter();
+
+		try
+		{
+			PreprocessedWikitext preprocessedWikitext =
+					PreprocessorToParserTransformer.transform(
+							ppAst,
+							engineConfig.isTrimTransparentBeforeParsing());
+
+			ParallelWikitextParser parser = new ParallelWikitextParser(parserConfig);
+			parser.setMinChunkSize(minPartSize);
+
+			final List<Warning> warnings = new ArrayList<Warning>();
+			parser.parseAndPostprocessArticle(
+					preprocessedWikitext,
+					title.getTitle(),
+					new ParallelWikitextParser.PartCallback()
+					{
+						@Override
+						public void postprocessed(WtParsedWikitextPage part) throws IOException
+						{
+							warnings.addAll(part.getWarnings());
+							partCallback.postprocessed(nf().page(part));
+						}
+					});
+
+			warnings.addAll(ppAst.getWarnings());
+			return warnings;
+		}
+		catch (xtc.parser.ParseException e)
+		{
+			log.add(nf().logParserError(e.getMessage()));
+
+			throw new EngineException(title, "Parsing failed!", e);
+		}
+		catch (Exception e)
+		{
+			logger.error("Parsing failed!", e);
+
+			StringWriter w = new StringWriter();
+			e.printStackTrace(new PrintWriter(w));
+			log.add(nf().logUnhandledError(e, w.toString()));
+
+			throw new EngineException(title, "Parsing failed!", e);
+		}
+		finally
+		{
+			stopWatch.stop();
+			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
 		}
 	}
 
@@ -959,6 +1162,8 @@ public class WtEngineImpl
 		StopWatch stopWatch = new StopWatch();
 		stopWatch.start();
 
+		ThreadResourceMeter meter = startMeter();
+
 		try
 		{
 			WikitextPostprocessor lpp = new WikitextPostprocessor(parserConfig);
@@ -981,6 +1186,31 @@ public class WtEngineImpl
 		{
 			stopWatch.stop();
 			log.setTimeNeeded(stopWatch.getElapsedTime());
+			stopMeter(meter, log);
 		}
 	}
+
+	// =========================================================================
+
+	private ThreadResourceMeter startMeter()
+	{
+		return (profiler != null) ? new ThreadResourceMeter().start() : null;
+	}
+
+	private static void stopMeter(ThreadResourceMeter meter, EngLogContainer log)
+	{
+		if (meter == null)
+			return;
+
+		meter.stop();
+		setResourceUsage(log, meter);
+	}
+
+	static void setResourceUsage(EngLogContainer log, ThreadResourceMeter meter)
+	{
+		if (meter.getCpuTime() >= 0)
+			log.setCpuTimeNeeded(meter.getCpuTime());
+		if (meter.getAllocatedBytes() >= 0)
+			log.setBytesAllocated(meter.getAllocatedBytes());
+	}
 }
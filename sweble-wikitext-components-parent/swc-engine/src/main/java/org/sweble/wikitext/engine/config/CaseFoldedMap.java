@@ -0,0 +1,178 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.config;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * An immutable map for case-insensitive lookups of names.
+ *
+ * The map is built from a map whose keys were converted with
+ * {@link String#toLowerCase()}. Lookups fold the case of the given name
+ * character by character while hashing and comparing it, so no lower case
+ * copy of the name has to be created. Names for which the character-wise
+ * folding might differ from {@link String#toLowerCase()} (dotted capital I,
+ * capital sigma, surrogates and locales with special casing rules) are
+ * looked up in a copy of the original map instead.
+ */
+final class CaseFoldedMap<V>
+{
+	private final Map<String, V> lowerCaseMap;
+
+	private final boolean folding;
+
+	private final String[] keys;
+
+	private final Object[] values;
+
+	private final int mask;
+
+	// =========================================================================
+
+	public CaseFoldedMap(Map<String, V> lowerCaseMap)
+	{
+		this.lowerCaseMap = Collections.unmodifiableMap(new HashMap<String, V>(lowerCaseMap));
+
+		int capacity = 2;
+		while (capacity < lowerCaseMap.size() * 2)
+			capacity <<= 1;
+
+		this.keys = new String[capacity];
+		this.values = new Object[capacity];
+		this.mask = capacity - 1;
+
+		boolean folding = !hasSpecialCasingRules(Locale.getDefault());
+		for (Entry<String, V> e : lowerCaseMap.entrySet())
+		{
+			String key = e.getKey();
+			if (!isFoldedKey(key))
+				folding = false;
+
+			int i = spread(hash(key)) & mask;
+			while (keys[i] != null)
+				i = (i + 1) & mask;
+			keys[i] = key;
+			values[i] = e.getValue();
+		}
+		this.folding = folding;
+	}
+
+	// =========================================================================
+
+	public int size()
+	{
+		return lowerCaseMap.size();
+	}
+
+	/**
+	 * Returns the value for the given name, ignoring case, or
+	 * <code>null</code> if there is no such value. Equivalent to
+	 * <code>get(name.toLowerCase())</code> on the original map.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(String name)
+	{
+		if (!folding)
+			return lowerCaseMap.get(name.toLowerCase());
+
+		int length = name.length();
+		int h = 0;
+		for (int i = 0; i < length; ++i)
+		{
+			char ch = name.charAt(i);
+			if (needsSpecialCasing(ch))
+				return lowerCaseMap.get(name.toLowerCase());
+			h = 31 * h + fold(ch);
+		}
+
+		for (int i = spread(h) & mask; keys[i] != null; i = (i + 1) & mask)
+		{
+			if (matches(keys[i], name))
+				return (V) values[i];
+		}
+		return null;
+	}
+
+	public boolean containsKey(String name)
+	{
+		return get(name) != null;
+	}
+
+	// =========================================================================
+
+	private static boolean matches(String key, String name)
+	{
+		int length = key.length();
+		if (length != name.length())
+			return false;
+		for (int i = 0; i < length; ++i)
+		{
+			if (key.charAt(i) != fold(name.charAt(i)))
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean isFoldedKey(String key)
+	{
+		for (int i = 0; i < key.length(); ++i)
+		{
+			char ch = key.charAt(i);
+			if (needsSpecialCasing(ch) || fold(ch) != ch)
+				return false;
+		}
+		return true;
+	}
+
+	private static int hash(String key)
+	{
+		int h = 0;
+		for (int i = 0; i < key.length(); ++i)
+			h = 31 * h + fold(key.charAt(i));
+		return h;
+	}
+
+	private static int spread(int h)
+	{
+		return h ^ (h >>> 16);
+	}
+
+	private static char fold(char ch)
+	{
+		if (ch < 0x80)
+			return (ch >= 'A' && ch <= 'Z') ? (char) (ch + ('a' - 'A')) : ch;
+		return Character.toLowerCase(ch);
+	}
+
+	private static boolean needsSpecialCasing(char ch)
+	{
+		return ch == '\u0130'
+				|| ch == '\u03A3'
+				|| (ch >= '\uD800' && ch <= '\uDFFF');
+	}
+
+	private static boolean hasSpecialCasingRules(Locale locale)
+	{
+		String lang = locale.getLanguage();
+		return "tr".equals(lang) || "az".equals(lang) || "lt".equals(lang);
+	}
+}
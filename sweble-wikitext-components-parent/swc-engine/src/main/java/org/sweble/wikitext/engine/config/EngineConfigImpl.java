@@ -36,6 +36,8 @@ public class EngineConfigImpl
 	@XmlElement()
 	private boolean trimTransparentBeforeParsing;
 
+	private transient volatile boolean frozen;
+
 	// =========================================================================
 
 	@Override
@@ -47,9 +49,19 @@ public class EngineConfigImpl
 	public void setTrimTransparentBeforeParsing(
 			boolean trimTransparentBeforeParsing)
 	{
+		if (frozen)
+			throw new IllegalStateException("This configuration is frozen and cannot be modified.");
 		this.trimTransparentBeforeParsing = trimTransparentBeforeParsing;
 	}
 
+	/**
+	 * Called by {@link WikiConfigImpl#freeze()}.
+	 */
+	void freeze()
+	{
+		frozen = true;
+	}
+
 	// =========================================================================
 
 	@Override
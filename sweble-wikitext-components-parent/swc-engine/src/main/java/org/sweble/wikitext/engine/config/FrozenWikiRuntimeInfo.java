@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.config;
+
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Freezes the date and time reported by another runtime info.
+ * 
+ * The current time is taken from the wrapped runtime info on first use and
+ * all later calls report the same instant. The calendars of the wrapped
+ * runtime info are set up once per locale and callers receive copies which
+ * they are free to modify.
+ * 
+ * The engine creates one frozen runtime info per expansion run (see
+ * {@link org.sweble.wikitext.engine.ExpansionFrame#getRuntimeInfo()}), so
+ * all date and time variables and parser functions on a page see the same
+ * time. Instances are not thread-safe.
+ */
+public final class FrozenWikiRuntimeInfo
+		implements
+			WikiRuntimeInfo
+{
+	private final WikiRuntimeInfo runtimeInfo;
+
+	private long timeInMillis;
+
+	private boolean frozen;
+
+	private Calendar dateAndTime;
+
+	private Map<Locale, Calendar> dateAndTimeByLocale;
+
+	// =========================================================================
+
+	public FrozenWikiRuntimeInfo(WikiRuntimeInfo runtimeInfo)
+	{
+		if (runtimeInfo == null)
+			throw new NullPointerException();
+		this.runtimeInfo = runtimeInfo;
+	}
+
+	// =========================================================================
+
+	public long getTimeInMillis()
+	{
+		if (!frozen)
+			dateAndTime = freeze(runtimeInfo.getDateAndTime());
+		return timeInMillis;
+	}
+
+	@Override
+	public Calendar getDateAndTime()
+	{
+		if (dateAndTime == null)
+			dateAndTime = freeze(runtimeInfo.getDateAndTime());
+		return (Calendar) dateAndTime.clone();
+	}
+
+	@Override
+	public Calendar getDateAndTime(Locale locale)
+	{
+		if (dateAndTimeByLocale == null)
+			dateAndTimeByLocale = new HashMap<Locale, Calendar>();
+
+		Calendar calendar = dateAndTimeByLocale.get(locale);
+		if (calendar == null)
+		{
+			calendar = freeze(runtimeInfo.getDateAndTime(locale));
+			dateAndTimeByLocale.put(locale, calendar);
+		}
+		return (Calendar) calendar.clone();
+	}
+
+	// =========================================================================
+
+	private Calendar freeze(Calendar calendar)
+	{
+		if (frozen)
+		{
+			calendar.setTimeInMillis(timeInMillis);
+		}
+		else
+		{
+			timeInMillis = calendar.getTimeInMillis();
+			frozen = true;
+		}
+		return calendar;
+	}
+}
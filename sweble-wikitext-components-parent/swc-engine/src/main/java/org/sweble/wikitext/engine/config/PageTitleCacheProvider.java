@@ -0,0 +1,33 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.config;
+
+import org.sweble.wikitext.engine.PageTitleCache;
+
+/**
+ * Implemented by wiki configurations that cache the titles made by
+ * {@link org.sweble.wikitext.engine.PageTitle#make}. Titles made from other
+ * configurations are not cached.
+ */
+public interface PageTitleCacheProvider
+{
+	/**
+	 * Returns the cache used by PageTitle.make() or null if page titles
+	 * should not be cached for this configuration.
+	 */
+	public PageTitleCache getPageTitleCache();
+}
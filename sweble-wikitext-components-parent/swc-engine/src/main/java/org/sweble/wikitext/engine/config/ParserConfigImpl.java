@@ -104,6 +104,9 @@ public class ParserConfigImpl
 
 	private final Map<String, String> lctVariantMap = new HashMap<String, String>();
 
+	/** Case-folded URL protocols, only set once the configuration is frozen. */
+	private transient volatile CaseFoldedMap<String> frozenUrlProtocols;
+
 	// =========================================================================
 
 	/**
@@ -130,19 +133,43 @@ public class ParserConfigImpl
 		this.wikiConfig = wikiConfig;
 	}
 
+	/**
+	 * Called by {@link WikiConfigImpl#freeze()}.
+	 */
+	void freeze()
+	{
+		Map<String, String> protocols = new HashMap<String, String>();
+		for (String protocol : allowedUrlProtocols)
+			protocols.put(protocol, protocol);
+		this.frozenUrlProtocols = new CaseFoldedMap<String>(protocols);
+	}
+
+	private void checkNotFrozen()
+	{
+		if (frozenUrlProtocols != null)
+			throw new IllegalStateException("This configuration is frozen and cannot be modified.");
+	}
+
 	// ==[ XML Entity resolution ]==============================================
 
 	public void addXmlEntity(String name, String resolvesTo)
 	{
+		checkNotFrozen();
 		String old = xmlEntities.get(name);
 		if (old != null)
 			throw new IllegalArgumentException("XML entity `" + name + "' already registered.");
 		xmlEntities.put(name, resolvesTo);
+
+		// Link targets are XML decoded when page titles are made
+		if (wikiConfig != null)
+			wikiConfig.getPageTitleCache().clear();
 	}
 
 	@Override
 	public Map<String, String> getXmlEntities()
 	{
+		if (frozenUrlProtocols != null)
+			return Collections.unmodifiableMap(xmlEntities);
 		return xmlEntities;
 	}
 
@@ -156,6 +183,7 @@ public class ParserConfigImpl
 
 	public void setConvertIllegalCodePoints(boolean convertIllegalCodePoints)
 	{
+		checkNotFrozen();
 		this.convertIllegalCodePoints = convertIllegalCodePoints;
 	}
 	
@@ -169,6 +197,7 @@ public class ParserConfigImpl
 
 	public void setWarningsEnabled(boolean warningsEnabled)
 	{
+		checkNotFrozen();
 		this.warningsEnabled = warningsEnabled;
 	}
 
@@ -180,6 +209,7 @@ public class ParserConfigImpl
 
 	public void setMinSeverity(WarningSeverity minSeverity)
 	{
+		checkNotFrozen();
 		this.minSeverity = minSeverity;
 	}
 
@@ -196,6 +226,7 @@ public class ParserConfigImpl
 
 	public void setAutoCorrect(boolean autoCorrect)
 	{
+		checkNotFrozen();
 		this.autoCorrect = autoCorrect;
 	}
 
@@ -207,6 +238,7 @@ public class ParserConfigImpl
 
 	public void setGatherRtData(boolean gatherRtData)
 	{
+		checkNotFrozen();
 		this.gatherRtData = gatherRtData;
 	}
 
@@ -234,6 +266,7 @@ public class ParserConfigImpl
 
 	public void addUrlProtocol(String protocol)
 	{
+		checkNotFrozen();
 		if (allowedUrlProtocols.contains(protocol))
 			throw new IllegalArgumentException("URL Protocol `" + protocol + "' already registered.");
 		if (!URL_PROTOCOL_SYNTAX.matcher(protocol).matches())
@@ -244,11 +277,20 @@ public class ParserConfigImpl
 	@Override
 	public boolean isUrlProtocol(String protocol)
 	{
+		CaseFoldedMap<String> protocols = frozenUrlProtocols;
+		if (protocols != null)
+			return protocols.containsKey(protocol);
 		return allowedUrlProtocols.contains(protocol.toLowerCase());
 	}
 
+	Set<String> getUrlProtocols()
+	{
+		return Collections.unmodifiableSet(allowedUrlProtocols);
+	}
+
 	public void setInternalLinkPrefixPattern(String pat)
 	{
+		checkNotFrozen();
 		if (pat == null)
 		{
 			this.internalLinkPrefixPattern = null;
@@ -275,6 +317,7 @@ public class ParserConfigImpl
 
 	public void setInternalLinkPostfixPattern(String pat)
 	{
+		checkNotFrozen();
 		if (pat == null)
 		{
 			this.internalLinkPostfixPattern = null;
@@ -381,6 +424,7 @@ public class ParserConfigImpl
 
 	public void setNonStandardElementBehavior(NonStandardElementBehavior nonStandardElementBehavior)
 	{
+		checkNotFrozen();
 		this.nonStandardElementBehavior = nonStandardElementBehavior;
 	}
 
@@ -393,6 +437,7 @@ public class ParserConfigImpl
 
 	public void setFosterParenting(boolean fosterParenting)
 	{
+		checkNotFrozen();
 		this.fosterParenting = fosterParenting;
 	}
 
@@ -404,6 +449,7 @@ public class ParserConfigImpl
 
 	public void setFosterParentingForTransclusions(boolean fosterParentingForTransclusions)
 	{
+		checkNotFrozen();
 		this.fosterParentingForTransclusions = fosterParentingForTransclusions;
 	}
 
@@ -415,6 +461,7 @@ public class ParserConfigImpl
 
 	public void setPreserveSemiPreLeadingSpace(boolean preserveSemiPreLeadingSpace)
 	{
+		checkNotFrozen();
 		this.preserveSemiPreLeadingSpace = preserveSemiPreLeadingSpace;
 	}
 
@@ -428,6 +475,7 @@ public class ParserConfigImpl
 
 	public void setLangConvTagsEnabled(boolean langConvTagsEnabled)
 	{
+		checkNotFrozen();
 		this.langConvTagsEnabled = langConvTagsEnabled;
 	}
 
@@ -455,12 +503,18 @@ public class ParserConfigImpl
 
 	public void addLctFlagMapping(String name, String normalized)
 	{
+		checkNotFrozen();
 		String old = lctFlagMap.get(name);
 		if (old != null)
 			throw new IllegalArgumentException("LCT flag mapping `" + name + "' already registered.");
 		this.lctFlagMap.put(name, normalized);
 	}
 
+	Map<String, String> getLctFlagMappings()
+	{
+		return Collections.unmodifiableMap(lctFlagMap);
+	}
+
 	@Override
 	public boolean isLctVariant(String variant)
 	{
@@ -479,12 +533,18 @@ public class ParserConfigImpl
 
 	public void addLctVariantMapping(String name, String normalized)
 	{
+		checkNotFrozen();
 		String old = lctVariantMap.get(name);
 		if (old != null)
 			throw new IllegalArgumentException("LCT variant mapping `" + name + "' already registered.");
 		this.lctVariantMap.put(name, normalized);
 	}
 
+	Map<String, String> getLctVariantMappings()
+	{
+		return Collections.unmodifiableMap(lctVariantMap);
+	}
+
 	// =========================================================================
 
 	private static final class XmlEntityMapEntry
@@ -50,6 +50,7 @@ import javax.xml.transform.Source;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sweble.wikitext.engine.PageTitleCache;
 import org.sweble.wikitext.engine.ParserFunctionBase;
 import org.sweble.wikitext.engine.TagExtensionBase;
 import org.sweble.wikitext.engine.nodes.EngineNodeFactoryImpl;
@@ -76,7 +77,8 @@ import com.sun.xml.bind.marshaller.NamespacePrefixMapper;
 @XmlAccessorType(XmlAccessType.NONE)
 public class WikiConfigImpl
 		implements
-			WikiConfig
+			WikiConfig,
+			PageTitleCacheProvider
 {
 	private static final Logger logger = LoggerFactory.getLogger(WikiConfigImpl.class);
 
@@ -142,6 +144,8 @@ public class WikiConfigImpl
 
 	private NamespaceImpl defaultNamespace;
 
+	private transient final PageTitleCache pageTitleCache = new PageTitleCache();
+
 	// -- Runtime information --
 
 	private WikiRuntimeInfo runtimeInfo;
@@ -153,6 +157,9 @@ public class WikiConfigImpl
 
 	private final Map<String, TagExtensionBase> tagExtensionLookup = new HashMap<String, TagExtensionBase>();
 
+	/** Compiled lookup tables, only set once the configuration is frozen. */
+	private transient volatile FrozenLookups frozenLookups;
+
 	// =========================================================================
 
 	public WikiConfigImpl()
@@ -164,6 +171,41 @@ public class WikiConfigImpl
 		this.engineConfig = new EngineConfigImpl();
 	}
 
+	// ==[ Freezing ]===========================================================
+
+	/**
+	 * Makes this configuration immutable and compiles its name lookup tables.
+	 * 
+	 * Afterwards all methods that modify this configuration or its parser and
+	 * engine configuration throw an {@link IllegalStateException}. Namespaces,
+	 * aliases, parser functions and tag extensions are then looked up in
+	 * case-folded tables that do not create lower case copies of the queried
+	 * names. A frozen configuration can be shared by any number of threads.
+	 * 
+	 * @return This configuration.
+	 */
+	public synchronized WikiConfigImpl freeze()
+	{
+		if (frozenLookups == null)
+		{
+			parserConfig.freeze();
+			engineConfig.freeze();
+			frozenLookups = new FrozenLookups(this);
+		}
+		return this;
+	}
+
+	public boolean isFrozen()
+	{
+		return frozenLookups != null;
+	}
+
+	private void checkNotFrozen()
+	{
+		if (frozenLookups != null)
+			throw new IllegalStateException("This configuration is frozen and cannot be modified.");
+	}
+
 	// ==[ Parser Configuration ]===============================================
 
 	@Override
@@ -201,6 +243,7 @@ public class WikiConfigImpl
 
 	public void setTagExtensionNamesCaseSensitive(boolean tagExtensionNamesCaseSensitive)
 	{
+		checkNotFrozen();
 		if (this.tagExtensionNamesCaseSensitive == tagExtensionNamesCaseSensitive)
 			return;
 		this.tagExtensionNamesCaseSensitive = tagExtensionNamesCaseSensitive;
@@ -219,6 +262,7 @@ public class WikiConfigImpl
 
 	public void addNamespace(NamespaceImpl ns)
 	{
+		checkNotFrozen();
 		NamespaceImpl old = namespaceById.get(ns.getId());
 
 		if (old == ns)
@@ -246,18 +290,23 @@ public class WikiConfigImpl
 		namespaceById.put(ns.getId(), ns);
 		for (String name : names)
 			namespaceByName.put(name, ns);
+
+		pageTitleCache.clear();
 	}
 
 	public void setDefaultNamespace(NamespaceImpl defaultNamespace)
 	{
+		checkNotFrozen();
 		if (this.namespaceById.get(defaultNamespace.getId()) != defaultNamespace)
 			throw new IllegalArgumentException("Given namespace unknown in this configuration");
 
 		this.defaultNamespace = defaultNamespace;
+		pageTitleCache.clear();
 	}
 
 	public void setTemplateNamespace(NamespaceImpl templateNamespace)
 	{
+		checkNotFrozen();
 		if (this.namespaceById.get(templateNamespace.getId()) != templateNamespace)
 			throw new IllegalArgumentException("Given namespace unknown in this configuration");
 
@@ -267,6 +316,9 @@ public class WikiConfigImpl
 	@Override
 	public NamespaceImpl getNamespace(String name)
 	{
+		FrozenLookups lookups = frozenLookups;
+		if (lookups != null)
+			return lookups.namespaceByName.get(name);
 		return namespaceByName.get(name.toLowerCase());
 	}
 
@@ -317,10 +369,24 @@ public class WikiConfigImpl
 		return getNamespace(namespace.getTalkspaceId());
 	}
 
+	// ==[ Page titles ]========================================================
+
+	/**
+	 * The cache is cleared whenever namespaces, interwikis or XML entities
+	 * are added or the default namespace or the interwiki prefix of this wiki
+	 * change.
+	 */
+	@Override
+	public PageTitleCache getPageTitleCache()
+	{
+		return pageTitleCache;
+	}
+
 	// ==[ Known Wikis ]========================================================
 
 	public void addInterwiki(InterwikiImpl iw)
 	{
+		checkNotFrozen();
 		InterwikiImpl old = prefixToInterwikiMap.get(iw.getPrefix());
 
 		if (old == iw)
@@ -330,6 +396,7 @@ public class WikiConfigImpl
 			throw new IllegalArgumentException("A wiki with the same interwiki prefix `" + iw.getPrefix() + "' is already registered.");
 
 		prefixToInterwikiMap.put(iw.getPrefix(), iw);
+		pageTitleCache.clear();
 	}
 
 	@Override
@@ -369,6 +436,7 @@ public class WikiConfigImpl
 	 */
 	public void addI18nAlias(I18nAliasImpl alias)
 	{
+		checkNotFrozen();
 		I18nAliasImpl old = aliasesById.get(alias.getId());
 		if (old == alias || (old != null && old.equals(alias)))
 			throw new IllegalArgumentException("This alias is already registered: " + alias.getId());
@@ -398,6 +466,12 @@ public class WikiConfigImpl
 	{
 		if (name == null)
 			throw new NullPointerException();
+		FrozenLookups lookups = frozenLookups;
+		if (lookups != null)
+		{
+			AliasBinding binding = lookups.getAliasBinding(name);
+			return (binding != null) ? binding.alias : null;
+		}
 		I18nAliasImpl alias = nameToAliasMap.get(name.toLowerCase());
 		if (alias != null && alias.isCaseSensitive() && !alias.getAliases().contains(name))
 			alias = null;
@@ -420,6 +494,7 @@ public class WikiConfigImpl
 
 	public void addParserFunctionGroup(ParserFunctionGroup pfnGroup)
 	{
+		checkNotFrozen();
 		ParserFunctionGroup old = pfnGroups.get(pfnGroup.getName());
 
 		if (old == pfnGroup)
@@ -436,6 +511,7 @@ public class WikiConfigImpl
 
 	protected void addParserFunction(ParserFunctionBase pfn)
 	{
+		checkNotFrozen();
 		ParserFunctionBase old = parserFunctions.get(pfn.getId());
 
 		if (old == pfn)
@@ -463,10 +539,7 @@ public class WikiConfigImpl
 	@Override
 	public ParserFunctionBase getParserFunction(String name)
 	{
-		I18nAliasImpl alias = getI18nAlias(name);
-		if (alias == null)
-			return null;
-		ParserFunctionBase pfn = aliasToPfnMap.get(alias);
+		ParserFunctionBase pfn = lookupParserFunction(name);
 		if (pfn != null && pfn.isPageSwitch())
 			return null;
 		return pfn;
@@ -475,19 +548,34 @@ public class WikiConfigImpl
 	@Override
 	public ParserFunctionBase getPageSwitch(String name)
 	{
-		I18nAliasImpl alias = getI18nAlias(name);
-		if (alias == null)
-			return null;
-		ParserFunctionBase pfn = aliasToPfnMap.get(alias);
+		ParserFunctionBase pfn = lookupParserFunction(name);
 		if (pfn != null && !pfn.isPageSwitch())
 			return null;
 		return pfn;
 	}
 
+	private ParserFunctionBase lookupParserFunction(String name)
+	{
+		FrozenLookups lookups = frozenLookups;
+		if (lookups != null)
+		{
+			if (name == null)
+				throw new NullPointerException();
+			AliasBinding binding = lookups.getAliasBinding(name);
+			return (binding != null) ? binding.pfn : null;
+		}
+
+		I18nAliasImpl alias = getI18nAlias(name);
+		if (alias == null)
+			return null;
+		return aliasToPfnMap.get(alias);
+	}
+
 	// --------
 
 	public void addTagExtensionGroup(TagExtensionGroup tagExtGroup)
 	{
+		checkNotFrozen();
 		TagExtensionGroup old = tagExtGroups.get(tagExtGroup.getName());
 
 		if (old == tagExtGroup)
@@ -504,6 +592,7 @@ public class WikiConfigImpl
 
 	protected void addTagExtension(TagExtensionBase tagExt)
 	{
+		checkNotFrozen();
 		TagExtensionBase old = tagExtensions.get(tagExt.getId());
 
 		if (old == tagExt)
@@ -531,6 +620,9 @@ public class WikiConfigImpl
 	@Override
 	public TagExtensionBase getTagExtension(String name)
 	{
+		FrozenLookups lookups = frozenLookups;
+		if (lookups != null && lookups.tagExtensionByName != null)
+			return lookups.tagExtensionByName.get(name);
 		String lookupName = tagExtensionNamesCaseSensitive ?
 				name :
 				name.toLowerCase();
@@ -541,6 +633,7 @@ public class WikiConfigImpl
 
 	public void setSiteName(String siteName)
 	{
+		checkNotFrozen();
 		this.siteName = siteName;
 	}
 
@@ -552,6 +645,7 @@ public class WikiConfigImpl
 
 	public void setWikiUrl(String wikiUrl)
 	{
+		checkNotFrozen();
 		this.wikiUrl = wikiUrl;
 	}
 
@@ -569,6 +663,7 @@ public class WikiConfigImpl
 
 	public void setContentLang(String contentLang)
 	{
+		checkNotFrozen();
 		this.contentLang = contentLang;
 	}
 
@@ -580,7 +675,9 @@ public class WikiConfigImpl
 
 	public void setIwPrefix(String iwPrefix)
 	{
+		checkNotFrozen();
 		this.iwPrefix = iwPrefix;
+		pageTitleCache.clear();
 	}
 
 	@Override
@@ -606,6 +703,7 @@ public class WikiConfigImpl
 
 	public void setRuntimeInfo(WikiRuntimeInfo runtimeInfo)
 	{
+		checkNotFrozen();
 		this.runtimeInfo = runtimeInfo;
 	}
 
@@ -875,7 +973,7 @@ public class WikiConfigImpl
 
 	@XmlElement(name = "i18nAlias")
 	@XmlElementWrapper(name = "i18nAliases")
-	private I18nAliasImpl[] getJaxbAliases()
+	I18nAliasImpl[] getJaxbAliases()
 	{
 		I18nAliasImpl[] jaxbAliases = this.aliasesById.values().toArray(
 				new I18nAliasImpl[this.aliasesById.size()]);
@@ -894,7 +992,7 @@ public class WikiConfigImpl
 
 	@XmlElement(name = "pfnGroup")
 	@XmlElementWrapper(name = "pfnGroups")
-	private ParserFunctionGroup[] getJaxbPfnGroups()
+	ParserFunctionGroup[] getJaxbPfnGroups()
 	{
 		ParserFunctionGroup[] jaxbPfnGroups = this.pfnGroups.values().toArray(
 				new ParserFunctionGroup[this.pfnGroups.size()]);
@@ -913,7 +1011,7 @@ public class WikiConfigImpl
 
 	@XmlElement(name = "tagExtGroup")
 	@XmlElementWrapper(name = "tagExtGroups")
-	private TagExtensionGroup[] getJaxbTagExtGroups()
+	TagExtensionGroup[] getJaxbTagExtGroups()
 	{
 		TagExtensionGroup[] jaxbTagExtGroups = this.tagExtGroups.values().toArray(
 				new TagExtensionGroup[this.tagExtGroups.size()]);
@@ -932,7 +1030,7 @@ public class WikiConfigImpl
 
 	@XmlElement(name = "interwiki")
 	@XmlElementWrapper(name = "interwikis")
-	private InterwikiImpl[] getJaxbInterwikis()
+	InterwikiImpl[] getJaxbInterwikis()
 	{
 		InterwikiImpl[] jaxbInterwikis = this.prefixToInterwikiMap.values().toArray(
 				new InterwikiImpl[this.prefixToInterwikiMap.size()]);
@@ -992,4 +1090,57 @@ public class WikiConfigImpl
 		setDefaultNamespace(getNamespace(namespaces.defaultNsId));
 		setTemplateNamespace(getNamespace(namespaces.templateNsId));
 	}
+
+	// =========================================================================
+
+	private static final class AliasBinding
+	{
+		public final I18nAliasImpl alias;
+
+		public final ParserFunctionBase pfn;
+
+		public AliasBinding(I18nAliasImpl alias, ParserFunctionBase pfn)
+		{
+			this.alias = alias;
+			this.pfn = pfn;
+		}
+	}
+
+	/**
+	 * The immutable lookup tables of a frozen configuration.
+	 */
+	private static final class FrozenLookups
+	{
+		public final CaseFoldedMap<NamespaceImpl> namespaceByName;
+
+		public final CaseFoldedMap<AliasBinding> aliasByName;
+
+		/** Only set if tag extension names are not case sensitive. */
+		public final CaseFoldedMap<TagExtensionBase> tagExtensionByName;
+
+		public FrozenLookups(WikiConfigImpl config)
+		{
+			this.namespaceByName = new CaseFoldedMap<NamespaceImpl>(config.namespaceByName);
+
+			Map<String, AliasBinding> aliases = new HashMap<String, AliasBinding>();
+			for (Entry<String, I18nAliasImpl> e : config.nameToAliasMap.entrySet())
+			{
+				I18nAliasImpl alias = e.getValue();
+				aliases.put(e.getKey(), new AliasBinding(alias, config.aliasToPfnMap.get(alias)));
+			}
+			this.aliasByName = new CaseFoldedMap<AliasBinding>(aliases);
+
+			this.tagExtensionByName = config.tagExtensionNamesCaseSensitive ?
+					null :
+					new CaseFoldedMap<TagExtensionBase>(config.tagExtensionLookup);
+		}
+
+		public AliasBinding getAliasBinding(String name)
+		{
+			AliasBinding binding = aliasByName.get(name);
+			if (binding != null && binding.alias.isCaseSensitive() && !binding.alias.getAliases().contains(name))
+				return null;
+			return binding;
+		}
+	}
 }
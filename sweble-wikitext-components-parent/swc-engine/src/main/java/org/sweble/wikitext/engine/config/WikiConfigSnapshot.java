@@ -0,0 +1,529 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.config;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.io.IOUtils;
+import org.sweble.wikitext.engine.ParserFunctionBase;
+import org.sweble.wikitext.engine.TagExtensionBase;
+import org.sweble.wikitext.parser.NonStandardElementBehavior;
+import org.sweble.wikitext.parser.WikitextWarning.WarningSeverity;
+
+/**
+ * A compact binary snapshot of a fully built {@link WikiConfigImpl}.
+ *
+ * Loading a snapshot neither runs JAXB unmarshalling and schema validation
+ * like {@link WikiConfigImpl#load(File)} nor the programmatic setup of a
+ * configuration generator like
+ * {@link org.sweble.wikitext.engine.utils.DefaultConfigEnWp}. A snapshot contains the same information as the
+ * XML representation of a configuration: site properties, parser and engine
+ * configuration, namespaces, interwikis, aliases and the class names of the
+ * parser functions and tag extensions. Entries are written in the same order
+ * as in the XML representation. If the configuration was frozen, the loaded
+ * configuration is frozen as well.
+ *
+ * {@link #main(String[])} converts XML configurations into snapshots. The
+ * build uses it to generate a snapshot of the bundled
+ * <code>DefaultConfigEnWp.xml</code>.
+ */
+public final class WikiConfigSnapshot
+{
+	static final int MAGIC = 0x53574353; // "SWCS"
+
+	static final int VERSION = 1;
+
+	static final int FLAG_FROZEN = 0x01;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// =========================================================================
+
+	private WikiConfigSnapshot()
+	{
+	}
+
+	// =========================================================================
+
+	public static byte[] toByteArray(WikiConfigImpl config) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+		write(config, out);
+		return out.toByteArray();
+	}
+
+	public static void write(WikiConfigImpl config, OutputStream out) throws IOException
+	{
+		new Writer(new DataOutputStream(out)).write(config);
+	}
+
+	public static void write(WikiConfigImpl config, File file) throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(file);
+		try
+		{
+			write(config, out);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+
+	// =========================================================================
+
+	public static WikiConfigImpl read(byte[] data) throws IOException
+	{
+		return read(ByteBuffer.wrap(data));
+	}
+
+	public static WikiConfigImpl read(InputStream in) throws IOException
+	{
+		return read(IOUtils.toByteArray(in));
+	}
+
+	/**
+	 * Reads a snapshot starting at the current position of the given buffer.
+	 * The buffer can be a memory-mapped file.
+	 */
+	public static WikiConfigImpl read(ByteBuffer buffer) throws IOException
+	{
+		return new Reader(buffer.slice()).read();
+	}
+
+	/**
+	 * Memory-maps the given file and reads the snapshot from it.
+	 */
+	public static WikiConfigImpl read(File file) throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try
+		{
+			FileChannel channel = in.getChannel();
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	/**
+	 * Reads a snapshot from a class path resource.
+	 * 
+	 * @return The configuration or <code>null</code> if there is no such
+	 *         resource.
+	 */
+	public static WikiConfigImpl readResource(Class<?> clazz, String name) throws IOException
+	{
+		InputStream in = clazz.getResourceAsStream(name);
+		if (in == null)
+			return null;
+		try
+		{
+			return read(in);
+		}
+		finally
+		{
+			in.close();
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Converts XML configurations into snapshots.
+	 * 
+	 * Expects pairs of arguments: the XML file of a configuration (see
+	 * {@link WikiConfigImpl#load(File)}) and the file the snapshot of that
+	 * configuration is written to.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		if (args.length == 0 || args.length % 2 != 0)
+			throw new IllegalArgumentException("Usage: WikiConfigSnapshot (XML_FILE OUTPUT_FILE)+");
+
+		for (int i = 0; i < args.length; i += 2)
+		{
+			WikiConfigImpl config = WikiConfigImpl.load(new File(args[i]));
+
+			File file = new File(args[i + 1]);
+			File dir = file.getAbsoluteFile().getParentFile();
+			if (!dir.isDirectory() && !dir.mkdirs())
+				throw new IOException("Cannot create directory " + dir);
+
+			write(config, file);
+		}
+	}
+
+	// =========================================================================
+
+	private static final class Writer
+	{
+		private final DataOutputStream out;
+
+		public Writer(DataOutputStream out)
+		{
+			this.out = out;
+		}
+
+		public void write(WikiConfigImpl config) throws IOException
+		{
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(config.isFrozen() ? FLAG_FROZEN : 0);
+
+			writeString(config.getSiteName());
+			writeString(config.getWikiUrl());
+			writeString(config.getContentLanguage());
+			writeString(config.getInterwikiPrefix());
+			out.writeBoolean(config.isTagExtensionNamesCaseSensitive());
+
+			out.writeBoolean(config.getEngineConfig().isTrimTransparentBeforeParsing());
+
+			writeParserConfig(config.getParserConfig());
+
+			List<Namespace> namespaces = new ArrayList<Namespace>(config.getNamespaces());
+			Collections.sort(namespaces, new Comparator<Namespace>()
+			{
+				@Override
+				public int compare(Namespace o1, Namespace o2)
+				{
+					return ((Integer) o1.getId()).compareTo(o2.getId());
+				}
+			});
+			out.writeInt(namespaces.size());
+			for (Namespace ns : namespaces)
+			{
+				out.writeInt(ns.getId());
+				writeString(ns.getName());
+				writeString(ns.getCanonical());
+				out.writeBoolean(ns.isCanHaveSubpages());
+				out.writeBoolean(ns.isFileNs());
+				writeStrings(ns.getAliases());
+			}
+			out.writeInt(config.getDefaultNamespace().getId());
+			out.writeInt(config.getTemplateNamespace().getId());
+
+			InterwikiImpl[] interwikis = config.getJaxbInterwikis();
+			out.writeInt(interwikis.length);
+			for (InterwikiImpl iw : interwikis)
+			{
+				writeString(iw.getPrefix());
+				writeString(iw.getUrl());
+				out.writeBoolean(iw.isLocal());
+				out.writeBoolean(iw.isTrans());
+			}
+
+			I18nAliasImpl[] aliases = config.getJaxbAliases();
+			out.writeInt(aliases.length);
+			for (I18nAliasImpl alias : aliases)
+			{
+				writeString(alias.getId());
+				out.writeBoolean(alias.isCaseSensitive());
+				writeStrings(alias.getAliases());
+			}
+
+			ParserFunctionGroup[] pfnGroups = config.getJaxbPfnGroups();
+			out.writeInt(pfnGroups.length);
+			for (ParserFunctionGroup group : pfnGroups)
+			{
+				writeString(group.getName());
+				List<ParserFunctionBase> pfns = new ArrayList<ParserFunctionBase>(group.getParserFunctions());
+				Collections.sort(pfns);
+				writeClassNames(pfns);
+			}
+
+			TagExtensionGroup[] tagExtGroups = config.getJaxbTagExtGroups();
+			out.writeInt(tagExtGroups.length);
+			for (TagExtensionGroup group : tagExtGroups)
+			{
+				writeString(group.getName());
+				List<TagExtensionBase> tagExts = new ArrayList<TagExtensionBase>(group.getTagExtensions());
+				Collections.sort(tagExts);
+				writeClassNames(tagExts);
+			}
+
+			out.flush();
+		}
+
+		private void writeParserConfig(ParserConfigImpl pc) throws IOException
+		{
+			out.writeBoolean(pc.isConvertIllegalCodePoints());
+			out.writeBoolean(pc.isWarningsEnabled());
+			writeEnum(pc.getMinSeverity());
+			out.writeBoolean(pc.isAutoCorrect());
+			out.writeBoolean(pc.isGatherRtData());
+			out.writeBoolean(pc.isLangConvTagsEnabled());
+			writeEnum(pc.getNonStandardElementBehavior(null));
+			out.writeBoolean(pc.isFosterParenting());
+			out.writeBoolean(pc.isFosterParentingForTransclusions());
+			out.writeBoolean(pc.isPreserveSemiPreLeadingSpace());
+			writeString(pc.getInternalLinkPrefixPattern());
+			writeString(pc.getInternalLinkPostfixPattern());
+			writeStrings(new TreeSet<String>(pc.getUrlProtocols()));
+			writeMap(pc.getXmlEntities());
+			writeMap(pc.getLctFlagMappings());
+			writeMap(pc.getLctVariantMappings());
+		}
+
+		private void writeClassNames(Collection<?> objects) throws IOException
+		{
+			out.writeInt(objects.size());
+			for (Object o : objects)
+				writeString(o.getClass().getName());
+		}
+
+		private void writeMap(Map<String, String> map) throws IOException
+		{
+			out.writeInt(map.size());
+			for (Entry<String, String> e : new TreeMap<String, String>(map).entrySet())
+			{
+				writeString(e.getKey());
+				writeString(e.getValue());
+			}
+		}
+
+		private void writeStrings(Collection<String> strings) throws IOException
+		{
+			out.writeInt(strings.size());
+			for (String s : strings)
+				writeString(s);
+		}
+
+		private void writeEnum(Enum<?> value) throws IOException
+		{
+			writeString((value == null) ? null : value.name());
+		}
+
+		private void writeString(String s) throws IOException
+		{
+			if (s == null)
+			{
+				out.writeInt(-1);
+			}
+			else
+			{
+				byte[] bytes = s.getBytes(UTF8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		}
+	}
+
+	// =========================================================================
+
+	private static final class Reader
+	{
+		private final ByteBuffer in;
+
+		public Reader(ByteBuffer in)
+		{
+			this.in = in;
+		}
+
+		public WikiConfigImpl read() throws IOException
+		{
+			try
+			{
+				return readConfig();
+			}
+			catch (RuntimeException e)
+			{
+				// BufferUnderflowException, IllegalArgumentException, ...
+				throw new IOException("Corrupt wiki configuration snapshot", e);
+			}
+		}
+
+		private WikiConfigImpl readConfig() throws IOException
+		{
+			if (in.getInt() != MAGIC)
+				throw new IOException("Not a wiki configuration snapshot");
+			int version = in.getInt();
+			if (version != VERSION)
+				throw new IOException("Unsupported wiki configuration snapshot version: " + version);
+			int flags = in.getInt();
+
+			WikiConfigImpl config = new WikiConfigImpl();
+
+			config.setSiteName(readString());
+			config.setWikiUrl(readString());
+			config.setContentLang(readString());
+			config.setIwPrefix(readString());
+			config.setTagExtensionNamesCaseSensitive(readBoolean());
+
+			config.getEngineConfig().setTrimTransparentBeforeParsing(readBoolean());
+
+			readParserConfig(config.getParserConfig());
+
+			for (int i = in.getInt(); i > 0; --i)
+			{
+				config.addNamespace(new NamespaceImpl(
+						in.getInt(),
+						readString(),
+						readString(),
+						readBoolean(),
+						readBoolean(),
+						readStrings()));
+			}
+			config.setDefaultNamespace(config.getNamespace(in.getInt()));
+			config.setTemplateNamespace(config.getNamespace(in.getInt()));
+
+			for (int i = in.getInt(); i > 0; --i)
+			{
+				config.addInterwiki(new InterwikiImpl(
+						readString(),
+						readString(),
+						readBoolean(),
+						readBoolean()));
+			}
+
+			for (int i = in.getInt(); i > 0; --i)
+			{
+				config.addI18nAlias(new I18nAliasImpl(
+						readString(),
+						readBoolean(),
+						readStrings()));
+			}
+
+			for (int i = in.getInt(); i > 0; --i)
+			{
+				ParserFunctionGroup group = new ParserFunctionGroup(readString());
+				for (int j = in.getInt(); j > 0; --j)
+				{
+					ParserFunctionBase pfn = newInstance(readString(), ParserFunctionBase.class);
+					pfn.setWikiConfig(config);
+					group.addParserFunction(pfn);
+				}
+				config.addParserFunctionGroup(group);
+			}
+
+			for (int i = in.getInt(); i > 0; --i)
+			{
+				TagExtensionGroup group = new TagExtensionGroup(readString());
+				for (int j = in.getInt(); j > 0; --j)
+				{
+					TagExtensionBase tagExt = newInstance(readString(), TagExtensionBase.class);
+					tagExt.setWikiConfig(config);
+					group.addTagExtension(tagExt);
+				}
+				config.addTagExtensionGroup(group);
+			}
+
+			if ((flags & FLAG_FROZEN) != 0)
+				config.freeze();
+
+			return config;
+		}
+
+		private void readParserConfig(ParserConfigImpl pc) throws IOException
+		{
+			pc.setConvertIllegalCodePoints(readBoolean());
+			pc.setWarningsEnabled(readBoolean());
+			String minSeverity = readString();
+			pc.setMinSeverity((minSeverity == null) ? null : WarningSeverity.valueOf(minSeverity));
+			pc.setAutoCorrect(readBoolean());
+			pc.setGatherRtData(readBoolean());
+			pc.setLangConvTagsEnabled(readBoolean());
+			String nseb = readString();
+			pc.setNonStandardElementBehavior((nseb == null) ? null : NonStandardElementBehavior.valueOf(nseb));
+			pc.setFosterParenting(readBoolean());
+			pc.setFosterParentingForTransclusions(readBoolean());
+			pc.setPreserveSemiPreLeadingSpace(readBoolean());
+			pc.setInternalLinkPrefixPattern(readString());
+			pc.setInternalLinkPostfixPattern(readString());
+
+			for (String protocol : readStrings())
+				pc.addUrlProtocol(protocol);
+
+			for (int i = in.getInt(); i > 0; --i)
+				pc.addXmlEntity(readString(), readString());
+
+			for (int i = in.getInt(); i > 0; --i)
+				pc.addLctFlagMapping(readString(), readString());
+
+			for (int i = in.getInt(); i > 0; --i)
+				pc.addLctVariantMapping(readString(), readString());
+		}
+
+		private <T> T newInstance(String className, Class<T> type) throws IOException
+		{
+			try
+			{
+				return type.cast(Class.forName(className).newInstance());
+			}
+			catch (Exception e)
+			{
+				throw new IOException("Cannot instantiate " + className, e);
+			}
+		}
+
+		private boolean readBoolean()
+		{
+			return in.get() != 0;
+		}
+
+		private List<String> readStrings()
+		{
+			int size = in.getInt();
+			List<String> strings = new ArrayList<String>(size);
+			for (int i = 0; i < size; ++i)
+				strings.add(readString());
+			return strings;
+		}
+
+		private String readString()
+		{
+			int length = in.getInt();
+			if (length < 0)
+				return null;
+			String s;
+			if (in.hasArray())
+			{
+				s = new String(in.array(), in.arrayOffset() + in.position(), length, UTF8);
+				in.position(in.position() + length);
+			}
+			else
+			{
+				byte[] bytes = new byte[length];
+				in.get(bytes);
+				s = new String(bytes, UTF8);
+			}
+			return s;
+		}
+	}
+}
@@ -23,11 +23,12 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.ParserFunctionBase;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngSoftErrorNode;
 import org.sweble.wikitext.engine.nodes.EngineRtData;
+import org.sweble.wikitext.engine.utils.BoundedCache;
 import org.sweble.wikitext.parser.nodes.WtNode;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 /**
  * Template which converts a measurement unit into another. (e.g.
@@ -42,6 +43,17 @@ public class Convert
 {
 	private static int MIN_ARGS = 2;
 	private static int DEFAULT_SIG_FIG = 2;
+
+	private static final int RESULT_CACHE_CAPACITY = 1024;
+	private static final int MAX_RESULT_KEY_LENGTH = 256;
+	private static final char KEY_SEPARATOR = '\uFFFF';
+
+	/**
+	 * Formated results of conversions. {{convert}} is called with the same
+	 * arguments over and over again (e.g. by infobox templates).
+	 */
+	private static final BoundedCache<String, String> RESULTS =
+			new BoundedCache<String, String>(RESULT_CACHE_CAPACITY);
 	private int sigFig = DEFAULT_SIG_FIG; // significant figures
 
 	/**
@@ -84,24 +96,80 @@ public class Convert
 		abbrMode = AbbreviationMode.OUT;
 
 		ArrayList<String> strArgs;
-		double value;
 		try
 		{
 			strArgs = parseArguments(frame, args);
-			value = NumberFormater.parseNumber(strArgs.get(0));
 		} catch (Exception ex)
 		{
 			return error(ex.getMessage());
 		}
 
+		String key = getResultKey(strArgs);
+		String result = (key != null) ? RESULTS.get(key) : null;
+		if (result == null)
+		{
+			try
+			{
+				result = convert(strArgs);
+			} catch (IllegalArgumentException ex)
+			{
+				return error(ex.getMessage());
+			}
+
+			if (key != null)
+			{
+				result = RESULTS.put(key, result);
+			}
+		}
+		return nf().text(result);
+	}
+
+	/**
+	 * Builds the key under which the result of a conversion is cached. The
+	 * result only depends on the value, the units and the formating options.
+	 *
+	 * @return The key or null if the result should not be cached.
+	 */
+	private String getResultKey(ArrayList<String> strArgs)
+	{
+		StringBuilder sb = new StringBuilder(64);
+		sb.append(abbrMode.ordinal())
+				.append(isUsNameUsed ? 'u' : '-')
+				.append(sigFig);
+
+		int count = Math.min(strArgs.size(), MIN_ARGS + 1);
+		for (int i = 0; i < count; i++)
+		{
+			sb.append(KEY_SEPARATOR).append(strArgs.get(i));
+		}
+
+		if (sb.length() > MAX_RESULT_KEY_LENGTH)
+		{
+			return null;
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Converts the value given in the first argument.
+	 *
+	 * @return The value in the source unit followed by the converted value.
+	 * @throws IllegalArgumentException If the arguments cannot be converted.
+	 * The message of the exception describes the problem.
+	 */
+	private String convert(ArrayList<String> strArgs)
+			throws IllegalArgumentException
+	{
+		double value = NumberFormater.parseNumber(strArgs.get(0));
+
 		Units srcUnit = Units.searchUnitFromName(strArgs.get(1));
 		if (srcUnit == null)
 		{
-			return error("Cannot convert source unit argument!");
+			throw new IllegalArgumentException("Cannot convert source unit argument!");
 		}
 
-		// Caution: Wikipedia uses '−' (\u2212) as minus sign!
-		String srcValueStr = strArgs.get(0).replaceAll("-", "−");
+		// Caution: Wikipedia uses '\u2212' as minus sign!
+		String srcValueStr = strArgs.get(0).replace('-', '\u2212');
 
 		if (strArgs.size() == MIN_ARGS)
 		{
@@ -113,22 +181,21 @@ public class Convert
 					isUsNameUsed);
 
 			if (srcUnitName == null) {
-				return error("Cannot determinate output format!");
+				throw new IllegalArgumentException("Cannot determinate output format!");
 			}
 
-			String result = srcValueStr + " " + srcUnitName + "(" + dest + ")";
-			return nf().text(result);
+			return srcValueStr + " " + srcUnitName + "(" + dest + ")";
 		}
 
 		Units destUnit = Units.searchUnitFromName(strArgs.get(2));
 		if (destUnit == null)
 		{
-			return error("Cannot convert destination unit argument!");
+			throw new IllegalArgumentException("Cannot convert destination unit argument!");
 		}
 
 		if (!Units.isSameUnitType(srcUnit, destUnit))
 		{
-			return error("Cannot convert units with different types!");
+			throw new IllegalArgumentException("Cannot convert units with different types!");
 		}
 
 		double convertedValue = srcUnit.getScale() * value / destUnit.getScale();
@@ -138,7 +205,7 @@ public class Convert
 				isUsNameUsed);
 
 		if (srcUnitName == null) {
-			return error("Cannot determinate output format!");
+			throw new IllegalArgumentException("Cannot determinate output format!");
 		}
 
 		String destUnitName = getDestUnitName(destUnit,
@@ -146,29 +213,15 @@ public class Convert
 				!(Math.abs(convertedValue) == 1d),
 				isUsNameUsed);
 
-		String result = srcValueStr + " " + srcUnitName
+		return srcValueStr + " " + srcUnitName
 				+ "(" + NumberFormater.formatNumberDefault(convertedValue, sigFig)
 				+ destUnitName + ")";
-		return nf().text(result);
 	}
 
-	private String expandArgToString(
-			ExpansionFrame preprocessorFrame,
-			List<? extends WtNode> args,
-			final int index)
+	private String expandArgToString(PfnArguments args, final int index)
 	{
-		WtNode arg = preprocessorFrame.expand(args.get(index));
-
-		tu().trim(arg);
-
-		String format = null;
-		try
-		{
-			format = tu().astToText(arg).trim();
-		} catch (StringConversionException e1)
-		{
-		}
-		return format;
+		args.expandAndTrim(index);
+		return args.expandToTrimmedText(index);
 	}
 
 	private EngSoftErrorNode error(final String msg)
@@ -195,10 +248,12 @@ public class Convert
 			throw new IllegalArgumentException("Too few arguments!");
 		}
 
+		PfnArguments pfnArgs = new PfnArguments(frame, args);
+
 		ArrayList<String> strArgs = new ArrayList<String>(args.size());
 		for (int i = 0; i < args.size(); i++)
 		{
-			String tmpStr = expandArgToString(frame, args, i);
+			String tmpStr = expandArgToString(pfnArgs, i);
 			if (tmpStr == null)
 			{
 				throw new IllegalArgumentException("Cannot convert argument to string!");
@@ -306,8 +361,8 @@ public class Convert
 
 		final double siBasedValue = srcUnit.getScale() * (value - srcUnit.getOffset());
 		final DefCvt defCvt = srcUnit.getDefaultCvt();
-		final String[] cvtUnits = defCvt.getUnits();
-		final Units destUnitA = Units.searchUnitFromName(cvtUnits[0]);
+		final Units[] cvtUnits = srcUnit.getDefaultCvtUnits();
+		final Units destUnitA = cvtUnits[0];
 		if (destUnitA == null)
 		{
 			return null;
@@ -327,7 +382,7 @@ public class Convert
 				} else
 				{
 					Units majorUnit = destUnitA;
-					Units minorUnit = Units.searchUnitFromName(cvtUnits[1]);
+					Units minorUnit = cvtUnits[1];
 
 					if (minorUnit == null)
 					{
@@ -375,7 +430,7 @@ public class Convert
 				}
 			} else
 			{
-				Units destUnitB = Units.searchUnitFromName(cvtUnits[1]);
+				Units destUnitB = cvtUnits[1];
 				if (destUnitB == null)
 				{
 					return null;
@@ -22,22 +22,31 @@ import java.math.RoundingMode;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.util.Locale;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public final class NumberFormater
 {
 	private static final DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(Locale.US);
 
-	// uses '−' (\u2212) as minus
-	private static final DecimalFormat sciFmt = new DecimalFormat("0.0E0;−#", symbols);
-	private static final DecimalFormat fmt = new DecimalFormat("#0;−#", symbols);
-	static
+	private static final int MAX_DIGITS_AFTER_FLOATING_POINT = 16;
+
+	private static final Pattern VALID_NUMBER = Pattern.compile("[0-9,.e/\u2044\\-\\+\u2013]+");
+
+	private static final Pattern FRACTION_SEPARATOR = Pattern.compile("//|[/\u2044]");
+
+	/**
+	 * DecimalFormat is not thread-safe, therefore each thread gets its own
+	 * set of formats. The formats for a fixed count of digits after the
+	 * floating point are created when first needed.
+	 */
+	private static final ThreadLocal<Formats> formats = new ThreadLocal<Formats>()
 	{
-		fmt.setRoundingMode(RoundingMode.HALF_UP);
-		fmt.setGroupingSize(3);
-		fmt.setGroupingUsed(true);
-	}
+		@Override
+		protected Formats initialValue()
+		{
+			return new Formats();
+		}
+	};
 
 	private NumberFormater()
 	{
@@ -46,19 +55,19 @@ public final class NumberFormater
 
 	public static String formatScientific(double number)
 	{
-		String[] split = sciFmt.format(number).split("E");
+		String[] split = formats.get().sciFmt.format(number).split("E");
 		String supExp = asSuperscriptNumber(split[1]);
-		return split[0] + "×10" + supExp;
+		return split[0] + "\u00D710" + supExp;
 	}
 
 	public static String formatRegular(double number)
 	{
-		return fmt.format(number);
+		return formats.get().fmt.format(number);
 	}
 
 	public static String formatRegular(BigDecimal number)
 	{
-		return fmt.format(number);
+		return formats.get().fmt.format(number);
 	}
 
 	/**
@@ -73,17 +82,16 @@ public final class NumberFormater
 			double convertedValue,
 			int digitsAfterFloatingPoint)
 	{
-		final int MAX_DIGITS_AFTER_FLOATING_POINT = 16;
 		if (digitsAfterFloatingPoint > MAX_DIGITS_AFTER_FLOATING_POINT)
 		{
 			digitsAfterFloatingPoint = MAX_DIGITS_AFTER_FLOATING_POINT;
 		}
+		else if (digitsAfterFloatingPoint < 0)
+		{
+			digitsAfterFloatingPoint = 0;
+		}
 
-		DecimalFormat tmpFmt = (DecimalFormat) fmt.clone();
-		tmpFmt.setMinimumFractionDigits(digitsAfterFloatingPoint);
-		tmpFmt.setMaximumFractionDigits(digitsAfterFloatingPoint);
-
-		return tmpFmt.format(convertedValue);
+		return formats.get().getRounded(digitsAfterFloatingPoint).format(convertedValue);
 	}
 
 	/**
@@ -132,7 +140,7 @@ public final class NumberFormater
 	 */
 	protected static boolean isNumberValid(final String numberStr)
 	{
-		return numberStr.matches("[0-9,.e/⁄\\-\\+–]+");
+		return VALID_NUMBER.matcher(numberStr).matches();
 	}
 
 	/**
@@ -160,12 +168,11 @@ public final class NumberFormater
 	{
 		double value;
 		String number = numberStr.replace(",", ""); // remove thousand separators
-		number = number.replaceAll("–", "-"); // replace all the pesky en dashes
+		number = number.replace('\u2013', '-'); // replace all the pesky en dashes
 
-		Matcher fractionMatcher = Pattern.compile("[/⁄]").matcher(number);
-		if (fractionMatcher.find())
+		if (number.indexOf('/') != -1 || number.indexOf('\u2044') != -1)
 		{
-			String[] fraction = number.split("//|[/⁄]");
+			String[] fraction = FRACTION_SEPARATOR.split(number);
 			if (fraction.length != 2)
 			{
 				throw new NumberFormatException("Invalid fraction!");
@@ -232,18 +239,7 @@ public final class NumberFormater
 	 */
 	public static String asSuperscriptNumber(String numStr)
 	{
-		numStr = numStr.replaceAll("0", "⁰"); // \u2070
-		numStr = numStr.replaceAll("1", "¹"); // \u00B9
-		numStr = numStr.replaceAll("2", "²"); // \u00B2
-		numStr = numStr.replaceAll("3", "³"); // \u00B3
-		numStr = numStr.replaceAll("4", "⁴"); // \u2074
-		numStr = numStr.replaceAll("5", "⁵"); // \u2075
-		numStr = numStr.replaceAll("6", "⁶"); // \u2076
-		numStr = numStr.replaceAll("7", "⁷"); // \u2077
-		numStr = numStr.replaceAll("8", "⁸"); // \u2078
-		numStr = numStr.replaceAll("9", "⁹"); // \u2079
-		numStr = numStr.replaceAll("-", "⁻"); // \u207B
-		return numStr;
+		return mapDigits(numStr, SUPERSCRIPT_DIGITS, '\u207B');
 	}
 
 	/**
@@ -255,17 +251,64 @@ public final class NumberFormater
 	 */
 	public static String asSubscriptNumber(String numStr)
 	{
-		numStr = numStr.replaceAll("0", "₀"); // \u2080
-		numStr = numStr.replaceAll("1", "₁"); // \u2081
-		numStr = numStr.replaceAll("2", "₂"); // \u2082
-		numStr = numStr.replaceAll("3", "₃"); // \u2083
-		numStr = numStr.replaceAll("4", "₄"); // \u2084
-		numStr = numStr.replaceAll("5", "₅"); // \u2085
-		numStr = numStr.replaceAll("6", "₆"); // \u2086
-		numStr = numStr.replaceAll("7", "₇"); // \u2087
-		numStr = numStr.replaceAll("8", "₈"); // \u2088
-		numStr = numStr.replaceAll("9", "₉"); // \u2089
-		numStr = numStr.replaceAll("-", "₋"); // \u208B
-		return numStr;
+		return mapDigits(numStr, SUBSCRIPT_DIGITS, '\u208B');
+	}
+
+	// =========================================================================
+
+	private static final char[] SUPERSCRIPT_DIGITS = {
+			'\u2070', '\u00B9', '\u00B2', '\u00B3', '\u2074',
+			'\u2075', '\u2076', '\u2077', '\u2078', '\u2079' };
+
+	private static final char[] SUBSCRIPT_DIGITS = {
+			'\u2080', '\u2081', '\u2082', '\u2083', '\u2084',
+			'\u2085', '\u2086', '\u2087', '\u2088', '\u2089' };
+
+	private static String mapDigits(String numStr, char[] digits, char minus)
+	{
+		char[] chars = numStr.toCharArray();
+		for (int i = 0; i < chars.length; i++)
+		{
+			char ch = chars[i];
+			if (ch >= '0' && ch <= '9')
+			{
+				chars[i] = digits[ch - '0'];
+			}
+			else if (ch == '-')
+			{
+				chars[i] = minus;
+			}
+		}
+		return new String(chars);
+	}
+
+	private static final class Formats
+	{
+		// uses '\u2212' as minus
+		private final DecimalFormat sciFmt = new DecimalFormat("0.0E0;\u2212#", symbols);
+
+		private final DecimalFormat fmt = new DecimalFormat("#0;\u2212#", symbols);
+
+		private final DecimalFormat[] rounded = new DecimalFormat[MAX_DIGITS_AFTER_FLOATING_POINT + 1];
+
+		public Formats()
+		{
+			fmt.setRoundingMode(RoundingMode.HALF_UP);
+			fmt.setGroupingSize(3);
+			fmt.setGroupingUsed(true);
+		}
+
+		public DecimalFormat getRounded(int digitsAfterFloatingPoint)
+		{
+			DecimalFormat format = rounded[digitsAfterFloatingPoint];
+			if (format == null)
+			{
+				format = (DecimalFormat) fmt.clone();
+				format.setMinimumFractionDigits(digitsAfterFloatingPoint);
+				format.setMaximumFractionDigits(digitsAfterFloatingPoint);
+				rounded[digitsAfterFloatingPoint] = format;
+			}
+			return format;
+		}
 	}
 }
@@ -280,6 +280,41 @@ public enum Units
 		}
 	}
 
+	/**
+	 * Look-up table used by {@link #searchUnitFromName(String)}. Contains the
+	 * entries of NAME_CODE_MAP and the unit symbols which are not already
+	 * covered by it (if several units share a symbol the first one wins).
+	 */
+	private static final HashMap<String, Units> LOOKUP_MAP = new HashMap<String, Units>(NAME_CODE_MAP);
+
+	/**
+	 * The units of the default conversion of each unit (indexed by ordinal),
+	 * resolved once. An entry is null if the unit is not known.
+	 */
+	private static final Units[][] DEFAULT_CVT_UNITS;
+	static
+	{
+		for (final Units unit : Units.values())
+		{
+			if (!LOOKUP_MAP.containsKey(unit.symbol))
+			{
+				LOOKUP_MAP.put(unit.symbol, unit);
+			}
+		}
+
+		DEFAULT_CVT_UNITS = new Units[Units.values().length][];
+		for (final Units unit : Units.values())
+		{
+			final String[] names = unit.defaultConv.getUnits();
+			final Units[] units = new Units[names.length];
+			for (int i = 0; i < names.length; i++)
+			{
+				units[i] = LOOKUP_MAP.get(names[i]);
+			}
+			DEFAULT_CVT_UNITS[unit.ordinal()] = units;
+		}
+	}
+
 	private Units(
 			UnitType type,
 			double scale,
@@ -436,19 +471,18 @@ public enum Units
 	 */
 	public static Units searchUnitFromName(final String name)
 	{
-		if(NAME_CODE_MAP.containsKey(name))
-		{
-			return NAME_CODE_MAP.get(name);
-		}
+		return LOOKUP_MAP.get(name);
+	}
 
-		for (Units ut : Units.values())
-		{
-			if (name.equals(ut.getSymbol()))
-			{
-				return ut;
-			}
-		}
-		return null;
+	/**
+	 * Gets the units of the default conversion (see {@link #getDefaultCvt()}).
+	 *
+	 * @return The units in the order of {@link DefCvt#getUnits()}; an entry is
+	 * null if no unit with that name exists. The array must not be modified.
+	 */
+	final Units[] getDefaultCvtUnits()
+	{
+		return DEFAULT_CVT_UNITS[ordinal()];
 	}
 
 	/**
@@ -21,13 +21,12 @@ import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
 import org.sweble.wikitext.engine.ExpansionFrame;
-import org.sweble.wikitext.engine.PfnArgumentMode;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.ParserFunctionGroup;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.utils.ApplyToText;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class CorePfnFunctionsFormatting
 		extends
@@ -80,23 +79,25 @@ public class CorePfnFunctionsFormatting
 		 */
 		public LcPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "lc");
+			super("lc");
 		}
 
 		public LcPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "lc");
+			super(wikiConfig, "lc");
 		}
 
 		@Override
 		public WtNode invoke(
 				WtTemplate pfn,
-				ExpansionFrame preprocessorFrame,
+				ExpansionFrame frame,
 				List<? extends WtNode> args)
 		{
 			if (args.size() < 1)
 				return nf().list();
 
+			WtNode arg0 = new PfnArguments(frame, args).expandAndTrim(0);
+
 			new ApplyToText(new ApplyToText.Functor()
 			{
 				@Override
@@ -104,9 +105,9 @@ public class CorePfnFunctionsFormatting
 				{
 					return text.toLowerCase();
 				}
-			}).go(args.get(0));
+			}).go(arg0);
 
-			return args.get(0);
+			return arg0;
 		}
 	}
 
@@ -127,23 +128,25 @@ public class CorePfnFunctionsFormatting
 		 */
 		public LcFirstPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "lcfirst");
+			super("lcfirst");
 		}
 
 		public LcFirstPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "lcfirst");
+			super(wikiConfig, "lcfirst");
 		}
 
 		@Override
 		public WtNode invoke(
 				WtTemplate pfn,
-				ExpansionFrame preprocessorFrame,
+				ExpansionFrame frame,
 				List<? extends WtNode> args)
 		{
 			if (args.size() < 1)
 				return nf().list();
 
+			WtNode arg0 = new PfnArguments(frame, args).expandAndTrim(0);
+
 			new ApplyToText(new ApplyToText.Functor()
 			{
 				@Override
@@ -153,9 +156,9 @@ public class CorePfnFunctionsFormatting
 						return text;
 					return text.substring(0, 1).toLowerCase() + text.substring(1);
 				}
-			}).go(args.get(0));
+			}).go(arg0);
 
-			return args.get(0);
+			return arg0;
 		}
 	}
 
@@ -176,23 +179,25 @@ public class CorePfnFunctionsFormatting
 		 */
 		public UcPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "uc");
+			super("uc");
 		}
 
 		public UcPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "uc");
+			super(wikiConfig, "uc");
 		}
 
 		@Override
 		public WtNode invoke(
 				WtTemplate pfn,
-				ExpansionFrame preprocessorFrame,
+				ExpansionFrame frame,
 				List<? extends WtNode> args)
 		{
 			if (args.size() < 1)
 				return nf().list();
 
+			WtNode arg0 = new PfnArguments(frame, args).expandAndTrim(0);
+
 			new ApplyToText(new ApplyToText.Functor()
 			{
 				@Override
@@ -200,9 +205,9 @@ public class CorePfnFunctionsFormatting
 				{
 					return text.toUpperCase();
 				}
-			}).go(args.get(0));
+			}).go(arg0);
 
-			return args.get(0);
+			return arg0;
 		}
 	}
 
@@ -223,23 +228,25 @@ public class CorePfnFunctionsFormatting
 		 */
 		public UcFirstPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "ucfirst");
+			super("ucfirst");
 		}
 
 		public UcFirstPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "ucfirst");
+			super(wikiConfig, "ucfirst");
 		}
 
 		@Override
 		public WtNode invoke(
 				WtTemplate pfn,
-				ExpansionFrame preprocessorFrame,
+				ExpansionFrame frame,
 				List<? extends WtNode> args)
 		{
 			if (args.size() < 1)
 				return nf().list();
 
+			WtNode arg0 = new PfnArguments(frame, args).expandAndTrim(0);
+
 			new ApplyToText(new ApplyToText.Functor()
 			{
 				@Override
@@ -249,9 +256,9 @@ public class CorePfnFunctionsFormatting
 						return text;
 					return text.substring(0, 1).toUpperCase() + text.substring(1);
 				}
-			}).go(args.get(0));
+			}).go(arg0);
 
-			return args.get(0);
+			return arg0;
 		}
 	}
 
@@ -274,12 +281,12 @@ public class CorePfnFunctionsFormatting
 		 */
 		public PadLeftPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "padleft");
+			super("padleft");
 		}
 
 		public PadLeftPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "padleft");
+			super(wikiConfig, "padleft");
 		}
 
 		@Override
@@ -291,51 +298,49 @@ public class CorePfnFunctionsFormatting
 			if (args.size() < 1)
 				return nf().list();
 
-			WtNode arg0 = frame.expand(args.get(0));
+			PfnArguments pfnArgs = new PfnArguments(frame, args);
+
+			WtNode arg0 = pfnArgs.expandAndTrim(0);
 
 			if (args.size() < 2)
 				return arg0;
 
+			String text = pfnArgs.expandToTrimmedText(0);
+			if (text == null)
+				return arg0;
+
 			int len;
-			String text;
-			String padStr = "0";
 			try
 			{
-				text = tu().astToText(arg0).trim();
+				pfnArgs.expandAndTrim(1);
+				String lenStr = pfnArgs.expandToTrimmedText(1);
+				if (lenStr == null)
+					return arg0;
 
-				WtNode arg1 = frame.expand(args.get(1));
-				String lenStr = tu().astToText(arg1).trim();
 				len = Integer.parseInt(lenStr);
 				if (len <= 0)
 					return arg0;
-
-				if (args.size() >= 3)
-				{
-					WtNode arg2 = frame.expand(args.get(2));
-					try
-					{
-						padStr = tu().astToText(arg2);//.trim();
-						/* Trimming the pad string can lead to division by zero 
-						 * divisions. Of course an empty pad string doesn't make 
-						 * sense. But I'm not sure, if the pad string should
-						 * be trimmed in the first place. After all, padding with
-						 * spaces makes perfect sense... */
-					}
-					catch (StringConversionException e)
-					{
-					}
-
-					if (padStr.isEmpty())
-						return arg0;
-				}
 			}
-			catch (StringConversionException e)
+			catch (NumberFormatException e)
 			{
 				return arg0;
 			}
-			catch (NumberFormatException e)
+
+			String padStr = "0";
+			if (args.size() >= 3)
 			{
-				return arg0;
+				pfnArgs.expandAndTrim(2);
+				String arg2 = pfnArgs.expandToText(2);
+				if (arg2 != null)
+					padStr = arg2;//.trim();
+				/* Trimming the pad string can lead to division by zero 
+				 * divisions. Of course an empty pad string doesn't make 
+				 * sense. But I'm not sure, if the pad string should
+				 * be trimmed in the first place. After all, padding with
+				 * spaces makes perfect sense... */
+
+				if (padStr.isEmpty())
+					return arg0;
 			}
 
 			int padLen = len - text.length();
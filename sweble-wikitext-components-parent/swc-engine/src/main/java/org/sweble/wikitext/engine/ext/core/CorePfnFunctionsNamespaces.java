@@ -20,12 +20,12 @@ package org.sweble.wikitext.engine.ext.core;
 import java.util.List;
 
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.Namespace;
 import org.sweble.wikitext.engine.config.ParserFunctionGroup;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class CorePfnFunctionsNamespaces
 		extends
@@ -82,17 +82,9 @@ public class CorePfnFunctionsNamespaces
 			if (args.size() < 0)
 				return null;
 
-			WtNode arg0 = preprocessorFrame.expand(args.get(0));
-
-			String arg;
-			try
-			{
-				arg = tu().astToText(arg0).trim();
-			}
-			catch (StringConversionException e1)
-			{
+			String arg = new PfnArguments(preprocessorFrame, args).expandToTrimmedText(0);
+			if (arg == null)
 				return null;
-			}
 
 			Namespace namespace = preprocessorFrame.getWikiConfig().getNamespace(arg);
 			if (namespace == null)
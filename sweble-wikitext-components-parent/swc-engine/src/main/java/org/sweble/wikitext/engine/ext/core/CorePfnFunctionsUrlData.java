@@ -28,7 +28,7 @@ import org.sweble.wikitext.engine.IllegalArgumentsWarning;
 import org.sweble.wikitext.engine.InvalidNameWarning;
 import org.sweble.wikitext.engine.InvalidPagenameWarning;
 import org.sweble.wikitext.engine.PageTitle;
-import org.sweble.wikitext.engine.PfnArgumentMode;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.Namespace;
 import org.sweble.wikitext.engine.config.ParserFunctionGroup;
 import org.sweble.wikitext.engine.config.WikiConfig;
@@ -39,7 +39,6 @@ import org.sweble.wikitext.parser.WikitextWarning.WarningSeverity;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class CorePfnFunctionsUrlData
 		extends
@@ -88,12 +87,12 @@ public class CorePfnFunctionsUrlData
 		 */
 		public FullurlPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "fullurl");
+			super("fullurl");
 		}
 
 		public FullurlPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "fullurl");
+			super(wikiConfig, "fullurl");
 		}
 
 		@Override
@@ -122,14 +121,12 @@ public class CorePfnFunctionsUrlData
 								pfn));
 			}
 
-			WtNode titleNode = argsValues.get(0);
+			PfnArguments args = new PfnArguments(frame, argsValues);
 
-			String titleStr;
-			try
-			{
-				titleStr = tu().astToText(titleNode);
-			}
-			catch (StringConversionException e1)
+			WtNode titleNode = args.expandAndTrim(0);
+
+			String titleStr = args.expandToText(0);
+			if (titleStr == null)
 			{
 				frame.fileWarning(
 						new InvalidNameWarning(
@@ -175,13 +172,10 @@ public class CorePfnFunctionsUrlData
 			String queryStr = null;
 			if (argsValues.size() >= 2)
 			{
-				WtNode queryNode = argsValues.get(1);
+				WtNode queryNode = args.expandAndTrim(1);
 
-				try
-				{
-					queryStr = tu().astToText(queryNode);
-				}
-				catch (StringConversionException e)
+				queryStr = args.expandToText(1);
+				if (queryStr == null)
 				{
 					frame.fileWarning(
 							new InvalidNameWarning(
@@ -259,24 +253,24 @@ public class CorePfnFunctionsUrlData
 		public WtNode invoke(
 				WtTemplate pfn,
 				ExpansionFrame frame,
-				List<? extends WtNode> args)
+				List<? extends WtNode> argsValues)
 		{
-			if (args.size() < 1)
+			if (argsValues.size() < 1)
+				return pfn;
+
+			PfnArguments args = new PfnArguments(frame, argsValues);
+
+			String titleStr = args.expandToTrimmedText(0);
+			if (titleStr == null)
 				return pfn;
 
 			PageTitle title;
 			try
 			{
-				String titleStr = tu().astToText(args.get(0)).trim();
-
 				title = PageTitle.make(frame.getWikiConfig(), titleStr);
 
 				title = title.newWithNamespace(frame.getWikiConfig().getFileNamespace());
 			}
-			catch (StringConversionException e1)
-			{
-				return pfn;
-			}
 			catch (LinkTargetException e)
 			{
 				return pfn;
@@ -286,13 +280,14 @@ public class CorePfnFunctionsUrlData
 			boolean nowiki = false;
 			if (args.size() > 1)
 			{
+				// Options that cannot be converted to text are ignored
 				try
 				{
-					String opt1 = tu().astToText(args.get(1)).trim();
+					String opt1 = args.expandToTrimmedText(1);
 
 					String opt2 = null;
 					if (args.size() > 2)
-						opt2 = tu().astToText(args.get(2)).trim();
+						opt2 = args.expandToTrimmedText(2);
 
 					String sizeStr = opt1;
 					if ("nowiki".equals(opt1))
@@ -308,9 +303,6 @@ public class CorePfnFunctionsUrlData
 					if (sizeStr != null)
 						size = Integer.parseInt(sizeStr);
 				}
-				catch (StringConversionException e)
-				{
-				}
 				catch (NumberFormatException e)
 				{
 				}
@@ -364,32 +356,25 @@ public class CorePfnFunctionsUrlData
 		public WtNode invoke(
 				WtTemplate pfn,
 				ExpansionFrame frame,
-				List<? extends WtNode> args)
+				List<? extends WtNode> argsValues)
 		{
-			if (args.size() < 1)
+			if (argsValues.size() < 1)
 				return pfn;
 
-			String text;
-			try
-			{
-				text = tu().astToText(args.get(0)).trim();
-			}
-			catch (StringConversionException e1)
-			{
+			PfnArguments args = new PfnArguments(frame, argsValues);
+
+			String text = args.expandToTrimmedText(0);
+			if (text == null)
 				return pfn;
-			}
 
 			UrlEncoding encoder = UrlEncoding.QUERY;
 			if (args.size() > 1)
 			{
+				String encoderName = args.expandToTrimmedText(1);
 				try
 				{
-					String encoderName = tu().astToText(args.get(1)).trim();
-
-					encoder = UrlEncoding.valueOf(encoderName.toUpperCase());
-				}
-				catch (StringConversionException e)
-				{
+					if (encoderName != null)
+						encoder = UrlEncoding.valueOf(encoderName.toUpperCase());
 				}
 				catch (IllegalArgumentException e)
 				{
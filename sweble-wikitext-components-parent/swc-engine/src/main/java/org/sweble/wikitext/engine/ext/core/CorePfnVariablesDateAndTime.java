@@ -75,7 +75,7 @@ public class CorePfnVariablesDateAndTime
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
-			Calendar cal = getWikiConfig().getRuntimeInfo().getDateAndTime();
+			Calendar cal = frame.getRuntimeInfo().getDateAndTime();
 			return nf().text(String.valueOf(cal.get(GregorianCalendar.YEAR)));
 		}
 	}
@@ -108,7 +108,7 @@ public class CorePfnVariablesDateAndTime
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
-			Calendar cal = getWikiConfig().getRuntimeInfo().getDateAndTime();
+			Calendar cal = frame.getRuntimeInfo().getDateAndTime();
 			return nf().text(String.format("%02d", cal.get(GregorianCalendar.MONTH) + 1));
 		}
 	}
@@ -149,7 +149,7 @@ public class CorePfnVariablesDateAndTime
 		@Override
 		protected final WtNode invoke(WtTemplate var, ExpansionFrame frame)
 		{
-			Calendar cal = getWikiConfig().getRuntimeInfo().getDateAndTime();
+			Calendar cal = frame.getRuntimeInfo().getDateAndTime();
 			return nf().text(String.valueOf(cal.get(GregorianCalendar.DAY_OF_MONTH)));
 		}
 	}
@@ -22,13 +22,13 @@ import java.util.List;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.PageTitle;
 import org.sweble.wikitext.engine.PfnArgumentMode;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.Namespace;
 import org.sweble.wikitext.engine.config.ParserFunctionGroup;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class CorePfnVariablesNamespaces
 		extends
@@ -68,12 +68,12 @@ public class CorePfnVariablesNamespaces
 		 */
 		public NamespacePfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "namespace");
+			super(PfnArgumentMode.UNEXPANDED_VALUES, "namespace");
 		}
 
 		public NamespacePfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "namespace");
+			super(wikiConfig, PfnArgumentMode.UNEXPANDED_VALUES, "namespace");
 		}
 
 		@Override
@@ -85,18 +85,17 @@ public class CorePfnVariablesNamespaces
 			PageTitle title;
 			if (argsValues.size() > 0)
 			{
-				WtNode titleNode = argsValues.get(0);
+				PfnArguments args = new PfnArguments(frame, argsValues);
+
+				args.expandAndTrim(0);
+				String titleStr = args.expandToText(0);
+				if (titleStr == null)
+					return var;
 
 				try
 				{
-					String titleStr = tu().astToText(titleNode);
-
 					title = PageTitle.make(frame.getWikiConfig(), titleStr);
 				}
-				catch (StringConversionException e)
-				{
-					return var;
-				}
 				catch (LinkTargetException e)
 				{
 					return var;
@@ -22,6 +22,7 @@ import java.util.List;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.PageTitle;
 import org.sweble.wikitext.engine.PfnArgumentMode;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.Namespace;
 import org.sweble.wikitext.engine.config.ParserFunctionGroup;
 import org.sweble.wikitext.engine.config.WikiConfig;
@@ -29,7 +30,6 @@ import org.sweble.wikitext.engine.utils.UrlEncoding;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class CorePfnVariablesPageNames
 		extends
@@ -170,13 +170,13 @@ public class CorePfnVariablesPageNames
 		public PagenameePfn()
 		{
 			// FIXME: DIESEN FIX FUER ALLE!
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "pagenamee");
+			super(PfnArgumentMode.UNEXPANDED_VALUES, "pagenamee");
 		}
 
 		public PagenameePfn(WikiConfig wikiConfig)
 		{
 			// FIXME: DIESEN FIX FUER ALLE!
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "pagenamee");
+			super(wikiConfig, PfnArgumentMode.UNEXPANDED_VALUES, "pagenamee");
 		}
 
 		@Override
@@ -189,16 +189,17 @@ public class CorePfnVariablesPageNames
 
 			if (!argsValues.isEmpty())
 			{
+				PfnArguments args = new PfnArguments(frame, argsValues);
+
+				args.expandAndTrim(0);
+				String titleStr = args.expandToTrimmedText(0);
+				if (titleStr == null)
+					return var;
+
 				try
 				{
-					String titleStr = tu().astToText(argsValues.get(0)).trim();
-
 					title = PageTitle.make(frame.getWikiConfig(), titleStr);
 				}
-				catch (StringConversionException e)
-				{
-					return var;
-				}
 				catch (LinkTargetException e)
 				{
 					return var;
@@ -319,12 +320,12 @@ public class CorePfnVariablesPageNames
 		 */
 		public TalkPagenamePfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "talkpagename");
+			super(PfnArgumentMode.UNEXPANDED_VALUES, "talkpagename");
 		}
 
 		public TalkPagenamePfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "talkpagename");
+			super(wikiConfig, PfnArgumentMode.UNEXPANDED_VALUES, "talkpagename");
 		}
 
 		/*
@@ -354,16 +355,17 @@ public class CorePfnVariablesPageNames
 
 			if (!argsValues.isEmpty())
 			{
+				PfnArguments args = new PfnArguments(frame, argsValues);
+
+				args.expandAndTrim(0);
+				String titleStr = args.expandToTrimmedText(0);
+				if (titleStr == null)
+					return var;
+
 				try
 				{
-					String titleStr = tu().astToText(argsValues.get(0)).trim();
-
 					title = PageTitle.make(frame.getWikiConfig(), titleStr);
 				}
-				catch (StringConversionException e)
-				{
-					return var;
-				}
 				catch (LinkTargetException e)
 				{
 					return var;
@@ -164,12 +164,12 @@ public class CorePfnVariablesTechnicalMetadata
 		 */
 		public ProtectionLevelPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "protectionlevel");
+			super(PfnArgumentMode.UNEXPANDED_VALUES, "protectionlevel");
 		}
 
 		public ProtectionLevelPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "protectionlevel");
+			super(wikiConfig, PfnArgumentMode.UNEXPANDED_VALUES, "protectionlevel");
 		}
 
 		@Override
@@ -179,6 +179,7 @@ public class CorePfnVariablesTechnicalMetadata
 				List<? extends WtNode> args)
 		{
 			// FIXME: Proper implementation:
+			// The arguments are not used and therefore never expanded.
 			return nf().list();
 		}
 	}
@@ -210,12 +211,12 @@ public class CorePfnVariablesTechnicalMetadata
 		 */
 		public DefaultsortPfn()
 		{
-			super(PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "defaultsort");
+			super(PfnArgumentMode.UNEXPANDED_VALUES, "defaultsort");
 		}
 
 		public DefaultsortPfn(WikiConfig wikiConfig)
 		{
-			super(wikiConfig, PfnArgumentMode.EXPANDED_AND_TRIMMED_VALUES, "defaultsort");
+			super(wikiConfig, PfnArgumentMode.UNEXPANDED_VALUES, "defaultsort");
 		}
 
 		@Override
@@ -225,6 +226,7 @@ public class CorePfnVariablesTechnicalMetadata
 				List<? extends WtNode> args)
 		{
 			// FIXME: Proper implementation:
+			// The arguments are not used and therefore never expanded.
 			return nf().list();
 		}
 	}
@@ -0,0 +1,307 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.ext.parser_functions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtText;
+
+/**
+ * The case labels of a <code>#switch</code> compiled into hash tables.
+ * 
+ * A <code>#switch</code> can be compiled if all of its case labels are
+ * static text (the last argument is an exception if it does not contain an
+ * "=": It is the implicit default and its label can only ever affect the
+ * result if it expands to "#default"). The labels of such a switch are
+ * described by its signature, see {@link #signature(List)}. Switches with
+ * the same signature (e.g. the same switch in different transclusions of a
+ * template) share one compiled switch.
+ * 
+ * A compiled switch maps the trimmed text and the numeric value of each label
+ * to the index of the first argument with that label and knows for each
+ * argument where the next case value and the last preceding
+ * <code>#default</code> case are. This way evaluating a switch takes one
+ * lookup and only the selected case value has to be split off its label and
+ * expanded.
+ */
+final class CompiledSwitch
+{
+	private static final char SEPARATOR = '\uFFFF';
+
+	private static final String SEPARATOR_STRING = String.valueOf(SEPARATOR);
+
+	private static final char WITH_EQUALS = '=';
+
+	private static final char WITHOUT_EQUALS = '|';
+
+	private static final char DYNAMIC = '?';
+
+	private static final String DEFAULT_LABEL = "#default";
+
+	// =========================================================================
+
+	private final Map<String, Integer> byText;
+
+	private final Map<Double, Integer> byNumber;
+
+	/**
+	 * For each argument the index of the first argument at or after it that
+	 * has a value or -1.
+	 */
+	private final int[] nextWithEquals;
+
+	/**
+	 * For each argument index i the index of the last <code>#default</code>
+	 * case before argument i or -1. The last entry refers to all cases.
+	 */
+	private final int[] lastDefault;
+
+	private final boolean lastHasEquals;
+
+	private final boolean lastIsDynamic;
+
+	// =========================================================================
+
+	private CompiledSwitch(String signature)
+	{
+		List<String> labels = new ArrayList<String>();
+		StringBuilder flags = new StringBuilder();
+		for (int i = 0; i < signature.length();)
+		{
+			int end = signature.indexOf(SEPARATOR, i);
+			flags.append(signature.charAt(i));
+			labels.add(signature.substring(i + 1, end));
+			i = end + 1;
+		}
+
+		int argCount = labels.size() + 1;
+		this.byText = new HashMap<String, Integer>();
+		this.byNumber = new HashMap<Double, Integer>();
+		this.nextWithEquals = new int[argCount];
+		this.lastDefault = new int[argCount + 1];
+
+		int last = argCount - 1;
+		char lastFlag = flags.charAt(last - 1);
+		this.lastHasEquals = (lastFlag == WITH_EQUALS);
+		this.lastIsDynamic = (lastFlag == DYNAMIC);
+
+		int currentDefault = -1;
+		for (int i = 1; i < argCount; ++i)
+		{
+			lastDefault[i] = currentDefault;
+
+			char flag = flags.charAt(i - 1);
+			if (flag == DYNAMIC)
+				continue;
+
+			String label = labels.get(i - 1).trim();
+			if (label.equals(DEFAULT_LABEL))
+			{
+				currentDefault = i;
+			}
+			else if (i != last || flag == WITH_EQUALS)
+			{
+				// A matching implicit default yields the same result as no
+				// match at all.
+
+				if (!byText.containsKey(label))
+					byText.put(label, i);
+
+				Double number = strToDbl(label);
+				if (number != null && !byNumber.containsKey(number))
+					byNumber.put(number, i);
+			}
+		}
+		lastDefault[argCount] = currentDefault;
+
+		nextWithEquals[0] = -1;
+		int next = -1;
+		for (int i = last; i >= 1; --i)
+		{
+			if (flags.charAt(i - 1) == WITH_EQUALS)
+				next = i;
+			nextWithEquals[i] = next;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Compiles a switch from its signature.
+	 */
+	public static CompiledSwitch compile(String signature)
+	{
+		return new CompiledSwitch(signature);
+	}
+
+	/**
+	 * Computes the signature of a switch from its unexpanded arguments. The
+	 * signature contains the raw label of every case and whether the case has
+	 * a value.
+	 * 
+	 * @return The signature or <code>null</code> if the switch cannot be
+	 *         compiled because one of its labels is not static text.
+	 */
+	public static String signature(List<? extends WtNode> args)
+	{
+		int size = args.size();
+		if (size < 2)
+			return null;
+
+		StringBuilder b = new StringBuilder();
+		for (int i = 1; i < size; ++i)
+		{
+			WtNode arg = args.get(i);
+
+			int start = b.length();
+			b.append(WITHOUT_EQUALS);
+
+			boolean dynamic = false;
+			boolean equals = false;
+			if (arg.isNodeType(WtNode.NT_NODE_LIST))
+			{
+				for (WtNode c : arg)
+				{
+					if (c.isNodeType(WtNode.NT_TEXT))
+					{
+						equals = appendLabel(b, (WtText) c);
+						if (equals)
+							break;
+					}
+					else
+					{
+						dynamic = true;
+					}
+				}
+			}
+			else if (arg.isNodeType(WtNode.NT_TEXT))
+			{
+				equals = appendLabel(b, (WtText) arg);
+			}
+			else
+			{
+				return null;
+			}
+
+			if (dynamic)
+			{
+				if (equals || i != size - 1)
+					return null;
+
+				b.setLength(start);
+				b.append(DYNAMIC);
+			}
+			else if (equals)
+			{
+				b.setCharAt(start, WITH_EQUALS);
+			}
+
+			if (b.indexOf(SEPARATOR_STRING, start) != -1)
+				return null;
+
+			b.append(SEPARATOR);
+		}
+
+		return b.toString();
+	}
+
+	private static boolean appendLabel(StringBuilder b, WtText text)
+	{
+		String content = text.getContent();
+		int i = content.indexOf('=');
+		if (i == -1)
+		{
+			b.append(content);
+			return false;
+		}
+		else
+		{
+			b.append(content, 0, i);
+			return true;
+		}
+	}
+
+	static Double strToDbl(String str)
+	{
+		try
+		{
+			return Double.parseDouble(str);
+		}
+		catch (NumberFormatException e)
+		{
+			return null;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the index of the first case whose label equals the test string
+	 * either as text or numerically or -1 if there is no such case.
+	 */
+	public int find(String cmp, Double icmp)
+	{
+		if (cmp == null)
+			return -1;
+
+		Integer match = byText.get(cmp);
+		if (icmp != null)
+		{
+			Integer numericMatch = byNumber.get(icmp);
+			if (numericMatch != null && (match == null || numericMatch < match))
+				match = numericMatch;
+		}
+		return (match != null) ? match : -1;
+	}
+
+	/**
+	 * Returns the index of the first argument at or after the given argument
+	 * that has a value or -1 if there is no such argument.
+	 */
+	public int getNextWithEquals(int index)
+	{
+		return nextWithEquals[index];
+	}
+
+	/**
+	 * Returns the index of the last <code>#default</code> case before the
+	 * given argument or -1 if there is no such case.
+	 */
+	public int getLastDefault(int index)
+	{
+		return lastDefault[index];
+	}
+
+	public boolean isLastHasEquals()
+	{
+		return lastHasEquals;
+	}
+
+	/**
+	 * Whether the last argument is an implicit default whose label is not
+	 * static text.
+	 */
+	public boolean isLastDynamic()
+	{
+		return lastIsDynamic;
+	}
+}
@@ -0,0 +1,397 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.ext.parser_functions;
+
+import java.time.DayOfWeek;
+import java.time.Month;
+import java.time.ZonedDateTime;
+import java.time.format.TextStyle;
+import java.time.temporal.WeekFields;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A <code>#time</code> format string split into runs of literal text and
+ * format codes.
+ * 
+ * Compiling a format string resolves the quoting and the unknown characters
+ * once, so formatting a timestamp only dispatches on the format codes. The
+ * month and weekday names and the week rules of a locale are looked up once
+ * per locale and shared by all compiled formats.
+ */
+final class CompiledTimeFormat
+{
+	private static final String CODES = "YyLnmMFWjdzDlNwaAghGHisUeIOPZTtcr";
+
+	/** Marks a run of literal text in {@link #codes}. */
+	private static final char LITERAL = '\0';
+
+	private static final ConcurrentMap<Locale, LocaleData> LOCALE_DATA =
+			new ConcurrentHashMap<Locale, LocaleData>();
+
+	// =========================================================================
+
+	private final char[] codes;
+
+	private final String[] literals;
+
+	private final int lengthHint;
+
+	// =========================================================================
+
+	private CompiledTimeFormat(char[] codes, String[] literals, int lengthHint)
+	{
+		this.codes = codes;
+		this.literals = literals;
+		this.lengthHint = lengthHint;
+	}
+
+	public static CompiledTimeFormat compile(String format)
+	{
+		StringBuilder codes = new StringBuilder();
+		List<String> literals = new ArrayList<String>();
+		StringBuilder literal = new StringBuilder();
+		boolean isCharInComment = false;
+		int lengthHint = 0;
+
+		for (int i = 0; i < format.length(); ++i)
+		{
+			char ch = format.charAt(i);
+			if (ch == '"')
+			{
+				isCharInComment = !isCharInComment;
+			}
+			else if (isCharInComment || CODES.indexOf(ch) == -1)
+			{
+				literal.append(ch);
+			}
+			else
+			{
+				if (literal.length() > 0)
+				{
+					lengthHint += literal.length();
+					codes.append(LITERAL);
+					literals.add(literal.toString());
+					literal.setLength(0);
+				}
+				lengthHint += 4;
+				codes.append(ch);
+				literals.add(null);
+			}
+		}
+
+		if (literal.length() > 0)
+		{
+			lengthHint += literal.length();
+			codes.append(LITERAL);
+			literals.add(literal.toString());
+		}
+
+		return new CompiledTimeFormat(
+				codes.toString().toCharArray(),
+				literals.toArray(new String[literals.size()]),
+				lengthHint);
+	}
+
+	// =========================================================================
+
+	/**
+	 * @param timestamp
+	 *            The date/time used to populate the fields.
+	 * @param zoneName
+	 *            The name printed for the time zone of the timestamp.
+	 * @param locale
+	 *            The locale for month and weekday names.
+	 * @param weekFields
+	 *            The rules for week numbers or <code>null</code> to use the
+	 *            rules of the locale.
+	 */
+	public String format(
+			ZonedDateTime timestamp,
+			String zoneName,
+			Locale locale,
+			WeekFields weekFields)
+	{
+		StringBuilder sb = new StringBuilder(lengthHint);
+		LocaleData names = null;
+
+		for (int i = 0; i < codes.length; ++i)
+		{
+			switch (codes[i])
+			{
+				case LITERAL:
+					sb.append(literals[i]);
+					break;
+
+				case 'Y': // 4-digit year
+					sb.append(timestamp.getYear());
+					break;
+
+				case 'y': // 2-digit year
+					sb.append(timestamp.getYear() % 100);
+					break;
+
+				case 'L': // '1' if it's a leap year, '0' if not
+					sb.append(timestamp.toLocalDate().isLeapYear() ? '1' : '0');
+					break;
+
+				case 'n': // month index, not zero-padded
+					sb.append(timestamp.getMonthValue());
+					break;
+
+				case 'm': // month index, zero-padded
+					appendPadded(sb, timestamp.getMonthValue());
+					break;
+
+				case 'M': // abbreviation of the month name
+					names = (names != null) ? names : getLocaleData(locale);
+					sb.append(names.shortMonths[timestamp.getMonthValue() - 1]);
+					break;
+
+				case 'F': // full month name
+					names = (names != null) ? names : getLocaleData(locale);
+					sb.append(names.longMonths[timestamp.getMonthValue() - 1]);
+					break;
+
+				case 'W': // week number, zero-padded
+					if (weekFields == null)
+					{
+						names = (names != null) ? names : getLocaleData(locale);
+						weekFields = names.weekFields;
+					}
+					appendPadded(sb, timestamp.get(weekFields.weekOfWeekBasedYear()));
+					break;
+
+				case 'j': // day of the month, not zero-padded
+					sb.append(timestamp.getDayOfMonth());
+					break;
+
+				case 'd': // day of the month, zero-padded
+					appendPadded(sb, timestamp.getDayOfMonth());
+					break;
+
+				case 'z': // day of the year (January 1 = 0)
+					sb.append(timestamp.getDayOfYear() - 1);
+					break;
+
+				case 'D': // abbreviation for the day of the week
+					names = (names != null) ? names : getLocaleData(locale);
+					sb.append(names.shortWeekdays[timestamp.getDayOfWeek().ordinal()]);
+					break;
+
+				case 'l': // the full weekday name
+					names = (names != null) ? names : getLocaleData(locale);
+					sb.append(names.longWeekdays[timestamp.getDayOfWeek().ordinal()]);
+					break;
+
+				case 'N': // ISO 8601 day of the week (Monday = 1, Sunday = 7)
+					sb.append(timestamp.getDayOfWeek().getValue());
+					break;
+
+				case 'w': // Number of the day of the week (Sunday = 0, Saturday = 6)
+					sb.append(timestamp.getDayOfWeek().getValue() % 7);
+					break;
+
+				case 'a': // am, pm
+					sb.append(timestamp.getHour() < 12 ? "am" : "pm");
+					break;
+
+				case 'A': // AM, PM
+					sb.append(timestamp.getHour() < 12 ? "AM" : "PM");
+					break;
+
+				case 'g': // hour in 12-hour format, not zero-padded
+					sb.append(timestamp.getHour() % 12);
+					break;
+
+				case 'h': // hour in 12-hour format, zero-padded
+					appendPadded(sb, timestamp.getHour() % 12);
+					break;
+
+				case 'G': // hour in 24-hour format, not zero-padded
+					sb.append(timestamp.getHour());
+					break;
+
+				case 'H': // hour in 24-hour format, zero-padded
+					appendPadded(sb, timestamp.getHour());
+					break;
+
+				case 'i': // minutes past the hour, zero-padded
+					appendPadded(sb, timestamp.getMinute());
+					break;
+
+				case 's': // seconds past the minute, zero-padded
+					appendPadded(sb, timestamp.getSecond());
+					break;
+
+				case 'U': // Unix time
+					long timeUtc = timestamp.toInstant().toEpochMilli();
+					timeUtc += timestamp.getOffset().getTotalSeconds() * 1000L;
+					sb.append(timeUtc / 1000L);
+					break;
+
+				case 'e': // time zone identifier
+					sb.append(zoneName);
+					break;
+
+				case 'I': // '1' if Daylight Saving Time if currently used, otherwise '0'
+					sb.append(timestamp.getZone().getRules()
+							.isDaylightSavings(timestamp.toInstant()) ? '1' : '0');
+					break;
+
+				case 'O': // difference to Greenwich time (GMT)
+					appendOffset(sb, timestamp, false);
+					break;
+
+				case 'P': // difference to Greenwich time (GMT), with colon
+					appendOffset(sb, timestamp, true);
+					break;
+
+				case 'Z': // time zone offset in seconds
+					sb.append(timestamp.getOffset().getTotalSeconds());
+					break;
+
+				case 'T': // time zone abbreviation
+					sb.append(zoneName);
+					break;
+
+				case 't': // number of days in the current month
+					sb.append(timestamp.toLocalDate().lengthOfMonth());
+					break;
+
+				case 'c': // ISO 8601 formatted date, equivalent to Y-m-d"T"H:i:s+00:00
+					sb.append(timestamp.getYear()).append('-');
+					appendPadded(sb, timestamp.getMonthValue());
+					sb.append('-');
+					appendPadded(sb, timestamp.getDayOfMonth());
+					sb.append('T');
+					appendTime(sb, timestamp);
+					appendOffset(sb, timestamp, true);
+					break;
+
+				case 'r': // RFC 5322 formatted date, equivalent to D, j M Y H:i:s +0000
+					LocaleData us = getLocaleData(Locale.US); // no i18n
+					sb.append(us.shortWeekdays[timestamp.getDayOfWeek().ordinal()])
+							.append(", ")
+							.append(timestamp.getDayOfMonth())
+							.append(' ')
+							.append(us.shortMonths[timestamp.getMonthValue() - 1])
+							.append(' ')
+							.append(timestamp.getYear())
+							.append(' ');
+					appendTime(sb, timestamp);
+					sb.append(' ');
+					appendOffset(sb, timestamp, false);
+					break;
+
+				default:
+					throw new AssertionError();
+			}
+		}
+
+		return sb.toString();
+	}
+
+	// =========================================================================
+
+	private static void appendPadded(StringBuilder sb, int value)
+	{
+		if (value < 10)
+			sb.append('0');
+		sb.append(value);
+	}
+
+	private static void appendTime(StringBuilder sb, ZonedDateTime timestamp)
+	{
+		appendPadded(sb, timestamp.getHour());
+		sb.append(':');
+		appendPadded(sb, timestamp.getMinute());
+		sb.append(':');
+		appendPadded(sb, timestamp.getSecond());
+	}
+
+	/**
+	 * Appends the local offset of the given timestamp in the form of
+	 * "+/-hhmm" (RFC 5322) or "+/-hh:mm". The offset includes the Daylight
+	 * Saving Time of the time zone.
+	 */
+	private static void appendOffset(
+			StringBuilder sb,
+			ZonedDateTime timestamp,
+			boolean withColon)
+	{
+		int offset = timestamp.getOffset().getTotalSeconds() / 60; // in minutes
+		sb.append(offset < 0 ? '-' : '+');
+		offset = Math.abs(offset);
+		appendPadded(sb, offset / 60);
+		if (withColon)
+			sb.append(':');
+		appendPadded(sb, offset % 60);
+	}
+
+	// =========================================================================
+
+	static LocaleData getLocaleData(Locale locale)
+	{
+		LocaleData data = LOCALE_DATA.get(locale);
+		if (data == null)
+		{
+			data = new LocaleData(locale);
+			LocaleData race = LOCALE_DATA.putIfAbsent(locale, data);
+			if (race != null)
+				data = race;
+		}
+		return data;
+	}
+
+	// =========================================================================
+
+	static final class LocaleData
+	{
+		final String[] shortMonths = new String[12];
+
+		final String[] longMonths = new String[12];
+
+		/** Indexed by the ordinal of the {@link DayOfWeek}. */
+		final String[] shortWeekdays = new String[7];
+
+		final String[] longWeekdays = new String[7];
+
+		final WeekFields weekFields;
+
+		LocaleData(Locale locale)
+		{
+			for (Month month : Month.values())
+			{
+				shortMonths[month.ordinal()] = month.getDisplayName(TextStyle.SHORT, locale);
+				longMonths[month.ordinal()] = month.getDisplayName(TextStyle.FULL, locale);
+			}
+
+			for (DayOfWeek day : DayOfWeek.values())
+			{
+				shortWeekdays[day.ordinal()] = day.getDisplayName(TextStyle.SHORT, locale);
+				longWeekdays[day.ordinal()] = day.getDisplayName(TextStyle.FULL, locale);
+			}
+
+			weekFields = WeekFields.of(locale);
+		}
+	}
+}
@@ -18,64 +18,44 @@
 package org.sweble.wikitext.engine.ext.parser_functions;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Stack;
+import java.util.Arrays;
 
+import org.sweble.wikitext.engine.utils.BoundedCache;
+
+/**
+ * Evaluates the expressions of <code>#expr</code> and <code>#ifexpr</code>.
+ * 
+ * An expression is first compiled into a program in reverse polish notation
+ * which is then evaluated on a primitive operand stack. Compiled programs
+ * are cached by expression, so evaluating an expression again only runs its
+ * program.
+ * 
+ * Errors are reported in the order in which they would be encountered by
+ * evaluating the expression while parsing it: A syntax error is compiled
+ * into an instruction that raises the error after all operators preceding
+ * it have been applied.
+ * 
+ * An ExprParser is not thread-safe.
+ */
 public class ExprParser
 {
 	private static final int maxStackSize = 100;
 
-	private static final Map<String, Token> TOKENS = new HashMap<String, Token>();
+	private static final int PROGRAM_CACHE_CAPACITY = 1024;
 
-	static
-	{
-		TOKENS.put("(", Token.LPAREN);
-		TOKENS.put(")", Token.RPAREN);
-		TOKENS.put("!=", Token.NEQ);
-		TOKENS.put("*", Token.TIMES);
-		TOKENS.put("+", Token.PLUS);
-		//tokens.put("+", Token.POS);
-		TOKENS.put("-", Token.MINUS);
-		//tokens.put("-", Token.NEG);
-		TOKENS.put("/", Token.DIVIDE);
-		TOKENS.put("<", Token.LE);
-		TOKENS.put("<=", Token.LEQ);
-		TOKENS.put("<>", Token.NEQ);
-		TOKENS.put("=", Token.EQ);
-		TOKENS.put(">", Token.GR);
-		TOKENS.put(">=", Token.GEQ);
-		TOKENS.put("^", Token.POW);
-		TOKENS.put("abs", Token.ABS);
-		TOKENS.put("acos", Token.ARCCOS);
-		TOKENS.put("and", Token.AND);
-		TOKENS.put("asin", Token.ARCSINE);
-		TOKENS.put("atan", Token.ARCTAN);
-		TOKENS.put("ceil", Token.CEIL);
-		TOKENS.put("cos", Token.COSINE);
-		TOKENS.put("div", Token.DIVIDE);
-		TOKENS.put("e", Token.E);
-		//tokens.put("e", Token.SCIENTIFIC);
-		TOKENS.put("exp", Token.EXP);
-		TOKENS.put("floor", Token.FLOOR);
-		TOKENS.put("ln", Token.LN);
-		TOKENS.put("mod", Token.MOD);
-		TOKENS.put("not", Token.NOT);
-		TOKENS.put("or", Token.OR);
-		TOKENS.put("pi", Token.PI);
-		TOKENS.put("round", Token.ROUND);
-		TOKENS.put("sin", Token.SINE);
-		TOKENS.put("tan", Token.TANGENS);
-		TOKENS.put("trunc", Token.TRUNC);
-	}
+	/**
+	 * Longer expressions are not cached.
+	 */
+	private static final int MAX_CACHED_EXPRESSION_LENGTH = 1024;
 
-	// =====================================================================
+	private static final BoundedCache<String, Program> PROGRAMS =
+			new BoundedCache<String, Program>(PROGRAM_CACHE_CAPACITY);
 
-	private final Stack<Double> operands = new Stack<Double>();
+	private static final Token[] TOKENS = Token.values();
 
-	private final Stack<Token> operators = new Stack<Token>();
+	// =====================================================================
 
-	private Production expecting;
+	private double[] operands = new double[16];
 
 	// =====================================================================
 
@@ -86,63 +66,237 @@ public class ExprParser
 	 */
 	public String parse(String expr) throws ExprError
 	{
-		operands.clear();
-		operators.clear();
-		expecting = Production.EXPR;
-		int i = 0;
+		Program program = compile(expr);
+
+		if (operands.length < program.maxStackSize)
+			operands = new double[program.maxStackSize];
 
-		expr = unescape(expr);
+		int size = program.evaluate(operands);
+
+		return implode("<br />\n", operands, size);
+	}
 
-		while (i < expr.length())
+	// =====================================================================
+
+	static Program compile(String expr)
+	{
+		if (expr.length() > MAX_CACHED_EXPRESSION_LENGTH)
+			return new Compiler(expr).compile();
+
+		Program program = PROGRAMS.get(expr);
+		if (program == null)
+			program = PROGRAMS.put(expr, new Compiler(expr).compile());
+		return program;
+	}
+
+	// =====================================================================
+
+	private static String implode(
+			String serparator,
+			double[] operands,
+			int size)
+	{
+		if (size == 1)
+			return format(operands[0]);
+
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < size;)
 		{
-			if (operands.size() > maxStackSize
-					|| operators.size() > maxStackSize)
-				throw new ExprError("operands_exhausted");
+			b.append(format(operands[i]));
+			if (++i < size)
+				b.append(serparator);
+		}
+		return b.toString();
+	}
 
-			char ch = expr.charAt(i);
+	private static String format(double result)
+	{
+		if (((double) (int) result) == result)
+			return String.valueOf((int) result);
+		else
+			return String.valueOf(result);
+	}
 
-			if (isWs(ch))
+	// =========================================================================
+
+	/**
+	 * A compiled expression.
+	 */
+	static final class Program
+	{
+		private static final int PUSH = 0;
+
+		private static final int APPLY = 1;
+
+		private static final int FAIL = 2;
+
+		private final int[] code;
+
+		private final double[] constants;
+
+		private final int maxStackSize;
+
+		private final String errorMessage;
+
+		private final String errorParam;
+
+		private Program(
+				int[] code,
+				double[] constants,
+				int maxStackSize,
+				String errorMessage,
+				String errorParam)
+		{
+			this.code = code;
+			this.constants = constants;
+			this.maxStackSize = Math.max(maxStackSize, 1);
+			this.errorMessage = errorMessage;
+			this.errorParam = errorParam;
+		}
+
+		/**
+		 * @return The number of operands left on the stack.
+		 */
+		public int evaluate(double[] stack) throws ExprError
+		{
+			int size = 0;
+			for (int instr : code)
 			{
-				i = skipWs(expr, i);
-				continue;
+				int arg = instr >>> 2;
+				switch (instr & 3)
+				{
+					case PUSH:
+						stack[size++] = constants[arg];
+						break;
+					case APPLY:
+						size = TOKENS[arg].apply(stack, size);
+						break;
+					case FAIL:
+						throw new ExprError(errorMessage, errorParam);
+					default:
+						throw new AssertionError();
+				}
 			}
-			else if (isNumberChar(ch))
+			return size;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Translates an expression into a {@link Program}.
+	 * 
+	 * Parsing does not depend on the values of the operands. Therefore the
+	 * compiler knows the size of the operand stack at every point of the
+	 * program.
+	 */
+	private static final class Compiler
+	{
+		private final String expr;
+
+		private int[] code = new int[16];
+
+		private int codeSize;
+
+		private double[] constants = new double[8];
+
+		private int constantsSize;
+
+		private final Token[] operators = new Token[maxStackSize + 2];
+
+		private int operatorsSize;
+
+		private int operandsSize;
+
+		private int maxOperandsSize;
+
+		private Production expecting;
+
+		// -----------------------------------------------------------------
+
+		public Compiler(String expr)
+		{
+			this.expr = unescape(expr);
+		}
+
+		// -----------------------------------------------------------------
+
+		public Program compile()
+		{
+			try
 			{
-				expect(Production.EXPR, "unexpected_number");
-				i = pushOperand(expr, i);
-				expecting = Production.OPERATOR;
-				continue;
+				parse();
+				return program(null, null);
 			}
-			else
+			catch (ExprError e)
+			{
+				emit(Program.FAIL, 0);
+				return program(e.getFormat(), e.getParam());
+			}
+		}
+
+		private Program program(String errorMessage, String errorParam)
+		{
+			return new Program(
+					Arrays.copyOf(code, codeSize),
+					Arrays.copyOf(constants, constantsSize),
+					maxOperandsSize,
+					errorMessage,
+					errorParam);
+		}
+
+		private void parse() throws ExprError
+		{
+			expecting = Production.EXPR;
+			int i = 0;
+
+			while (i < expr.length())
 			{
-				String word = null;
-				Token token = null;
+				if (operandsSize > maxStackSize
+						|| operatorsSize > maxStackSize)
+					throw new ExprError("operands_exhausted");
+
+				char ch = expr.charAt(i);
+
+				if (isWs(ch))
+				{
+					i = skipWs(i);
+					continue;
+				}
+				else if (isNumberChar(ch))
+				{
+					expect(Production.EXPR, "unexpected_number");
+					i = pushOperand(i);
+					expecting = Production.OPERATOR;
+					continue;
+				}
+
+				Token token;
+				int length;
 				if (isAlphaChar(ch))
 				{
-					word = parseWordToken(expr, i).toLowerCase();
-					token = TOKENS.get(word);
+					length = wordLength(i);
+					token = matchWord(i, length);
 				}
 				else
 				{
-					if (i + 1 < expr.length())
-					{
-						// Try two-character operators
-						word = expr.substring(i, i + 2);
-						token = TOKENS.get(word);
-					}
-
+					length = 2;
+					token = matchOperator(i);
 					if (token == null)
 					{
-						// Try one-character operators
-						word = "" + ch;
-						token = TOKENS.get(word);
+						length = 1;
+						token = matchOperator(ch);
 					}
 				}
 
 				if (token == null)
-					throw new ExprError("Unrecognised word \"%s\".", word);
+					throw new ExprError("Unrecognised word \"%s\".", unrecognizedWord(i, ch));
+
+				String word = isAlphaChar(ch) ?
+						token.getWord() :
+						expr.substring(i, i + length);
 
-				i += word.length();
+				i += length;
 
 				switch (token)
 				{
@@ -162,7 +316,7 @@ public class ExprParser
 					{
 						if (expecting == Production.EXPR)
 						{
-							token.apply(operands);
+							apply(token);
 							expecting = Production.OPERATOR;
 						}
 						continue;
@@ -185,7 +339,7 @@ public class ExprParser
 					case CEIL:
 					{
 						expect(Production.EXPR, "unexpected_operator", word);
-						operators.push(token);
+						pushOperator(token);
 						continue;
 					}
 
@@ -196,7 +350,7 @@ public class ExprParser
 					{
 						if (expecting == Production.EXPR)
 						{
-							operators.push(token == Token.PLUS ?
+							pushOperator(token == Token.PLUS ?
 									Token.POS :
 									Token.NEG);
 						}
@@ -232,27 +386,27 @@ public class ExprParser
 					case LPAREN:
 					{
 						expect(Production.EXPR, "unexpected_operator", word);
-						operators.push(token);
+						pushOperator(token);
 						continue;
 					}
 
 					case RPAREN:
 					{
 						Token lastOp = null;
-						while (!operators.isEmpty())
+						while (operatorsSize > 0)
 						{
-							lastOp = operators.peek();
+							lastOp = operators[operatorsSize - 1];
 							if (lastOp == Token.LPAREN)
 								break;
 
-							lastOp.apply(operands);
-							operators.pop();
+							apply(lastOp);
+							--operatorsSize;
 						}
 
 						if (lastOp != Token.LPAREN)
 							throw new ExprError("unexpected_closing_bracket");
 
-						operators.pop();
+						--operatorsSize;
 						expecting = Production.OPERATOR;
 						continue;
 					}
@@ -261,147 +415,285 @@ public class ExprParser
 						throw new AssertionError();
 				}
 			}
+
+			while (operatorsSize > 0)
+			{
+				Token op = operators[--operatorsSize];
+				if (op == Token.LPAREN)
+					throw new ExprError("unclosed_bracket");
+
+				apply(op);
+			}
 		}
 
-		while (!operators.isEmpty())
+		// -----------------------------------------------------------------
+
+		private static String unescape(String expr)
 		{
-			Token op = operators.pop();
-			if (op == Token.LPAREN)
-				throw new ExprError("unclosed_bracket");
+			if (expr.indexOf('&') != -1)
+			{
+				expr = expr.replace("&lt;", "<");
+				expr = expr.replace("&gt;", ">");
+				expr = expr.replace("&minus;", "-");
+			}
+			return expr.replace('\u2212', '-');
+		}
+
+		// -----------------------------------------------------------------
 
-			op.apply(operands);
+		private static boolean isWs(char ch)
+		{
+			return Character.isWhitespace(ch);
 		}
 
-		return implode("<br />\n", operands);
-	}
+		private int skipWs(int i)
+		{
+			int j = i + 1;
+			while (j < expr.length() && isWs(expr.charAt(j)))
+				++j;
+			return j;
+		}
 
-	// =====================================================================
+		// -----------------------------------------------------------------
 
-	private String unescape(String expr)
-	{
-		expr = expr.replace("&lt;", "<");
-		expr = expr.replace("&gt;", ">");
-		expr = expr.replace("&minus;", "-");
-		expr = expr.replace("\u2212", "-");
-		return expr;
-	}
+		private static boolean isNumberChar(char ch)
+		{
+			return ch == '.' || Character.isDigit(ch);
+		}
 
-	// =====================================================================
+		private int pushOperand(int i)
+		{
+			int j = i + 1;
+			boolean plain = (expr.charAt(i) >= '0' && expr.charAt(i) <= '9');
+			while (j < expr.length())
+			{
+				char ch = expr.charAt(j);
+				if (!isNumberChar(ch))
+					break;
+				plain &= (ch >= '0' && ch <= '9');
+				++j;
+			}
 
-	private boolean isWs(char ch)
-	{
-		return Character.isWhitespace(ch);
-	}
+			double value;
+			if (plain && j - i < 10)
+			{
+				value = 0;
+				for (int k = i; k < j; ++k)
+					value = value * 10 + (expr.charAt(k) - '0');
+			}
+			else
+			{
+				try
+				{
+					value = Double.parseDouble(expr.substring(i, j));
+				}
+				catch (NumberFormatException e)
+				{
+					value = 0.;
+				}
+			}
 
-	private int skipWs(String expr, int i)
-	{
-		int j = i + 1;
-		while (j < expr.length() && isWs(expr.charAt(j)))
-			++j;
-		return j;
-	}
+			if (constantsSize == constants.length)
+				constants = Arrays.copyOf(constants, constantsSize * 2);
+			constants[constantsSize] = value;
+			emit(Program.PUSH, constantsSize++);
+			grow(1);
 
-	// =====================================================================
+			return j;
+		}
 
-	private boolean isNumberChar(char ch)
-	{
-		return ch == '.' || Character.isDigit(ch);
-	}
+		// -----------------------------------------------------------------
 
-	private int pushOperand(String expr, int i)
-	{
-		int j = i + 1;
-		while (j < expr.length())
+		private static boolean isAlphaChar(char ch)
 		{
-			char ch = expr.charAt(j);
-			if (!isNumberChar(ch))
-				break;
-			++j;
+			return Character.isLetter(ch);
 		}
 
-		try
+		private int wordLength(int i)
 		{
-			operands.push(Double.parseDouble(expr.substring(i, j)));
+			int j = i + 1;
+			while (j < expr.length() && isAlphaChar(expr.charAt(j)))
+				++j;
+			return j - i;
 		}
-		catch (NumberFormatException e)
+
+		/**
+		 * Matches a word case-insensitively against the names of the word
+		 * tokens.
+		 */
+		private Token matchWord(int i, int length)
 		{
-			operands.push(0.);
+			switch (length)
+			{
+				case 1:
+					return matches(i, length, Token.E);
+				case 2:
+					return matches(i, length, Token.LN, Token.OR, Token.PI);
+				case 3:
+					return matches(i, length,
+							Token.ABS, Token.AND, Token.COSINE, Token.DIVIDE,
+							Token.EXP, Token.MOD, Token.NOT, Token.SINE,
+							Token.TANGENS);
+				case 4:
+					return matches(i, length,
+							Token.ARCCOS, Token.ARCSINE, Token.ARCTAN,
+							Token.CEIL);
+				case 5:
+					return matches(i, length,
+							Token.FLOOR, Token.ROUND, Token.TRUNC);
+				default:
+					return null;
+			}
 		}
 
-		return j;
-	}
-
-	// =====================================================================
+		private Token matches(int i, int length, Token... candidates)
+		{
+			for (Token token : candidates)
+			{
+				String name = token.getWord();
+				int k = 0;
+				while (k < length && toLowerAscii(expr.charAt(i + k)) == name.charAt(k))
+					++k;
+				if (k == length)
+					return token;
+			}
+			return null;
+		}
 
-	private boolean isAlphaChar(char ch)
-	{
-		return Character.isLetter(ch);
-	}
+		private static char toLowerAscii(char ch)
+		{
+			return (ch >= 'A' && ch <= 'Z') ? (char) (ch + ('a' - 'A')) : ch;
+		}
 
-	private String parseWordToken(String expr, int i)
-	{
-		int j = i + 1;
-		while (j < expr.length())
+		/**
+		 * Matches the two-character operators.
+		 */
+		private Token matchOperator(int i)
 		{
-			char chx = expr.charAt(j);
-			if (!isAlphaChar(chx))
-				break;
-			++j;
+			if (i + 1 >= expr.length())
+				return null;
+
+			char ch0 = expr.charAt(i);
+			char ch1 = expr.charAt(i + 1);
+			switch (ch0)
+			{
+				case '!':
+					return (ch1 == '=') ? Token.NEQ : null;
+				case '<':
+					if (ch1 == '=')
+						return Token.LEQ;
+					return (ch1 == '>') ? Token.NEQ : null;
+				case '>':
+					return (ch1 == '=') ? Token.GEQ : null;
+				default:
+					return null;
+			}
 		}
 
-		return expr.substring(i, j);
-	}
+		/**
+		 * Matches the one-character operators.
+		 */
+		private static Token matchOperator(char ch)
+		{
+			switch (ch)
+			{
+				case '(':
+					return Token.LPAREN;
+				case ')':
+					return Token.RPAREN;
+				case '*':
+					return Token.TIMES;
+				case '+':
+					return Token.PLUS;
+				case '-':
+					return Token.MINUS;
+				case '/':
+					return Token.DIVIDE;
+				case '<':
+					return Token.LE;
+				case '=':
+					return Token.EQ;
+				case '>':
+					return Token.GR;
+				case '^':
+					return Token.POW;
+				default:
+					return null;
+			}
+		}
 
-	// =====================================================================
+		private String unrecognizedWord(int i, char ch)
+		{
+			if (isAlphaChar(ch))
+				return expr.substring(i, i + wordLength(i)).toLowerCase();
+			return String.valueOf(ch);
+		}
 
-	private void expect(Production p, String msg) throws ExprError
-	{
-		if (expecting != p)
-			throw new ExprError(msg);
-	}
+		// -----------------------------------------------------------------
 
-	private void expect(Production p, String msg, String word) throws ExprError
-	{
-		if (expecting != p)
-			throw new ExprError(msg, word);
-	}
+		private void expect(Production p, String msg) throws ExprError
+		{
+			if (expecting != p)
+				throw new ExprError(msg);
+		}
 
-	// =====================================================================
+		private void expect(Production p, String msg, String word) throws ExprError
+		{
+			if (expecting != p)
+				throw new ExprError(msg, word);
+		}
 
-	private void processBinaryOp(Token op, String word) throws ExprError
-	{
-		expect(Production.OPERATOR, "unexpected_operator", word);
+		// -----------------------------------------------------------------
 
-		while (!operators.isEmpty())
+		private void processBinaryOp(Token op, String word) throws ExprError
 		{
-			Token lastOp = operators.peek();
-			if (op.getPrecedence() > lastOp.getPrecedence())
-				break;
+			expect(Production.OPERATOR, "unexpected_operator", word);
+
+			while (operatorsSize > 0)
+			{
+				Token lastOp = operators[operatorsSize - 1];
+				if (op.getPrecedence() > lastOp.getPrecedence())
+					break;
+
+				apply(lastOp);
+				--operatorsSize;
+			}
 
-			lastOp.apply(operands);
-			operators.pop();
+			pushOperator(op);
+			expecting = Production.EXPR;
 		}
 
-		operators.push(op);
-		expecting = Production.EXPR;
-	}
+		private void pushOperator(Token op)
+		{
+			operators[operatorsSize++] = op;
+		}
 
-	// =====================================================================
+		/**
+		 * Emits the application of an operator. If the operand stack will
+		 * not hold enough operands, the application would fail and nothing
+		 * after it can be reached.
+		 */
+		private void apply(Token op) throws ExprError
+		{
+			if (operandsSize < op.getArity())
+				throw new ExprError("Missing operand for %s.", op.toString());
 
-	private String implode(String serparator, Stack<Double> operands)
-	{
-		StringBuilder b = new StringBuilder();
-		for (int i = 0; i < operands.size();)
+			emit(Program.APPLY, op.ordinal());
+			grow(op.getStackEffect());
+		}
+
+		private void grow(int delta)
 		{
-			double result = operands.get(i);
-			if (((double) (int) result) == result)
-				b.append((int) result);
-			else
-				b.append(result);
-			if (++i < operands.size())
-				b.append(serparator);
+			operandsSize += delta;
+			maxOperandsSize = Math.max(maxOperandsSize, operandsSize);
+		}
+
+		private void emit(int opcode, int arg)
+		{
+			if (codeSize == code.length)
+				code = Arrays.copyOf(code, codeSize * 2);
+			code[codeSize++] = (arg << 2) | opcode;
 		}
-		return b.toString();
 	}
 
 	// =========================================================================
@@ -412,6 +704,8 @@ public class ExprParser
 	{
 		private static final long serialVersionUID = 1L;
 
+		private final String format;
+
 		private final String param;
 
 		public ExprError(String message)
@@ -422,6 +716,7 @@ public class ExprParser
 		public ExprError(String message, String param)
 		{
 			super(makeMessage(message, param));
+			this.format = message;
 			this.param = param;
 		}
 
@@ -437,6 +732,15 @@ public class ExprParser
 		{
 			return param;
 		}
+
+		/**
+		 * The message (or format string if there is a parameter) this error
+		 * was created with.
+		 */
+		String getFormat()
+		{
+			return format;
+		}
 	}
 
 	// =========================================================================
@@ -453,407 +757,374 @@ public class ExprParser
 	{
 		// -- Constants -- e, pi --
 
-		E(-1, "e")
+		E(-1, "e", 0)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				operands.push(Math.E);
+				s[n] = Math.E;
+				return n + 1;
 			}
 		},
-		PI(-1, "pi")
+		PI(-1, "pi", 0)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				operands.push(Math.PI);
+				s[n] = Math.PI;
+				return n + 1;
 			}
 		},
 
 		// -- Binary -- 10e^x --
 
-		SCIENTIFIC(10, "e")
+		SCIENTIFIC(10, "e", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push(left * Math.pow(10, right));
+				s[n - 2] = s[n - 2] * Math.pow(10, s[n - 1]);
+				return n - 1;
 			}
 		},
 
 		// -- Unary -- +, -, ! --
 
-		POS(10, "+")
+		POS(10, "+", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
+				return n;
 			}
 		},
-		NEG(10, "-")
+		NEG(10, "-", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(-arg);
+				s[n - 1] = -s[n - 1];
+				return n;
 			}
 		},
 
-		NOT(9, "not")
+		NOT(9, "not", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push((arg == 0) ? 1. : 0.);
+				s[n - 1] = (s[n - 1] == 0) ? 1. : 0.;
+				return n;
 			}
 		},
 
 		// -- Unary -- sin, cos, tan, atan, acos, atan --
 
-		SINE(9, "sin")
+		SINE(9, "sin", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.sin(arg));
+				s[n - 1] = Math.sin(s[n - 1]);
+				return n;
 			}
 		},
-		COSINE(9, "cos")
+		COSINE(9, "cos", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.cos(arg));
+				s[n - 1] = Math.cos(s[n - 1]);
+				return n;
 			}
 		},
-		TANGENS(9, "tan")
+		TANGENS(9, "tan", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.tan(arg));
+				s[n - 1] = Math.tan(s[n - 1]);
+				return n;
 			}
 		},
-		ARCSINE(9, "asin")
+		ARCSINE(9, "asin", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n) throws ExprError
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
+				double arg = s[n - 1];
 				if (arg < -1 || arg > 1)
 					throw new ExprError("invalid_argument", toString());
-				operands.push(Math.asin(arg));
+				s[n - 1] = Math.asin(arg);
+				return n;
 			}
 		},
-		ARCCOS(9, "acos")
+		ARCCOS(9, "acos", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n) throws ExprError
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
+				double arg = s[n - 1];
 				if (arg < -1 || arg > 1)
 					throw new ExprError("invalid_argument", toString());
-				operands.push(Math.acos(arg));
+				s[n - 1] = Math.acos(arg);
+				return n;
 			}
 		},
-		ARCTAN(9, "atan")
+		ARCTAN(9, "atan", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.atan(arg));
+				s[n - 1] = Math.atan(s[n - 1]);
+				return n;
 			}
 		},
 
 		// -- Unary -- e^x, ln(x) --
 
-		EXP(9, "exp")
+		EXP(9, "exp", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.exp(arg));
+				s[n - 1] = Math.exp(s[n - 1]);
+				return n;
 			}
 		},
-		LN(9, "ln")
+		LN(9, "ln", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n) throws ExprError
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
+				double arg = s[n - 1];
 				if (arg <= 0)
 					throw new ExprError("invalid_argument_ln", toString());
-				operands.push(Math.log(arg));
+				s[n - 1] = Math.log(arg);
+				return n;
 			}
 		},
 
 		// -- Unary -- abs, floor, trunc, ceil --
 
-		ABS(9, "abs")
+		ABS(9, "abs", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.abs(arg));
+				s[n - 1] = Math.abs(s[n - 1]);
+				return n;
 			}
 		},
 
-		FLOOR(9, "floor")
+		FLOOR(9, "floor", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.floor(arg));
+				s[n - 1] = Math.floor(s[n - 1]);
+				return n;
 			}
 		},
-		TRUNC(9, "trunc")
+		TRUNC(9, "trunc", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push((double) ((int) arg));
+				s[n - 1] = (double) ((int) s[n - 1]);
+				return n;
 			}
 		},
-		CEIL(9, "ceil")
+		CEIL(9, "ceil", 1)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireOneOp(this, operands);
-				double arg = operands.pop();
-				operands.push(Math.ceil(arg));
+				s[n - 1] = Math.ceil(s[n - 1]);
+				return n;
 			}
 		},
 
 		// -- Binary -- --
 
-		POW(8, "^")
+		POW(8, "^", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n) throws ExprError
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				double result = Math.pow(left, right);
+				double result = Math.pow(s[n - 2], s[n - 1]);
 				if (Double.isNaN(result))
 					throw new ExprError("division_by_zero", toString());
-				operands.push(result);
+				s[n - 2] = result;
+				return n - 1;
 			}
 		},
-		TIMES(7, "*")
+		TIMES(7, "*", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push(left * right);
+				s[n - 2] = s[n - 2] * s[n - 1];
+				return n - 1;
 			}
 		},
-		DIVIDE(7, "/")
+		DIVIDE(7, "/", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n) throws ExprError
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
+				double right = s[n - 1];
 				if (right == 0)
 					throw new ExprError("division_by_zero", toString());
-				operands.push(left / right);
+				s[n - 2] = s[n - 2] / right;
+				return n - 1;
+			}
+
+			@Override
+			public String getWord()
+			{
+				return "div";
 			}
 		},
-		MOD(7, "mod")
+		MOD(7, "mod", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n) throws ExprError
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
+				double right = s[n - 1];
 				if (right == 0)
 					throw new ExprError("division_by_zero", toString());
-				operands.push(left % right);
+				s[n - 2] = s[n - 2] % right;
+				return n - 1;
 			}
 		},
 
 		// -- Binary -- --
 
-		PLUS(6, "+")
+		PLUS(6, "+", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push(left + right);
+				s[n - 2] = s[n - 2] + s[n - 1];
+				return n - 1;
 			}
 		},
-		MINUS(6, "-")
+		MINUS(6, "-", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push(left - right);
+				s[n - 2] = s[n - 2] - s[n - 1];
+				return n - 1;
 			}
 		},
 
 		// -- Binary -- round --
 
-		ROUND(5, "round")
+		ROUND(5, "round", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				int digits = (int) (double) operands.pop();
-				double value = operands.pop();
-				value = round(value, digits);
-				operands.push(value);
+				int digits = (int) s[n - 1];
+				s[n - 2] = round(s[n - 2], digits);
+				return n - 1;
 			}
 		},
 
 		// -- Binary -- --
 
-		EQ(4, "=")
+		EQ(4, "=", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left == right) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] == s[n - 1]) ? 1. : 0.;
+				return n - 1;
 			}
 		},
-		NEQ(4, "!=")
+		NEQ(4, "!=", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left != right) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] != s[n - 1]) ? 1. : 0.;
+				return n - 1;
 			}
 		},
-		LE(4, "<")
+		LE(4, "<", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left < right) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] < s[n - 1]) ? 1. : 0.;
+				return n - 1;
 			}
 		},
-		GR(4, ">")
+		GR(4, ">", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left > right) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] > s[n - 1]) ? 1. : 0.;
+				return n - 1;
 			}
 		},
-		LEQ(4, "<=")
+		LEQ(4, "<=", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left <= right) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] <= s[n - 1]) ? 1. : 0.;
+				return n - 1;
 			}
 		},
-		GEQ(4, ">=")
+		GEQ(4, ">=", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left >= right) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] >= s[n - 1]) ? 1. : 0.;
+				return n - 1;
 			}
 		},
 
 		// -- Binary -- --
 
-		AND(3, "and")
+		AND(3, "and", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left != 0 && right != 0) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] != 0 && s[n - 1] != 0) ? 1. : 0.;
+				return n - 1;
 			}
 		},
-		OR(2, "or")
+		OR(2, "or", 2)
 		{
 			@Override
-			public void apply(Stack<Double> operands) throws ExprError
+			public int apply(double[] s, int n)
 			{
-				requireTwoOps(this, operands);
-				double right = operands.pop();
-				double left = operands.pop();
-				operands.push((left != 0 || right != 0) ? 1. : 0.);
+				s[n - 2] = (s[n - 2] != 0 || s[n - 1] != 0) ? 1. : 0.;
+				return n - 1;
 			}
 		},
 
 		// -- Binary -- --
 
-		LPAREN(-1, "(")
+		LPAREN(-1, "(", 0)
 		{
 			@Override
-			public void apply(Stack<Double> operands)
+			public int apply(double[] s, int n)
 			{
 				throw new AssertionError();
 			}
 		},
-		RPAREN(-1, ")")
+		RPAREN(-1, ")", 0)
 		{
 			@Override
-			public void apply(Stack<Double> operands)
+			public int apply(double[] s, int n)
 			{
 				throw new AssertionError();
 			}
@@ -865,43 +1136,77 @@ public class ExprParser
 
 		private final String name;
 
+		private final int arity;
+
 		// -----------------------------------------------------------------
 
-		Token(int precedence, String name)
+		Token(int precedence, String name, int arity)
 		{
 			this.name = name;
 			this.precedence = precedence;
+			this.arity = arity;
 		}
 
 		// -----------------------------------------------------------------
 
-		public abstract void apply(Stack<Double> operands) throws ExprError;
+		/**
+		 * Applies the operator to the topmost operands of the stack.
+		 * 
+		 * @param s
+		 *            The operand stack.
+		 * @param n
+		 *            The number of operands on the stack. The stack holds at
+		 *            least {@link #getArity()} operands.
+		 * @return The number of operands on the stack afterwards.
+		 */
+		public abstract int apply(double[] s, int n) throws ExprError;
 
 		public int getPrecedence()
 		{
 			return precedence;
 		}
 
-		@Override
-		public String toString()
+		/**
+		 * The number of operands the operator consumes.
+		 */
+		public int getArity()
 		{
-			return name;
+			return arity;
 		}
 
-		// -----------------------------------------------------------------
+		/**
+		 * The change of the size of the operand stack when the operator is
+		 * applied.
+		 */
+		public int getStackEffect()
+		{
+			switch (arity)
+			{
+				case 0:
+					return 1;
+				case 2:
+					return -1;
+				default:
+					return 0;
+			}
+		}
 
-		private static void requireOneOp(Token op, Stack<Double> operands) throws ExprError
+		/**
+		 * The word or operator that denotes this token in an expression.
+		 */
+		public String getWord()
 		{
-			if (operands.isEmpty())
-				throw new ExprError("Missing operand for %s.", op.toString());
+			return name;
 		}
 
-		private static void requireTwoOps(Token op, Stack<Double> operands) throws ExprError
+		@Override
+		public String toString()
 		{
-			if (operands.size() < 2)
-				throw new ExprError("Missing operand for %s.", op.toString());
+			return name;
 		}
 
+		// -----------------------------------------------------------------
+
 		private static double round(double value, int digits)
 		{
 			return new BigDecimal(value)
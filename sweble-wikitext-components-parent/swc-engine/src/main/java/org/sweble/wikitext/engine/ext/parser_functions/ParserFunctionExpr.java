@@ -20,12 +20,12 @@ package org.sweble.wikitext.engine.ext.parser_functions;
 import java.util.List;
 
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.ext.parser_functions.ExprParser.ExprError;
 import org.sweble.wikitext.engine.nodes.EngineRtData;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class ParserFunctionExpr
 		extends
@@ -55,17 +55,9 @@ public class ParserFunctionExpr
 		if (args.size() < 1)
 			return nf().text("");
 
-		WtNode arg0 = frame.expand(args.get(0));
-
-		String expr = null;
-		try
-		{
-			expr = tu().astToText(arg0).trim();
-		}
-		catch (StringConversionException e)
-		{
+		String expr = new PfnArguments(frame, args).expandToTrimmedText(0);
+		if (expr == null)
 			return EngineRtData.set(nf().softError(pfn));
-		}
 
 		ExprParser p = new ExprParser();
 		try
@@ -17,13 +17,10 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
-import java.util.List;
-
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
-import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class ParserFunctionIf
 		extends
@@ -57,27 +54,16 @@ public class ParserFunctionIf
 	protected boolean evaluateCondition(
 			WtTemplate pfn,
 			ExpansionFrame frame,
-			List<? extends WtNode> args)
+			PfnArguments args)
 	{
-		WtNode test = frame.expand(args.get(0));
+		String testStr = args.expandToTrimmedText(0);
 
-		String testStr = null;
-		try
-		{
-			testStr = tu().astToText(test).trim();
-		}
-		catch (StringConversionException e)
-		{
-			// There are non-text elements. This means something was not 
-			// expanded, right? Let's say this evaluates to true since it won't 
-			// produce the empty string.
+		// If there are non-text elements something was not expanded, right? 
+		// Let's say this evaluates to true since it won't produce the empty 
+		// string.
+		if (testStr == null)
 			return true;
-		}
-
-		boolean eval = false;
-		if (testStr != null)
-			eval = !testStr.isEmpty();
 
-		return eval;
+		return !testStr.isEmpty();
 	}
 }
@@ -17,9 +17,8 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
-import java.util.List;
-
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngNode;
 import org.sweble.wikitext.parser.nodes.WtNode;
@@ -58,18 +57,20 @@ public class ParserFunctionIfError
 	protected boolean evaluateCondition(
 			WtTemplate pfn,
 			ExpansionFrame frame,
-			List<? extends WtNode> args)
+			PfnArguments args)
 	{
-		WtNode arg0 = frame.expand(args.get(0));
-
-		boolean hasError = searchErrorNode(arg0);
+		return searchErrorNode(args.expand(0));
+	}
 
+	@Override
+	protected WtNode evaluateDefault(
+			WtTemplate pfn,
+			ExpansionFrame frame,
+			PfnArguments args,
+			boolean hasError)
+	{
 		// If NO error occurred the test statement becomes the default result
-		setDefault(hasError ? nf().list() : arg0);
-		//		if (!eval)
-		//			setDefault(arg0);
-
-		return hasError;
+		return hasError ? nf().list() : args.expand(0);
 	}
 
 	private static boolean searchErrorNode(WtNode arg0)
@@ -17,15 +17,12 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
-import java.util.List;
-
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
-import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class ParserFunctionIfExist
 		extends
@@ -59,24 +56,20 @@ public class ParserFunctionIfExist
 	protected boolean evaluateCondition(
 			WtTemplate pfn,
 			ExpansionFrame frame,
-			List<? extends WtNode> args)
+			PfnArguments args)
 	{
-		WtNode test = frame.expand(args.get(0));
+		// We have to convert the entire argument to a string to create a page 
+		// name from it.
+		String testStr = args.expandToTrimmedText(0);
+		if (testStr == null)
+			return false;
 
-		String testStr = null;
 		try
 		{
-			testStr = tu().astToText(test).trim();
-
 			PageTitle pageTitle = PageTitle.make(frame.getWikiConfig(), testStr);
 
 			return frame.existsPage(pageTitle);
 		}
-		catch (StringConversionException e1)
-		{
-			// We have to convert the entire argument to a string to create a page name from it.
-			return false;
-		}
 		catch (LinkTargetException e)
 		{
 			// A page with an illegal name cannot exist.
@@ -17,14 +17,11 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
-import java.util.List;
-
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.ext.parser_functions.ExprParser.ExprError;
-import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class ParserFunctionIfExpr
 		extends
@@ -58,22 +55,12 @@ public class ParserFunctionIfExpr
 	protected boolean evaluateCondition(
 			WtTemplate pfn,
 			ExpansionFrame frame,
-			List<? extends WtNode> args)
+			PfnArguments args)
 	{
-		WtNode test = frame.expand(args.get(0));
-
-		String expr = null;
-		try
-		{
-			expr = tu().astToText(test).trim();
-		}
-		catch (StringConversionException e)
-		{
-			// Invalid expressions evaluate to false
-			return false;
-		}
+		String expr = args.expandToTrimmedText(0);
 
-		if (expr.isEmpty())
+		// Invalid expressions evaluate to false
+		if (expr == null || expr.isEmpty())
 			return false;
 
 		ExprParser p = new ExprParser();
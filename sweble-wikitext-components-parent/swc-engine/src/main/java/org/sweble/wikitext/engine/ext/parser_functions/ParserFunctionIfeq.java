@@ -17,13 +17,10 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
-import java.util.List;
-
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
-import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class ParserFunctionIfeq
 		extends
@@ -57,22 +54,12 @@ public class ParserFunctionIfeq
 	protected boolean evaluateCondition(
 			WtTemplate pfn,
 			ExpansionFrame frame,
-			List<? extends WtNode> args)
+			PfnArguments args)
 	{
-		WtNode arg0 = frame.expand(args.get(0));
-		WtNode arg1 = frame.expand(args.get(1));
-
-		String a = null;
-		String b = null;
-		try
-		{
-			a = tu().astToText(arg0).trim();
-			b = tu().astToText(arg1).trim();
-		}
-		catch (StringConversionException e1)
-		{
-			// FIXME: Do recursive equality check
-		}
+		// FIXME: Do recursive equality check if an argument cannot be 
+		//        converted to text.
+		String a = args.expandToTrimmedText(0);
+		String b = (a != null) ? args.expandToTrimmedText(1) : null;
 
 		boolean eval = false;
 		if (a != null && b != null)
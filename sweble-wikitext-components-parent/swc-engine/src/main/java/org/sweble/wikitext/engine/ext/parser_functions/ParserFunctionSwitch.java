@@ -17,10 +17,10 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
-import java.util.List;
-
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.utils.BoundedCache;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtNodeList;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
@@ -33,6 +33,12 @@ public class ParserFunctionSwitch
 {
 	private static final long serialVersionUID = 1L;
 
+	private static final int COMPILED_SWITCHES_CACHE_CAPACITY = 512;
+
+	private transient volatile BoundedCache<String, CompiledSwitch> compiledSwitches;
+
+	// =========================================================================
+
 	/**
 	 * For un-marshaling only.
 	 */
@@ -50,27 +56,61 @@ public class ParserFunctionSwitch
 	protected WtNode evaluate(
 			WtTemplate pfn,
 			ExpansionFrame frame,
-			List<? extends WtNode> args)
+			PfnArguments args)
 	{
 		if (args.size() < 1)
 			return nf().list();
 
+		String signature = CompiledSwitch.signature(args.getUnexpanded());
+		if (signature != null)
+			return new Evaluator(frame, args).evaluate(getCompiledSwitch(signature));
+
 		return new Evaluator(frame, args).evaluate();
 	}
 
+	private CompiledSwitch getCompiledSwitch(String signature)
+	{
+		BoundedCache<String, CompiledSwitch> cache = compiledSwitches;
+		if (cache == null)
+		{
+			synchronized (this)
+			{
+				cache = compiledSwitches;
+				if (cache == null)
+				{
+					compiledSwitches = cache =
+							new BoundedCache<String, CompiledSwitch>(COMPILED_SWITCHES_CACHE_CAPACITY);
+				}
+			}
+		}
+
+		CompiledSwitch compiled = cache.get(signature);
+		if (compiled == null)
+			compiled = cache.put(signature, CompiledSwitch.compile(signature));
+		return compiled;
+	}
+
+	// =========================================================================
+
 	private final class Evaluator
 	{
 		private ExpansionFrame frame;
 
-		private List<? extends WtNode> args;
+		private PfnArguments args;
 
 		private WtNodeList after;
 
 		private WtNodeList before;
 
+		private boolean beforeExpanded;
+
 		private WtNode result;
 
-		public Evaluator(ExpansionFrame frame, List<? extends WtNode> args)
+		private String cmp;
+
+		private Double icmp;
+
+		public Evaluator(ExpansionFrame frame, PfnArguments args)
 		{
 			this.frame = frame;
 			this.args = args;
@@ -78,20 +118,7 @@ public class ParserFunctionSwitch
 
 		public WtNode evaluate()
 		{
-			WtNode arg0 = frame.expand(args.get(0));
-
-			String cmp = null;
-			Double icmp = null;
-			try
-			{
-				cmp = tu().astToText(arg0).trim();
-
-				icmp = strToDbl(cmp);
-			}
-			catch (StringConversionException e)
-			{
-				// FIXME: Do recursive equality check
-			}
+			expandTestString();
 
 			boolean found = false;
 
@@ -100,18 +127,7 @@ public class ParserFunctionSwitch
 			{
 				// Process each argument of the switch (after the test string)
 
-				after = null;
-				before = nf().list();
-				if (args.get(i).isNodeType(WtNode.NT_NODE_LIST))
-				{
-					splitNodeListAtEquals(i);
-				}
-				else
-				{
-					WtNode c = args.get(i);
-					if (c.isNodeType(WtNode.NT_TEXT))
-						splitTextAtEquals(c);
-				}
+				split(i);
 
 				// Now before holds the stuff in front of the "=" and after
 				// contains everything after the "=". If no "=" was found, 
@@ -141,7 +157,92 @@ public class ParserFunctionSwitch
 				result = before;
 			}
 
-			return result;
+			return expandResult();
+		}
+
+		/**
+		 * Evaluates a switch whose case labels are all static text. Yields
+		 * the same result as {@link #evaluate()} without expanding and
+		 * splitting every case.
+		 */
+		public WtNode evaluate(CompiledSwitch compiled)
+		{
+			expandTestString();
+
+			int match = compiled.find(cmp, icmp);
+			if (match != -1)
+			{
+				int i = compiled.getNextWithEquals(match);
+				if (i != -1)
+				{
+					split(i);
+					result = after;
+					return expandResult();
+				}
+			}
+
+			// Either nothing matched or the matching case and all cases after
+			// it have no value. Then we fall back to the last #default case
+			// (or the implicit default).
+
+			result = null;
+			int i = compiled.getLastDefault((match != -1) ? match : args.size());
+			if (i != -1)
+			{
+				split(i);
+				result = after;
+			}
+
+			if (!compiled.isLastHasEquals())
+			{
+				split(args.size() - 1);
+
+				// If nothing matched a dynamic implicit default that expands
+				// to "#default" resets the result.
+				if (result != null && match == -1 && compiled.isLastDynamic())
+					compare(null, null);
+
+				if (result == null)
+					result = before;
+			}
+
+			return expandResult();
+		}
+
+		/**
+		 * Only the selected case value gets expanded. A label has already
+		 * been expanded if it was compared to the test string.
+		 */
+		private WtNode expandResult()
+		{
+			if (result == null || (result == before && beforeExpanded))
+				return result;
+			return frame.expand(result);
+		}
+
+		private void expandTestString()
+		{
+			// FIXME: Do recursive equality check if the test string cannot
+			//        be converted to text.
+			cmp = args.expandToTrimmedText(0);
+			icmp = (cmp != null) ? strToDbl(cmp) : null;
+		}
+
+		private void split(int i)
+		{
+			after = null;
+			before = nf().list();
+			beforeExpanded = false;
+			if (args.get(i).isNodeType(WtNode.NT_NODE_LIST))
+			{
+				splitNodeListAtEquals(i);
+			}
+			else
+			{
+				WtNode c = args.get(i);
+				if (c.isNodeType(WtNode.NT_TEXT))
+					splitTextAtEquals(c);
+			}
 		}
 
 		private boolean compare(String cmp, Double icmp)
@@ -153,6 +254,7 @@ public class ParserFunctionSwitch
 			// set the result to the $after part.
 
 			before = (WtNodeList) frame.expand(before);
+			beforeExpanded = true;
 
 			String cmp2;
 			try
@@ -183,14 +285,7 @@ public class ParserFunctionSwitch
 
 		private Double strToDbl(String str)
 		{
-			try
-			{
-				return Double.parseDouble(str);
-			}
-			catch (NumberFormatException e)
-			{
-				return null;
-			}
+			return CompiledSwitch.strToDbl(str);
 		}
 
 		private void splitNodeListAtEquals(int i)
@@ -17,20 +17,27 @@
 
 package org.sweble.wikitext.engine.ext.parser_functions;
 
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.temporal.WeekFields;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.TimeZone;
 
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngSoftErrorNode;
 import org.sweble.wikitext.engine.nodes.EngineRtData;
+import org.sweble.wikitext.engine.utils.BoundedCache;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 import org.sweble.wikitext.engine.utils.StringToDateTimeConverter;
 
 import de.fau.cs.osr.utils.StringTools;
@@ -39,6 +46,11 @@ import de.fau.cs.osr.utils.StringTools;
  * Parser function for the <code>#time</code> template. This template works only
  * on the time base of UTC+0 (GMT). For functions depending on the local
  * time of the client, or a predefined time zone, see <code>#timel</code>.
+ * 
+ * Without a timestamp argument the current time is taken from the runtime
+ * info of the expansion frame. It is frozen for the whole expansion run, so
+ * all invocations on a page agree on the current time. Format strings are
+ * compiled once and cached, see {@link CompiledTimeFormat}.
  *
  * @see {@link ParserFunctionTimeLocal}
  */
@@ -48,6 +60,35 @@ public class ParserFunctionTime
 {
 	private static final long serialVersionUID = 1L;
 
+	private static final int FORMAT_CACHE_CAPACITY = 256;
+
+	/** Longer format strings are compiled but not cached. */
+	private static final int MAX_CACHED_FORMAT_LENGTH = 256;
+
+	private static final BoundedCache<String, CompiledTimeFormat> FORMATS =
+			new BoundedCache<String, CompiledTimeFormat>(FORMAT_CACHE_CAPACITY);
+
+	private static final String UTC_ID = "UTC";
+
+	private static final ZoneId UTC = ZoneId.of(UTC_ID);
+
+	/**
+	 * Setting up a converter compiles a bunch of date formats and patterns.
+	 * Converters are not thread-safe, therefore each thread keeps one
+	 * converter per time zone.
+	 */
+	private static final ThreadLocal<Map<String, StringToDateTimeConverter>> CONVERTERS =
+			new ThreadLocal<Map<String, StringToDateTimeConverter>>()
+			{
+				@Override
+				protected Map<String, StringToDateTimeConverter> initialValue()
+				{
+					return new HashMap<String, StringToDateTimeConverter>();
+				}
+			};
+
+	// =========================================================================
+
 	/**
 	 * For un-marshaling only.
 	 */
@@ -70,9 +111,11 @@ public class ParserFunctionTime
 		if (args.size() < 1)
 			return pfn;
 
+		PfnArguments pfnArgs = new PfnArguments(frame, args);
+
 		// ---- format
 
-		String format = expandArgToString(frame, args, 0);
+		String format = expandArgToString(pfnArgs, 0);
 		if (format == null)
 			return error("Cannot convert format argument to string!");
 
@@ -81,7 +124,7 @@ public class ParserFunctionTime
 		String languageTag = null;
 		if (args.size() >= 3)
 		{
-			languageTag = expandArgToString(frame, args, 2);
+			languageTag = expandArgToString(pfnArgs, 2);
 			if (languageTag == null)
 				return error("Cannot convert language argument to string!");
 		}
@@ -103,33 +146,40 @@ public class ParserFunctionTime
 
 		// ---- timestamp
 
-		Calendar timestamp = Calendar.getInstance(TimeZone.getTimeZone("UTC"), locale); 
-		timestamp.set(Calendar.DST_OFFSET, 0);
+		long timeInMillis;
+		Date argumentDate = null;
 
 		if (args.size() >= 2)
 		{
-			String timestampStr = expandArgToString(frame, args, 1);
+			String timestampStr = expandArgToString(pfnArgs, 1);
 			if (timestampStr == null)
 				return error("Cannot convert timestamp argument to string!");
 
 			if (!timestampStr.isEmpty())
 			{
-				StringToDateTimeConverter conv = new StringToDateTimeConverter();
-				Date argumentDate = conv.convertString(timestampStr);
-				if (argumentDate != null)
-				{
-					timestamp.setTime(argumentDate);
-				}
-				else
+				argumentDate = parseTimestamp(timestampStr, null);
+				if (argumentDate == null)
 				{
 					return notYetImplemented("Cannot handle non-empty timestamp argument!");
 				}
 			}
 		}
 
+		if (argumentDate != null)
+		{
+			timeInMillis = argumentDate.getTime();
+		}
+		else
+		{
+			timeInMillis = frame.getRuntimeInfo().getTimeInMillis();
+		}
+
 		// ---- let's format ourselves a date...
 
-		return nf().text(format(format, timestamp, locale));
+		ZonedDateTime timestamp =
+				ZonedDateTime.ofInstant(Instant.ofEpochMilli(timeInMillis), UTC);
+
+		return nf().text(compile(format).format(timestamp, UTC_ID, locale, null));
 	}
 
 	/**
@@ -149,412 +199,73 @@ public class ParserFunctionTime
 			final Calendar timestamp,
 			final Locale locale)
 	{
-		StringBuilder sb = new StringBuilder();
-		boolean isCharInComment = false;
-		int tmp;
-
-		for (int i = 0; i < format.length(); ++i)
-		{
-			char ch = format.charAt(i);
-
-			if (ch == '"')
-			{
-				isCharInComment = !isCharInComment;
-				continue;
-			}
+		TimeZone timeZone = timestamp.getTimeZone();
 
-			if (isCharInComment)
-			{
-				// character is part of a comment, skip interpretation
-				sb.append(ch);
-				continue;
-			}
+		ZonedDateTime dateTime = ZonedDateTime.ofInstant(
+				Instant.ofEpochMilli(timestamp.getTimeInMillis()),
+				timeZone.toZoneId());
 
-			switch (ch)
-			{
-				case 'Y': // 4-digit year
-					sb.append(timestamp.get(Calendar.YEAR));
-					break;
-
-				case 'y': // 2-digit year
-					sb.append(timestamp.get(Calendar.YEAR) % 100);
-					break;
-
-				case 'L': // '1' if it's a leap year, '0' if not
-					GregorianCalendar gregCal = new GregorianCalendar(locale);
-					if (gregCal.isLeapYear(timestamp.get(Calendar.YEAR)))
-					{
-						sb.append('1');
-					} else
-					{
-						sb.append('0');
-					}
-					break;
-
-				case 'n': // month index, not zero-padded
-					sb.append(timestamp.get(Calendar.MONTH) + 1);
-					break;
-
-				case 'm': // month index, zero-padded
-					tmp = timestamp.get(Calendar.MONTH) + 1;
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 'M': // abbreviation of the month name
-					sb.append(timestamp.getDisplayName(
-							Calendar.MONTH,
-							Calendar.SHORT,
-							locale));
-					break;
-
-				case 'F': // full month name
-					sb.append(timestamp.getDisplayName(
-							Calendar.MONTH,
-							Calendar.LONG,
-							locale));
-					break;
-
-				case 'W': // ISO 8601 week number, zero-padded.
-					tmp = timestamp.get(Calendar.WEEK_OF_YEAR);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 'j': // day of the month, not zero-padded
-					sb.append(timestamp.get(Calendar.DAY_OF_MONTH));
-					break;
-
-				case 'd': // day of the month, zero-padded
-					tmp = timestamp.get(Calendar.DAY_OF_MONTH);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 'z': // day of the year (January 1 = 0)
-					sb.append(timestamp.get(Calendar.DAY_OF_YEAR) - 1);
-					break;
-
-				case 'D': // abbreviation for the day of the week
-					sb.append(timestamp.getDisplayName(
-							Calendar.DAY_OF_WEEK,
-							Calendar.SHORT,
-							locale));
-					break;
-
-				case 'l': // the full weekday name
-					sb.append(timestamp.getDisplayName(
-							Calendar.DAY_OF_WEEK,
-							Calendar.LONG,
-							locale));
-					break;
-
-				case 'N': // ISO 8601 day of the week (Monday = 1, Sunday = 7)
-					sb.append(((timestamp.get(Calendar.DAY_OF_WEEK) + 5) % 7) + 1);
-					break;
-
-				case 'w': // Number of the day of the week (Sunday = 0, Saturday = 6)
-					sb.append(timestamp.get(Calendar.DAY_OF_WEEK) - 1);
-					break;
-
-				case 'a': // am, pm
-					if (timestamp.get(Calendar.AM_PM) == Calendar.AM)
-					{
-						sb.append("am");
-					} else
-					{
-						sb.append("pm");
-					}
-					break;
-
-				case 'A': // AM, PM
-					if (timestamp.get(Calendar.AM_PM) == Calendar.AM)
-					{
-						sb.append("AM");
-					} else
-					{
-						sb.append("PM");
-					}
-					break;
-
-				case 'g': // hour in 12-hour format, not zero-padded
-					sb.append(timestamp.get(Calendar.HOUR));
-					break;
-
-				case 'h': // hour in 12-hour format, zero-padded
-					tmp = timestamp.get(Calendar.HOUR);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 'G': // hour in 24-hour format, not zero-padded
-					sb.append(timestamp.get(Calendar.HOUR_OF_DAY));
-					break;
-
-				case 'H': // hour in 24-hour format, zero-padded
-					tmp = timestamp.get(Calendar.HOUR_OF_DAY);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 'i': // minutes past the hour, zero-padded
-					tmp = timestamp.get(Calendar.MINUTE);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 's': // seconds past the minute, zero-padded
-					tmp = timestamp.get(Calendar.SECOND);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp);
-					break;
-
-				case 'U': // Unix time
-					long timeUtc = timestamp.getTimeInMillis();
-					timeUtc += timestamp.getTimeZone().getOffset(timeUtc);
-					sb.append(timeUtc / 1000L);
-					break;
-
-				case 'e': // time zone identifier
-					sb.append(timestamp.getTimeZone().getID());
-					break;
-
-				case 'I': // '1' if Daylight Saving Time if currently used, otherwise '0'
-					sb.append(timestamp.get(Calendar.DST_OFFSET) != 0 ? '1' : '0');
-					break;
-
-				case 'O': // difference to Greenwich time (GMT)
-					sb.append(localOffsetAsString(timestamp));
-					break;
-
-				case 'P': // difference to Greenwich time (GMT), with colon
-					sb.append(localOffsetAsStringWithColon(timestamp));
-					break;
-
-				case 'Z': // time zone offset in seconds
-					sb.append(timestamp.getTimeZone()
-							.getOffset(timestamp.getTimeInMillis()) / 1000L);
-					break;
-
-				case 'T': // time zone abbreviation
-					sb.append(timestamp.getTimeZone().getID());
-					break;
-
-				case 't': // number of days in the current month
-					sb.append(timestamp.getActualMaximum(Calendar.DAY_OF_MONTH));
-					break;
-
-				case 'c': // ISO 8601 formatted date, equivalent to Y-m-d"T"H:i:s+00:00
-					sb.append(timestamp.get(Calendar.YEAR)).append('-');
-
-					tmp = timestamp.get(Calendar.MONTH) + 1;
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp).append('-');
-
-					tmp = timestamp.get(Calendar.DAY_OF_MONTH);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp).append('T');
-
-					tmp = timestamp.get(Calendar.HOUR_OF_DAY);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp).append(':');
-
-					tmp = timestamp.get(Calendar.MINUTE);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp).append(':');
-
-					tmp = timestamp.get(Calendar.SECOND);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp)
-							.append(localOffsetAsStringWithColon(timestamp));
-					break;
-
-				case 'r': // RFC 5322 formatted date, equivalent to D, j M Y H:i:s +0000
-					sb.append(timestamp.getDisplayName(
-							Calendar.DAY_OF_WEEK,
-							Calendar.SHORT,
-							Locale.US)) // no i18n
-							.append(", ")
-							.append(timestamp.get(Calendar.DAY_OF_MONTH))
-							.append(' ')
-							.append(timestamp.getDisplayName(
-									Calendar.MONTH,
-									Calendar.SHORT,
-									Locale.US)) // no i18n
-							.append(' ')
-							.append(timestamp.get(Calendar.YEAR))
-							.append(' ');
-
-					tmp = timestamp.get(Calendar.HOUR_OF_DAY);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp).append(':');
-
-					tmp = timestamp.get(Calendar.MINUTE);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp).append(':');
-
-					tmp = timestamp.get(Calendar.SECOND);
-					if (tmp < 10)
-					{
-						sb.append('0');
-					}
-					sb.append(tmp)
-							.append(' ')
-							.append(localOffsetAsString(timestamp));
-					break;
-
-				default:
-					sb.append(ch);
-					break;
-			}
-		}
+		WeekFields weekFields = WeekFields.of(
+				toDayOfWeek(timestamp.getFirstDayOfWeek()),
+				timestamp.getMinimalDaysInFirstWeek());
 
-		return sb.toString();
+		return compile(format).format(dateTime, timeZone.getID(), locale, weekFields);
 	}
 
-	/**
-	 * Gathers the local offset from the given timestamp and returns it as a
-	 * formated string according to the RFC 5322 specification. The offset may
-	 * also contain the Daylight Saving Time in dependence of the corresponding
-	 * time zone.
-	 *
-	 * @param timestamp The timestamp containing the local time offset.
-	 * @return A string in the form of "+/-hhmm" (e.g. "+0100).
-	 */
-	private static String localOffsetAsString(final Calendar timestamp)
-	{
-		StringBuilder sb = new StringBuilder();
-		int offset = timestamp.getTimeZone().getOffset(timestamp.getTimeInMillis());
-		offset = offset / 1000 / 60; // in minutes
-		int hours = offset / 60;
-		int minutes = offset % 60;
-
-		if (offset < 0)
-		{
-			sb.append('-');
-		} else
-		{
-			sb.append('+');
-		}
-
-		hours = Math.abs(hours);
-		if (hours < 10)
-		{
-			sb.append('0');
-		}
-		sb.append(hours);
+	// =========================================================================
 
-		minutes = Math.abs(minutes);
-		if (minutes < 10)
-		{
-			sb.append('0');
-		}
-		sb.append(minutes);
+	static CompiledTimeFormat compile(String format)
+	{
+		if (format.length() > MAX_CACHED_FORMAT_LENGTH)
+			return CompiledTimeFormat.compile(format);
 
-		return sb.toString();
+		CompiledTimeFormat compiled = FORMATS.get(format);
+		if (compiled == null)
+			compiled = FORMATS.put(format, CompiledTimeFormat.compile(format));
+		return compiled;
 	}
 
 	/**
-	 * Gathers the local offset from the given timestamp and returns it as a
-	 * formated string. The offset may also contain the Daylight Saving Time in
-	 * dependence of the corresponding time zone.
-	 *
-	 * @param timestamp The timestamp containing the local time offset.
-	 * @return A string in the form of "+/-hh:mm" (e.g. "+01:00).
+	 * Converts a timestamp argument using a converter of the current thread.
+	 * 
+	 * @param calendar
+	 *            Determines the time zone of the converter. If
+	 *            <code>null</code> the converter works on UTC.
 	 */
-	private static String localOffsetAsStringWithColon(final Calendar timestamp)
+	static Date parseTimestamp(String timestampStr, Calendar calendar)
 	{
-		StringBuilder sb = new StringBuilder();
-		int offset = timestamp.getTimeZone().getOffset(timestamp.getTimeInMillis());
-		offset = offset / 1000 / 60; // in minutes
-		int hours = offset / 60;
-		int minutes = offset % 60;
+		String zoneId = (calendar != null) ? calendar.getTimeZone().getID() : null;
 
-		if (offset < 0)
+		Map<String, StringToDateTimeConverter> converters = CONVERTERS.get();
+		StringToDateTimeConverter conv = converters.get(zoneId);
+		if (conv == null)
 		{
-			sb.append('-');
-		} else
-		{
-			sb.append('+');
-		}
-
-		hours = Math.abs(hours);
-		if (hours < 10)
-		{
-			sb.append('0');
-		}
-		sb.append(hours).append(':');
-
-		minutes = Math.abs(minutes);
-		if (minutes < 10)
-		{
-			sb.append('0');
+			if (calendar != null)
+			{
+				conv = new StringToDateTimeConverter((Calendar) calendar.clone());
+			}
+			else
+			{
+				conv = new StringToDateTimeConverter();
+			}
+			converters.put(zoneId, conv);
 		}
-		sb.append(minutes);
 
-		return sb.toString();
+		return conv.convertString(timestampStr);
 	}
 
-	private String expandArgToString(
-			ExpansionFrame preprocessorFrame,
-			List<? extends WtNode> args,
-			final int index)
+	private static DayOfWeek toDayOfWeek(int calendarDayOfWeek)
 	{
-		WtNode arg = preprocessorFrame.expand(args.get(index));
+		// Calendar.SUNDAY = 1, ..., Calendar.SATURDAY = 7
+		return DayOfWeek.SUNDAY.plus(calendarDayOfWeek - Calendar.SUNDAY);
+	}
 
-		tu().trim(arg);
+	// =========================================================================
 
-		String format = null;
-		try
-		{
-			format = tu().astToText(arg).trim();
-		}
-		catch (StringConversionException e1)
-		{
-		}
-		return format;
+	private String expandArgToString(PfnArguments args, final int index)
+	{
+		args.expandAndTrim(index);
+		return args.expandToTrimmedText(index);
 	}
 
 	private EngSoftErrorNode error(String msg)
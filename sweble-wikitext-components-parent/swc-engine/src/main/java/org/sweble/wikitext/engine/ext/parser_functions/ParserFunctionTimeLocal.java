@@ -23,13 +23,12 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.EngSoftErrorNode;
 import org.sweble.wikitext.engine.nodes.EngineRtData;
-import org.sweble.wikitext.engine.utils.StringToDateTimeConverter;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 /**
  *
@@ -61,9 +60,11 @@ public class ParserFunctionTimeLocal
 		if (args.size() < 1)
 			return pfn;
 
+		PfnArguments pfnArgs = new PfnArguments(frame, args);
+
 		// ---- format
 
-		String format = expandArgToString(frame, args, 0);
+		String format = expandArgToString(pfnArgs, 0);
 		if (format == null)
 			return error("Cannot convert format argument to string!");
 
@@ -72,7 +73,7 @@ public class ParserFunctionTimeLocal
 		String languageTag = null;
 		if (args.size() >= 3)
 		{
-			languageTag = expandArgToString(frame, args, 2);
+			languageTag = expandArgToString(pfnArgs, 2);
 			if (languageTag == null)
 				return error("Cannot convert language argument to string!");
 		}
@@ -95,18 +96,17 @@ public class ParserFunctionTimeLocal
 
 		// ---- timestamp
 
-		Calendar timestamp = getWikiConfig().getRuntimeInfo().getDateAndTime(locale);
+		Calendar timestamp = frame.getRuntimeInfo().getDateAndTime(locale);
 
 		if (args.size() >= 2)
 		{
-			String timestampStr = expandArgToString(frame, args, 1);
+			String timestampStr = expandArgToString(pfnArgs, 1);
 			if (timestampStr == null)
 				return error("Cannot convert timestamp argument to string!");
 
 			if (!timestampStr.isEmpty())
 			{
-				StringToDateTimeConverter conv = new StringToDateTimeConverter(timestamp);
-				Date argumentDate = conv.convertString(timestampStr);
+				Date argumentDate = ParserFunctionTime.parseTimestamp(timestampStr, timestamp);
 				if (argumentDate != null)
 				{
 					timestamp.setTime(argumentDate);
@@ -123,24 +123,10 @@ public class ParserFunctionTimeLocal
 		return nf().text(ParserFunctionTime.format(format, timestamp, locale));
 	}
 
-	private String expandArgToString(
-		ExpansionFrame preprocessorFrame,
-		List<? extends WtNode> args,
-		final int index)
+	private String expandArgToString(PfnArguments args, final int index)
 	{
-		WtNode arg = preprocessorFrame.expand(args.get(index));
-
-		tu().trim(arg);
-
-		String format = null;
-		try
-		{
-			format = tu().astToText(arg).trim();
-		}
-		catch (StringConversionException e1)
-		{
-		}
-		return format;
+		args.expandAndTrim(index);
+		return args.expandToTrimmedText(index);
 	}
 
 	private EngSoftErrorNode error(String msg)
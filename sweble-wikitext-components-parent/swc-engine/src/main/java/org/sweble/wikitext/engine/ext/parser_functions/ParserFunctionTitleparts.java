@@ -23,11 +23,11 @@ import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
 import org.sweble.wikitext.parser.parser.LinkTargetException;
-import org.sweble.wikitext.parser.utils.StringConversionException;
 
 public class ParserFunctionTitleparts
 		extends
@@ -57,51 +57,56 @@ public class ParserFunctionTitleparts
 		if (args.size() < 1)
 			return pfn;
 
-		WtNode arg0 = frame.expand(args.get(0));
+		PfnArguments pfnArgs = new PfnArguments(frame, args);
+
+		WtNode arg0 = pfnArgs.expand(0);
 
 		if (args.size() < 2)
 			return arg0;
 
+		// We have to convert the entire argument to a string to create a page 
+		// name from it.
+		String titleStr = pfnArgs.expandToTrimmedText(0);
+		if (titleStr == null)
+			return pfn;
+
 		PageTitle pageTitle;
+		try
+		{
+			pageTitle = PageTitle.make(frame.getWikiConfig(), titleStr);
+		}
+		catch (LinkTargetException e)
+		{
+			// A page with an illegal name cannot be split properly.
+			return pfn;
+		}
+
 		Integer partCount = null;
 		Integer firstPart = null;
+
+		String countStr = pfnArgs.expandToTrimmedText(1);
+		if (countStr == null)
+			return pfn;
 		try
 		{
-			String titleStr = tu().astToText(arg0).trim();
-			pageTitle = PageTitle.make(frame.getWikiConfig(), titleStr);
+			partCount = Integer.parseInt(countStr);
+		}
+		catch (NumberFormatException e)
+		{
+		}
 
-			WtNode arg1 = frame.expand(args.get(1));
-			String countStr = tu().astToText(arg1).trim();
+		if (args.size() > 2)
+		{
+			String firstStr = pfnArgs.expandToTrimmedText(2);
+			if (firstStr == null)
+				return pfn;
 			try
 			{
-				partCount = Integer.parseInt(countStr);
+				firstPart = Integer.parseInt(firstStr);
 			}
 			catch (NumberFormatException e)
 			{
 			}
-
-			if (args.size() > 2)
-			{
-				WtNode arg2 = frame.expand(args.get(2));
-				String firstStr = tu().astToText(arg2).trim();
-				try
-				{
-					firstPart = Integer.parseInt(firstStr);
-				}
-				catch (NumberFormatException e)
-				{
-				}
-			}
-		}
-		catch (StringConversionException ee)
-		{
-			// We have to convert the entire argument to a string to create a page name from it.
-			return pfn;
-		}
-		catch (LinkTargetException e)
-		{
-			// A page with an illegal name cannot be split properly.
-			return pfn;
 		}
 
 		String title = pageTitle.getTitle();
@@ -22,6 +22,7 @@ import java.util.List;
 import org.sweble.wikitext.engine.ExpansionFrame;
 import org.sweble.wikitext.engine.ParserFunctionBase;
 import org.sweble.wikitext.engine.PfnArgumentMode;
+import org.sweble.wikitext.engine.PfnArguments;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtTemplate;
@@ -106,13 +107,15 @@ public abstract class ParserFunctionsExtPfn
 				ExpansionFrame frame,
 				List<? extends WtNode> args)
 		{
-			WtNode result = evaluate((WtTemplate) pfn, frame, args);
+			WtNode result = evaluate(pfn, frame, new PfnArguments(frame, args));
 
-			// All control flow statements expand and trim their results.
+			// All control flow statements expand and trim their results. The
+			// arguments are expanded on demand, only the arguments that were
+			// actually looked at have been expanded.
 
 			if (result != null)
 			{
-				return tu().trim(frame.expand(result));
+				return tu().trim(result);
 			}
 			else
 			{
@@ -120,10 +123,14 @@ public abstract class ParserFunctionsExtPfn
 			}
 		}
 
+		/**
+		 * @return The expanded result of the statement or <code>null</code> if
+		 *         the statement yields nothing.
+		 */
 		protected abstract WtNode evaluate(
 				WtTemplate pfn,
 				ExpansionFrame frame,
-				List<? extends WtNode> args);
+				PfnArguments args);
 	}
 
 	// =========================================================================
@@ -136,8 +143,6 @@ public abstract class ParserFunctionsExtPfn
 
 		private final boolean hasDefault;
 
-		private WtNode defaultValue;
-
 		private final int thenArgIndex;
 
 		/**
@@ -190,38 +195,39 @@ public abstract class ParserFunctionsExtPfn
 		protected WtNode evaluate(
 				WtTemplate pfn,
 				ExpansionFrame frame,
-				List<? extends WtNode> args)
+				PfnArguments args)
 		{
 			if (args.size() <= (hasDefault ? thenArgIndex - 1 : thenArgIndex))
 				return nf().text("");
 
 			boolean cond = evaluateCondition(pfn, frame, args);
 
-			WtNode result = defaultValue;
-			if (cond)
-			{
-				if (args.size() > thenArgIndex)
-					result = args.get(thenArgIndex);
-			}
-			else
-			{
-				int elseArgIndex = thenArgIndex + 1;
-
-				if (args.size() > elseArgIndex)
-					result = args.get(elseArgIndex);
-			}
+			// Only the branch that was taken gets expanded
+			int resultArgIndex = cond ? thenArgIndex : thenArgIndex + 1;
+			if (args.size() > resultArgIndex)
+				return args.expand(resultArgIndex);
 
-			return result;
+			return evaluateDefault(pfn, frame, args, cond);
 		}
 
-		protected void setDefault(WtNode defaultValue)
+		/**
+		 * Called if the branch that was taken was not given.
+		 * 
+		 * @return The expanded default result or <code>null</code> if the
+		 *         statement has no default result.
+		 */
+		protected WtNode evaluateDefault(
+				WtTemplate pfn,
+				ExpansionFrame frame,
+				PfnArguments args,
+				boolean cond)
 		{
-			this.defaultValue = defaultValue;
+			return null;
 		}
 
 		protected abstract boolean evaluateCondition(
 				WtTemplate pfn,
 				ExpansionFrame frame,
-				List<? extends WtNode> args);
+				PfnArguments args);
 	}
 }
@@ -31,6 +31,18 @@ public abstract class EngLogContainer
 {
 	private static final long serialVersionUID = -1365120120054529928L;
 
+	// =========================================================================
+
+	/**
+	 * Log containers are lists but must not be merged into the list they are
+	 * added to like a plain node list would be.
+	 */
+	@Override
+	public int getNodeType()
+	{
+		return EngNode.NT_LOG_CONTAINER;
+	}
+
 	// =========================================================================
 	// Properties
 
@@ -46,10 +58,42 @@ public abstract class EngLogContainer
 		this.timeNeeded = timeNeeded;
 	}
 
+	private Long cpuTimeNeeded;
+
+	/**
+	 * The CPU time in nanoseconds the current thread spent in this pass or
+	 * resolution. Only recorded if profiling is enabled.
+	 */
+	public final Long getCpuTimeNeeded()
+	{
+		return this.cpuTimeNeeded;
+	}
+
+	public final void setCpuTimeNeeded(Long cpuTimeNeeded)
+	{
+		this.cpuTimeNeeded = cpuTimeNeeded;
+	}
+
+	private Long bytesAllocated;
+
+	/**
+	 * The number of bytes the current thread allocated in this pass or
+	 * resolution. Only recorded if profiling is enabled.
+	 */
+	public final Long getBytesAllocated()
+	{
+		return this.bytesAllocated;
+	}
+
+	public final void setBytesAllocated(Long bytesAllocated)
+	{
+		this.bytesAllocated = bytesAllocated;
+	}
+
 	@Override
 	public int getPropertyCount()
 	{
-		return 1;
+		return 3;
 	}
 
 	@Override
@@ -75,6 +119,10 @@ public abstract class EngLogContainer
 			{
 				case 0:
 					return "timeNeeded";
+				case 1:
+					return "cpuTimeNeeded";
+				case 2:
+					return "bytesAllocated";
 
 				default:
 					throw new IndexOutOfBoundsException();
@@ -88,6 +136,10 @@ public abstract class EngLogContainer
 			{
 				case 0:
 					return EngLogContainer.this.getTimeNeeded();
+				case 1:
+					return EngLogContainer.this.getCpuTimeNeeded();
+				case 2:
+					return EngLogContainer.this.getBytesAllocated();
 
 				default:
 					throw new IndexOutOfBoundsException();
@@ -105,6 +157,18 @@ public abstract class EngLogContainer
 					EngLogContainer.this.setTimeNeeded((Long) value);
 					return old;
 				}
+				case 1:
+				{
+					Long old = EngLogContainer.this.getCpuTimeNeeded();
+					EngLogContainer.this.setCpuTimeNeeded((Long) value);
+					return old;
+				}
+				case 2:
+				{
+					Long old = EngLogContainer.this.getBytesAllocated();
+					EngLogContainer.this.setBytesAllocated((Long) value);
+					return old;
+				}
 
 				default:
 					throw new IndexOutOfBoundsException();
@@ -17,6 +17,10 @@
 
 package org.sweble.wikitext.engine.nodes;
 
+import org.sweble.wikitext.parser.utils.ParserStats;
+
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+
 public class EngLogParserPass
 		extends
 			EngLogPass
@@ -28,4 +32,90 @@ public class EngLogParserPass
 	protected EngLogParserPass()
 	{
 	}
+
+	// =========================================================================
+	// Properties
+
+	private ParserStats parserStats;
+
+	/**
+	 * Statistics of the memoized productions of the parser. Only recorded if
+	 * profiling is enabled.
+	 */
+	public final ParserStats getParserStats()
+	{
+		return this.parserStats;
+	}
+
+	public final void setParserStats(ParserStats parserStats)
+	{
+		this.parserStats = parserStats;
+	}
+
+	@Override
+	public final int getPropertyCount()
+	{
+		return 1 + getSuperPropertyCount();
+	}
+
+	private final int getSuperPropertyCount()
+	{
+		return super.getPropertyCount();
+	}
+
+	@Override
+	public final AstNodePropertyIterator propertyIterator()
+	{
+		return new EngLogContainerPropertyIterator()
+		{
+			@Override
+			protected int getPropertyCount()
+			{
+				return EngLogParserPass.this.getPropertyCount();
+			}
+
+			@Override
+			protected String getName(int index)
+			{
+				switch (index - getSuperPropertyCount())
+				{
+					case 0:
+						return "parserStats";
+
+					default:
+						return super.getName(index);
+				}
+			}
+
+			@Override
+			protected Object getValue(int index)
+			{
+				switch (index - getSuperPropertyCount())
+				{
+					case 0:
+						return EngLogParserPass.this.getParserStats();
+
+					default:
+						return super.getValue(index);
+				}
+			}
+
+			@Override
+			protected Object setValue(int index, Object value)
+			{
+				switch (index - getSuperPropertyCount())
+				{
+					case 0:
+					{
+						Object old = EngLogParserPass.this.getParserStats();
+						EngLogParserPass.this.setParserStats((ParserStats) value);
+						return old;
+					}
+
+					default:
+						return super.setValue(index, value);
+				}
+			}
+		};
+	}
 }
@@ -49,6 +49,7 @@ public class EngProcessedPage
 			List<Warning> warnings)
 	{
 		super(page, log);
+		setLog(log);
 		setWarnings(warnings);
 	}
 
@@ -59,6 +60,7 @@ public class EngProcessedPage
 			WtEntityMap entityMap)
 	{
 		super(page, log);
+		setLog(log);
 		setWarnings(warnings);
 		setEntityMap(entityMap);
 	}
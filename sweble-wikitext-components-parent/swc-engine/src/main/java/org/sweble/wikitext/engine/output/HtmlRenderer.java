@@ -21,7 +21,12 @@ import de.fau.cs.osr.utils.StringTools;
 import de.fau.cs.osr.utils.visitor.VisitingException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.sweble.wikitext.engine.EngineException;
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PagePartCallback;
 import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
 import org.sweble.wikitext.engine.config.WikiConfig;
 import org.sweble.wikitext.engine.nodes.*;
 import org.sweble.wikitext.engine.utils.EngineAstTextUtils;
@@ -33,6 +38,7 @@ import org.sweble.wikitext.parser.parser.LinkTargetException;
 import org.sweble.wikitext.parser.utils.StringConversionException;
 import org.sweble.wikitext.parser.utils.WtRtDataPrinter;
 
+import java.io.IOException;
 import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
@@ -1440,6 +1446,48 @@ public class HtmlRenderer
 		return writer;
 	}
 
+	/**
+	 * Processes a page with
+	 * {@link WtEngineImpl#postprocess(PageId, String, ExpansionCallback, PagePartCallback)}
+	 * and renders each part of the postprocessed page as soon as it is
+	 * ready. The writer is flushed after each part. Rendered parts are not
+	 * kept, so only the parts that are currently being postprocessed or
+	 * rendered are held in memory.
+	 * 
+	 * The output is the same as that of
+	 * {@link #print(HtmlRendererCallback, WikiConfig, Writer, PageTitle, WtNode)}
+	 * for the page returned by
+	 * {@link WtEngineImpl#postprocess(PageId, String, ExpansionCallback)}.
+	 * 
+	 * @return The processed page without content. It carries the log and the
+	 *         warnings.
+	 */
+	public static EngProcessedPage printStreaming(
+			HtmlRendererCallback callback,
+			WtEngineImpl engine,
+			final Writer writer,
+			PageId pageId,
+			String wikitext,
+			ExpansionCallback expansionCallback) throws EngineException
+	{
+		final HtmlRenderer renderer = new HtmlRenderer(
+				callback,
+				engine.getWikiConfig(),
+				pageId.getTitle(),
+				writer);
+
+		return engine.postprocess(pageId, wikitext, expansionCallback, new PagePartCallback()
+		{
+			@Override
+			public void postprocessed(EngPage part) throws IOException
+			{
+				// go() would reset the numbering of untitled external links
+				renderer.dispatch(part);
+				writer.flush();
+			}
+		});
+	}
+
 	// =========================================================================
 
 	protected static final Logger logger = LoggerFactory.getLogger(HtmlRenderer.class);
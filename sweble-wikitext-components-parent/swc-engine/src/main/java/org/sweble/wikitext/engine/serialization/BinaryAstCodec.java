@@ -0,0 +1,325 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.serialization;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+import de.fau.cs.osr.ptk.common.serialization.NodeFactory;
+
+/**
+ * A compact binary serialization format for WtNode and EngNode trees.
+ *
+ * A stream starts with a header (magic number, version and flags) followed
+ * by any number of node records. Node classes are written once per stream
+ * together with the id returned by {@link WtNode#getNodeType()} and are
+ * referenced by a small index afterwards. Short strings (class names, enum
+ * names, element and attribute names, whitespace, ...) go into a string
+ * table and are written only once per stream as well. All integers are
+ * varint-encoded.
+ *
+ * Writing WtRtData, node locations and node attributes can be switched on or
+ * off. The setting is recorded in the stream header, a reader does not have
+ * to be configured accordingly.
+ *
+ * Streams are not trusted: the reader only instantiates classes that are
+ * nodes or enums and Java serialization is restricted to the classes
+ * accepted by {@link #isSerializableClassAllowed(Class)}. Malformed input
+ * is reported as {@link BinaryAstFormatException} or {@link EOFException}.
+ *
+ * The codec itself does not hold any per-stream state and can be shared.
+ * Instances of {@link BinaryAstWriter} and {@link BinaryAstReader} however
+ * must only be used by one thread at a time.
+ */
+public class BinaryAstCodec
+{
+	static final int MAGIC = 0x53574241; // "SWBA"
+
+	static final int VERSION = 2;
+
+	static final int FLAG_RTD = 0x01;
+
+	static final int FLAG_LOCATIONS = 0x02;
+
+	static final int FLAG_ATTRIBUTES = 0x04;
+
+	// -- Node references ------------------------------------------------------
+
+	static final int REF_NULL = 0;
+
+	static final int REF_NEW_CLASS = 1;
+
+	static final int REF_FIRST_CLASS = 2;
+
+	// -- String references ----------------------------------------------------
+
+	static final int STR_LITERAL = 0;
+
+	static final int STR_NEW_ENTRY = 1;
+
+	static final int STR_FIRST_ENTRY = 2;
+
+	// -- Value tags -----------------------------------------------------------
+
+	static final int T_NULL = 0;
+
+	static final int T_FALSE = 1;
+
+	static final int T_TRUE = 2;
+
+	static final int T_INT = 3;
+
+	static final int T_LONG = 4;
+
+	static final int T_STRING = 5;
+
+	static final int T_ENUM = 6;
+
+	static final int T_NODE = 7;
+
+	static final int T_RTD = 8;
+
+	static final int T_RTD_SUPPRESS = 9;
+
+	static final int T_LIST = 10;
+
+	static final int T_ENTITY_MAP = 11;
+
+	static final int T_ENTITY_MAP_EMPTY = 12;
+
+	static final int T_OBJECT = 13;
+
+	// =========================================================================
+
+	private final NodeFactory<WtNode> nodeFactory;
+
+	private boolean includeRtd = true;
+
+	private boolean includeLocations = false;
+
+	private boolean includeAttributes = false;
+
+	private int maxInternedStringLength = 64;
+
+	private final Set<String> serializablePackages = new HashSet<String>(Arrays.asList(
+			"java.lang",
+			"java.math",
+			"java.util"));
+
+	private final Set<String> serializablePackagePrefixes = new HashSet<String>(Arrays.asList(
+			"org.sweble.wikitext.",
+			"de.fau.cs.osr."));
+
+	// =========================================================================
+
+	public BinaryAstCodec(WikiConfig config)
+	{
+		this(config.getNodeFactory());
+	}
+
+	public BinaryAstCodec(NodeFactory<WtNode> nodeFactory)
+	{
+		if (nodeFactory == null)
+			throw new NullPointerException();
+		this.nodeFactory = nodeFactory;
+	}
+
+	// =========================================================================
+
+	public NodeFactory<WtNode> getNodeFactory()
+	{
+		return nodeFactory;
+	}
+
+	public boolean isIncludeRtd()
+	{
+		return includeRtd;
+	}
+
+	/**
+	 * Whether WtRtData is written. If disabled, all RTD properties are
+	 * deserialized as {@code null}.
+	 */
+	public void setIncludeRtd(boolean includeRtd)
+	{
+		this.includeRtd = includeRtd;
+	}
+
+	public boolean isIncludeLocations()
+	{
+		return includeLocations;
+	}
+
+	public void setIncludeLocations(boolean includeLocations)
+	{
+		this.includeLocations = includeLocations;
+	}
+
+	public boolean isIncludeAttributes()
+	{
+		return includeAttributes;
+	}
+
+	/**
+	 * Whether node attributes are written. Attribute values of types the
+	 * format does not know natively fall back to Java serialization. When
+	 * reading, such values are only accepted from streams that contain
+	 * attributes.
+	 */
+	public void setIncludeAttributes(boolean includeAttributes)
+	{
+		this.includeAttributes = includeAttributes;
+	}
+
+	public int getMaxInternedStringLength()
+	{
+		return maxInternedStringLength;
+	}
+
+	/**
+	 * Strings longer than the given length are not entered into the string
+	 * table but always written literally. Class and enum names are always
+	 * entered into the table.
+	 */
+	public void setMaxInternedStringLength(int maxInternedStringLength)
+	{
+		this.maxInternedStringLength = maxInternedStringLength;
+	}
+
+	/**
+	 * Allows attribute values of classes in the given package and its sub
+	 * packages to be read using Java serialization.
+	 */
+	public void allowSerializablePackage(String packageName)
+	{
+		serializablePackagePrefixes.add(packageName + ".");
+	}
+
+	/**
+	 * Whether values of the given class may be read using Java
+	 * serialization. By default primitives, classes in the packages
+	 * {@code java.lang}, {@code java.math} and {@code java.util} (without
+	 * sub packages) and classes of the Sweble libraries are accepted.
+	 */
+	public boolean isSerializableClassAllowed(Class<?> clazz)
+	{
+		while (clazz.isArray())
+			clazz = clazz.getComponentType();
+		if (clazz.isPrimitive())
+			return true;
+
+		String name = clazz.getName();
+		int i = name.lastIndexOf('.');
+		if (i < 0)
+			return false;
+		if (serializablePackages.contains(name.substring(0, i)))
+			return true;
+		for (String prefix : serializablePackagePrefixes)
+		{
+			if (name.startsWith(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	int getFlags()
+	{
+		int flags = 0;
+		if (includeRtd)
+			flags |= FLAG_RTD;
+		if (includeLocations)
+			flags |= FLAG_LOCATIONS;
+		if (includeAttributes)
+			flags |= FLAG_ATTRIBUTES;
+		return flags;
+	}
+
+	// =========================================================================
+
+	public byte[] encode(WtNode node) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		encode(node, baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Writes the given tree to the stream. The stream is flushed but not
+	 * closed.
+	 */
+	public void encode(WtNode node, OutputStream out) throws IOException
+	{
+		BinaryAstWriter writer = new BinaryAstWriter(this, out);
+		writer.write(node);
+		writer.flush();
+	}
+
+	/**
+	 * Writes the given tree into the buffer starting at the buffer's current
+	 * position.
+	 *
+	 * @throws java.nio.BufferOverflowException
+	 *             If the buffer is too small to hold the serialized tree.
+	 */
+	public void encode(WtNode node, ByteBuffer buffer) throws IOException
+	{
+		BinaryAstWriter writer = new BinaryAstWriter(this, buffer);
+		writer.write(node);
+		writer.flush();
+	}
+
+	public WtNode decode(byte[] data) throws IOException
+	{
+		return decode(ByteBuffer.wrap(data));
+	}
+
+	/**
+	 * Reads the first tree from the stream. The stream is not closed and is
+	 * left positioned directly after the tree. Since the stream is read byte
+	 * by byte, it should be buffered.
+	 */
+	public WtNode decode(InputStream in) throws IOException
+	{
+		return readSingle(new BinaryAstReader(this, in, false));
+	}
+
+	/**
+	 * Reads the first tree from the buffer starting at the buffer's current
+	 * position.
+	 */
+	public WtNode decode(ByteBuffer buffer) throws IOException
+	{
+		return readSingle(new BinaryAstReader(this, buffer));
+	}
+
+	private WtNode readSingle(BinaryAstReader reader) throws IOException
+	{
+		if (!reader.hasNext())
+			throw new BinaryAstFormatException("Stream does not contain a node record");
+		return reader.read();
+	}
+}
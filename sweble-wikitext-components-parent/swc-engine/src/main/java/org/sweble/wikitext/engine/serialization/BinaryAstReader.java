@@ -0,0 +1,699 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.serialization;
+
+import static org.sweble.wikitext.engine.serialization.BinaryAstCodec.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sweble.wikitext.parser.WtEntityMap;
+import org.sweble.wikitext.parser.WtEntityMapImpl;
+import org.sweble.wikitext.parser.WtRtData;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+import de.fau.cs.osr.ptk.common.serialization.NodeFactory;
+
+/**
+ * Reads trees written by a {@link BinaryAstWriter}.
+ *
+ * The reader only instantiates node classes and enum types named in the
+ * stream. Values that were written using Java serialization are only
+ * accepted in streams that contain node attributes and only if their
+ * classes pass {@link BinaryAstCodec#isSerializableClassAllowed(Class)}.
+ */
+public class BinaryAstReader
+		implements
+			Closeable
+{
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final Object[] NO_GLUE = new Object[0];
+
+	/**
+	 * Counts read from the stream are only trusted up to this value when
+	 * allocating memory up front.
+	 */
+	private static final int MAX_INITIAL_CAPACITY = 1024;
+
+	private final BinaryAstCodec codec;
+
+	private final NodeFactory<WtNode> nodeFactory;
+
+	private final InputStream in;
+
+	private final ByteBuffer source;
+
+	private final ArrayList<ClassEntry> classes = new ArrayList<ClassEntry>();
+
+	private final ArrayList<String> strings = new ArrayList<String>();
+
+	private final Map<String, Object[]> enums = new HashMap<String, Object[]>();
+
+	private final byte[] buf;
+
+	private int pos = 0;
+
+	private int limit = 0;
+
+	private int peeked = -1;
+
+	private boolean headerRead = false;
+
+	private boolean readRtd;
+
+	private boolean readLocations;
+
+	private boolean readAttributes;
+
+	private char[] chars = new char[256];
+
+	// =========================================================================
+
+	public BinaryAstReader(BinaryAstCodec codec, InputStream in)
+	{
+		this(codec, in, true);
+	}
+
+	/**
+	 * @param readAhead
+	 *            If {@code false} the reader never consumes more bytes from
+	 *            the stream than the trees it reads occupy. Every byte is
+	 *            then requested from the stream individually, the stream
+	 *            should therefore be buffered.
+	 */
+	BinaryAstReader(BinaryAstCodec codec, InputStream in, boolean readAhead)
+	{
+		if (in == null)
+			throw new NullPointerException();
+
+		this.codec = codec;
+		this.nodeFactory = codec.getNodeFactory();
+		this.in = in;
+		this.source = null;
+		this.buf = readAhead ? new byte[BUFFER_SIZE] : null;
+	}
+
+	public BinaryAstReader(BinaryAstCodec codec, ByteBuffer source)
+	{
+		if (source == null)
+			throw new NullPointerException();
+
+		this.codec = codec;
+		this.nodeFactory = codec.getNodeFactory();
+		this.in = null;
+		this.source = source;
+		this.buf = null;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns {@code true} if at least one more node record follows.
+	 */
+	public boolean hasNext() throws IOException
+	{
+		if (!headerRead)
+		{
+			if (atEnd())
+				return false;
+			readHeader();
+		}
+		return !atEnd();
+	}
+
+	/**
+	 * Reads the next tree from the stream.
+	 *
+	 * @throws EOFException
+	 *             If there are no more node records.
+	 */
+	public WtNode read() throws IOException
+	{
+		if (!hasNext())
+			throw new EOFException();
+		return readNode();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		if (in != null)
+			in.close();
+	}
+
+	// =========================================================================
+
+	private void readHeader() throws IOException
+	{
+		int magic = (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+		if (magic != MAGIC)
+			throw new BinaryAstFormatException("Not a binary AST stream");
+
+		int version = readByte();
+		if (version != VERSION)
+			throw new BinaryAstFormatException("Unsupported binary AST format version: " + version);
+
+		int flags = readByte();
+		readRtd = (flags & FLAG_RTD) != 0;
+		readLocations = (flags & FLAG_LOCATIONS) != 0;
+		readAttributes = (flags & FLAG_ATTRIBUTES) != 0;
+
+		headerRead = true;
+	}
+
+	private WtNode readNode() throws IOException
+	{
+		int ref = readVarInt();
+		if (ref == REF_NULL)
+			return null;
+
+		ClassEntry entry;
+		if (ref == REF_NEW_CLASS)
+		{
+			String className = readString();
+			int nodeType = unZigZag(readVarInt());
+			boolean immutable = readByte() != 0;
+
+			entry = new ClassEntry(loadNodeClass(className), nodeType, immutable);
+			classes.add(entry);
+		}
+		else
+		{
+			int index = ref - REF_FIRST_CLASS;
+			if (index >= classes.size())
+				throw new BinaryAstFormatException("Invalid class reference: " + index);
+			entry = classes.get(index);
+		}
+
+		WtNode n = nodeFactory.instantiateNode(entry.clazz);
+		if (n == null || n.getNodeType() != entry.nodeType)
+			throw new BinaryAstFormatException(
+					"Node factory failed to instantiate node of type " + entry.clazz.getName());
+
+		if (entry.immutable)
+			return n;
+
+		if (readLocations)
+		{
+			int line = readVarInt();
+			if (line != 0)
+			{
+				int column = readVarInt();
+				String file = (String) readValue();
+				n.setNativeLocation(new AstLocation(file, line - 1, column));
+			}
+		}
+
+		if (readAttributes)
+		{
+			int count = readVarInt();
+			for (int i = 0; i < count; ++i)
+			{
+				String name = readString();
+				n.setAttribute(name, readValue());
+			}
+		}
+
+		int propCount = readCount();
+		if (propCount != n.getPropertyCount())
+			throw new BinaryAstFormatException(
+					"Property count mismatch for node of type " + entry.clazz.getName());
+
+		Object[] props = new Object[propCount];
+		for (int i = 0; i < propCount; ++i)
+			props[i] = readValue();
+
+		int size = readCount();
+		if (n.isList())
+		{
+			for (int i = 0; i < size; ++i)
+				n.add(readNode());
+		}
+		else
+		{
+			if (size != n.size())
+				throw new BinaryAstFormatException(
+						"Child count mismatch for node of type " + entry.clazz.getName());
+			for (int i = 0; i < size; ++i)
+				n.set(i, readNode());
+		}
+
+		AstNodePropertyIterator i = n.propertyIterator();
+		for (int j = 0; i.next(); ++j)
+			i.setValue(props[j]);
+
+		return n;
+	}
+
+	private Class<?> loadNodeClass(String className) throws BinaryAstFormatException
+	{
+		Class<?> clazz = loadClass(className);
+		if (!WtNode.class.isAssignableFrom(clazz))
+			throw new BinaryAstFormatException("Not a node class: " + className);
+		return clazz;
+	}
+
+	private Class<?> loadEnumClass(String className) throws BinaryAstFormatException
+	{
+		Class<?> clazz = loadClass(className);
+		if (!clazz.isEnum())
+			throw new BinaryAstFormatException("Not an enum type: " + className);
+		return clazz;
+	}
+
+	/**
+	 * Loads a class without initializing it. Classes are only initialized
+	 * after they passed the checks of the caller.
+	 */
+	private static Class<?> loadClass(String className) throws BinaryAstFormatException
+	{
+		try
+		{
+			return Class.forName(className, false, BinaryAstReader.class.getClassLoader());
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new BinaryAstFormatException("Unknown class: " + className, e);
+		}
+	}
+
+	// =========================================================================
+
+	private Object readValue() throws IOException
+	{
+		int tag = readByte();
+		switch (tag)
+		{
+			case T_NULL:
+				return null;
+			case T_FALSE:
+				return Boolean.FALSE;
+			case T_TRUE:
+				return Boolean.TRUE;
+			case T_INT:
+				return unZigZag(readVarInt());
+			case T_LONG:
+				return unZigZag(readVarLong());
+			case T_STRING:
+				return readString();
+			case T_ENUM:
+				return readEnum();
+			case T_NODE:
+				return readNode();
+			case T_RTD:
+				if (!readRtd)
+					throw new BinaryAstFormatException("Stream without RTD contains RTD");
+				return readRtd();
+			case T_RTD_SUPPRESS:
+				return WtRtData.SUPPRESS;
+			case T_LIST:
+			{
+				int size = readCount();
+				ArrayList<Object> list = new ArrayList<Object>(initialCapacity(size));
+				for (int i = 0; i < size; ++i)
+					list.add(readValue());
+				return list;
+			}
+			case T_ENTITY_MAP:
+				return readEntityMap();
+			case T_ENTITY_MAP_EMPTY:
+				return WtEntityMap.EMPTY_ENTITY_MAP;
+			case T_OBJECT:
+				if (!readAttributes)
+					throw new BinaryAstFormatException("Stream without attributes contains a serialized object");
+				return readSerializable();
+			default:
+				throw new BinaryAstFormatException("Unknown value tag: " + tag);
+		}
+	}
+
+	private Object readEnum() throws IOException
+	{
+		String className = readString();
+		int ordinal = readVarInt();
+
+		Object[] constants = enums.get(className);
+		if (constants == null)
+		{
+			constants = loadEnumClass(className).getEnumConstants();
+			enums.put(className, constants);
+		}
+
+		if (ordinal < 0 || ordinal >= constants.length)
+			throw new BinaryAstFormatException("Invalid ordinal for enum " + className);
+		return constants[ordinal];
+	}
+
+	private WtRtData readRtd() throws IOException
+	{
+		int size = readCount();
+		ArrayList<Object[]> fields = new ArrayList<Object[]>(initialCapacity(size));
+		for (int i = 0; i < size; ++i)
+		{
+			int count = readCount();
+			Object[] glue = NO_GLUE;
+			if (count > 0)
+			{
+				ArrayList<Object> values = new ArrayList<Object>(initialCapacity(count));
+				for (int j = 0; j < count; ++j)
+					values.add(readValue());
+				glue = values.toArray();
+			}
+			fields.add(glue);
+		}
+
+		WtRtData rtd = new WtRtData(size);
+		for (int i = 0; i < size; ++i)
+			rtd.setField(i, fields.get(i));
+		return rtd;
+	}
+
+	/**
+	 * Entity ids must be ascending. Ids that do not occur in the stream are
+	 * registered as {@code null} entities so that all other entities keep
+	 * their id. At most as many ids can be skipped as there are entities.
+	 */
+	private WtEntityMap readEntityMap() throws IOException
+	{
+		int size = readCount();
+		WtEntityMapImpl map = new WtEntityMapImpl(initialCapacity(size));
+		for (int i = 0; i < size; ++i)
+		{
+			int id = readCount();
+			if (id < map.size() || id >= 2 * size)
+				throw new BinaryAstFormatException("Invalid entity id: " + id);
+			while (map.size() < id)
+				map.registerEntity(null);
+			map.registerEntity(readNode());
+		}
+		return map;
+	}
+
+	private Object readSerializable() throws IOException
+	{
+		int length = readCount();
+		byte[] bytes;
+		if (length <= BUFFER_SIZE)
+		{
+			bytes = new byte[length];
+			readBytes(bytes, length);
+		}
+		else
+		{
+			// Do not trust the length before the data actually arrived
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(BUFFER_SIZE);
+			byte[] chunk = new byte[BUFFER_SIZE];
+			for (int left = length; left > 0;)
+			{
+				int n = Math.min(left, chunk.length);
+				readBytes(chunk, n);
+				baos.write(chunk, 0, n);
+				left -= n;
+			}
+			bytes = baos.toByteArray();
+		}
+
+		ObjectInputStream ois = new FilteringObjectInputStream(new ByteArrayInputStream(bytes));
+		try
+		{
+			return ois.readObject();
+		}
+		catch (ClassNotFoundException e)
+		{
+			throw new BinaryAstFormatException("Cannot deserialize value", e);
+		}
+		finally
+		{
+			ois.close();
+		}
+	}
+
+	// =========================================================================
+
+	private String readString() throws IOException
+	{
+		int ref = readVarInt();
+		switch (ref)
+		{
+			case STR_LITERAL:
+				return readChars();
+			case STR_NEW_ENTRY:
+			{
+				String s = readChars();
+				strings.add(s);
+				return s;
+			}
+			default:
+			{
+				int index = ref - STR_FIRST_ENTRY;
+				if (index >= strings.size())
+					throw new BinaryAstFormatException("Invalid string reference: " + index);
+				return strings.get(index);
+			}
+		}
+	}
+
+	private String readChars() throws IOException
+	{
+		int len = readCount();
+		for (int i = 0; i < len; ++i)
+		{
+			// Grow with the characters actually read, not the declared length
+			if (i == chars.length)
+				chars = Arrays.copyOf(chars, Math.min(len, chars.length * 2));
+
+			int b = readByte();
+			if (b < 0x80)
+			{
+				chars[i] = (char) b;
+			}
+			else if ((b & 0xE0) == 0xC0)
+			{
+				chars[i] = (char) (((b & 0x1F) << 6) | (readByte() & 0x3F));
+			}
+			else
+			{
+				int b2 = readByte();
+				int b3 = readByte();
+				chars[i] = (char) (((b & 0x0F) << 12) | ((b2 & 0x3F) << 6) | (b3 & 0x3F));
+			}
+		}
+		return new String(chars, 0, len);
+	}
+
+	// =========================================================================
+
+	private static int unZigZag(int v)
+	{
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static long unZigZag(long v)
+	{
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static int initialCapacity(int count)
+	{
+		return Math.min(count, MAX_INITIAL_CAPACITY);
+	}
+
+	private int readCount() throws IOException
+	{
+		int count = readVarInt();
+		if (count < 0)
+			throw new BinaryAstFormatException("Invalid count: " + (count & 0xFFFFFFFFL));
+		return count;
+	}
+
+	private int readVarInt() throws IOException
+	{
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7)
+		{
+			int b = readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+		throw new BinaryAstFormatException("Malformed varint");
+	}
+
+	private long readVarLong() throws IOException
+	{
+		long result = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = readByte();
+			result |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+		throw new BinaryAstFormatException("Malformed varint");
+	}
+
+	private boolean atEnd() throws IOException
+	{
+		if (source != null)
+			return !source.hasRemaining();
+
+		if (buf == null)
+		{
+			if (peeked < 0)
+				peeked = in.read();
+			return peeked < 0;
+		}
+
+		return (pos == limit) && !fill();
+	}
+
+	private int readByte() throws IOException
+	{
+		if (source != null)
+		{
+			if (!source.hasRemaining())
+				throw new EOFException();
+			return source.get() & 0xFF;
+		}
+
+		if (buf == null)
+		{
+			int b = peeked;
+			peeked = -1;
+			if (b < 0)
+				b = in.read();
+			if (b < 0)
+				throw new EOFException();
+			return b;
+		}
+
+		if (pos == limit && !fill())
+			throw new EOFException();
+		return buf[pos++] & 0xFF;
+	}
+
+	private void readBytes(byte[] b, int len) throws IOException
+	{
+		if (source != null)
+		{
+			if (source.remaining() < len)
+				throw new EOFException();
+			source.get(b, 0, len);
+			return;
+		}
+
+		int off = 0;
+		if (buf == null)
+		{
+			if (len > 0 && peeked >= 0)
+			{
+				b[off++] = (byte) peeked;
+				peeked = -1;
+			}
+			while (off < len)
+			{
+				int n = in.read(b, off, len - off);
+				if (n < 0)
+					throw new EOFException();
+				off += n;
+			}
+			return;
+		}
+
+		while (off < len)
+		{
+			if (pos == limit && !fill())
+				throw new EOFException();
+			int n = Math.min(len - off, limit - pos);
+			System.arraycopy(buf, pos, b, off, n);
+			pos += n;
+			off += n;
+		}
+	}
+
+	private boolean fill() throws IOException
+	{
+		int n = in.read(buf, 0, buf.length);
+		if (n <= 0)
+			return false;
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Only resolves classes accepted by the codec.
+	 */
+	private final class FilteringObjectInputStream
+			extends
+				ObjectInputStream
+	{
+		public FilteringObjectInputStream(InputStream in) throws IOException
+		{
+			super(in);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+		{
+			Class<?> clazz = super.resolveClass(desc);
+			if (!codec.isSerializableClassAllowed(clazz))
+				throw new BinaryAstFormatException("Class is not allowed in serialized values: " + clazz.getName());
+			return clazz;
+		}
+
+		@Override
+		protected Class<?> resolveProxyClass(String[] interfaces) throws IOException, ClassNotFoundException
+		{
+			throw new BinaryAstFormatException("Proxy classes are not allowed in serialized values");
+		}
+	}
+
+	// =========================================================================
+
+	private static final class ClassEntry
+	{
+		final Class<?> clazz;
+
+		final int nodeType;
+
+		final boolean immutable;
+
+		public ClassEntry(Class<?> clazz, int nodeType, boolean immutable)
+		{
+			this.clazz = clazz;
+			this.nodeType = nodeType;
+			this.immutable = immutable;
+		}
+	}
+}
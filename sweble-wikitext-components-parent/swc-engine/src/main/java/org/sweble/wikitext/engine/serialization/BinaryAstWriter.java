@@ -0,0 +1,524 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.serialization;
+
+import static org.sweble.wikitext.engine.serialization.BinaryAstCodec.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.sweble.wikitext.parser.WtEntityMap;
+import org.sweble.wikitext.parser.WtRtData;
+import org.sweble.wikitext.parser.nodes.WtEmptyImmutableNode;
+import org.sweble.wikitext.parser.nodes.WtInnerImmutableNode1;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.ast.AstNodePropertyIterator;
+
+/**
+ * Writes one or more trees to a stream or buffer using the format described
+ * in {@link BinaryAstCodec}. The class and string tables are shared by all
+ * trees written with the same writer.
+ */
+public class BinaryAstWriter
+		implements
+			Closeable,
+			Flushable
+{
+	private static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+
+	private final ByteBuffer target;
+
+	private final int flags;
+
+	private final boolean writeRtd;
+
+	private final boolean writeLocations;
+
+	private final boolean writeAttributes;
+
+	private final int maxInternedStringLength;
+
+	private final Map<Class<?>, ClassEntry> classes =
+			new HashMap<Class<?>, ClassEntry>();
+
+	private final Map<String, Integer> strings =
+			new HashMap<String, Integer>();
+
+	private final byte[] buf = new byte[BUFFER_SIZE];
+
+	private int pos = 0;
+
+	private boolean headerWritten = false;
+
+	// =========================================================================
+
+	public BinaryAstWriter(BinaryAstCodec codec, OutputStream out)
+	{
+		this(codec, out, null);
+	}
+
+	public BinaryAstWriter(BinaryAstCodec codec, ByteBuffer target)
+	{
+		this(codec, null, target);
+	}
+
+	private BinaryAstWriter(
+			BinaryAstCodec codec,
+			OutputStream out,
+			ByteBuffer target)
+	{
+		if (out == null && target == null)
+			throw new NullPointerException();
+
+		this.out = out;
+		this.target = target;
+		this.flags = codec.getFlags();
+		this.writeRtd = codec.isIncludeRtd();
+		this.writeLocations = codec.isIncludeLocations();
+		this.writeAttributes = codec.isIncludeAttributes();
+		this.maxInternedStringLength = codec.getMaxInternedStringLength();
+	}
+
+	// =========================================================================
+
+	public void write(WtNode node) throws IOException
+	{
+		writeHeader();
+		writeNode(node);
+	}
+
+	@Override
+	public void flush() throws IOException
+	{
+		writeHeader();
+		flushBuffer();
+		if (out != null)
+			out.flush();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		flush();
+		if (out != null)
+			out.close();
+	}
+
+	// =========================================================================
+
+	private void writeHeader() throws IOException
+	{
+		if (headerWritten)
+			return;
+		headerWritten = true;
+
+		writeByte(MAGIC >>> 24);
+		writeByte(MAGIC >>> 16);
+		writeByte(MAGIC >>> 8);
+		writeByte(MAGIC);
+		writeByte(VERSION);
+		writeByte(flags);
+	}
+
+	private void writeNode(WtNode n) throws IOException
+	{
+		if (n == null)
+		{
+			writeVarInt(REF_NULL);
+			return;
+		}
+
+		Class<?> clazz = n.getClass();
+		ClassEntry entry = classes.get(clazz);
+		if (entry == null)
+		{
+			entry = new ClassEntry(classes.size(), isImmutable(n));
+			classes.put(clazz, entry);
+
+			writeVarInt(REF_NEW_CLASS);
+			writeInternedString(clazz.getName());
+			writeVarInt(zigZag(n.getNodeType()));
+			writeByte(entry.immutable ? 1 : 0);
+		}
+		else
+		{
+			writeVarInt(REF_FIRST_CLASS + entry.index);
+		}
+
+		// Immutable nodes are singletons and are recreated by the node factory
+		if (entry.immutable)
+			return;
+
+		if (writeLocations)
+			writeLocation(n.getNativeLocation());
+
+		if (writeAttributes)
+			writeAttributes(n);
+
+		writeVarInt(n.getPropertyCount());
+		AstNodePropertyIterator i = n.propertyIterator();
+		while (i.next())
+			writeValue(i.getValue());
+
+		int size = n.size();
+		writeVarInt(size);
+		for (int j = 0; j < size; ++j)
+			writeNode(n.get(j));
+	}
+
+	private static boolean isImmutable(WtNode n)
+	{
+		return (n instanceof WtEmptyImmutableNode) || (n instanceof WtInnerImmutableNode1);
+	}
+
+	private void writeLocation(AstLocation location) throws IOException
+	{
+		if (location == null)
+		{
+			writeVarInt(0);
+		}
+		else
+		{
+			writeVarInt(location.getLine() + 1);
+			writeVarInt(location.getColumn());
+			writeNullableString(location.getFile());
+		}
+	}
+
+	private void writeAttributes(WtNode n) throws IOException
+	{
+		if (!n.hasAttributes())
+		{
+			writeVarInt(0);
+			return;
+		}
+
+		Map<String, Object> attrs = n.getAttributes();
+		writeVarInt(attrs.size());
+		for (Entry<String, Object> e : attrs.entrySet())
+		{
+			writeInternedString(e.getKey());
+			writeValue(e.getValue());
+		}
+	}
+
+	// =========================================================================
+
+	private void writeValue(Object v) throws IOException
+	{
+		if (v == null)
+		{
+			writeByte(T_NULL);
+		}
+		else if (v instanceof String)
+		{
+			writeByte(T_STRING);
+			writeString((String) v);
+		}
+		else if (v instanceof Boolean)
+		{
+			writeByte(((Boolean) v) ? T_TRUE : T_FALSE);
+		}
+		else if (v instanceof Integer)
+		{
+			writeByte(T_INT);
+			writeVarInt(zigZag((Integer) v));
+		}
+		else if (v instanceof Long)
+		{
+			writeByte(T_LONG);
+			writeVarLong(zigZag((Long) v));
+		}
+		else if (v instanceof Enum)
+		{
+			Enum<?> e = (Enum<?>) v;
+			writeByte(T_ENUM);
+			writeInternedString(e.getDeclaringClass().getName());
+			writeVarInt(e.ordinal());
+		}
+		else if (v instanceof WtNode)
+		{
+			writeByte(T_NODE);
+			writeNode((WtNode) v);
+		}
+		else if (v instanceof WtRtData)
+		{
+			writeRtd((WtRtData) v);
+		}
+		else if (v instanceof WtEntityMap)
+		{
+			writeEntityMap((WtEntityMap) v);
+		}
+		else if (v instanceof List)
+		{
+			List<?> list = (List<?>) v;
+			writeByte(T_LIST);
+			writeVarInt(list.size());
+			for (Object o : list)
+				writeValue(o);
+		}
+		else if (v instanceof Serializable)
+		{
+			writeByte(T_OBJECT);
+			writeSerializable(v);
+		}
+		else
+		{
+			throw new BinaryAstFormatException(
+					"Cannot serialize value of type " + v.getClass().getName());
+		}
+	}
+
+	private void writeRtd(WtRtData rtd) throws IOException
+	{
+		if (!writeRtd)
+		{
+			writeByte(T_NULL);
+		}
+		else if (rtd.isSuppress())
+		{
+			writeByte(T_RTD_SUPPRESS);
+		}
+		else
+		{
+			writeByte(T_RTD);
+
+			int size = rtd.size();
+			writeVarInt(size);
+			for (int i = 0; i < size; ++i)
+			{
+				Object[] glue = rtd.getField(i);
+				writeVarInt(glue.length);
+				for (Object o : glue)
+					writeValue(o);
+			}
+		}
+	}
+
+	private void writeEntityMap(WtEntityMap map) throws IOException
+	{
+		if (map.isEmpty())
+		{
+			writeByte(T_ENTITY_MAP_EMPTY);
+			return;
+		}
+
+		writeByte(T_ENTITY_MAP);
+
+		// Not every implementation allocates ids densely, write them along
+		TreeMap<Integer, WtNode> entities = new TreeMap<Integer, WtNode>(map.getMap());
+		writeVarInt(entities.size());
+		for (Entry<Integer, WtNode> e : entities.entrySet())
+		{
+			writeVarInt(e.getKey());
+			writeNode(e.getValue());
+		}
+	}
+
+	private void writeSerializable(Object v) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		oos.writeObject(v);
+		oos.close();
+
+		byte[] bytes = baos.toByteArray();
+		writeVarInt(bytes.length);
+		writeBytes(bytes, 0, bytes.length);
+	}
+
+	// =========================================================================
+
+	private void writeNullableString(String s) throws IOException
+	{
+		if (s == null)
+		{
+			writeByte(T_NULL);
+		}
+		else
+		{
+			writeByte(T_STRING);
+			writeString(s);
+		}
+	}
+
+	private void writeInternedString(String s) throws IOException
+	{
+		Integer ref = strings.get(s);
+		if (ref != null)
+		{
+			writeVarInt(STR_FIRST_ENTRY + ref);
+		}
+		else
+		{
+			strings.put(s, strings.size());
+			writeVarInt(STR_NEW_ENTRY);
+			writeChars(s);
+		}
+	}
+
+	private void writeString(String s) throws IOException
+	{
+		if (s.length() > maxInternedStringLength)
+		{
+			writeVarInt(STR_LITERAL);
+			writeChars(s);
+		}
+		else
+		{
+			writeInternedString(s);
+		}
+	}
+
+	/**
+	 * Writes the number of UTF-16 code units followed by each code unit
+	 * encoded in one to three bytes. Unlike proper UTF-8 this also preserves
+	 * unpaired surrogates.
+	 */
+	private void writeChars(String s) throws IOException
+	{
+		int len = s.length();
+		writeVarInt(len);
+		for (int i = 0; i < len; ++i)
+		{
+			char ch = s.charAt(i);
+			if (pos + 3 > buf.length)
+				flushBuffer();
+
+			if (ch < 0x80)
+			{
+				buf[pos++] = (byte) ch;
+			}
+			else if (ch < 0x800)
+			{
+				buf[pos++] = (byte) (0xC0 | (ch >> 6));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+			else
+			{
+				buf[pos++] = (byte) (0xE0 | (ch >> 12));
+				buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3F));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3F));
+			}
+		}
+	}
+
+	// =========================================================================
+
+	private static int zigZag(int v)
+	{
+		return (v << 1) ^ (v >> 31);
+	}
+
+	private static long zigZag(long v)
+	{
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private void writeVarInt(int v) throws IOException
+	{
+		if (pos + 5 > buf.length)
+			flushBuffer();
+		while ((v & ~0x7F) != 0)
+		{
+			buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+	}
+
+	private void writeVarLong(long v) throws IOException
+	{
+		if (pos + 10 > buf.length)
+			flushBuffer();
+		while ((v & ~0x7FL) != 0)
+		{
+			buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		buf[pos++] = (byte) v;
+	}
+
+	private void writeByte(int b) throws IOException
+	{
+		if (pos == buf.length)
+			flushBuffer();
+		buf[pos++] = (byte) b;
+	}
+
+	private void writeBytes(byte[] b, int off, int len) throws IOException
+	{
+		if (len > buf.length - pos)
+		{
+			flushBuffer();
+			if (len > buf.length)
+			{
+				sink(b, off, len);
+				return;
+			}
+		}
+		System.arraycopy(b, off, buf, pos, len);
+		pos += len;
+	}
+
+	private void flushBuffer() throws IOException
+	{
+		if (pos > 0)
+		{
+			sink(buf, 0, pos);
+			pos = 0;
+		}
+	}
+
+	private void sink(byte[] b, int off, int len) throws IOException
+	{
+		if (out != null)
+			out.write(b, off, len);
+		else
+			target.put(b, off, len);
+	}
+
+	// =========================================================================
+
+	private static final class ClassEntry
+	{
+		final int index;
+
+		final boolean immutable;
+
+		public ClassEntry(int index, boolean immutable)
+		{
+			this.index = index;
+			this.immutable = immutable;
+		}
+	}
+}
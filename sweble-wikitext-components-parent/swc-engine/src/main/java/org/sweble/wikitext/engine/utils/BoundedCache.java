@@ -0,0 +1,112 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A bounded, thread-safe cache, e.g. the
+ * {@link org.sweble.wikitext.engine.PageTitleCache}.
+ * 
+ * The cache keeps two generations of entries. New entries are added to the
+ * young generation. Once it holds <code>capacity</code> entries it becomes
+ * the old generation and the former old generation is dropped. Entries found
+ * in the old generation are moved back to the young generation. Thus
+ * frequently used entries stay in the cache and at most twice the capacity
+ * of entries is held at any time.
+ */
+public final class BoundedCache<K, V>
+{
+	private final int capacity;
+
+	private final AtomicInteger youngSize = new AtomicInteger();
+
+	private volatile ConcurrentMap<K, V> young = new ConcurrentHashMap<K, V>();
+
+	private volatile ConcurrentMap<K, V> old = new ConcurrentHashMap<K, V>();
+
+	// =========================================================================
+
+	public BoundedCache(int capacity)
+	{
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1");
+		this.capacity = capacity;
+	}
+
+	// =========================================================================
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public V get(K key)
+	{
+		V value = young.get(key);
+		if (value == null)
+		{
+			value = old.get(key);
+			if (value != null)
+				value = put(key, value);
+		}
+		return value;
+	}
+
+	/**
+	 * Caches a value. If another thread cached a value for the same key in
+	 * the meantime, that value is returned instead of the given one.
+	 */
+	public V put(K key, V value)
+	{
+		ConcurrentMap<K, V> generation = young;
+		V existing = generation.putIfAbsent(key, value);
+		if (existing != null)
+			return existing;
+
+		if (youngSize.incrementAndGet() >= capacity)
+			rotate(generation);
+		return value;
+	}
+
+	public synchronized void clear()
+	{
+		young = new ConcurrentHashMap<K, V>();
+		old = new ConcurrentHashMap<K, V>();
+		youngSize.set(0);
+	}
+
+	public int size()
+	{
+		return young.size() + old.size();
+	}
+
+	// =========================================================================
+
+	private synchronized void rotate(ConcurrentMap<K, V> full)
+	{
+		// Another thread might have rotated or cleared the cache already.
+		if (young != full)
+			return;
+		old = full;
+		young = new ConcurrentHashMap<K, V>();
+		youngSize.set(0);
+	}
+}
@@ -0,0 +1,417 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.PageTitleIndex;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.parser.parser.LinkTargetException;
+
+/**
+ * A compact, immutable {@link PageTitleIndex}.
+ * 
+ * Titles are stored as keys of the form <code>NAMESPACE_ID:TITLE</code>
+ * (with TITLE in normalized form) in a sorted, prefix-compressed byte array:
+ * The keys are grouped into blocks of {@value #BLOCK_SIZE} keys. The first
+ * key of a block is stored in full, every following key only stores the
+ * length of the prefix it shares with its predecessor and the remaining
+ * suffix. A lookup binary searches the first keys of the blocks and then
+ * scans a single block.
+ * 
+ * A bloom filter in front of the title set answers most lookups of titles
+ * that do not exist without touching the title set at all.
+ * 
+ * An index can be built from a list of titles like the
+ * <code>all-titles</code> dumps of Wikimedia wikis, see
+ * {@link #load(WikiConfig, Reader)}. Instances are immutable and can be
+ * shared between threads.
+ */
+public final class CompactTitleIndex
+		implements
+			PageTitleIndex
+{
+	public static final int BLOCK_SIZE = 16;
+
+	private static final int BLOOM_BITS_PER_KEY = 10;
+
+	private static final int BLOOM_HASH_FUNCTIONS = 7;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// =========================================================================
+
+	private final int size;
+
+	private final byte[] data;
+
+	private final int[] blockOffsets;
+
+	private final long[] bloom;
+
+	private final long bloomBits;
+
+	// =========================================================================
+
+	private CompactTitleIndex(byte[][] sortedKeys)
+	{
+		this.size = sortedKeys.length;
+
+		int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		this.blockOffsets = new int[blocks];
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] prev = null;
+		for (int i = 0; i < size; ++i)
+		{
+			byte[] key = sortedKeys[i];
+			if (i % BLOCK_SIZE == 0)
+			{
+				blockOffsets[i / BLOCK_SIZE] = out.size();
+				writeVarInt(out, key.length);
+				out.write(key, 0, key.length);
+			}
+			else
+			{
+				int shared = sharedPrefixLength(prev, key);
+				writeVarInt(out, shared);
+				writeVarInt(out, key.length - shared);
+				out.write(key, shared, key.length - shared);
+			}
+			prev = key;
+		}
+		this.data = out.toByteArray();
+
+		this.bloomBits = Math.max(64, (long) size * BLOOM_BITS_PER_KEY);
+		this.bloom = new long[(int) ((bloomBits + 63) / 64)];
+		for (byte[] key : sortedKeys)
+		{
+			long h = hash(key);
+			int h1 = (int) h;
+			int h2 = (int) (h >>> 32) | 1;
+			for (int i = 0; i < BLOOM_HASH_FUNCTIONS; ++i)
+			{
+				long bit = ((h1 + i * h2) & 0xFFFFFFFFL) % bloomBits;
+				bloom[(int) (bit >>> 6)] |= 1L << bit;
+			}
+		}
+	}
+
+	// =========================================================================
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	/**
+	 * Builds an index from a list of titles, one title per line.
+	 * 
+	 * A line either contains a full title (e.g. <code>Help:Contents</code>)
+	 * or a namespace id and a normalized title separated by a tab character
+	 * like the <code>all-titles</code> dumps of Wikimedia wikis. Lines that
+	 * do not contain a valid title (e.g. the header line of a dump) are
+	 * skipped.
+	 */
+	public static CompactTitleIndex load(WikiConfig config, Reader reader) throws IOException
+	{
+		Builder builder = new Builder();
+		BufferedReader in = new BufferedReader(reader);
+		String line;
+		while ((line = in.readLine()) != null)
+		{
+			if (line.isEmpty())
+				continue;
+
+			int tab = line.indexOf('\t');
+			if (tab > 0)
+			{
+				try
+				{
+					int namespaceId = Integer.parseInt(line.substring(0, tab));
+					builder.add(namespaceId, line.substring(tab + 1));
+				}
+				catch (NumberFormatException e)
+				{
+					// Not a title
+				}
+				continue;
+			}
+
+			try
+			{
+				PageTitle title = PageTitle.make(config, line);
+				if (title.isLocal())
+					builder.add(title);
+			}
+			catch (LinkTargetException e)
+			{
+				// Not a title
+			}
+		}
+		return builder.build();
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the number of titles in this index.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the number of bytes used by the title set and the bloom filter.
+	 */
+	public long getDataSize()
+	{
+		return data.length + blockOffsets.length * 4L + bloom.length * 8L;
+	}
+
+	/**
+	 * Interwiki titles are never contained in the index.
+	 */
+	@Override
+	public boolean contains(PageTitle pageTitle)
+	{
+		if (!pageTitle.isLocal() || pageTitle.getNamespace() == null)
+			return false;
+		return contains(pageTitle.getNamespace().getId(), pageTitle.getTitle());
+	}
+
+	/**
+	 * @param normalizedTitle
+	 *            The title without namespace prefix with spaces replaced by
+	 *            underscores as returned by {@link PageTitle#getTitle()}.
+	 */
+	public boolean contains(int namespaceId, String normalizedTitle)
+	{
+		if (size == 0)
+			return false;
+
+		byte[] key = makeKey(namespaceId, normalizedTitle);
+		return mightContain(key) && containsKey(key);
+	}
+
+	// =========================================================================
+
+	private boolean mightContain(byte[] key)
+	{
+		long h = hash(key);
+		int h1 = (int) h;
+		int h2 = (int) (h >>> 32) | 1;
+		for (int i = 0; i < BLOOM_HASH_FUNCTIONS; ++i)
+		{
+			long bit = ((h1 + i * h2) & 0xFFFFFFFFL) % bloomBits;
+			if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	private boolean containsKey(byte[] key)
+	{
+		// Find the last block whose first key is <= key
+		int lo = 0;
+		int hi = blockOffsets.length - 1;
+		while (lo < hi)
+		{
+			int mid = (lo + hi + 1) >>> 1;
+			if (compareFirstKey(mid, key) <= 0)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+
+		// Scan the block and reconstruct the keys one by one
+		int[] pos = { blockOffsets[lo] };
+		int length = readVarInt(pos);
+		byte[] current = new byte[Math.max(length, key.length)];
+		System.arraycopy(data, pos[0], current, 0, length);
+		pos[0] += length;
+
+		int count = Math.min(BLOCK_SIZE, size - lo * BLOCK_SIZE);
+		for (int i = 0;; )
+		{
+			int cmp = compare(current, length, key);
+			if (cmp == 0)
+				return true;
+			if (cmp > 0 || ++i >= count)
+				return false;
+
+			int shared = readVarInt(pos);
+			int suffix = readVarInt(pos);
+			length = shared + suffix;
+			if (length > current.length)
+				current = Arrays.copyOf(current, length);
+			System.arraycopy(data, pos[0], current, shared, suffix);
+			pos[0] += suffix;
+		}
+	}
+
+	private int compareFirstKey(int block, byte[] key)
+	{
+		int[] pos = { blockOffsets[block] };
+		int length = readVarInt(pos);
+		int offset = pos[0];
+		int n = Math.min(length, key.length);
+		for (int i = 0; i < n; ++i)
+		{
+			int a = data[offset + i] & 0xFF;
+			int b = key[i] & 0xFF;
+			if (a != b)
+				return a - b;
+		}
+		return length - key.length;
+	}
+
+	private int readVarInt(int[] pos)
+	{
+		int value = 0;
+		int shift = 0;
+		while (true)
+		{
+			byte b = data[pos[0]++];
+			value |= (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+			shift += 7;
+		}
+	}
+
+	// =========================================================================
+
+	private static byte[] makeKey(int namespaceId, String normalizedTitle)
+	{
+		return (namespaceId + ":" + normalizedTitle).getBytes(UTF8);
+	}
+
+	private static int compare(byte[] a, int length, byte[] b)
+	{
+		int n = Math.min(length, b.length);
+		for (int i = 0; i < n; ++i)
+		{
+			int x = a[i] & 0xFF;
+			int y = b[i] & 0xFF;
+			if (x != y)
+				return x - y;
+		}
+		return length - b.length;
+	}
+
+	private static int sharedPrefixLength(byte[] a, byte[] b)
+	{
+		int n = Math.min(a.length, b.length);
+		int i = 0;
+		while (i < n && a[i] == b[i])
+			++i;
+		return i;
+	}
+
+	private static void writeVarInt(ByteArrayOutputStream out, int value)
+	{
+		while ((value & ~0x7F) != 0)
+		{
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * 64-bit FNV-1a followed by the MurmurHash3 finalizer.
+	 */
+	private static long hash(byte[] key)
+	{
+		long h = 0xcbf29ce484222325L;
+		for (byte b : key)
+		{
+			h ^= b & 0xFF;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	// =========================================================================
+
+	public static final class Builder
+	{
+		private final List<byte[]> keys = new ArrayList<byte[]>();
+
+		private Builder()
+		{
+		}
+
+		public Builder add(PageTitle pageTitle)
+		{
+			if (!pageTitle.isLocal())
+				throw new IllegalArgumentException("Cannot add interwiki title " + pageTitle);
+			return add(pageTitle.getNamespace().getId(), pageTitle.getTitle());
+		}
+
+		/**
+		 * @param normalizedTitle
+		 *            The title without namespace prefix with spaces replaced
+		 *            by underscores as returned by {@link PageTitle#getTitle()}.
+		 */
+		public Builder add(int namespaceId, String normalizedTitle)
+		{
+			keys.add(makeKey(namespaceId, normalizedTitle));
+			return this;
+		}
+
+		public CompactTitleIndex build()
+		{
+			byte[][] sorted = keys.toArray(new byte[keys.size()][]);
+			Arrays.sort(sorted, new Comparator<byte[]>()
+			{
+				@Override
+				public int compare(byte[] o1, byte[] o2)
+				{
+					return CompactTitleIndex.compare(o1, o1.length, o2);
+				}
+			});
+
+			// Remove duplicates
+			int n = 0;
+			for (int i = 0; i < sorted.length; ++i)
+			{
+				if (n == 0 || !Arrays.equals(sorted[n - 1], sorted[i]))
+					sorted[n++] = sorted[i];
+			}
+
+			return new CompactTitleIndex(Arrays.copyOf(sorted, n));
+		}
+	}
+}
@@ -17,6 +17,7 @@
 
 package org.sweble.wikitext.engine.utils;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 
@@ -25,6 +26,7 @@ import org.sweble.wikitext.engine.config.InterwikiImpl;
 import org.sweble.wikitext.engine.config.NamespaceImpl;
 import org.sweble.wikitext.engine.config.ParserConfigImpl;
 import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.config.WikiConfigSnapshot;
 
 /**
  * Programatically generate a default configuration for that is similar to that
@@ -41,6 +43,18 @@ public class DefaultConfigEnWp
 		return c;
 	}
 
+	/**
+	 * Loads the snapshot of this configuration which is generated at build
+	 * time from the bundled <code>DefaultConfigEnWp.xml</code> (see
+	 * {@link WikiConfigSnapshot}). Falls back to {@link #generate()} if the
+	 * snapshot is not available on the class path.
+	 */
+	public static WikiConfigImpl fromSnapshot() throws IOException
+	{
+		WikiConfigImpl c = WikiConfigSnapshot.readResource(DefaultConfigEnWp.class, "DefaultConfigEnWp.snapshot");
+		return (c != null) ? c : generate();
+	}
+
 	protected void configureSiteProperties(WikiConfigImpl c)
 	{
 		c.setSiteName("My English Wiki");
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import org.sweble.wikitext.engine.ExistenceCheckingCallback;
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.PageTitleIndex;
+import org.sweble.wikitext.engine.config.Namespace;
+
+/**
+ * An expansion callback which answers existence checks using a
+ * {@link PageTitleIndex} and delegates all other requests to another
+ * callback. This way <code>#ifexist</code> does not have to retrieve the
+ * wikitext of a page. Only the existence of files is still checked with
+ * the delegate.
+ */
+public final class IndexedExpansionCallback
+		implements
+			ExistenceCheckingCallback
+{
+	private final ExpansionCallback delegate;
+
+	private final PageTitleIndex index;
+
+	// =========================================================================
+
+	public IndexedExpansionCallback(
+			ExpansionCallback delegate,
+			PageTitleIndex index)
+	{
+		if (delegate == null || index == null)
+			throw new NullPointerException();
+		this.delegate = delegate;
+		this.index = index;
+	}
+
+	// =========================================================================
+
+	public ExpansionCallback getDelegate()
+	{
+		return delegate;
+	}
+
+	public PageTitleIndex getIndex()
+	{
+		return index;
+	}
+
+	// =========================================================================
+
+	@Override
+	public FullPage retrieveWikitext(
+			ExpansionFrame expansionFrame,
+			PageTitle pageTitle)
+	{
+		return delegate.retrieveWikitext(expansionFrame, pageTitle);
+	}
+
+	@Override
+	public String fileUrl(PageTitle pageTitle, int width, int height)
+	{
+		return delegate.fileUrl(pageTitle, width, height);
+	}
+
+	/**
+	 * Titles in the Media namespace are looked up as titles in the File
+	 * namespace. Files which are not in the index may still be served by a
+	 * shared repository without a local description page. For titles in the
+	 * File and Media namespaces the delegate's file URL is therefore
+	 * consulted as well.
+	 */
+	@Override
+	public boolean exists(ExpansionFrame expansionFrame, PageTitle pageTitle)
+	{
+		Namespace namespace = pageTitle.getNamespace();
+		if (namespace.isMediaNs())
+		{
+			Namespace fileNamespace = expansionFrame.getWikiConfig().getFileNamespace();
+			if (fileNamespace != null)
+				pageTitle = pageTitle.newWithNamespace(fileNamespace);
+		}
+		else if (!namespace.isFileNs())
+		{
+			return index.contains(pageTitle);
+		}
+
+		return index.contains(pageTitle) ||
+				(delegate.fileUrl(pageTitle, -1, -1) != null);
+	}
+}
@@ -0,0 +1,207 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import org.sweble.wikitext.engine.AsyncExpansionCallback;
+import org.sweble.wikitext.engine.ExistenceCheckingCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.PrefetchingCallback;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.parser.nodes.WtName;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtTemplate;
+import org.sweble.wikitext.parser.parser.LinkTargetException;
+
+import de.fau.cs.osr.utils.WrappedException;
+
+/**
+ * An expansion callback which requests the templates of a page before the
+ * page is expanded.
+ * 
+ * Before a page (the page itself or a transcluded page) is expanded, the
+ * engine calls {@link #prefetchTemplates(WtNode)} with the preprocessed page.
+ * All templates with a static name are requested from the
+ * {@link AsyncExpansionCallback} at once. When the expansion later asks for
+ * one of these templates, it only waits for the pending request. Templates
+ * whose name is only known after expansion are requested when the page that
+ * contains them after expansion is prefetched, or when the expansion asks
+ * for them. Templates in branches of parser functions that are not taken
+ * are requested as well.
+ * 
+ * Each page is requested only once, so an instance also caches all pages
+ * retrieved through it. Use a new instance for each page to render.
+ */
+public final class PrefetchingExpansionCallback
+		implements
+			ExistenceCheckingCallback,
+			PrefetchingCallback
+{
+	private final AsyncExpansionCallback delegate;
+
+	private final WikiConfig wikiConfig;
+
+	private final ConcurrentMap<PageTitle, CompletableFuture<FullPage>> requests =
+			new ConcurrentHashMap<PageTitle, CompletableFuture<FullPage>>();
+
+	// =========================================================================
+
+	public PrefetchingExpansionCallback(
+			AsyncExpansionCallback delegate,
+			WikiConfig wikiConfig)
+	{
+		if (delegate == null || wikiConfig == null)
+			throw new NullPointerException();
+		this.delegate = delegate;
+		this.wikiConfig = wikiConfig;
+	}
+
+	// =========================================================================
+
+	public AsyncExpansionCallback getDelegate()
+	{
+		return delegate;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Requests all templates with a static name in the given AST that have
+	 * not been requested yet. Returns without waiting for the requests.
+	 */
+	@Override
+	public void prefetchTemplates(WtNode ast)
+	{
+		if (ast.isNodeType(WtNode.NT_TEMPLATE))
+		{
+			PageTitle title = getStaticTarget((WtTemplate) ast);
+			if (title != null)
+				prefetch(title);
+		}
+
+		for (WtNode c : ast)
+		{
+			if (c != null)
+				prefetchTemplates(c);
+		}
+	}
+
+	/**
+	 * Requests a page unless it has been requested before. Returns without
+	 * waiting for the request.
+	 */
+	public CompletableFuture<FullPage> prefetch(PageTitle pageTitle)
+	{
+		CompletableFuture<FullPage> request = requests.get(pageTitle);
+		if (request == null)
+		{
+			request = delegate.retrieveWikitextAsync(pageTitle);
+			CompletableFuture<FullPage> other = requests.putIfAbsent(pageTitle, request);
+			if (other != null)
+			{
+				request.cancel(false);
+				request = other;
+			}
+		}
+		return request;
+	}
+
+	// =========================================================================
+
+	@Override
+	public FullPage retrieveWikitext(
+			ExpansionFrame expansionFrame,
+			PageTitle pageTitle)
+	{
+		try
+		{
+			return prefetch(pageTitle).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new WrappedException(e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new WrappedException(cause);
+		}
+	}
+
+	@Override
+	public String fileUrl(PageTitle pageTitle, int width, int height)
+	{
+		return delegate.fileUrl(pageTitle, width, height);
+	}
+
+	@Override
+	public boolean exists(ExpansionFrame expansionFrame, PageTitle pageTitle)
+	{
+		if (delegate instanceof ExistenceCheckingCallback)
+			return ((ExistenceCheckingCallback) delegate).exists(expansionFrame, pageTitle);
+
+		return (retrieveWikitext(expansionFrame, pageTitle) != null) ||
+				(fileUrl(pageTitle, -1, -1) != null);
+	}
+
+	// =========================================================================
+
+	/**
+	 * Determines the page a template would transclude the same way the
+	 * expansion does (see ExpansionVisitor.visit(WtTemplate)).
+	 * 
+	 * @return The title of the page or null if the name of the template is
+	 *         not static or if the template is a parser function or magic
+	 *         word.
+	 */
+	private PageTitle getStaticTarget(WtTemplate n)
+	{
+		WtName name = n.getName();
+		if (!name.isResolved())
+			return null;
+
+		String target = name.getAsString();
+		if (target.equals("!"))
+			return null;
+
+		int i = target.indexOf(':');
+		String pfnName = (i == -1) ? target : (target.substring(0, i).trim() + ":");
+		if (wikiConfig.getParserFunction(pfnName) != null)
+			return null;
+
+		try
+		{
+			return PageTitle.make(wikiConfig, target, wikiConfig.getTemplateNamespace());
+		}
+		catch (LinkTargetException e)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,467 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.nodes.EngLogProcessingPass;
+import org.sweble.wikitext.engine.nodes.EngLogTargetResolution;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+/**
+ * Records which pages a processed page transcludes and answers which pages
+ * have to be expanded again after a template changed.
+ * 
+ * The dependencies of a page are collected from the logs of its processing
+ * pass, see {@link #collectDependencies(EngProcessedPage)}. They are
+ * transitive: a page also depends on all templates transcluded by the
+ * templates it transcludes, on the targets of redirects that were followed
+ * and on templates that did not exist when the page was expanded.
+ * 
+ * Titles are interned and referred to by an integer id. For every page the
+ * ids and revisions of the pages it depends on are stored and for every
+ * dependency the sorted ids of the pages that depend on it. Only the former
+ * is written by {@link #write(OutputStream)}, the reverse index is rebuilt
+ * when the index is read.
+ * 
+ * Titles are the denormalized full titles as recorded in the logs (e.g.
+ * <code>Template:Infobox person</code>). All methods are thread-safe.
+ */
+public final class TemplateDependencyIndex
+{
+	/** The revision recorded for a page that did not exist. */
+	public static final long MISSING = Long.MIN_VALUE;
+
+	private static final int MAGIC = 0x53544449;
+
+	private static final int VERSION = 1;
+
+	private static final int[] NO_IDS = new int[0];
+
+	// =========================================================================
+
+	private final Map<String, Integer> ids = new HashMap<String, Integer>();
+
+	private final List<String> titles = new ArrayList<String>();
+
+	/** Per title id: the ids of the pages the page depends on. */
+	private int[][] dependencies = new int[16][];
+
+	/** Per title id: the revisions of the pages the page depends on. */
+	private long[][] revisions = new long[16][];
+
+	/** Per title id: the sorted ids of the pages that depend on the page. */
+	private int[][] dependents = new int[16][];
+
+	/** Per title id: the number of valid entries in dependents. */
+	private int[] dependentCounts = new int[16];
+
+	private int pageCount;
+
+	// =========================================================================
+
+	/**
+	 * Collects the titles and revisions of all pages that were transcluded
+	 * (directly or indirectly) or followed as redirect while the given page
+	 * was expanded.
+	 * 
+	 * @return The titles mapped to the revision of the page that was used or
+	 *         to {@link #MISSING} if the page did not exist.
+	 */
+	public static Map<String, Long> collectDependencies(EngProcessedPage page)
+	{
+		Map<String, Long> dependencies = new LinkedHashMap<String, Long>();
+		collectDependencies(page.getLog(), dependencies);
+
+		String self = page.getLog().getTitle();
+		if (self != null)
+			dependencies.remove(self);
+
+		return dependencies;
+	}
+
+	private static void collectDependencies(
+			WtNode log,
+			Map<String, Long> dependencies)
+	{
+		for (WtNode c : log)
+		{
+			if (c == null)
+				continue;
+
+			if (c instanceof EngLogTargetResolution)
+			{
+				String canonical = ((EngLogTargetResolution) c).getCanonical();
+				if (canonical != null && !dependencies.containsKey(canonical))
+					dependencies.put(canonical, getRevision(c));
+			}
+
+			collectDependencies(c, dependencies);
+		}
+	}
+
+	/**
+	 * @return The revision of the page whose processing pass is logged in
+	 *         the given resolution log or {@link #MISSING} if the page was
+	 *         not found.
+	 */
+	private static long getRevision(WtNode resolution)
+	{
+		for (WtNode c : resolution)
+		{
+			if (c instanceof EngLogProcessingPass)
+			{
+				Long revision = ((EngLogProcessingPass) c).getRevision();
+				return (revision != null) ? revision : MISSING;
+			}
+		}
+		return MISSING;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Records the dependencies of a processed page and replaces the
+	 * dependencies recorded for this page before.
+	 */
+	public void update(EngProcessedPage page)
+	{
+		String title = page.getLog().getTitle();
+		if (title == null)
+			throw new IllegalArgumentException("The log of the page does not name the page");
+		put(title, collectDependencies(page));
+	}
+
+	/**
+	 * Records the dependencies of a page and replaces the dependencies
+	 * recorded for this page before.
+	 * 
+	 * @param dependencies
+	 *            The titles of the pages the page depends on mapped to their
+	 *            revisions, see {@link #collectDependencies(EngProcessedPage)}.
+	 */
+	public synchronized void put(String page, Map<String, Long> dependencies)
+	{
+		int id = intern(page);
+		removeDependencies(id);
+
+		int[] deps = new int[dependencies.size()];
+		long[] revs = new long[dependencies.size()];
+		int i = 0;
+		for (Map.Entry<String, Long> e : dependencies.entrySet())
+		{
+			int dep = intern(e.getKey());
+			if (dep == id)
+				continue;
+			deps[i] = dep;
+			revs[i] = (e.getValue() != null) ? e.getValue() : MISSING;
+			++i;
+		}
+		if (i < deps.length)
+		{
+			deps = Arrays.copyOf(deps, i);
+			revs = Arrays.copyOf(revs, i);
+		}
+
+		dependencies(id, deps, revs);
+	}
+
+	/**
+	 * Forgets the dependencies of a page (e.g. because it was deleted).
+	 */
+	public synchronized void remove(String page)
+	{
+		Integer id = ids.get(page);
+		if (id != null)
+			removeDependencies(id);
+	}
+
+	/**
+	 * @return The number of pages whose dependencies are recorded.
+	 */
+	public synchronized int size()
+	{
+		return pageCount;
+	}
+
+	/**
+	 * @return The titles of the pages the given page depends on mapped to the
+	 *         revisions that were used or null if no dependencies were
+	 *         recorded for the page.
+	 */
+	public synchronized Map<String, Long> getDependencies(String page)
+	{
+		Integer id = ids.get(page);
+		if (id == null || dependencies[id] == null)
+			return null;
+
+		int[] deps = dependencies[id];
+		long[] revs = revisions[id];
+		Map<String, Long> result = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < deps.length; ++i)
+			result.put(titles.get(deps[i]), revs[i]);
+		return result;
+	}
+
+	/**
+	 * @return The titles of all pages that depend on the given page.
+	 */
+	public Set<String> getAffectedPages(PageTitle changed)
+	{
+		return getAffectedPages(changed.getDenormalizedFullTitle());
+	}
+
+	/**
+	 * @return The titles of all pages that depend on the given page.
+	 */
+	public synchronized Set<String> getAffectedPages(String changed)
+	{
+		Set<String> result = new LinkedHashSet<String>();
+		Integer id = ids.get(changed);
+		if (id != null)
+		{
+			int[] pages = dependents[id];
+			for (int i = 0; i < dependentCounts[id]; ++i)
+				result.add(titles.get(pages[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * @return The titles of all pages that depend on the given page and were
+	 *         not expanded with the given revision of it. Use
+	 *         {@link #MISSING} if the page was deleted.
+	 */
+	public synchronized Set<String> getAffectedPages(String changed, long revision)
+	{
+		Set<String> result = new LinkedHashSet<String>();
+		Integer id = ids.get(changed);
+		if (id != null)
+		{
+			int[] pages = dependents[id];
+			for (int i = 0; i < dependentCounts[id]; ++i)
+			{
+				int page = pages[i];
+				if (getRevision(page, id) != revision)
+					result.add(titles.get(page));
+			}
+		}
+		return result;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Writes the recorded dependencies. Titles of pages that neither have nor
+	 * are dependencies are not written.
+	 */
+	public synchronized void write(OutputStream out) throws IOException
+	{
+		DataOutputStream dout = new DataOutputStream(out);
+		dout.writeInt(MAGIC);
+		dout.writeInt(VERSION);
+
+		// Renumber the titles that are still in use.
+		int[] newIds = new int[titles.size()];
+		int count = 0;
+		for (int id = 0; id < titles.size(); ++id)
+			newIds[id] = (dependencies[id] != null || dependentCounts[id] > 0) ? count++ : -1;
+
+		dout.writeInt(count);
+		for (int id = 0; id < titles.size(); ++id)
+		{
+			if (newIds[id] != -1)
+				dout.writeUTF(titles.get(id));
+		}
+
+		dout.writeInt(pageCount);
+		for (int id = 0; id < titles.size(); ++id)
+		{
+			int[] deps = dependencies[id];
+			if (deps == null)
+				continue;
+
+			long[] revs = revisions[id];
+			dout.writeInt(newIds[id]);
+			dout.writeInt(deps.length);
+			for (int i = 0; i < deps.length; ++i)
+			{
+				dout.writeInt(newIds[deps[i]]);
+				dout.writeLong(revs[i]);
+			}
+		}
+
+		dout.flush();
+	}
+
+	public static TemplateDependencyIndex read(InputStream in) throws IOException
+	{
+		DataInputStream din = new DataInputStream(in);
+		if (din.readInt() != MAGIC)
+			throw new IOException("Not a template dependency index");
+		int version = din.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported template dependency index version " + version);
+
+		TemplateDependencyIndex index = new TemplateDependencyIndex();
+
+		int count = checkCount(din.readInt(), Integer.MAX_VALUE, "titles");
+		for (int i = 0; i < count; ++i)
+		{
+			if (index.intern(din.readUTF()) != i)
+				throw new IOException("Duplicate title in template dependency index");
+		}
+
+		int pages = checkCount(din.readInt(), count, "pages");
+		for (int i = 0; i < pages; ++i)
+		{
+			int id = checkId(din.readInt(), count);
+			if (index.dependencies[id] != null)
+				throw new IOException("Duplicate page in template dependency index");
+
+			int length = checkCount(din.readInt(), count, "dependencies");
+			int[] deps = new int[length];
+			long[] revs = new long[length];
+			for (int j = 0; j < length; ++j)
+			{
+				deps[j] = checkId(din.readInt(), count);
+				revs[j] = din.readLong();
+			}
+			index.dependencies(id, deps, revs);
+		}
+
+		return index;
+	}
+
+	private static int checkCount(int count, int max, String what) throws IOException
+	{
+		if (count < 0 || count > max)
+			throw new IOException("Invalid number of " + what + " in template dependency index: " + count);
+		return count;
+	}
+
+	private static int checkId(int id, int count) throws IOException
+	{
+		if (id < 0 || id >= count)
+			throw new IOException("Invalid title id in template dependency index: " + id);
+		return id;
+	}
+
+	// =========================================================================
+
+	private int intern(String title)
+	{
+		Integer id = ids.get(title);
+		if (id == null)
+		{
+			id = titles.size();
+			ids.put(title, id);
+			titles.add(title);
+
+			if (id == dependencies.length)
+			{
+				int capacity = id * 2;
+				dependencies = Arrays.copyOf(dependencies, capacity);
+				revisions = Arrays.copyOf(revisions, capacity);
+				dependents = Arrays.copyOf(dependents, capacity);
+				dependentCounts = Arrays.copyOf(dependentCounts, capacity);
+			}
+			dependents[id] = NO_IDS;
+		}
+		return id;
+	}
+
+	private void dependencies(int id, int[] deps, long[] revs)
+	{
+		dependencies[id] = deps;
+		revisions[id] = revs;
+		++pageCount;
+
+		for (int dep : deps)
+			addDependent(dep, id);
+	}
+
+	private void removeDependencies(int id)
+	{
+		int[] deps = dependencies[id];
+		if (deps == null)
+			return;
+
+		for (int dep : deps)
+			removeDependent(dep, id);
+
+		dependencies[id] = null;
+		revisions[id] = null;
+		--pageCount;
+	}
+
+	private long getRevision(int page, int dependency)
+	{
+		int[] deps = dependencies[page];
+		for (int i = 0; i < deps.length; ++i)
+		{
+			if (deps[i] == dependency)
+				return revisions[page][i];
+		}
+		return MISSING;
+	}
+
+	private void addDependent(int dep, int page)
+	{
+		int[] pages = dependents[dep];
+		int count = dependentCounts[dep];
+		int i = Arrays.binarySearch(pages, 0, count, page);
+		if (i >= 0)
+			return;
+
+		i = -i - 1;
+		if (count == pages.length)
+			dependents[dep] = pages = Arrays.copyOf(pages, Math.max(4, count * 2));
+		System.arraycopy(pages, i, pages, i + 1, count - i);
+		pages[i] = page;
+		dependentCounts[dep] = count + 1;
+	}
+
+	private void removeDependent(int dep, int page)
+	{
+		int[] pages = dependents[dep];
+		int count = dependentCounts[dep];
+		int i = Arrays.binarySearch(pages, 0, count, page);
+		if (i < 0)
+			return;
+
+		System.arraycopy(pages, i + 1, pages, i, count - i - 1);
+		dependentCounts[dep] = --count;
+		if (count == 0)
+			dependents[dep] = NO_IDS;
+	}
+}
@@ -0,0 +1,220 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine.utils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Measures wall time, CPU time and allocated bytes of the current thread
+ * between a call to {@link #start()} and {@link #stop()}.
+ * 
+ * CPU time is taken from the platform's {@link ThreadMXBean}. Measuring CPU
+ * time has to be enabled with {@link #enableCpuTime()} first unless the JVM
+ * already has it enabled. The number of
+ * allocated bytes is only available on JVMs whose ThreadMXBean implements
+ * {@code getThreadAllocatedBytes(long)} (e.g. HotSpot). If a measurement is
+ * not supported by the JVM, the respective getter returns -1.
+ * 
+ * A meter must be started and stopped on the same thread.
+ */
+public final class ThreadResourceMeter
+{
+	private static final ThreadMXBean THREAD_BEAN =
+			ManagementFactory.getThreadMXBean();
+
+	private static final boolean CPU_TIME_SUPPORTED;
+
+	private static final Method GET_THREAD_ALLOCATED_BYTES;
+
+	static
+	{
+		boolean cpuTimeSupported = false;
+		try
+		{
+			cpuTimeSupported = THREAD_BEAN.isCurrentThreadCpuTimeSupported();
+		}
+		catch (UnsupportedOperationException e)
+		{
+			cpuTimeSupported = false;
+		}
+		catch (SecurityException e)
+		{
+			cpuTimeSupported = false;
+		}
+		CPU_TIME_SUPPORTED = cpuTimeSupported;
+
+		// Looked up reflectively to avoid a compile time dependency on the
+		// non-portable com.sun.management API.
+		Method getThreadAllocatedBytes = null;
+		try
+		{
+			Class<?> extBean = Class.forName("com.sun.management.ThreadMXBean");
+			if (extBean.isInstance(THREAD_BEAN))
+			{
+				Method m = extBean.getMethod("getThreadAllocatedBytes", long.class);
+				if (((Long) m.invoke(THREAD_BEAN, Thread.currentThread().getId())) >= 0)
+					getThreadAllocatedBytes = m;
+			}
+		}
+		catch (Exception e)
+		{
+			// Not supported by this JVM
+		}
+		GET_THREAD_ALLOCATED_BYTES = getThreadAllocatedBytes;
+	}
+
+	// =========================================================================
+
+	private long wallStart;
+
+	private long cpuStart;
+
+	private long bytesStart;
+
+	private long wallTime = -1;
+
+	private long cpuTime = -1;
+
+	private long allocatedBytes = -1;
+
+	// =========================================================================
+
+	/**
+	 * Whether CPU time is supported by the JVM and currently enabled.
+	 */
+	public static boolean isCpuTimeSupported()
+	{
+		return CPU_TIME_SUPPORTED && isCpuTimeEnabled();
+	}
+
+	/**
+	 * Enables CPU time measurement in the JVM if it is supported and not
+	 * enabled yet. This is a JVM-wide setting which is left enabled.
+	 * 
+	 * @return Whether CPU time can be measured.
+	 */
+	public static boolean enableCpuTime()
+	{
+		if (!CPU_TIME_SUPPORTED)
+			return false;
+		try
+		{
+			if (!THREAD_BEAN.isThreadCpuTimeEnabled())
+				THREAD_BEAN.setThreadCpuTimeEnabled(true);
+			return true;
+		}
+		catch (UnsupportedOperationException e)
+		{
+			return false;
+		}
+		catch (SecurityException e)
+		{
+			return false;
+		}
+	}
+
+	public static boolean isAllocatedBytesSupported()
+	{
+		return GET_THREAD_ALLOCATED_BYTES != null;
+	}
+
+	// =========================================================================
+
+	public ThreadResourceMeter start()
+	{
+		wallTime = -1;
+		cpuTime = -1;
+		allocatedBytes = -1;
+
+		bytesStart = currentThreadAllocatedBytes();
+		cpuStart = currentThreadCpuTime();
+		wallStart = System.nanoTime();
+		return this;
+	}
+
+	public ThreadResourceMeter stop()
+	{
+		long wallStop = System.nanoTime();
+		long cpuStop = currentThreadCpuTime();
+		long bytesStop = currentThreadAllocatedBytes();
+
+		wallTime = wallStop - wallStart;
+		cpuTime = (cpuStart < 0 || cpuStop < 0) ? -1 : cpuStop - cpuStart;
+		allocatedBytes = (bytesStart < 0 || bytesStop < 0) ? -1 : bytesStop - bytesStart;
+		return this;
+	}
+
+	/**
+	 * The elapsed wall time in nanoseconds.
+	 */
+	public long getWallTime()
+	{
+		return wallTime;
+	}
+
+	/**
+	 * The CPU time in nanoseconds or -1 if not supported.
+	 */
+	public long getCpuTime()
+	{
+		return cpuTime;
+	}
+
+	/**
+	 * The number of allocated bytes or -1 if not supported.
+	 */
+	public long getAllocatedBytes()
+	{
+		return allocatedBytes;
+	}
+
+	// =========================================================================
+
+	private static boolean isCpuTimeEnabled()
+	{
+		try
+		{
+			return THREAD_BEAN.isThreadCpuTimeEnabled();
+		}
+		catch (UnsupportedOperationException e)
+		{
+			return false;
+		}
+	}
+
+	private static long currentThreadCpuTime()
+	{
+		// Returns -1 if CPU time measurement is disabled
+		return CPU_TIME_SUPPORTED ? THREAD_BEAN.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long currentThreadAllocatedBytes()
+	{
+		if (GET_THREAD_ALLOCATED_BYTES == null)
+			return -1;
+		try
+		{
+			return (Long) GET_THREAD_ALLOCATED_BYTES.invoke(THREAD_BEAN, Thread.currentThread().getId());
+		}
+		catch (Exception e)
+		{
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.EngineProfiler.ResolutionKind;
+import org.sweble.wikitext.engine.EngineProfiler.Stats;
+import org.sweble.wikitext.engine.nodes.EngLogContainer;
+import org.sweble.wikitext.engine.nodes.EngLogParserPass;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.EngineTestFixture;
+import org.sweble.wikitext.engine.utils.ThreadResourceMeter;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class EngineProfilerTest
+{
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	// =========================================================================
+
+	@Test
+	public void testAggregatesResolutionsByTemplateName() throws Exception
+	{
+		fixture.addPage("Template:Outer", -1, "a{{Inner}}{{Inner}}b{{#if: x | y | z}}");
+		fixture.addPage("Template:Inner", -1, "{{lc:ABC}}");
+
+		EngineProfiler profiler = new EngineProfiler();
+		expand("{{Outer}}{{Outer}}", profiler);
+
+		Stats outer = getStats(profiler, ResolutionKind.TEMPLATE, "Template:Outer");
+		Stats inner = getStats(profiler, ResolutionKind.TEMPLATE, "Template:Inner");
+		assertEquals(2, outer.getCount());
+		assertEquals(4, inner.getCount());
+		assertEquals(2, getStats(profiler, ResolutionKind.PARSER_FUNCTION, "if").getCount());
+		assertEquals(4, getStats(profiler, ResolutionKind.PARSER_FUNCTION, "lc").getCount());
+
+		assertTrue(outer.getWallTime() >= inner.getWallTime());
+		assertTrue(outer.getSelfWallTime() <= outer.getWallTime());
+
+		if (ThreadResourceMeter.isCpuTimeSupported())
+			assertTrue(outer.getSelfCpuTime() <= outer.getCpuTime());
+		else
+			assertEquals(-1, outer.getCpuTime());
+
+		List<Stats> top = profiler.getTopN(ResolutionKind.TEMPLATE, 1);
+		assertEquals(1, top.size());
+
+		String report = profiler.createReport(10);
+		assertTrue(report.contains("Template:Outer"));
+		assertTrue(report.contains("lc"));
+
+		profiler.reset();
+		assertTrue(profiler.getStats(ResolutionKind.TEMPLATE).isEmpty());
+	}
+
+	@Test
+	public void testRecordsResourceUsageInLogsOnlyIfProfiling() throws Exception
+	{
+		fixture.addPage("Template:Inner", -1, "{{lc:ABC}}");
+
+		EngProcessedPage page = expand("{{Inner}}", new EngineProfiler());
+		if (ThreadResourceMeter.isCpuTimeSupported())
+			assertNotNull(findLog(page).getCpuTimeNeeded());
+		if (ThreadResourceMeter.isAllocatedBytesSupported())
+			assertNotNull(findLog(page).getBytesAllocated());
+
+		page = expand("{{Inner}}", null);
+		assertNull(findLog(page).getCpuTimeNeeded());
+		assertNull(findLog(page).getBytesAllocated());
+	}
+
+	@Test
+	public void testRecordsParserStatsInLogsOnlyIfProfiling() throws Exception
+	{
+		EngProcessedPage page = parse("== A ==\n[[B|c]]\n", new EngineProfiler());
+		EngLogParserPass log = findParserLog(page);
+		assertNotNull(log.getParserStats());
+		assertTrue(log.getParserStats().getMemoizedProductions().containsKey("InternalLink"));
+
+		page = parse("== A ==\n[[B|c]]\n", null);
+		assertNull(findParserLog(page).getParserStats());
+	}
+
+	// =========================================================================
+
+	private EngProcessedPage expand(String wikitext, EngineProfiler profiler) throws Exception
+	{
+		WtEngineImpl engine = fixture.createEngine();
+		engine.setProfiler(profiler);
+		return engine.expand(fixture.getPageId(), wikitext, fixture.getCallback());
+	}
+
+	private EngProcessedPage parse(String wikitext, EngineProfiler profiler) throws Exception
+	{
+		WtEngineImpl engine = fixture.createEngine();
+		engine.setProfiler(profiler);
+		return engine.parse(fixture.getPageId(), wikitext, fixture.getCallback());
+	}
+
+	private static Stats getStats(
+			EngineProfiler profiler,
+			ResolutionKind kind,
+			String name)
+	{
+		for (Stats stats : profiler.getStats(kind))
+		{
+			if (stats.getName().equals(name))
+				return stats;
+		}
+		fail("No statistics for " + name);
+		return null;
+	}
+
+	/**
+	 * Returns the first pass log below the processing pass.
+	 */
+	private static EngLogContainer findLog(EngProcessedPage page)
+	{
+		// The processing pass log is the second child of a processed page
+		for (WtNode n : (EngLogContainer) page.get(1))
+		{
+			if (n instanceof EngLogContainer)
+				return (EngLogContainer) n;
+		}
+		fail("No pass log found");
+		return null;
+	}
+
+	private static EngLogParserPass findParserLog(EngProcessedPage page)
+	{
+		for (WtNode n : (EngLogContainer) page.get(1))
+		{
+			if (n instanceof EngLogParserPass)
+				return (EngLogParserPass) n;
+		}
+		fail("No parser pass log found");
+		return null;
+	}
+}
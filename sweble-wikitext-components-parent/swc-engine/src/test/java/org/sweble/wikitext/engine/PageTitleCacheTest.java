@@ -0,0 +1,123 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.TreeSet;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.NamespaceImpl;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.parser.parser.LinkTargetException;
+
+public class PageTitleCacheTest
+{
+	private final WikiConfigImpl config = DefaultConfigEnWp.generate();
+
+	// =========================================================================
+
+	@Test
+	public void testMakeReturnsCachedInstance() throws Exception
+	{
+		PageTitle a = PageTitle.make(config, "Main Page");
+		PageTitle b = PageTitle.make(config, "Main Page");
+		assertSame(a, b);
+
+		// Different targets and default namespaces are cached separately
+		PageTitle c = PageTitle.make(config, "Main_Page");
+		assertNotSame(a, c);
+		assertEquals(a, c);
+
+		PageTitle d = PageTitle.make(config, "Main Page", config.getTemplateNamespace());
+		assertNotSame(a, d);
+		assertEquals(config.getTemplateNamespace(), d.getNamespace());
+	}
+
+	@Test
+	public void testInvalidTargetsAreNotCached() throws Exception
+	{
+		int size = config.getPageTitleCache().size();
+		for (int i = 0; i < 2; ++i)
+		{
+			try
+			{
+				PageTitle.make(config, "Help:");
+			}
+			catch (LinkTargetException e)
+			{
+				// Expected
+			}
+		}
+		assertEquals(size, config.getPageTitleCache().size());
+	}
+
+	@Test
+	public void testCacheIsClearedWhenNamespacesChange() throws Exception
+	{
+		PageTitle a = PageTitle.make(config, "Foo:Bar");
+		assertEquals(config.getDefaultNamespace(), a.getNamespace());
+
+		config.addNamespace(new NamespaceImpl(
+				3000, "Foo", "Foo", false, false, new TreeSet<String>()));
+
+		PageTitle b = PageTitle.make(config, "Foo:Bar");
+		assertEquals("Foo", b.getNamespace().getName());
+		assertEquals("Bar", b.getTitle());
+	}
+
+	@Test
+	public void testCacheIsClearedWhenXmlEntitiesChange() throws Exception
+	{
+		PageTitle.make(config, "Main Page");
+		assertTrue(config.getPageTitleCache().size() > 0);
+
+		config.getParserConfig().addXmlEntity("sweble", "x");
+		assertEquals(0, config.getPageTitleCache().size());
+
+		PageTitle a = PageTitle.make(config, "Foo&sweble;Bar");
+		assertEquals("FooxBar", a.getTitle());
+	}
+
+	@Test
+	public void testCacheIsBounded() throws Exception
+	{
+		PageTitleCache cache = new PageTitleCache(4);
+		PageTitle[] titles = new PageTitle[10];
+		for (int i = 0; i < titles.length; ++i)
+		{
+			titles[i] = PageTitle.make(config, "Page " + i);
+			cache.put("Page " + i, null, titles[i]);
+			assertTrue(cache.size() <= 2 * cache.getCapacity());
+		}
+
+		assertNull(cache.get("Page 0", null));
+		assertSame(titles[9], cache.get("Page 9", null));
+		assertSame(titles[5], cache.get("Page 5", null));
+
+		// A title that was moved back to the young generation survives
+		for (int i = 10; i < 13; ++i)
+			cache.put("Page " + i, null, PageTitle.make(config, "Page " + i));
+		assertSame(titles[5], cache.get("Page 5", null));
+	}
+}
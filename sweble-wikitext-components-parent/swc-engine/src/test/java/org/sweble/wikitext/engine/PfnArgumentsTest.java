@@ -0,0 +1,88 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.utils.EngineTestFixture;
+import org.sweble.wikitext.engine.utils.EngineTestFixture.PageStore;
+
+public class PfnArgumentsTest
+{
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	private final ExistsRecorder callback = new ExistsRecorder();
+
+	// =========================================================================
+
+	@Test
+	public void testOnlyTakenBranchIsExpanded() throws Exception
+	{
+		assertEquals("no", expand("{{#if: x |{{#ifexist:A|yes|no}}|{{#ifexist:B|yes|no}}}}"));
+		assertEquals("[A]", callback.titles.toString());
+	}
+
+	@Test
+	public void testOnlySelectedCaseIsExpanded() throws Exception
+	{
+		assertEquals("no", expand("{{#switch: b |a={{#ifexist:A|yes|no}}|b={{#ifexist:B|yes|no}}|{{#ifexist:C|yes|no}}}}"));
+		assertEquals("[B]", callback.titles.toString());
+	}
+
+	@Test
+	public void testArgumentIsExpandedOnce() throws Exception
+	{
+		assertEquals("no", expand("{{#iferror:{{#ifexist:A|yes|no}}}}"));
+		assertEquals("__no", expand("{{padleft:{{#ifexist:B|yes|no}}|4|_}}"));
+		assertEquals("[A, B]", callback.titles.toString());
+	}
+
+	@Test
+	public void testArgumentsOfUrlencodeAreExpanded() throws Exception
+	{
+		assertEquals("a+b", expand("{{urlencode:{{#if:x|a b}}}}"));
+		assertEquals("a_b", expand("{{urlencode:a b|{{#if:x|WIKI}}}}"));
+	}
+
+	// =========================================================================
+
+	private String expand(String wikitext) throws Exception
+	{
+		return fixture.expandToText(wikitext, callback);
+	}
+
+	private static final class ExistsRecorder
+			extends
+				PageStore
+			implements
+				ExistenceCheckingCallback
+	{
+		private final List<String> titles = new ArrayList<String>();
+
+		@Override
+		public boolean exists(ExpansionFrame expansionFrame, PageTitle pageTitle)
+		{
+			titles.add(pageTitle.getTitle());
+			return false;
+		}
+	}
+}
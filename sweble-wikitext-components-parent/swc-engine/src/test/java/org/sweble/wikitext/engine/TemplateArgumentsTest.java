@@ -0,0 +1,119 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
+import org.sweble.wikitext.engine.utils.EngineTestFixture;
+import org.sweble.wikitext.parser.nodes.WtNodeList;
+
+public class TemplateArgumentsTest
+{
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	private final WikiConfigImpl config = fixture.getConfig();
+
+	private final EngineNodeFactory nf = config.getNodeFactory();
+
+	// =========================================================================
+
+	@Test
+	public void testNamedArgumentsTakePrecedenceOverUnnamedArguments()
+	{
+		WtNodeList a = nf.list(nf.text("a"));
+		WtNodeList b = nf.list(nf.text("b"));
+		WtNodeList c = nf.list(nf.text("c"));
+		WtNodeList d = nf.list(nf.text("d"));
+
+		TemplateArguments args = new TemplateArguments(config.getAstTextUtils());
+		args.addUnnamed(a);
+		args.putNamed("2", b);
+		args.addUnnamed(c);
+		args.putNamed("x", d);
+
+		assertSame(a, args.get("1"));
+		assertSame(b, args.get("2"));
+		assertSame(d, args.get("x"));
+		assertNull(args.get("01"));
+		assertNull(args.get("3"));
+		assertNull(args.get("0"));
+		assertNull(args.get(""));
+
+		Map<String, WtNodeList> expected = new HashMap<String, WtNodeList>();
+		expected.put("1", a);
+		expected.put("2", b);
+		expected.put("x", d);
+		assertEquals(expected, args);
+		assertEquals(3, args.size());
+	}
+
+	@Test
+	public void testManyNamedArguments()
+	{
+		TemplateArguments args = new TemplateArguments(config.getAstTextUtils());
+		for (int i = 0; i < 100; ++i)
+			args.putNamed("p" + i, nf.list(nf.text("v" + i)));
+		args.putNamed("p7", nf.list(nf.text("w")));
+
+		assertEquals(100, args.size());
+		for (int i = 0; i < 100; ++i)
+			assertEquals((i == 7) ? "w" : "v" + i, args.getText("p" + i));
+		assertNull(args.getText("p100"));
+	}
+
+	@Test
+	public void testTextIsMemoized()
+	{
+		TemplateArguments args = new TemplateArguments(config.getAstTextUtils());
+		args.addUnnamed(nf.list(nf.text("a"), nf.text("b")));
+
+		String text = args.getText("1");
+		assertEquals("ab", text);
+		assertSame(text, args.getText("1"));
+	}
+
+	@Test
+	public void testTransclusionArguments() throws Exception
+	{
+		String template = ""
+				+ "{{#if:{{{title|}}}|T={{{title}}};}}"
+				+ "{{#if: {{{missing|}}} |M;}}"
+				+ "{{{1}}};{{{ 2 }}};{{{3|d}}};{{{{{{key}}}}}};"
+				+ "{{#ifeq: x{{{1}}}x | x a x |eq|ne}}";
+
+		assertEquals("T=The title; a ; b ;d;v;eq", expand(template, "{{T| a | b |title= The title |key=k|k=v}}"));
+		assertEquals("c; e ;d;c;ne", expand(template, "{{T|1=c| b | e |key=1}}"));
+		assertEquals("c;b;x;x;ne", expand(template, "{{T|x|2=b|3=x|key=3|y|1=c}}"));
+	}
+
+	// =========================================================================
+
+	private String expand(String template, String wikitext) throws Exception
+	{
+		fixture.addPage("Template:T", 1, template);
+		return fixture.expandToText(wikitext);
+	}
+}
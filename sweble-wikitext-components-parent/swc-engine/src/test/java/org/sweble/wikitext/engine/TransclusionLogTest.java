@@ -0,0 +1,100 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.nodes.EngLogProcessingPass;
+import org.sweble.wikitext.engine.nodes.EngLogTransclusionResolution;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.EngineTestFixture;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class TransclusionLogTest
+{
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	// =========================================================================
+
+	@Test
+	public void testTransclusionLogContainsProcessingPassOfTranscludedPage() throws Exception
+	{
+		fixture.addPage("Template:A", 7, "a");
+
+		EngProcessedPage page = fixture.expand("{{A}}");
+
+		EngLogTransclusionResolution resolution = findTransclusion(page.getLog());
+		assertNotNull(resolution);
+		EngLogProcessingPass pass = findProcessingPass(resolution);
+		assertNotNull(pass);
+		assertEquals("Template:A", pass.getTitle());
+		assertEquals(Long.valueOf(7), pass.getRevision());
+	}
+
+	@Test
+	public void testTransclusionLogsAreNested() throws Exception
+	{
+		fixture.addPage("Template:A", 7, "a{{B}}");
+		fixture.addPage("Template:B", 7, "b");
+
+		EngProcessedPage page = fixture.expand("{{A}}");
+
+		EngLogProcessingPass passA = findProcessingPass(findTransclusion(page.getLog()));
+		assertEquals("Template:A", passA.getTitle());
+
+		EngLogTransclusionResolution resolutionB = findTransclusion(passA);
+		assertNotNull(resolutionB);
+		EngLogProcessingPass passB = findProcessingPass(resolutionB);
+		assertNotNull(passB);
+		assertEquals("Template:B", passB.getTitle());
+		assertEquals(Long.valueOf(7), passB.getRevision());
+	}
+
+	// =========================================================================
+
+	/**
+	 * Finds the first transclusion log below the given log which does not
+	 * belong to another transcluded page.
+	 */
+	private static EngLogTransclusionResolution findTransclusion(WtNode log)
+	{
+		for (WtNode c : log)
+		{
+			if (c == null || c instanceof EngLogProcessingPass)
+				continue;
+			if (c instanceof EngLogTransclusionResolution)
+				return (EngLogTransclusionResolution) c;
+			EngLogTransclusionResolution found = findTransclusion(c);
+			if (found != null)
+				return found;
+		}
+		return null;
+	}
+
+	private static EngLogProcessingPass findProcessingPass(WtNode resolution)
+	{
+		for (WtNode c : resolution)
+		{
+			if (c instanceof EngLogProcessingPass)
+				return (EngLogProcessingPass) c;
+		}
+		return null;
+	}
+}
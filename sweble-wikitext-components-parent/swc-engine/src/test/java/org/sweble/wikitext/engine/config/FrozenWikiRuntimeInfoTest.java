@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.junit.Test;
+
+public class FrozenWikiRuntimeInfoTest
+{
+	@Test
+	public void testTimeIsFrozenOnFirstUse()
+	{
+		TickingRuntimeInfo ticking = new TickingRuntimeInfo();
+		FrozenWikiRuntimeInfo frozen = new FrozenWikiRuntimeInfo(ticking);
+
+		long time = frozen.getDateAndTime().getTimeInMillis();
+		assertEquals(time, frozen.getDateAndTime().getTimeInMillis());
+		assertEquals(time, frozen.getDateAndTime(Locale.GERMAN).getTimeInMillis());
+		assertEquals(time, frozen.getDateAndTime(Locale.FRENCH).getTimeInMillis());
+		assertEquals(time, frozen.getTimeInMillis());
+
+		// The wrapped runtime info is only asked once per locale
+		frozen.getDateAndTime(Locale.GERMAN);
+		assertEquals(3, ticking.calls);
+	}
+
+	@Test
+	public void testCallersReceiveCopies()
+	{
+		FrozenWikiRuntimeInfo frozen = new FrozenWikiRuntimeInfo(new TickingRuntimeInfo());
+
+		Calendar first = frozen.getDateAndTime(Locale.ENGLISH);
+		long time = first.getTimeInMillis();
+		first.add(Calendar.DAY_OF_YEAR, 1);
+
+		Calendar second = frozen.getDateAndTime(Locale.ENGLISH);
+		assertNotSame(first, second);
+		assertEquals(time, second.getTimeInMillis());
+	}
+
+	@Test
+	public void testCalendarsKeepTimeZoneOfWrappedRuntimeInfo()
+	{
+		FrozenWikiRuntimeInfo frozen = new FrozenWikiRuntimeInfo(new TickingRuntimeInfo());
+
+		assertEquals("Europe/Berlin", frozen.getDateAndTime().getTimeZone().getID());
+		assertEquals("Asia/Tokyo", frozen.getDateAndTime(Locale.JAPANESE).getTimeZone().getID());
+	}
+
+	// =========================================================================
+
+	/**
+	 * Reports a time that advances by one hour with every call.
+	 */
+	private static final class TickingRuntimeInfo
+			implements
+				WikiRuntimeInfo
+	{
+		private int calls;
+
+		@Override
+		public Calendar getDateAndTime()
+		{
+			return tick(new GregorianCalendar(TimeZone.getTimeZone("Europe/Berlin")));
+		}
+
+		@Override
+		public Calendar getDateAndTime(Locale locale)
+		{
+			return tick(new GregorianCalendar(TimeZone.getTimeZone("Asia/Tokyo"), locale));
+		}
+
+		private Calendar tick(Calendar calendar)
+		{
+			calendar.setTimeInMillis(1488848523000L + 3600000L * calls++);
+			return calendar;
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.ParserFunctionBase;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+
+public class WikiConfigSnapshotTest
+{
+	@Test
+	public void testSnapshotRestoresConfiguration() throws Exception
+	{
+		WikiConfigImpl original = DefaultConfigEnWp.generate();
+		WikiConfigImpl restored = WikiConfigSnapshot.read(WikiConfigSnapshot.toByteArray(original));
+
+		assertFalse(restored.isFrozen());
+		assertEquals(original, restored);
+		assertEquals(toXml(original), toXml(restored));
+
+		ParserFunctionBase pfn = restored.getParserFunction("#if:");
+		assertNotNull(pfn);
+		assertSame(restored, pfn.getWikiConfig());
+	}
+
+	@Test
+	public void testXmlConfigurationIsConvertedToSnapshot() throws Exception
+	{
+		WikiConfigImpl original = WikiConfigImpl.load(getClass().getResourceAsStream(
+				"/org/sweble/wikitext/engine/utils/DefaultConfigEnWp.xml"));
+
+		File xml = File.createTempFile("wiki-config", ".xml");
+		File snapshot = File.createTempFile("wiki-config", ".snapshot");
+		try
+		{
+			original.save(xml);
+			WikiConfigSnapshot.main(new String[] { xml.getPath(), snapshot.getPath() });
+			assertEquals(original, WikiConfigSnapshot.read(snapshot));
+		}
+		finally
+		{
+			xml.delete();
+			snapshot.delete();
+		}
+	}
+
+	@Test
+	public void testFrozenConfigurationIsRestoredFrozen() throws Exception
+	{
+		WikiConfigImpl original = DefaultConfigEnWp.generate().freeze();
+		WikiConfigImpl restored = WikiConfigSnapshot.read(WikiConfigSnapshot.toByteArray(original));
+
+		assertTrue(restored.isFrozen());
+		assertEquals(original, restored);
+	}
+
+	@Test
+	public void testSnapshotCanBeReadFromMappedFile() throws Exception
+	{
+		WikiConfigImpl original = DefaultConfigEnWp.generate();
+		File file = File.createTempFile("wiki-config", ".snapshot");
+		try
+		{
+			WikiConfigSnapshot.write(original, file);
+			assertEquals(original, WikiConfigSnapshot.read(file));
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testBundledSnapshotEqualsGeneratedConfiguration() throws Exception
+	{
+		// Falls back to generating the configuration if the snapshot was not
+		// built (e.g. when running tests from an IDE).
+		assertEquals(DefaultConfigEnWp.generate(), DefaultConfigEnWp.fromSnapshot());
+	}
+
+	@Test
+	public void testMissingResourceYieldsNull() throws Exception
+	{
+		assertNull(WikiConfigSnapshot.readResource(getClass(), "no-such.snapshot"));
+	}
+
+	@Test
+	public void testCorruptSnapshotIsRejected() throws Exception
+	{
+		byte[] data = WikiConfigSnapshot.toByteArray(DefaultConfigEnWp.generate());
+
+		assertRejected(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+		assertRejected(Arrays.copyOf(data, data.length / 2));
+	}
+
+	// =========================================================================
+
+	private static void assertRejected(byte[] data)
+	{
+		try
+		{
+			WikiConfigSnapshot.read(data);
+			fail();
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+	private static String toXml(WikiConfigImpl config) throws Exception
+	{
+		StringWriter writer = new StringWriter();
+		config.save(writer);
+		return writer.toString();
+	}
+}
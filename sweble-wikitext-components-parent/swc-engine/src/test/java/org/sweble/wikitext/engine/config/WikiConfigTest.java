@@ -18,11 +18,18 @@
 package org.sweble.wikitext.engine.config;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.junit.Test;
+import org.sweble.wikitext.engine.ParserFunctionBase;
+import org.sweble.wikitext.engine.TagExtensionBase;
 import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
 
 public class WikiConfigTest
@@ -74,4 +81,109 @@ public class WikiConfigTest
 		// Now check if the configurations are really identical
 		assertEquals(xconf, gconf);
 	}
+
+	@Test
+	public void testFrozenLookupsEqualUnfrozenLookups() throws Exception
+	{
+		WikiConfigImpl unfrozen = DefaultConfigEnWp.generate();
+		WikiConfigImpl frozen = DefaultConfigEnWp.generate().freeze();
+		assertTrue(frozen.isFrozen());
+
+		List<String> names = new ArrayList<String>();
+		for (I18nAlias alias : unfrozen.getI18nAliases())
+			names.addAll(alias.getAliases());
+		for (Namespace ns : unfrozen.getNamespaces())
+		{
+			names.add(ns.getName());
+			names.add(ns.getCanonical());
+			names.addAll(ns.getAliases());
+		}
+		for (TagExtensionBase tagExt : unfrozen.getTagExtensions())
+			names.add(tagExt.getId());
+		names.add("unknown");
+		names.add("\u0130f:");
+		names.add("\u03A3\u03A3");
+
+		for (String name : names)
+		{
+			for (String variant : new String[] { name, name.toLowerCase(), name.toUpperCase() })
+			{
+				assertEquals(variant,
+						id(unfrozen.getI18nAlias(variant)),
+						id(frozen.getI18nAlias(variant)));
+				assertEquals(variant,
+						id(unfrozen.getParserFunction(variant)),
+						id(frozen.getParserFunction(variant)));
+				assertEquals(variant,
+						id(unfrozen.getPageSwitch(variant)),
+						id(frozen.getPageSwitch(variant)));
+				assertEquals(variant,
+						id(unfrozen.getNamespace(variant)),
+						id(frozen.getNamespace(variant)));
+				assertEquals(variant,
+						id(unfrozen.getTagExtension(variant)),
+						id(frozen.getTagExtension(variant)));
+			}
+		}
+
+		assertEquals(unfrozen.getParserConfig().isUrlProtocol("HTTP://"), frozen.getParserConfig().isUrlProtocol("HTTP://"));
+		assertEquals(unfrozen.getParserConfig().isUrlProtocol("foo://"), frozen.getParserConfig().isUrlProtocol("foo://"));
+		assertNull(frozen.getNamespace("no such namespace"));
+	}
+
+	@Test
+	public void testFrozenConfigCannotBeModified() throws Exception
+	{
+		WikiConfigImpl config = DefaultConfigEnWp.generate().freeze();
+		try
+		{
+			config.setSiteName("Other");
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+		}
+		try
+		{
+			config.getParserConfig().addUrlProtocol("foo://");
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+		}
+		try
+		{
+			config.getEngineConfig().setTrimTransparentBeforeParsing(true);
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+		}
+		try
+		{
+			config.getParserConfig().getXmlEntities().put("foo", "bar");
+			fail();
+		}
+		catch (UnsupportedOperationException e)
+		{
+		}
+
+		// Freezing twice is fine
+		config.freeze();
+	}
+
+	// =========================================================================
+
+	private static Object id(Object o)
+	{
+		if (o instanceof I18nAlias)
+			return ((I18nAlias) o).getId();
+		if (o instanceof ParserFunctionBase)
+			return ((ParserFunctionBase) o).getId();
+		if (o instanceof Namespace)
+			return ((Namespace) o).getId();
+		if (o instanceof TagExtensionBase)
+			return ((TagExtensionBase) o).getId();
+		return o;
+	}
 }
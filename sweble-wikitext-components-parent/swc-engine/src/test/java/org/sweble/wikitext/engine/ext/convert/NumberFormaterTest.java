@@ -17,6 +17,10 @@
 
 package org.sweble.wikitext.engine.ext.convert;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -141,4 +145,47 @@ public class NumberFormaterTest
 		assertEquals("−1.1234567890123457", NumberFormater.formatNumberRounded(-1.123456789012345678, 17));
 		assertEquals("100,000.00", NumberFormater.formatNumberRounded(100000, 2));
 	}
+
+	@Test
+	public void testAsSuperscriptAndSubscriptNumber()
+	{
+		assertEquals("⁻¹²³⁴⁵⁶⁷⁸⁹⁰", NumberFormater.asSuperscriptNumber("-1234567890"));
+		assertEquals("₋₁₂₃₄₅₆₇₈₉₀", NumberFormater.asSubscriptNumber("-1234567890"));
+		assertEquals("CO₂", NumberFormater.asSubscriptNumber("CO2"));
+	}
+
+	@Test
+	public void testFormatNumberDefaultFromSeveralThreads() throws Exception
+	{
+		final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++)
+		{
+			threads[t] = new Thread()
+			{
+				@Override
+				public void run()
+				{
+					for (int i = 0; i < 2000; i++)
+					{
+						check("1,235", NumberFormater.formatNumberDefault(1234.5, 4));
+						check("12.340", NumberFormater.formatNumberDefault(12.34, 5));
+						check("1.1×10¹⁰", NumberFormater.formatNumberDefault(11000000000d, 2));
+					}
+				}
+
+				private void check(String expected, String actual)
+				{
+					if (!expected.equals(actual))
+						failures.add(expected + " != " + actual);
+				}
+			};
+			threads[t].start();
+		}
+
+		for (Thread thread : threads)
+			thread.join();
+
+		assertEquals(Collections.<String> emptyList(), failures);
+	}
 }
@@ -0,0 +1,65 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.ext.convert;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class UnitsTest
+{
+	@Test
+	public void testSearchUnitFromName()
+	{
+		assertSame(Units.SQUARE_KILOMETRE, Units.searchUnitFromName("square kilometre"));
+		assertSame(Units.SQUARE_KILOMETRE, Units.searchUnitFromName("square kilometer"));
+		assertSame(Units.SQUARE_KILOMETRE, Units.searchUnitFromName("km2"));
+		assertNull(Units.searchUnitFromName("no such unit"));
+	}
+
+	@Test
+	public void testSearchUnitFromSymbol()
+	{
+		// Symbols which are no alternative code are found as well
+		assertSame(Units.CUERDA, Units.searchUnitFromName("cda"));
+		assertSame(Units.STANDARD_GRAVITY, Units.searchUnitFromName("g₀"));
+
+		// The first unit with a symbol wins
+		assertSame(Units.SQUARE_FOOT, Units.searchUnitFromName("sq ft"));
+	}
+
+	@Test
+	public void testEveryDefaultConversionIsResolved()
+	{
+		for (Units unit : Units.values())
+		{
+			String[] names = unit.getDefaultCvt().getUnits();
+			Units[] units = unit.getDefaultCvtUnits();
+			assertEquals(unit.name(), names.length, units.length);
+			for (int i = 0; i < names.length; i++)
+				assertSame(unit.name(), Units.searchUnitFromName(names[i]), units[i]);
+		}
+
+		assertArrayEquals(
+				new Units[] { Units.HECTARE, Units.ACRE },
+				Units.CUERDA.getDefaultCvtUnits());
+	}
+}
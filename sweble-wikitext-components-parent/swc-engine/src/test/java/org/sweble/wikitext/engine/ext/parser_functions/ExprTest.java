@@ -18,11 +18,13 @@
 package org.sweble.wikitext.engine.ext.parser_functions;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.math.BigDecimal;
 
 import org.junit.Before;
 import org.junit.Test;
+import org.sweble.wikitext.engine.ext.parser_functions.ExprParser.ExprError;
 
 public class ExprTest
 {
@@ -161,6 +163,53 @@ public class ExprTest
 				0);
 	}
 
+	@Test
+	public void testEntitiesAreUnescaped() throws Exception
+	{
+		assertEquals("1", p.parse("1 &lt; 2"));
+		assertEquals("1", p.parse("1 &lt;&gt; 2"));
+		assertEquals("-1", p.parse("&minus;1"));
+		assertEquals("-1", p.parse("\u22121"));
+	}
+
+	@Test
+	public void testErrorsAreReportedInEvaluationOrder() throws Exception
+	{
+		// The division is evaluated before the closing bracket is found
+		assertError("Expression error: division_by_zero", "1 / 0 )");
+		assertError("Expression error: unexpected_closing_bracket", "1 / 2 )");
+		assertError("Expression error: Missing operand for +.", "1 +");
+		assertError("Expression error: unclosed_bracket", "(1");
+		assertError("Expression error: Unrecognised word \"foo\".", "1 + Foo");
+		assertError("Expression error: Unrecognised word \"&\".", "1 &amp; 2");
+	}
+
+	@Test
+	public void testRepeatedEvaluationYieldsSameResult() throws Exception
+	{
+		for (int i = 0; i < 3; ++i)
+		{
+			assertEquals("3", p.parse("1 + 2"));
+			assertEquals("3", new ExprParser().parse("1 + 2"));
+			assertError("Expression error: division_by_zero", "1 / 0");
+		}
+	}
+
+	// =========================================================================
+
+	private void assertError(String expected, String expr)
+	{
+		try
+		{
+			p.parse(expr);
+			fail("Expected error for " + expr);
+		}
+		catch (ExprError e)
+		{
+			assertEquals(expected, e.getMessage());
+		}
+	}
+
 	private static double round(double value, int digits)
 	{
 		return new BigDecimal(value)
@@ -0,0 +1,133 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.ext.parser_functions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.nodes.EngineNodeFactory;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.engine.utils.WtEngineToolbox.TestExpansionCallback;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class ParserFunctionSwitchTest
+{
+	private static final String[] LABELS = {
+			"a", "b", " a ", "1", "01", "1.0", "1e0", "2", "-0", "0", "NaN",
+			"#default", "", "x y" };
+
+	/**
+	 * Expands to nothing but makes a case label dynamic.
+	 */
+	private static final String DYNAMIC = "{{#if:||}}";
+
+	private final WikiConfigImpl config = DefaultConfigEnWp.generate();
+
+	private final EngineNodeFactory nf = config.getNodeFactory();
+
+	// =========================================================================
+
+	@Test
+	public void testSignatureOfStaticLabels()
+	{
+		String signature = CompiledSwitch.signature(args(
+				nf.list(nf.text("test")),
+				nf.list(nf.text(" a = A")),
+				nf.list(nf.text("b")),
+				nf.list(nf.text("c ="), nf.tmplParam(nf.name(nf.list(nf.text("x"))))),
+				nf.list(nf.tmplParam(nf.name(nf.list(nf.text("x")))))));
+		assertEquals("= a \uFFFF|b\uFFFF=c \uFFFF?\uFFFF", signature);
+	}
+
+	@Test
+	public void testSignatureOfDynamicLabelsIsNull()
+	{
+		assertNull(CompiledSwitch.signature(args(
+				nf.list(nf.text("test")))));
+
+		assertNull(CompiledSwitch.signature(args(
+				nf.list(nf.text("test")),
+				nf.list(nf.tmplParam(nf.name(nf.list(nf.text("x")))), nf.text("=A")),
+				nf.list(nf.text("B")))));
+
+		assertNull(CompiledSwitch.signature(args(
+				nf.list(nf.text("test")),
+				nf.list(nf.tmplParam(nf.name(nf.list(nf.text("x"))))),
+				nf.list(nf.text("B")))));
+
+		assertNotNull(CompiledSwitch.signature(args(
+				nf.list(nf.text("test")),
+				nf.list(nf.text("a=A")),
+				nf.list(nf.tmplParam(nf.name(nf.list(nf.text("x"))))))));
+	}
+
+	@Test
+	public void testCompiledSwitchYieldsSameResultAsLinearScan() throws Exception
+	{
+		WtEngineImpl engine = new WtEngineImpl(config);
+		Random random = new Random(5);
+		for (int i = 0; i < 1000; ++i)
+		{
+			int cases = 1 + random.nextInt(8);
+			StringBuilder compiled = new StringBuilder();
+			StringBuilder linear = new StringBuilder();
+			String test = LABELS[random.nextInt(LABELS.length)];
+			compiled.append("{{#switch:").append(test);
+			linear.append("{{#switch:").append(test);
+			for (int j = 0; j < cases; ++j)
+			{
+				String label = LABELS[random.nextInt(LABELS.length)];
+				String value = random.nextInt(3) == 0 ? "" : "=V" + j;
+				compiled.append('|').append(label).append(value);
+				linear.append('|').append(label).append(j == 0 ? DYNAMIC : "").append(value);
+			}
+			compiled.append("}}");
+			linear.append("}}");
+
+			assertEquals(
+					compiled.toString(),
+					expand(engine, linear.toString()),
+					expand(engine, compiled.toString()));
+		}
+	}
+
+	// =========================================================================
+
+	private List<WtNode> args(WtNode... args)
+	{
+		return Arrays.asList(args);
+	}
+
+	private String expand(WtEngineImpl engine, String wikitext) throws Exception
+	{
+		PageId pageId = new PageId(PageTitle.make(config, "Test"), -1);
+		EngProcessedPage page = engine.expand(pageId, wikitext, new TestExpansionCallback());
+		return page.getPage().toString();
+	}
+}
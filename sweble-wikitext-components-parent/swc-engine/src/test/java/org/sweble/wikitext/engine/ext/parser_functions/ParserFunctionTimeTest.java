@@ -225,4 +225,36 @@ public class ParserFunctionTimeTest
 		assertEquals(expResult, ParserFunctionTime.format(format, timestamp, locale));
 	}
 
+	@Test
+	public void testFormatsAreCompiledOnce()
+	{
+		String format = "j F Y, \"at\" H:i";
+		assertSame(ParserFunctionTime.compile(format), ParserFunctionTime.compile(format));
+
+		Calendar timestamp = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.ENGLISH);
+		timestamp.setTimeInMillis(1488848523000L);
+		assertEquals(
+				"7 March 2017, at 01:02",
+				ParserFunctionTime.format(format, timestamp, Locale.ENGLISH));
+		assertEquals(
+				"7 March 2017, at 01:02",
+				ParserFunctionTime.format(format, timestamp, Locale.ENGLISH));
+
+		// Unknown characters and quoted codes are kept
+		assertEquals("2017 Y q", ParserFunctionTime.format("Y \"Y\" q", timestamp, Locale.ENGLISH));
+	}
+
+	@Test
+	public void testLeapYearsAndMonthLengths()
+	{
+		Calendar timestamp = new GregorianCalendar(TimeZone.getTimeZone("UTC"), Locale.ENGLISH);
+		timestamp.clear();
+
+		timestamp.set(2000, Calendar.FEBRUARY, 10);
+		assertEquals("1 29", ParserFunctionTime.format("L t", timestamp, Locale.ENGLISH));
+		timestamp.set(1900, Calendar.FEBRUARY, 10);
+		assertEquals("0 28", ParserFunctionTime.format("L t", timestamp, Locale.ENGLISH));
+		timestamp.set(2017, Calendar.APRIL, 10);
+		assertEquals("0 30", ParserFunctionTime.format("L t", timestamp, Locale.ENGLISH));
+	}
 }
@@ -0,0 +1,193 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.engine.utils.EngineTestFixture;
+import org.sweble.wikitext.parser.nodes.WtUrl;
+
+public class HtmlRendererStreamingTest
+{
+	private static final String WIKITEXT = ""
+			+ "Intro with '''bold''' text and [http://example.org].\n"
+			+ "\n"
+			+ "== First ==\n"
+			+ "* one\n"
+			+ "* two\n"
+			+ "=== Nested ===\n"
+			+ "{|\n"
+			+ "| a || b\n"
+			+ "|}\n"
+			+ "== Second ==\n"
+			+ "Some [[Link|link]], [http://example.org] and ''italics''.\n";
+
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	private final WtEngineImpl engine = fixture.createEngine();
+
+	// =========================================================================
+
+	@Test
+	public void testStreamingProducesSameOutput() throws Exception
+	{
+		engine.setMinPartSize(1);
+		assertEquals(3, assertStreamingProducesSameOutput(WIKITEXT));
+	}
+
+	@Test
+	public void testLargePageProducesSameOutput() throws Exception
+	{
+		StringBuilder b = new StringBuilder("Intro\n");
+		for (int i = 0; i < 50; ++i)
+		{
+			b.append("== Section ").append(i).append(" ==\n");
+			b.append("Text with a [[link]], [http://example.org] and '''bold''' text.\n");
+			if (i % 7 == 0)
+				b.append("<div>Open\n''italic\nClose</div>\n=== Sub ===\n");
+			b.append("* item\n\n");
+		}
+
+		engine.setMinPartSize(256);
+		assertTrue(assertStreamingProducesSameOutput(b.toString()) > 1);
+	}
+
+	@Test
+	public void testOutputIsFlushedAfterEachPart() throws Exception
+	{
+		engine.setMinPartSize(1);
+
+		FlushRecorder writer = new FlushRecorder();
+		HtmlRenderer.printStreaming(
+				new TestCallback(),
+				engine,
+				writer,
+				fixture.getPageId(),
+				WIKITEXT,
+				null);
+
+		// Intro, First (with Nested) and Second
+		String html = writer.toString();
+		List<Integer> flushes = writer.flushes;
+		assertEquals(3, flushes.size());
+
+		String intro = html.substring(0, flushes.get(0));
+		assertTrue(intro.contains("Intro"));
+		assertFalse(intro.contains("First"));
+
+		String first = html.substring(flushes.get(0), flushes.get(1));
+		assertTrue(first.contains("</table>"));
+		assertFalse(first.contains("Second"));
+
+		assertEquals(html.length(), (int) flushes.get(2));
+	}
+
+	// =========================================================================
+
+	/**
+	 * @return The number of parts the page was rendered in.
+	 */
+	private int assertStreamingProducesSameOutput(String wikitext) throws Exception
+	{
+		PageId pageId = fixture.getPageId();
+
+		String expected = HtmlRenderer.print(
+				new TestCallback(),
+				fixture.getConfig(),
+				pageId.getTitle(),
+				engine.postprocess(pageId, wikitext, null));
+
+		FlushRecorder actual = new FlushRecorder();
+		EngProcessedPage page = HtmlRenderer.printStreaming(
+				new TestCallback(),
+				engine,
+				actual,
+				pageId,
+				wikitext,
+				null);
+
+		assertEquals(expected, actual.toString());
+		assertTrue(page.getPage().isEmpty());
+		return actual.flushes.size();
+	}
+
+	private static final class FlushRecorder
+			extends
+				StringWriter
+	{
+		private final List<Integer> flushes = new ArrayList<Integer>();
+
+		@Override
+		public void flush()
+		{
+			flushes.add(getBuffer().length());
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+		}
+	}
+
+	private static final class TestCallback
+			implements
+				HtmlRendererCallback
+	{
+		@Override
+		public boolean resourceExists(PageTitle target)
+		{
+			return false;
+		}
+
+		@Override
+		public MediaInfo getMediaInfo(String title, int width, int height)
+		{
+			return null;
+		}
+
+		@Override
+		public String makeUrl(PageTitle target)
+		{
+			return "/wiki/" + target.getNormalizedFullTitle();
+		}
+
+		@Override
+		public String makeUrl(WtUrl target)
+		{
+			return target.getProtocol() + ":" + target.getPath();
+		}
+
+		@Override
+		public String makeUrlMissingTarget(String path)
+		{
+			return "/wiki/" + path + "?action=edit";
+		}
+	}
+}
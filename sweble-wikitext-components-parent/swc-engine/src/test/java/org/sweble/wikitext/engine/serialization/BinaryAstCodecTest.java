@@ -0,0 +1,248 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.serialization;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.sweble.wikitext.engine.serialization.BinaryAstCodec.*;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.config.WikiConfig;
+import org.sweble.wikitext.engine.utils.DefaultConfigEnWp;
+import org.sweble.wikitext.parser.ParserConfig;
+import org.sweble.wikitext.parser.WikitextParser;
+import org.sweble.wikitext.parser.WikitextPostprocessor;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+public class BinaryAstCodecTest
+{
+	private static final String TEXT = ""
+			+ "== ''Heading'' ==\n"
+			+ "Some '''bold''' text with a [[Link|link]] &amp; an entity.\n"
+			+ "* item\n"
+			+ "{|\n"
+			+ "| cell || <span class=\"x\">cell</span>\n"
+			+ "|}\n";
+
+	private final WikiConfig config = DefaultConfigEnWp.generate();
+
+	private final BinaryAstCodec codec = new BinaryAstCodec(config);
+
+	// =========================================================================
+
+	@Test
+	public void testRoundTrip() throws Exception
+	{
+		WtNode page = parse();
+		WtNode decoded = codec.decode(codec.encode(page));
+		WtComparer.compareAndThrow(page, decoded, false, false);
+	}
+
+	@Test
+	public void testRoundTripWithLocationsAndAttributes() throws Exception
+	{
+		WtNode page = parse();
+		page.setAttribute("date", new Date(0));
+
+		codec.setIncludeLocations(true);
+		codec.setIncludeAttributes(true);
+		WtNode decoded = codec.decode(codec.encode(page));
+		WtComparer.compareAndThrow(page, decoded, true, true);
+	}
+
+	@Test
+	public void testDecodeDoesNotReadPastTree() throws Exception
+	{
+		WtNode page = parse();
+		byte[] data = codec.encode(page);
+
+		byte[] twice = Arrays.copyOf(data, data.length * 2);
+		System.arraycopy(data, 0, twice, data.length, data.length);
+
+		InputStream in = new BufferedInputStream(new ByteArrayInputStream(twice));
+		WtComparer.compareAndThrow(page, codec.decode(in), false, false);
+		assertEquals(data.length, in.available());
+		WtComparer.compareAndThrow(page, codec.decode(in), false, false);
+		assertEquals(-1, in.read());
+	}
+
+	@Test
+	public void testTruncatedInputFails() throws Exception
+	{
+		byte[] data = codec.encode(parse());
+		for (int length = 0; length < data.length; ++length)
+		{
+			byte[] truncated = Arrays.copyOf(data, length);
+			try
+			{
+				codec.decode(truncated);
+				fail("Decoded truncated input of length " + length);
+			}
+			catch (EOFException e)
+			{
+				// Expected
+			}
+			catch (BinaryAstFormatException e)
+			{
+				// Expected
+			}
+		}
+	}
+
+	@Test
+	public void testUnknownValueTagFails() throws Exception
+	{
+		StreamBuilder b = new StreamBuilder(0);
+		b.textNode();
+		b.varInt(config.getNodeFactory().text("x").getPropertyCount());
+		b.byte_(42);
+		assertFormatError(b, "Unknown value tag: 42");
+	}
+
+	@Test
+	public void testClassThatIsNotANodeIsRejected() throws Exception
+	{
+		StreamBuilder b = new StreamBuilder(0);
+		b.newClass(String.class.getName(), 0);
+		assertFormatError(b, "Not a node class: java.lang.String");
+	}
+
+	@Test
+	public void testSerializedObjectRequiresAttributes() throws Exception
+	{
+		StreamBuilder b = new StreamBuilder(0);
+		b.textNode();
+		b.varInt(config.getNodeFactory().text("x").getPropertyCount());
+		b.serialized("content");
+		assertFormatError(b, "Stream without attributes contains a serialized object");
+	}
+
+	@Test
+	public void testSerializedObjectOfForeignClassIsRejected() throws Exception
+	{
+		StreamBuilder b = new StreamBuilder(FLAG_ATTRIBUTES);
+		b.textNode();
+		b.varInt(1);
+		b.string("file");
+		b.serialized(new File("x"));
+		assertFormatError(b, "Class is not allowed in serialized values: java.io.File");
+	}
+
+	// =========================================================================
+
+	private WtNode parse() throws Exception
+	{
+		ParserConfig parserConfig = config.getParserConfig();
+		WtNode parsed = new WikitextParser(parserConfig).parseArticle(TEXT, "Test");
+		return new WikitextPostprocessor(parserConfig).postprocess(parsed, "Test");
+	}
+
+	private void assertFormatError(StreamBuilder b, String message) throws IOException
+	{
+		try
+		{
+			codec.decode(b.toByteArray());
+			fail("Decoded malformed input");
+		}
+		catch (BinaryAstFormatException e)
+		{
+			assertTrue(e.getMessage(), e.getMessage().startsWith(message));
+		}
+	}
+
+	// =========================================================================
+
+	private final class StreamBuilder
+			extends
+				ByteArrayOutputStream
+	{
+		public StreamBuilder(int flags)
+		{
+			int[] magic = { MAGIC >>> 24, MAGIC >>> 16, MAGIC >>> 8, MAGIC };
+			for (int m : magic)
+				byte_(m);
+			byte_(VERSION);
+			byte_(flags);
+		}
+
+		public void byte_(int b)
+		{
+			write(b & 0xFF);
+		}
+
+		public void varInt(int v)
+		{
+			while ((v & ~0x7F) != 0)
+			{
+				byte_((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			byte_(v);
+		}
+
+		public void string(String s)
+		{
+			varInt(STR_LITERAL);
+			varInt(s.length());
+			for (int i = 0; i < s.length(); ++i)
+				byte_(s.charAt(i));
+		}
+
+		public void newClass(String className, int nodeType)
+		{
+			varInt(REF_NEW_CLASS);
+			string(className);
+			varInt((nodeType << 1) ^ (nodeType >> 31));
+			byte_(0);
+		}
+
+		/**
+		 * Starts a text node up to its property count.
+		 */
+		public void textNode()
+		{
+			WtNode text = config.getNodeFactory().text("x");
+			newClass(text.getClass().getName(), text.getNodeType());
+		}
+
+		public void serialized(Object o) throws IOException
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			ObjectOutputStream oos = new ObjectOutputStream(baos);
+			oos.writeObject(o);
+			oos.close();
+
+			byte_(T_OBJECT);
+			varInt(baos.size());
+			write(baos.toByteArray(), 0, baos.size());
+		}
+	}
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+
+public class CompactTitleIndexTest
+{
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	private final WikiConfigImpl config = fixture.getConfig();
+
+	// =========================================================================
+
+	@Test
+	public void testContainsExactlyTheAddedTitles()
+	{
+		Random random = new Random(13);
+		Set<String> added = new HashSet<String>();
+		CompactTitleIndex.Builder builder = CompactTitleIndex.builder();
+		for (int i = 0; i < 5000; ++i)
+		{
+			int ns = random.nextInt(4) * 2;
+			String title = randomTitle(random);
+			added.add(ns + ":" + title);
+			builder.add(ns, title);
+			if (i % 10 == 0)
+				builder.add(ns, title);
+		}
+
+		CompactTitleIndex index = builder.build();
+		assertEquals(added.size(), index.size());
+
+		for (String key : added)
+		{
+			int colon = key.indexOf(':');
+			assertTrue(key, index.contains(
+					Integer.parseInt(key.substring(0, colon)),
+					key.substring(colon + 1)));
+		}
+
+		for (int i = 0; i < 5000; ++i)
+		{
+			int ns = random.nextInt(8);
+			String title = randomTitle(random);
+			assertEquals(
+					added.contains(ns + ":" + title),
+					index.contains(ns, title));
+		}
+	}
+
+	@Test
+	public void testEmptyIndexContainsNothing() throws Exception
+	{
+		CompactTitleIndex index = CompactTitleIndex.builder().build();
+		assertEquals(0, index.size());
+		assertFalse(index.contains(PageTitle.make(config, "Main Page")));
+	}
+
+	@Test
+	public void testLoadFromTitleList() throws Exception
+	{
+		String titles = ""
+				+ "page_namespace\tpage_title\n"
+				+ "0\tMain_Page\n"
+				+ "10\tInfobox_person\n"
+				+ "Help:Contents\n"
+				+ "\n"
+				+ "Invalid[title]\n"
+				+ "fr:Interwiki\n";
+
+		CompactTitleIndex index = CompactTitleIndex.load(config, new StringReader(titles));
+		assertEquals(3, index.size());
+		assertTrue(index.contains(PageTitle.make(config, "Main Page")));
+		assertTrue(index.contains(PageTitle.make(config, "main_Page#Fragment")));
+		assertTrue(index.contains(PageTitle.make(config, "Infobox person", config.getTemplateNamespace())));
+		assertTrue(index.contains(PageTitle.make(config, "Help:Contents")));
+		assertFalse(index.contains(PageTitle.make(config, "Talk:Main Page")));
+		assertFalse(index.contains(PageTitle.make(config, "Main Page 2")));
+	}
+
+	@Test
+	public void testIfExistUsesIndex() throws Exception
+	{
+		CompactTitleIndex index = CompactTitleIndex.builder()
+				.add(PageTitle.make(config, "Existing"))
+				.build();
+
+		IndexedExpansionCallback callback = new IndexedExpansionCallback(
+				new NoRetrievalCallback(),
+				index);
+
+		String text = fixture.expandToText(
+				"{{#ifexist:Existing|FOUND1|MISSING1}} {{#ifexist:Other|FOUND2|MISSING2}}",
+				callback);
+
+		assertEquals("FOUND1 MISSING2", text);
+	}
+
+	@Test
+	public void testIfExistFindsMediaAsFiles() throws Exception
+	{
+		CompactTitleIndex index = CompactTitleIndex.builder()
+				.add(PageTitle.make(config, "File:Local.png"))
+				.build();
+
+		IndexedExpansionCallback callback = new IndexedExpansionCallback(
+				new NoRetrievalCallback()
+				{
+					@Override
+					public String fileUrl(PageTitle pageTitle, int width, int height)
+					{
+						// Served by a shared repository, there is no local page
+						if (pageTitle.getNormalizedFullTitle().equals("File:Shared.png"))
+							return "http://example.org/Shared.png";
+						return null;
+					}
+				},
+				index);
+
+		String text = fixture.expandToText(""
+				+ "{{#ifexist:Media:Local.png|FOUND1|MISSING1}} "
+				+ "{{#ifexist:Media:Shared.png|FOUND2|MISSING2}} "
+				+ "{{#ifexist:File:Shared.png|FOUND3|MISSING3}} "
+				+ "{{#ifexist:Media:Other.png|FOUND4|MISSING4}}",
+				callback);
+
+		assertEquals("FOUND1 FOUND2 FOUND3 MISSING4", text);
+	}
+
+		// =========================================================================
+
+	private static class NoRetrievalCallback
+			implements
+				ExpansionCallback
+	{
+		@Override
+		public FullPage retrieveWikitext(
+				ExpansionFrame expansionFrame,
+				PageTitle pageTitle)
+		{
+			throw new AssertionError("Existence check retrieved " + pageTitle);
+		}
+
+		@Override
+		public String fileUrl(PageTitle pageTitle, int width, int height)
+		{
+			throw new AssertionError("Existence check retrieved " + pageTitle);
+		}
+	}
+
+	// =========================================================================
+
+	private static String randomTitle(Random random)
+	{
+		String[] words = { "Foo", "Bar", "Baz", "Stra\u00DFe", "\u65E5\u672C", "A", "(disambiguation)" };
+		List<String> parts = new ArrayList<String>();
+		int n = 1 + random.nextInt(4);
+		for (int i = 0; i < n; ++i)
+			parts.add(words[random.nextInt(words.length)]);
+		StringBuilder b = new StringBuilder();
+		for (String part : parts)
+		{
+			if (b.length() > 0)
+				b.append('_');
+			b.append(part);
+		}
+		b.append(random.nextInt(50));
+		return b.toString();
+	}
+}
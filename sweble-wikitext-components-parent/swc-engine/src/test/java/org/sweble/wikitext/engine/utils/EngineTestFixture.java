@@ -0,0 +1,153 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.sweble.wikitext.engine.EngineException;
+import org.sweble.wikitext.engine.ExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.WtEngineImpl;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+import org.sweble.wikitext.parser.parser.LinkTargetException;
+import org.sweble.wikitext.parser.utils.StringConversionException;
+
+/**
+ * Processes short snippets of wikitext as the page {@value #TITLE}. Pages
+ * added with {@link #addPage(String, long, String)} are served by the
+ * callback returned by {@link #getCallback()}.
+ */
+public class EngineTestFixture
+{
+	public static final String TITLE = "Test";
+
+	private final WikiConfigImpl config;
+
+	private final PageStore store = new PageStore();
+
+	// =========================================================================
+
+	public EngineTestFixture()
+	{
+		this(DefaultConfigEnWp.generate());
+	}
+
+	public EngineTestFixture(WikiConfigImpl config)
+	{
+		this.config = config;
+	}
+
+	// =========================================================================
+
+	public WikiConfigImpl getConfig()
+	{
+		return config;
+	}
+
+	public ExpansionCallback getCallback()
+	{
+		return store;
+	}
+
+	public void addPage(String title, long revision, String wikitext) throws LinkTargetException
+	{
+		PageTitle pageTitle = PageTitle.make(config, title);
+		store.put(new FullPage(new PageId(pageTitle, revision), wikitext));
+	}
+
+	public WtEngineImpl createEngine()
+	{
+		return new WtEngineImpl(config);
+	}
+
+	public PageId getPageId() throws LinkTargetException
+	{
+		return new PageId(PageTitle.make(config, TITLE), -1);
+	}
+
+	// =========================================================================
+
+	public EngProcessedPage expand(String wikitext) throws LinkTargetException, EngineException
+	{
+		return expand(wikitext, store);
+	}
+
+	public EngProcessedPage expand(
+			String wikitext,
+			ExpansionCallback callback) throws LinkTargetException, EngineException
+	{
+		return createEngine().expand(getPageId(), wikitext, callback);
+	}
+
+	public String expandToText(String wikitext) throws LinkTargetException, EngineException, StringConversionException
+	{
+		return toText(expand(wikitext));
+	}
+
+	public String expandToText(
+			String wikitext,
+			ExpansionCallback callback) throws LinkTargetException, EngineException, StringConversionException
+	{
+		return toText(expand(wikitext, callback));
+	}
+
+	/**
+	 * The text content of the given page without leading and trailing
+	 * whitespace.
+	 */
+	public String toText(EngProcessedPage page) throws StringConversionException
+	{
+		return config.getAstTextUtils().astToText(page.getPage()).trim();
+	}
+
+	// =========================================================================
+
+	/**
+	 * Serves pages from memory. There are no files.
+	 */
+	public static class PageStore
+			implements
+				ExpansionCallback
+	{
+		private final Map<PageTitle, FullPage> pages = new HashMap<PageTitle, FullPage>();
+
+		public void put(FullPage page)
+		{
+			pages.put(page.getId().getTitle(), page);
+		}
+
+		@Override
+		public FullPage retrieveWikitext(
+				ExpansionFrame expansionFrame,
+				PageTitle pageTitle)
+		{
+			return pages.get(pageTitle);
+		}
+
+		@Override
+		public String fileUrl(PageTitle pageTitle, int width, int height)
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.junit.After;
+import org.junit.Test;
+import org.sweble.wikitext.engine.AsyncExpansionCallback;
+import org.sweble.wikitext.engine.ExpansionFrame;
+import org.sweble.wikitext.engine.FullPage;
+import org.sweble.wikitext.engine.PageId;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.config.WikiConfigImpl;
+
+public class PrefetchingExpansionCallbackTest
+{
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	private final WikiConfigImpl config = fixture.getConfig();
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	// =========================================================================
+
+	@After
+	public void shutdown()
+	{
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testTemplatesArePrefetchedLevelByLevel() throws Exception
+	{
+		InMemoryStore store = new InMemoryStore(null);
+		store.put("A", "a{{E}}");
+		store.put("B", "b");
+		store.put("C", "c");
+		store.put("D", "B");
+		store.put("E", "e");
+
+		String wikitext = "{{A}}{{B}}{{#if:x|{{C}}}}{{ {{D}} }}{{PAGENAME}}{{#if:|{{F}}}}";
+		assertEquals("aebcbTest", expand(store, wikitext));
+
+		// F is requested although the branch is not taken, E is requested
+		// when A is expanded and B is requested only once.
+		assertEquals("[A, B, C, D, F, E]", store.requested.toString());
+	}
+
+	@Test
+	public void testTemplatesAreRequestedConcurrently() throws Exception
+	{
+		// Every request waits until all four have been started. This only
+		// works out if they are all pending at the same time.
+		InMemoryStore store = new InMemoryStore(new CountDownLatch(4));
+		store.put("A", "a");
+		store.put("B", "b");
+		store.put("C", "c");
+		store.put("D", "d");
+
+		assertEquals("abcd", expand(store, "{{A}}{{B}}{{C}}{{D}}"));
+		assertFalse(store.timedOut);
+	}
+
+	@Test
+	public void testPagesAreRequestedOnce() throws Exception
+	{
+		InMemoryStore store = new InMemoryStore(null);
+		store.put("A", "a");
+
+		PrefetchingExpansionCallback callback = new PrefetchingExpansionCallback(store, config);
+		PageTitle a = PageTitle.make(config, "Template:A");
+		PageTitle x = PageTitle.make(config, "Template:X");
+
+		assertEquals("a", callback.retrieveWikitext(null, a).getText());
+		assertEquals("a", callback.retrieveWikitext(null, a).getText());
+		assertNull(callback.retrieveWikitext(null, x));
+		assertNull(callback.retrieveWikitext(null, x));
+		assertEquals("[A, X]", store.requested.toString());
+	}
+
+	// =========================================================================
+
+	private String expand(InMemoryStore store, String wikitext) throws Exception
+	{
+		return fixture.expandToText(wikitext, new PrefetchingExpansionCallback(store, config));
+	}
+
+	private final class InMemoryStore
+			implements
+				AsyncExpansionCallback
+	{
+		private final Map<PageTitle, String> pages = new HashMap<PageTitle, String>();
+
+		private final List<String> requested =
+				Collections.synchronizedList(new ArrayList<String>());
+
+		private final CountDownLatch latch;
+
+		private volatile boolean timedOut;
+
+		public InMemoryStore(CountDownLatch latch)
+		{
+			this.latch = latch;
+		}
+
+		public void put(String title, String wikitext) throws Exception
+		{
+			pages.put(PageTitle.make(config, "Template:" + title), wikitext);
+		}
+
+		@Override
+		public CompletableFuture<FullPage> retrieveWikitextAsync(final PageTitle pageTitle)
+		{
+			requested.add(pageTitle.getTitle());
+			return CompletableFuture.supplyAsync(new Supplier<FullPage>()
+			{
+				@Override
+				public FullPage get()
+				{
+					if (latch != null)
+						awaitOtherRequests();
+
+					String wikitext = pages.get(pageTitle);
+					if (wikitext == null)
+						return null;
+					return new FullPage(new PageId(pageTitle, 1), wikitext);
+				}
+			}, executor);
+		}
+
+		private void awaitOtherRequests()
+		{
+			latch.countDown();
+			try
+			{
+				if (!latch.await(10, TimeUnit.SECONDS))
+					timedOut = true;
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				timedOut = true;
+			}
+		}
+
+		@Override
+		public FullPage retrieveWikitext(
+				ExpansionFrame expansionFrame,
+				PageTitle pageTitle)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public String fileUrl(PageTitle pageTitle, int width, int height)
+		{
+			return null;
+		}
+	}
+}
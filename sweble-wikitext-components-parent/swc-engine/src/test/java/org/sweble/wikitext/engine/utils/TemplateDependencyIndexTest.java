@@ -0,0 +1,157 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.engine.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.sweble.wikitext.engine.PageTitle;
+import org.sweble.wikitext.engine.nodes.EngProcessedPage;
+
+public class TemplateDependencyIndexTest
+{
+	private static final long MISSING = TemplateDependencyIndex.MISSING;
+
+	private final EngineTestFixture fixture = new EngineTestFixture();
+
+	// =========================================================================
+
+	@Test
+	public void testDependenciesAreCollectedTransitively() throws Exception
+	{
+		fixture.addPage("Template:A", 1, "a{{C}}");
+		fixture.addPage("Template:B", 2, "#REDIRECT [[Template:C]]");
+		fixture.addPage("Template:C", 3, "c");
+
+		EngProcessedPage page = fixture.expand("{{A}}{{B}}{{Missing}}");
+
+		Map<String, Long> expected = new LinkedHashMap<String, Long>();
+		expected.put("Template:A", 1L);
+		expected.put("Template:C", 3L);
+		expected.put("Template:B", 2L);
+		expected.put("Template:Missing", MISSING);
+		assertEquals(expected, TemplateDependencyIndex.collectDependencies(page));
+
+		TemplateDependencyIndex index = new TemplateDependencyIndex();
+		index.update(page);
+		assertEquals(expected, index.getDependencies("Test"));
+		assertEquals("[Test]", index.getAffectedPages(PageTitle.make(fixture.getConfig(), "Template:Missing")).toString());
+	}
+
+	@Test
+	public void testAffectedPages()
+	{
+		TemplateDependencyIndex index = createIndex();
+
+		assertEquals("[P1, P2]", index.getAffectedPages("Template:C").toString());
+		assertEquals("[P3]", index.getAffectedPages("Template:B").toString());
+		assertEquals("[]", index.getAffectedPages("Template:D").toString());
+		assertEquals("[]", index.getAffectedPages("P1").toString());
+
+		// Pages that were already expanded with the new revision are fine
+		assertEquals("[P2]", index.getAffectedPages("Template:C", 4).toString());
+		assertEquals("[P1, P2]", index.getAffectedPages("Template:C", 5).toString());
+		assertEquals("[P1, P2]", index.getAffectedPages("Template:C", MISSING).toString());
+
+		index.put("P1", dependencies("Template:A", 1));
+		assertEquals("[P2]", index.getAffectedPages("Template:C").toString());
+
+		index.remove("P2");
+		assertEquals("[]", index.getAffectedPages("Template:C").toString());
+		assertNull(index.getDependencies("P2"));
+		assertEquals(2, index.size());
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception
+	{
+		TemplateDependencyIndex index = createIndex();
+		index.remove("P3");
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index.write(out);
+		TemplateDependencyIndex read =
+				TemplateDependencyIndex.read(new ByteArrayInputStream(out.toByteArray()));
+
+		assertEquals(2, read.size());
+		for (String page : new String[] { "P1", "P2", "P3" })
+			assertEquals(index.getDependencies(page), read.getDependencies(page));
+		assertEquals("[P1, P2]", read.getAffectedPages("Template:C").toString());
+		assertEquals("[P2]", read.getAffectedPages("Template:C", 4).toString());
+		assertEquals("[]", read.getAffectedPages("Template:B").toString());
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadRejectsDependencyOutOfRange() throws Exception
+	{
+		// The last entry is the id (int) and revision (long) of the only
+		// dependency of the only page.
+		byte[] data = writeSinglePageIndex();
+		ByteBuffer.wrap(data).putInt(data.length - 12, 2);
+		TemplateDependencyIndex.read(new ByteArrayInputStream(data));
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadRejectsNegativeNumberOfDependencies() throws Exception
+	{
+		byte[] data = writeSinglePageIndex();
+		ByteBuffer.wrap(data).putInt(data.length - 16, -1);
+		TemplateDependencyIndex.read(new ByteArrayInputStream(data));
+	}
+
+	// =========================================================================
+
+	private byte[] writeSinglePageIndex() throws IOException
+	{
+		TemplateDependencyIndex index = new TemplateDependencyIndex();
+		index.put("P1", dependencies("Template:A", 1));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		index.write(out);
+		return out.toByteArray();
+	}
+
+	private TemplateDependencyIndex createIndex()
+	{
+		TemplateDependencyIndex index = new TemplateDependencyIndex();
+		index.put("P1", dependencies("Template:A", 1, "Template:C", 4));
+		index.put("P2", dependencies("Template:C", 3));
+		index.put("P3", dependencies("Template:B", 2));
+		return index;
+	}
+
+	private static Map<String, Long> dependencies(Object... titlesAndRevisions)
+	{
+		Map<String, Long> dependencies = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < titlesAndRevisions.length; i += 2)
+		{
+			dependencies.put(
+					(String) titlesAndRevisions[i],
+					((Integer) titlesAndRevisions[i + 1]).longValue());
+		}
+		return dependencies;
+	}
+}
@@ -34,6 +34,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.ByteArrayOutputStream;
 import org.sweble.wikitext.engine.config.WikiConfigImpl;
+import org.sweble.wikitext.engine.serialization.BinaryAstCodec;
 import org.sweble.wikitext.engine.serialization.EngineAstNodeConverter;
 import org.sweble.wikitext.parser.WtRtData;
 import org.sweble.wikitext.parser.comparer.WtComparer;
@@ -106,6 +107,8 @@ public class Serializer
 
 	private String outputEncoding;
 
+	private BinaryAstCodec binaryCodec;
+
 	// =========================================================================
 
 	public Serializer(InputStream source, String sourceName, String encoding)
@@ -477,6 +480,12 @@ public class Serializer
 				osw.close();
 				break;
 			}
+			case BINARY:
+			{
+				getBinaryCodec().encode(getAst(), objBaos);
+				objBaos.close();
+				break;
+			}
 			default:
 				objBaos.close();
 				throw new UnsupportedOperationException();
@@ -548,6 +557,19 @@ public class Serializer
 		return builder.create();
 	}
 
+	private BinaryAstCodec getBinaryCodec()
+	{
+		if (binaryCodec == null)
+		{
+			// The codec holds no per-stream state and can be reused
+			binaryCodec = new BinaryAstCodec(new WikiConfigImpl());
+			binaryCodec.setIncludeRtd(true);
+			binaryCodec.setIncludeLocations(true);
+			binaryCodec.setIncludeAttributes(true);
+		}
+		return binaryCodec;
+	}
+
 	// =========================================================================
 
 	private WtNode timedDeserialization(
@@ -612,6 +634,12 @@ public class Serializer
 				isr.close();
 				break;
 			}
+			case BINARY:
+			{
+				result = getBinaryCodec().decode(is);
+				is.close();
+				break;
+			}
 			default:
 				throw new UnsupportedOperationException();
 		}
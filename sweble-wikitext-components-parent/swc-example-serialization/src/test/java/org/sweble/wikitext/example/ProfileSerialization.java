@@ -56,5 +56,6 @@ public class ProfileSerialization
 		serializer.roundTrip(SerializationMethod.JAVA);
 		//serializer.roundTrip(SerializationMethod.JSON);
 		//serializer.roundTrip(SerializationMethod.XML);
+		//serializer.roundTrip(SerializationMethod.BINARY);
 	}
 }
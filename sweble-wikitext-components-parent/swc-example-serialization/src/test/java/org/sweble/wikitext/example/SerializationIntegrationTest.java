@@ -96,6 +96,13 @@ public class SerializationIntegrationTest
 		go(SerializationMethod.JSON, TEXTUAL_COMPARISON, VERBOSE);
 	}
 
+	@Test
+	public void testBinarySerialization() throws Exception
+	{
+		setupSerializer();
+		go(SerializationMethod.BINARY, TEXTUAL_COMPARISON, VERBOSE);
+	}
+
 	// =========================================================================
 
 	private void setupSerializer() throws Exception
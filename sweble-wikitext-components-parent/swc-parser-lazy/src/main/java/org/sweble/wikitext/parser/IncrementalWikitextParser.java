@@ -0,0 +1,408 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.sweble.wikitext.parser.SectionSplicing.FlatPage;
+import org.sweble.wikitext.parser.SectionSplicing.FlatSection;
+import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
+
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import xtc.parser.ParseException;
+
+/**
+ * Reparses edited wikitext by only running the parser over the sections
+ * touched by an edit.
+ * 
+ * The page passed to {@link #reparse} must be the unmodified result of
+ * {@link WikitextParser#parseArticle} (or of a previous call to
+ * {@link #reparse}) for the given text and must not have been postprocessed.
+ * Source locations of the sections are used to map the edit onto the tree.
+ * 
+ * Sections are the only units that are reparsed on their own: At the start
+ * of a section heading the parser is always in the same state, no matter
+ * what precedes the heading. The nesting of sections is not decided by the
+ * parser but established afterwards from the section levels. After splicing
+ * the reparsed sections into the list of all sections of the page the
+ * sections are therefore nested again. To guarantee the same result as a
+ * full parse the region is reparsed together with the heading line of the
+ * following section. The region is extended if that heading is no longer
+ * recognized as the start of a section.
+ * 
+ * The only exceptions are elements which can span several lines and were
+ * not closed: An opening "[[" without a matching "]]" turns into a link
+ * spanning several sections when a closing "]]" is inserted further down.
+ * The same applies to XML tags whose attributes span several lines. The
+ * region is therefore also extended to cover every such opening that the
+ * parser did not turn into an element.
+ * 
+ * Unchanged subtrees of the previous page are moved into the returned page
+ * and their locations are updated. The previous page must therefore not be
+ * used afterwards.
+ */
+public class IncrementalWikitextParser
+{
+	private final ParserConfig config;
+
+	private int lastReparsedLength;
+
+	// =========================================================================
+
+	public IncrementalWikitextParser(ParserConfig config)
+	{
+		this.config = config;
+	}
+
+	// =========================================================================
+
+	/**
+	 * The number of characters the parser had to process during the last
+	 * call to {@link #reparse}.
+	 */
+	public int getLastReparsedLength()
+	{
+		return lastReparsedLength;
+	}
+
+	// =========================================================================
+
+	public WtParsedWikitextPage parseArticle(String src, String title) throws IOException, ParseException
+	{
+		lastReparsedLength = src.length();
+		return (WtParsedWikitextPage) new WikitextParser(config).parseArticle(src, title);
+	}
+
+	/**
+	 * Applies an edit to the given text and returns the page for the edited
+	 * text.
+	 * 
+	 * @param previous
+	 *            The page parsed from {@code previousText}.
+	 * @param previousText
+	 *            The text before the edit.
+	 * @param edit
+	 *            The edit to apply to {@code previousText}.
+	 * @param title
+	 *            The title that was used to parse the previous page.
+	 */
+	public WtParsedWikitextPage reparse(
+			WtParsedWikitextPage previous,
+			String previousText,
+			Edit edit,
+			String title) throws IOException, ParseException
+	{
+		if (edit.getEnd() > previousText.length())
+			throw new IllegalArgumentException("Edit exceeds the previous text");
+
+		String text = edit.apply(previousText);
+
+		FlatPage old = FlatPage.flatten(previous);
+		List<Unit> units = (old != null) ? findUnits(old, previousText) : null;
+		if (units == null)
+			return parseArticle(text, title);
+
+		int delta = edit.getDelta();
+
+		// First unit containing the edit and first unit after the edit
+		int i = units.size() - 1;
+		while (units.get(i).offset > edit.getStart())
+			--i;
+		int j = i + 1;
+		while (j < units.size() && units.get(j).offset <= edit.getEnd())
+			++j;
+
+		i = firstUnitWithUnclosedElement(old, units, i);
+
+		while (true)
+		{
+			Unit from = units.get(i);
+			Unit to = (j < units.size()) ? units.get(j) : null;
+
+			int oldChunkEnd = (to != null) ? to.offset : previousText.length();
+			String chunk = text.substring(from.offset, oldChunkEnd + delta);
+
+			String sentinel = "";
+			if (to != null)
+				sentinel = previousText.substring(
+						to.offset,
+						SectionSplicing.lineEnd(previousText, to.offset));
+
+			WtParsedWikitextPage reparsed = parseChunk(
+					chunk + sentinel,
+					previous.getEntityMap(),
+					title);
+
+			FlatPage chunkSections = FlatPage.flatten(reparsed);
+			if (chunkSections == null)
+				return parseArticle(text, title);
+
+			if (to != null && SectionSplicing.hasUnclosedElement(reparsed))
+			{
+				// The element might be closed anywhere after the chunk
+				j = units.size();
+				continue;
+			}
+
+			int chunkLines = SectionSplicing.countLines(chunk, 0, chunk.length());
+
+			// The chunk must start with a section heading and the heading of
+			// the following section must still start a section.
+			boolean extendBackwards = (i > 0) && !chunkSections.startsWithSection();
+			boolean extendForwards = (to != null) && !chunkSections.endsWithSectionAtLine(chunkLines + 1);
+
+			if (extendBackwards || extendForwards)
+			{
+				if (extendBackwards)
+					--i;
+				if (extendForwards)
+					++j;
+				continue;
+			}
+
+			if (to != null)
+				chunkSections.removeLastSection();
+
+			int baseLine = SectionSplicing.countLines(previousText, 0, from.offset);
+			int lineDelta = chunkLines - SectionSplicing.countLines(previousText, from.offset, oldChunkEnd);
+
+			return splice(previous, old, from, to, reparsed, chunkSections, baseLine, lineDelta);
+		}
+	}
+
+	// =========================================================================
+
+	private WtParsedWikitextPage parseChunk(
+			String chunk,
+			WtEntityMap entityMap,
+			String title) throws IOException, ParseException
+	{
+		lastReparsedLength = chunk.length();
+
+		WikitextParser parser = new WikitextParser(config);
+		return (WtParsedWikitextPage) parser.parseArticle(
+				new PreprocessedWikitext(chunk, entityMap),
+				title);
+	}
+
+	/**
+	 * Returns the first of the units before the given unit which contains an
+	 * unclosed element. If there is no such unit the given unit is returned.
+	 */
+	private static int firstUnitWithUnclosedElement(
+			FlatPage page,
+			List<Unit> units,
+			int before)
+	{
+		for (int u = 0; u < before; ++u)
+		{
+			boolean unclosed = (u == 0) && page.prefixHasUnclosedElement();
+
+			int end = units.get(u + 1).index;
+			for (int k = units.get(u).index; k < end && !unclosed; ++k)
+				unclosed = page.sections.get(k).hasUnclosedElement();
+
+			if (unclosed)
+				return u;
+		}
+		return before;
+	}
+
+	private WtParsedWikitextPage splice(
+			WtParsedWikitextPage previous,
+			FlatPage old,
+			Unit from,
+			Unit to,
+			WtParsedWikitextPage reparsed,
+			FlatPage chunk,
+			int baseLine,
+			int lineDelta)
+	{
+		if (baseLine != 0)
+		{
+			for (WtNode n : reparsed)
+				SectionSplicing.shiftLines(n, baseLine);
+		}
+
+		List<WtNode> prefix = (from.offset == 0) ? chunk.prefix : old.prefix;
+
+		List<FlatSection> sections = new ArrayList<FlatSection>(
+				old.sections.size() + chunk.sections.size());
+
+		sections.addAll(old.sections.subList(0, from.index));
+		sections.addAll(chunk.sections);
+
+		if (to != null)
+		{
+			for (FlatSection s : old.sections.subList(to.index, old.sections.size()))
+			{
+				if (lineDelta != 0)
+					s.shiftLines(lineDelta);
+				sections.add(s);
+			}
+		}
+
+		WikitextNodeFactory nf = config.getNodeFactory();
+
+		WtParsedWikitextPage page = nf.parsedPage(
+				SectionSplicing.join(nf, prefix, sections),
+				previous.getEntityMap());
+		page.setNativeLocation(previous.getNativeLocation());
+		return page;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Determines the units which can be reparsed on their own: The content
+	 * before the first section and each section that starts at the beginning
+	 * of a line.
+	 * 
+	 * @return The units or null if the page has no usable location
+	 *         information.
+	 */
+	private static List<Unit> findUnits(FlatPage page, String text)
+	{
+		List<Unit> units = new ArrayList<Unit>();
+		units.add(new Unit(0, 0));
+
+		int[] lineStarts = null;
+		for (int k = 0; k < page.sections.size(); ++k)
+		{
+			AstLocation loc = page.sections.get(k).section.getNativeLocation();
+			if (loc == null)
+				return null;
+			if (loc.getColumn() != 1)
+				continue;
+
+			if (lineStarts == null)
+				lineStarts = SectionSplicing.lineStarts(text);
+			if (loc.getLine() > lineStarts.length)
+				return null;
+
+			// If the page starts with a section it is part of the first unit
+			int offset = lineStarts[loc.getLine() - 1];
+			if (offset > units.get(units.size() - 1).offset)
+				units.add(new Unit(k, offset));
+		}
+
+		return units;
+	}
+
+	private static final class Unit
+	{
+		/** Index of the first section of this unit. */
+		final int index;
+
+		/** Offset of this unit in the previous text. */
+		final int offset;
+
+		public Unit(int index, int offset)
+		{
+			this.index = index;
+			this.offset = offset;
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Replaces the characters between start (inclusive) and end (exclusive)
+	 * with a replacement text.
+	 */
+	public static final class Edit
+	{
+		private final int start;
+
+		private final int end;
+
+		private final String replacement;
+
+		public Edit(int start, int end, String replacement)
+		{
+			if (start < 0 || end < start)
+				throw new IllegalArgumentException();
+			if (replacement == null)
+				throw new NullPointerException();
+			this.start = start;
+			this.end = end;
+			this.replacement = replacement;
+		}
+
+		/**
+		 * Computes the smallest edit which turns the old text into the new
+		 * text by stripping the common prefix and suffix.
+		 */
+		public static Edit diff(String oldText, String newText)
+		{
+			int max = Math.min(oldText.length(), newText.length());
+
+			int prefix = 0;
+			while (prefix < max && oldText.charAt(prefix) == newText.charAt(prefix))
+				++prefix;
+
+			int suffix = 0;
+			while (suffix < max - prefix
+					&& oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix))
+				++suffix;
+
+			return new Edit(
+					prefix,
+					oldText.length() - suffix,
+					newText.substring(prefix, newText.length() - suffix));
+		}
+
+		public int getStart()
+		{
+			return start;
+		}
+
+		public int getEnd()
+		{
+			return end;
+		}
+
+		public String getReplacement()
+		{
+			return replacement;
+		}
+
+		/**
+		 * The change in length of the text.
+		 */
+		public int getDelta()
+		{
+			return replacement.length() - (end - start);
+		}
+
+		public String apply(String text)
+		{
+			return text.substring(0, start) + replacement + text.substring(end);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "Edit [start=" + start + ", end=" + end + ", replacement=" + replacement + "]";
+		}
+	}
+}
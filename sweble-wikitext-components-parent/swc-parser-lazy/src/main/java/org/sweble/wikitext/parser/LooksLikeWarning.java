@@ -51,6 +51,15 @@ public class LooksLikeWarning
 		this.looksLikeWhat = looksLikeWhat;
 	}
 
+	/**
+	 * Creates a copy of the given warning with a different span.
+	 */
+	public LooksLikeWarning(LooksLikeWarning other, Span span)
+	{
+		super(span, other.getSeverity(), other.getOrigin(), other.getMessage());
+		this.looksLikeWhat = other.looksLikeWhat;
+	}
+
 	private static String makeMessage(String message, String looksLikeWhat)
 	{
 		return "This looks like a " + looksLikeWhat + ", however " + message;
@@ -44,4 +44,12 @@ public class OddSyntaxWarning
 	{
 		super(span, severity, origin, message);
 	}
+
+	/**
+	 * Creates a copy of the given warning with a different span.
+	 */
+	public OddSyntaxWarning(OddSyntaxWarning other, Span span)
+	{
+		super(span, other.getSeverity(), other.getOrigin(), other.getMessage());
+	}
 }
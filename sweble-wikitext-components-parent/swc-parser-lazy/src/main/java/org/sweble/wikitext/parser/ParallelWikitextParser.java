@@ -0,0 +1,745 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.sweble.wikitext.parser.SectionSplicing.FlatPage;
+import org.sweble.wikitext.parser.SectionSplicing.FlatSection;
+import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.nodes.WtXmlEndTag;
+import org.sweble.wikitext.parser.nodes.WtXmlStartTag;
+import org.sweble.wikitext.parser.postprocessor.TicksAnalyzer;
+import org.sweble.wikitext.parser.postprocessor.TreeBuilder;
+import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
+
+import de.fau.cs.osr.ptk.common.Warning;
+import xtc.parser.ParseException;
+
+/**
+ * Parses large pages by splitting them at section headings and parsing the
+ * chunks on a fork-join pool.
+ * 
+ * A chunk ends in front of a line which looks like a section heading and is
+ * not inside a table. Each chunk is parsed together with the heading line of
+ * the following chunk. A split is only kept if the parse results prove that
+ * it does not change the outcome: The chunk after the split must start with
+ * a section, the heading line must still start a section at the end of the
+ * chunk before the split and the chunk before the split must not contain
+ * elements that were left open (see {@link SectionSplicing}). Otherwise the
+ * adjacent chunks are merged and parsed again. The sections of all chunks are
+ * finally nested the same way the parser nests them. The result is identical
+ * to the result of {@link WikitextParser#parseArticle}.
+ * 
+ * If postprocessing is enabled the tree builder also runs in parallel. The
+ * tree builder keeps track of open elements across sections, therefore the
+ * page is only split in front of top-level sections as long as every element
+ * is closed in the section it was opened in. The ticks analyzer runs over the
+ * whole page. {@link #parseAndPostprocessArticle} passes the postprocessed
+ * groups on one after another instead of joining them.
+ * 
+ * Pages shorter than twice the minimum chunk size are parsed on the calling
+ * thread.
+ */
+public class ParallelWikitextParser
+{
+	public static final int DEFAULT_MIN_CHUNK_SIZE = 32 * 1024;
+
+	private static final Set<String> VOID_ELEMENTS = new HashSet<String>(Arrays.asList(
+			"area", "base", "br", "col", "embed", "hr", "img", "input",
+			"keygen", "link", "meta", "param", "source", "track", "wbr"));
+
+	private static ForkJoinPool sharedPool;
+
+	// =========================================================================
+
+	private final ParserConfig config;
+
+	private final ForkJoinPool pool;
+
+	private int minChunkSize = DEFAULT_MIN_CHUNK_SIZE;
+
+	private boolean postprocess = false;
+
+	private int lastChunkCount;
+
+	// =========================================================================
+
+	/**
+	 * Creates a parser which uses a pool shared by all instances.
+	 */
+	public ParallelWikitextParser(ParserConfig config)
+	{
+		this(config, getSharedPool());
+	}
+
+	public ParallelWikitextParser(ParserConfig config, ForkJoinPool pool)
+	{
+		if (config == null || pool == null)
+			throw new NullPointerException();
+		this.config = config;
+		this.pool = pool;
+	}
+
+	private static synchronized ForkJoinPool getSharedPool()
+	{
+		if (sharedPool == null)
+			sharedPool = new ForkJoinPool();
+		return sharedPool;
+	}
+
+	// =========================================================================
+
+	public int getMinChunkSize()
+	{
+		return minChunkSize;
+	}
+
+	/**
+	 * The minimum number of characters in a chunk. Chunks are usually larger
+	 * since pages can only be split in front of a section heading.
+	 */
+	public void setMinChunkSize(int minChunkSize)
+	{
+		if (minChunkSize < 1)
+			throw new IllegalArgumentException();
+		this.minChunkSize = minChunkSize;
+	}
+
+	public boolean isPostprocess()
+	{
+		return postprocess;
+	}
+
+	/**
+	 * Whether the returned page is postprocessed by the {@link TicksAnalyzer}
+	 * and the {@link TreeBuilder} like {@link WikitextPostprocessor} does.
+	 */
+	public void setPostprocess(boolean postprocess)
+	{
+		this.postprocess = postprocess;
+	}
+
+	/**
+	 * The number of chunks the page was parsed in during the last call to
+	 * {@link #parseArticle}. If the page was postprocessed this is the number
+	 * of groups of sections the tree builder processed separately.
+	 */
+	public int getLastChunkCount()
+	{
+		return lastChunkCount;
+	}
+
+	// =========================================================================
+
+	public WtParsedWikitextPage parseArticle(String src, String title) throws IOException, ParseException
+	{
+		return parseArticle(new PreprocessedWikitext(src, new WtEntityMapImpl()), title);
+	}
+
+	public WtParsedWikitextPage parseArticle(
+			PreprocessedWikitext wikitext,
+			String title) throws IOException, ParseException
+	{
+		if (postprocess)
+		{
+			final List<WtParsedWikitextPage> parts = new ArrayList<WtParsedWikitextPage>();
+			parseAndPostprocessArticle(wikitext, title, new PartCallback()
+			{
+				@Override
+				public void postprocessed(WtParsedWikitextPage part)
+				{
+					parts.add(part);
+				}
+			});
+			return concat(parts);
+		}
+
+		List<Chunk> chunks = parseInChunks(wikitext, title);
+		if (chunks == null)
+			return parseSequentially(wikitext, title, false);
+
+		return join(chunks);
+	}
+
+	/**
+	 * Parses and postprocesses a page and passes it to the callback in parts.
+	 * Each part is a postprocessed page holding consecutive top-level nodes
+	 * of the page, the first part also carries the warnings of the parser
+	 * and the ticks analyzer. Concatenated, the parts form the page
+	 * {@link #parseArticle} returns if postprocessing is enabled. The page is
+	 * split at the same boundaries the tree builder processes separately,
+	 * therefore the page is passed on in one part if it cannot be split.
+	 * 
+	 * The parts are passed on in order as soon as they are postprocessed.
+	 * Since the parser does not keep a reference to a part after it was
+	 * passed on, parts that are no longer needed by the callback can be
+	 * garbage collected while the rest of the page is still being processed.
+	 * The callback is always called on the calling thread.
+	 * 
+	 * Postprocessing is performed regardless of {@link #isPostprocess()}.
+	 */
+	public void parseAndPostprocessArticle(
+			PreprocessedWikitext wikitext,
+			String title,
+			PartCallback callback) throws IOException, ParseException
+	{
+		List<Chunk> chunks = parseInChunks(wikitext, title);
+		if (chunks == null)
+			callback.postprocessed(parseSequentially(wikitext, title, true));
+		else
+			postprocess(chunks, join(chunks), callback);
+	}
+
+	/**
+	 * Parses the chunks of the page until all splits are safe.
+	 * 
+	 * @return The parsed chunks or {@code null} if the page has to be parsed
+	 *         sequentially.
+	 */
+	private List<Chunk> parseInChunks(
+			PreprocessedWikitext wikitext,
+			String title) throws IOException, ParseException
+	{
+		String text = wikitext.getWikitext();
+
+		List<Chunk> chunks = split(text);
+		lastChunkCount = chunks.size();
+		if (chunks.size() == 1)
+			return null;
+
+		while (true)
+		{
+			parseChunks(text, chunks, wikitext.getEntityMap(), title);
+
+			for (Chunk c : chunks)
+			{
+				if (c.flat == null)
+				{
+					lastChunkCount = 1;
+					return null;
+				}
+			}
+
+			if (!mergeInvalidChunks(chunks))
+				break;
+		}
+
+		lastChunkCount = chunks.size();
+
+		for (int k = 0; k < chunks.size() - 1; ++k)
+			chunks.get(k).flat.removeLastSection();
+
+		return chunks;
+	}
+
+	private WtParsedWikitextPage parseSequentially(
+			PreprocessedWikitext wikitext,
+			String title,
+			boolean postprocess) throws IOException, ParseException
+	{
+		WtNode page = new WikitextParser(config).parseArticle(wikitext, title);
+		if (postprocess)
+			page = new WikitextPostprocessor(config).postprocess(page, title);
+		return (WtParsedWikitextPage) page;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Splits the text in front of lines which look like a section heading.
+	 */
+	private List<Chunk> split(String text)
+	{
+		List<Chunk> chunks = new ArrayList<Chunk>();
+		if (text.length() < 2 * minChunkSize)
+		{
+			chunks.add(new Chunk(0, text.length(), 0));
+			return chunks;
+		}
+
+		int start = 0;
+		int startLine = 0;
+		int line = 0;
+		int tableDepth = 0;
+		for (int k = 0; k < text.length(); k = SectionSplicing.lineEnd(text, k), ++line)
+		{
+			int i = k;
+			while (i < text.length() && (text.charAt(i) == ' ' || text.charAt(i) == '\t'))
+				++i;
+
+			if (text.startsWith("{|", i))
+			{
+				++tableDepth;
+			}
+			else if (text.startsWith("|}", i))
+			{
+				if (tableDepth > 0)
+					--tableDepth;
+			}
+			else if (tableDepth == 0
+					&& k - start >= minChunkSize
+					&& text.length() - k >= minChunkSize
+					&& isHeadingLine(text, k))
+			{
+				chunks.add(new Chunk(start, k, startLine));
+				start = k;
+				startLine = line;
+			}
+		}
+
+		chunks.add(new Chunk(start, text.length(), startLine));
+		return chunks;
+	}
+
+	private static boolean isHeadingLine(String text, int offset)
+	{
+		if (!text.startsWith("=", offset))
+			return false;
+
+		int end = SectionSplicing.lineEnd(text, offset);
+		while (end > offset && Character.isWhitespace(text.charAt(end - 1)))
+			--end;
+
+		return end - offset >= 3 && text.charAt(end - 1) == '=';
+	}
+
+	private void parseChunks(
+			final String text,
+			final List<Chunk> chunks,
+			final WtEntityMap entityMap,
+			final String title) throws IOException, ParseException
+	{
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int k = 0; k < chunks.size(); ++k)
+		{
+			final Chunk chunk = chunks.get(k);
+			if (chunk.page != null)
+				continue;
+
+			final boolean last = (k == chunks.size() - 1);
+			tasks.add(new Callable<Void>()
+			{
+				@Override
+				public Void call() throws Exception
+				{
+					String src = text.substring(chunk.start, chunk.end);
+					if (!last)
+						src += text.substring(chunk.end, SectionSplicing.lineEnd(text, chunk.end));
+
+					chunk.parsed((WtParsedWikitextPage) new WikitextParser(config).parseArticle(
+							new PreprocessedWikitext(src, entityMap),
+							title));
+
+					chunk.lines = SectionSplicing.countLines(text, chunk.start, chunk.end);
+					return null;
+				}
+			});
+		}
+
+		invokeAll(tasks);
+	}
+
+	/**
+	 * Merges chunks with their neighbors if the split between them turned out
+	 * not to be safe.
+	 * 
+	 * @return Whether chunks were merged and have to be parsed again.
+	 */
+	private static boolean mergeInvalidChunks(List<Chunk> chunks)
+	{
+		boolean merged = false;
+		for (int k = 0; k < chunks.size() - 1; ++k)
+		{
+			Chunk c = chunks.get(k);
+			Chunk next = chunks.get(k + 1);
+
+			if (c.hasUnclosedElement)
+			{
+				// The element might be closed anywhere after the chunk
+				Chunk last = chunks.get(chunks.size() - 1);
+				chunks.subList(k + 1, chunks.size()).clear();
+				chunks.set(k, new Chunk(c.start, last.end, c.startLine));
+				return true;
+			}
+
+			if (!c.flat.endsWithSectionAtLine(c.lines + 1) || !next.flat.startsWithSection())
+			{
+				chunks.set(k, new Chunk(c.start, next.end, c.startLine));
+				chunks.remove(k + 1);
+				merged = true;
+			}
+		}
+		return merged;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Runs the ticks analyzer over the whole page and the tree builder over
+	 * groups of top-level sections in parallel. The ticks analyzer carries
+	 * state from one line to the next and is cheap compared to the tree
+	 * builder. A group ends in front of a chunk which starts with a top-level
+	 * section if all sections so far are balanced. The groups are passed to
+	 * the callback in order.
+	 */
+	private void postprocess(
+			List<Chunk> chunks,
+			WtParsedWikitextPage page,
+			PartCallback callback) throws IOException, ParseException
+	{
+		final WtParsedWikitextPage ticked =
+				(WtParsedWikitextPage) TicksAnalyzer.process(config, page);
+
+		List<Integer> boundaries = findGroupBoundaries(chunks, ticked);
+		lastChunkCount = boundaries.size() + 1;
+		if (boundaries.isEmpty())
+		{
+			callback.postprocessed(TreeBuilder.process(config, ticked));
+			return;
+		}
+
+		WikitextNodeFactory nf = config.getNodeFactory();
+
+		final List<WtParsedWikitextPage> groups = new ArrayList<WtParsedWikitextPage>();
+		WtNodeList content = nf.list();
+		int topLevel = 0;
+		for (WtNode n : ticked)
+		{
+			if (n.isNodeType(WtNode.NT_SECTION))
+			{
+				if (groups.size() < boundaries.size() && boundaries.get(groups.size()) == topLevel)
+				{
+					groups.add(groupPage(content, ticked));
+					content = nf.list();
+				}
+				++topLevel;
+			}
+			content.add(n);
+		}
+		groups.add(groupPage(content, ticked));
+
+		// From now on only the groups hold the nodes of the page
+		chunks.clear();
+		page.clear();
+		ticked.clear();
+
+		List<Future<WtParsedWikitextPage>> results = new ArrayList<Future<WtParsedWikitextPage>>();
+		for (int k = 0; k < groups.size(); ++k)
+		{
+			final int group = k;
+			results.add(pool.submit(new Callable<WtParsedWikitextPage>()
+			{
+				@Override
+				public WtParsedWikitextPage call() throws Exception
+				{
+					WtParsedWikitextPage g = groups.get(group);
+					groups.set(group, null);
+					return TreeBuilder.process(config, g);
+				}
+			}));
+		}
+
+		try
+		{
+			for (int k = 0; k < results.size(); ++k)
+			{
+				WtParsedWikitextPage processed = get(results.get(k));
+				results.set(k, null);
+
+				if (k == 0)
+				{
+					List<Warning> warnings = new ArrayList<Warning>(ticked.getWarnings());
+					warnings.addAll(processed.getWarnings());
+					if (!warnings.isEmpty())
+						processed.setWarnings(warnings);
+				}
+
+				callback.postprocessed(processed);
+			}
+		}
+		finally
+		{
+			for (Future<WtParsedWikitextPage> r : results)
+			{
+				if (r != null)
+					r.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * Concatenates the parts of a page that was postprocessed in groups.
+	 */
+	private WtParsedWikitextPage concat(List<WtParsedWikitextPage> parts)
+	{
+		if (parts.size() == 1)
+			return parts.get(0);
+
+		// Groups start with top-level sections and can simply be concatenated
+		WikitextNodeFactory nf = config.getNodeFactory();
+		WtNodeList result = nf.list();
+		List<Warning> warnings = new ArrayList<Warning>();
+		for (WtParsedWikitextPage g : parts)
+		{
+			for (WtNode n : g)
+				result.add(n);
+			warnings.addAll(g.getWarnings());
+		}
+
+		WtParsedWikitextPage processed = nf.parsedPage(result, parts.get(0).getEntityMap());
+		if (!warnings.isEmpty())
+			processed.setWarnings(warnings);
+		return processed;
+	}
+
+	private WtParsedWikitextPage groupPage(
+			WtNodeList content,
+			WtParsedWikitextPage page)
+	{
+		WtParsedWikitextPage group = config.getNodeFactory().parsedPage(
+				content,
+				page.getEntityMap());
+		group.setNativeLocation(page.getNativeLocation());
+		return group;
+	}
+
+	/**
+	 * Determines in front of which top-level sections of the page a group
+	 * can start. Groups only start in front of the first section of a chunk.
+	 * 
+	 * @return The indices of the top-level sections that start a group.
+	 */
+	private static List<Integer> findGroupBoundaries(
+			List<Chunk> chunks,
+			WtParsedWikitextPage ticked)
+	{
+		List<Integer> boundaries = new ArrayList<Integer>();
+
+		FlatPage flat = FlatPage.flatten(ticked);
+		int count = 0;
+		for (Chunk c : chunks)
+			count += c.flat.sections.size();
+		if (flat == null || flat.sections.size() != count)
+			return boundaries;
+
+		boolean balanced = isBalanced(flat.prefix);
+		int minLevel = Integer.MAX_VALUE;
+		int topLevel = 0;
+		int index = 0;
+		for (int k = 0; k < chunks.size(); ++k)
+		{
+			for (int i = 0; i < chunks.get(k).flat.sections.size(); ++i, ++index)
+			{
+				FlatSection s = flat.sections.get(index);
+				int level = s.section.getLevel();
+
+				if (i == 0 && k > 0 && balanced && level <= minLevel)
+					boundaries.add(topLevel);
+
+				if (level <= minLevel)
+				{
+					minLevel = level;
+					++topLevel;
+				}
+
+				balanced &= isBalanced(s.section.getHeading())
+						&& isBalanced(s.getOwnContent());
+			}
+		}
+		return boundaries;
+	}
+
+	/**
+	 * Joins the parsed chunks into one page. The locations of the chunks are
+	 * moved to their position in the text.
+	 */
+	private WtParsedWikitextPage join(List<Chunk> chunks)
+	{
+		List<FlatSection> sections = new ArrayList<FlatSection>();
+		List<Warning> warnings = new ArrayList<Warning>();
+		for (Chunk c : chunks)
+		{
+			if (c.startLine != 0)
+			{
+				for (FlatSection s : c.flat.sections)
+					s.shiftLines(c.startLine);
+				SectionSplicing.shiftWarnings(c.page.getWarnings(), c.startLine);
+			}
+
+			sections.addAll(c.flat.sections);
+			warnings.addAll(c.page.getWarnings());
+		}
+
+		Chunk first = chunks.get(0);
+
+		WikitextNodeFactory nf = config.getNodeFactory();
+		WtParsedWikitextPage page = nf.parsedPage(
+				SectionSplicing.join(nf, first.flat.prefix, sections),
+				first.page.getEntityMap());
+		page.setNativeLocation(first.page.getNativeLocation());
+		if (!warnings.isEmpty())
+			page.setWarnings(warnings);
+		return page;
+	}
+
+	// =========================================================================
+
+	private void invokeAll(List<Callable<Void>> tasks) throws IOException, ParseException
+	{
+		for (Future<Void> r : pool.invokeAll(tasks))
+			get(r);
+	}
+
+	private static <T> T get(Future<T> result) throws IOException, ParseException
+	{
+		try
+		{
+			return result.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while parsing", e);
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof ParseException)
+				throw (ParseException) cause;
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Receives the parts of a page from
+	 * {@link ParallelWikitextParser#parseAndPostprocessArticle}.
+	 */
+	public interface PartCallback
+	{
+		void postprocessed(WtParsedWikitextPage part) throws IOException;
+	}
+
+	// =========================================================================
+
+	private static final class Chunk
+	{
+		/** Offset of the chunk in the text. */
+		final int start;
+
+		/** End offset of the chunk in the text, exclusive. */
+		final int end;
+
+		/** Number of lines in front of the chunk. */
+		final int startLine;
+
+		/** Number of lines in the chunk. */
+		int lines;
+
+		WtParsedWikitextPage page;
+
+		FlatPage flat;
+
+		boolean hasUnclosedElement;
+
+		public Chunk(int start, int end, int startLine)
+		{
+			this.start = start;
+			this.end = end;
+			this.startLine = startLine;
+		}
+
+		public void parsed(WtParsedWikitextPage page)
+		{
+			this.page = page;
+			this.flat = FlatPage.flatten(page);
+			this.hasUnclosedElement = SectionSplicing.hasUnclosedElement(page);
+		}
+	}
+
+	/**
+	 * Whether every XML element and every element inserted by the ticks
+	 * analyzer that was opened in the given content is closed there again and
+	 * all end tags match. End tags without a start tag are ignored by the
+	 * tree builder. Void elements are ignored.
+	 */
+	private static boolean isBalanced(Iterable<WtNode> content)
+	{
+		LinkedList<String> open = new LinkedList<String>();
+		for (WtNode n : content)
+		{
+			if (!visitTags(n, open))
+				return false;
+		}
+		return open.isEmpty();
+	}
+
+	private static boolean visitTags(WtNode n, LinkedList<String> open)
+	{
+		switch (n.getNodeType())
+		{
+			case WtNode.NT_XML_START_TAG:
+			case WtNode.NT_IM_START_TAG:
+			{
+				String name = ((WtXmlStartTag) n).getName().toLowerCase();
+				if (!VOID_ELEMENTS.contains(name))
+					open.addLast(name);
+				break;
+			}
+			case WtNode.NT_XML_END_TAG:
+			case WtNode.NT_IM_END_TAG:
+			{
+				String name = ((WtXmlEndTag) n).getName().toLowerCase();
+				if (!open.isEmpty())
+				{
+					if (!open.getLast().equals(name))
+						return false;
+					open.removeLast();
+				}
+				break;
+			}
+		}
+
+		for (WtNode c : n)
+		{
+			if (!visitTags(c, open))
+				return false;
+		}
+		return true;
+	}
+}
@@ -0,0 +1,406 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Stack;
+
+import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtBody;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtNodeList;
+import org.sweble.wikitext.parser.nodes.WtSection;
+import org.sweble.wikitext.parser.nodes.WtText;
+import org.sweble.wikitext.parser.postprocessor.TreeBuilderWarning;
+
+import de.fau.cs.osr.ptk.common.Warning;
+import de.fau.cs.osr.ptk.common.ast.AstLocation;
+import de.fau.cs.osr.ptk.common.ast.Span;
+
+/**
+ * Helpers for parsers which parse the sections of a page separately and
+ * splice the results together.
+ * 
+ * At the start of a section heading the parser is always in the same state,
+ * no matter what precedes the heading. The nesting of sections is not
+ * decided by the parser but established afterwards from the section levels.
+ * Pages parsed from parts of a text can therefore be flattened into the
+ * content before the first section and the list of all sections, combined
+ * and nested again.
+ */
+final class SectionSplicing
+{
+	private SectionSplicing()
+	{
+	}
+
+	// =========================================================================
+
+	/**
+	 * Nests the sections the same way the parser does and returns the content
+	 * of the resulting page.
+	 */
+	public static WtNodeList join(
+			WikitextNodeFactory nf,
+			List<WtNode> prefix,
+			List<FlatSection> sections)
+	{
+		WtNodeList result = nf.list();
+		for (WtNode n : prefix)
+			result.add(n);
+
+		for (FlatSection s : sections)
+			s.removeSubsections();
+
+		Stack<WtSection> stack = new Stack<WtSection>();
+		for (FlatSection fs : sections)
+		{
+			WtSection s = fs.section;
+			while (!stack.isEmpty() && s.getLevel() <= stack.peek().getLevel())
+				stack.pop();
+
+			if (stack.isEmpty())
+				result.add(s);
+			else
+				stack.peek().getBody().add(s);
+
+			stack.push(s);
+		}
+
+		return result;
+	}
+
+	public static boolean isSectionAtLine(WtSection s, int line)
+	{
+		AstLocation loc = s.getNativeLocation();
+		return (loc != null) && loc.getLine() == line && loc.getColumn() == 1;
+	}
+
+	// =========================================================================
+
+	/**
+	 * Elements which can span several lines and were not closed might turn
+	 * into an element spanning several sections once a closing is added
+	 * further down: An opening "[[" without a matching "]]" or an XML tag
+	 * whose attributes span several lines. If the parser fails to recognize
+	 * such an element its opening is left as text.
+	 */
+	public static boolean hasUnclosedElement(WtNode n)
+	{
+		if (n.isNodeType(WtNode.NT_TEXT))
+			return hasOpening(((WtText) n).getContent());
+
+		for (WtNode c : n)
+		{
+			if (hasUnclosedElement(c))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean hasOpening(String text)
+	{
+		for (int k = 0; k + 1 < text.length(); ++k)
+		{
+			char ch = text.charAt(k);
+			char next = text.charAt(k + 1);
+			if (ch == '[' && next == '[')
+				return true;
+			if (ch == '<' && (next == '/' || Character.isLetter(next)))
+				return true;
+		}
+		return false;
+	}
+
+	// =========================================================================
+
+	/**
+	 * The content of a page as the content before the first section and the
+	 * list of all sections in document order.
+	 */
+	public static final class FlatPage
+	{
+		final List<WtNode> prefix = new ArrayList<WtNode>();
+
+		final List<FlatSection> sections = new ArrayList<FlatSection>();
+
+		/**
+		 * @return The sections of the page or null if the page does not have
+		 *         the structure the parser produces.
+		 */
+		public static FlatPage flatten(WtNode page)
+		{
+			FlatPage result = new FlatPage();
+			for (WtNode n : page)
+			{
+				if (n.isNodeType(WtNode.NT_SECTION))
+				{
+					if (!result.add((WtSection) n))
+						return null;
+				}
+				else if (result.sections.isEmpty())
+				{
+					result.prefix.add(n);
+				}
+				else
+				{
+					return null;
+				}
+			}
+			return result;
+		}
+
+		private boolean add(WtSection s)
+		{
+			FlatSection fs = new FlatSection(s);
+			sections.add(fs);
+
+			WtBody body = s.getBody();
+			for (int k = 0; k < body.size(); ++k)
+			{
+				WtNode n = body.get(k);
+				if (n.isNodeType(WtNode.NT_SECTION))
+				{
+					if (fs.ownContent == body.size())
+						fs.ownContent = k;
+					if (!add((WtSection) n))
+						return false;
+				}
+				else if (fs.ownContent != body.size())
+				{
+					// Content after a subsection
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public boolean startsWithSection()
+		{
+			return prefix.isEmpty()
+					&& !sections.isEmpty()
+					&& isSectionAtLine(sections.get(0).section, 1);
+		}
+
+		public boolean endsWithSectionAtLine(int line)
+		{
+			return !sections.isEmpty()
+					&& isSectionAtLine(sections.get(sections.size() - 1).section, line);
+		}
+
+		public FlatSection removeLastSection()
+		{
+			return sections.remove(sections.size() - 1);
+		}
+
+		public boolean prefixHasUnclosedElement()
+		{
+			for (WtNode n : prefix)
+			{
+				if (hasUnclosedElement(n))
+					return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A section without its subsections.
+	 */
+	public static final class FlatSection
+	{
+		final WtSection section;
+
+		/** Number of body elements which are not subsections. */
+		int ownContent;
+
+		public FlatSection(WtSection section)
+		{
+			this.section = section;
+			this.ownContent = section.getBody().size();
+		}
+
+		/**
+		 * The body elements of the section without its subsections.
+		 */
+		public List<WtNode> getOwnContent()
+		{
+			return section.getBody().subList(0, ownContent);
+		}
+
+		public boolean hasUnclosedElement()
+		{
+			if (SectionSplicing.hasUnclosedElement(section.getHeading()))
+				return true;
+			WtBody body = section.getBody();
+			for (int k = 0; k < ownContent; ++k)
+			{
+				if (SectionSplicing.hasUnclosedElement(body.get(k)))
+					return true;
+			}
+			return false;
+		}
+
+		public void removeSubsections()
+		{
+			WtBody body = section.getBody();
+			while (body.size() > ownContent)
+				body.remove(body.size() - 1);
+		}
+
+		public void shiftLines(int delta)
+		{
+			shiftNode(section, delta);
+			SectionSplicing.shiftLines(section.getHeading(), delta);
+
+			WtBody body = section.getBody();
+			if (body == WtBody.NO_BODY)
+				return;
+
+			shiftNode(body, delta);
+			for (int k = 0; k < ownContent; ++k)
+				SectionSplicing.shiftLines(body.get(k), delta);
+		}
+	}
+
+	// =========================================================================
+
+	/*
+	 * Line breaks are counted like the Rats! parser does: "\r\n", "\r" and
+	 * "\n" all end a line.
+	 */
+
+	public static int[] lineStarts(String text)
+	{
+		int[] starts = new int[countLines(text, 0, text.length()) + 1];
+		int line = 1;
+		for (int k = 0; k < text.length(); ++k)
+		{
+			char ch = text.charAt(k);
+			if (ch == '\r')
+			{
+				if (k + 1 < text.length() && text.charAt(k + 1) == '\n')
+					++k;
+				starts[line++] = k + 1;
+			}
+			else if (ch == '\n')
+			{
+				starts[line++] = k + 1;
+			}
+		}
+		return starts;
+	}
+
+	public static int countLines(String text, int from, int to)
+	{
+		int count = 0;
+		for (int k = from; k < to; ++k)
+		{
+			char ch = text.charAt(k);
+			if (ch == '\r')
+			{
+				if (k + 1 < to && text.charAt(k + 1) == '\n')
+					++k;
+				++count;
+			}
+			else if (ch == '\n')
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the offset after the line break that ends the line at the given
+	 * offset.
+	 */
+	public static int lineEnd(String text, int offset)
+	{
+		for (int k = offset; k < text.length(); ++k)
+		{
+			char ch = text.charAt(k);
+			if (ch == '\r')
+				return (k + 1 < text.length() && text.charAt(k + 1) == '\n') ? k + 2 : k + 1;
+			if (ch == '\n')
+				return k + 1;
+		}
+		return text.length();
+	}
+
+	// =========================================================================
+
+	public static void shiftLines(WtNode n, int delta)
+	{
+		shiftNode(n, delta);
+		for (WtNode c : n)
+			shiftLines(c, delta);
+	}
+
+	private static void shiftNode(WtNode n, int delta)
+	{
+		AstLocation loc = n.getNativeLocation();
+		if (loc != null)
+			n.setNativeLocation(shift(loc, delta));
+
+		Object warnings = n.getAttribute("warnings");
+		if (warnings instanceof List)
+		{
+			@SuppressWarnings("unchecked")
+			List<Warning> list = (List<Warning>) warnings;
+			shiftWarnings(list, delta);
+		}
+	}
+
+	public static void shiftWarnings(List<Warning> warnings, int delta)
+	{
+		for (int k = 0; k < warnings.size(); ++k)
+			warnings.set(k, shift(warnings.get(k), delta));
+	}
+
+	private static AstLocation shift(AstLocation loc, int delta)
+	{
+		if (loc == null)
+			return null;
+		return new AstLocation(loc.getFile(), loc.getLine() + delta, loc.getColumn());
+	}
+
+	/**
+	 * Only the warnings the parser and postprocessor create can be relocated,
+	 * other warnings are left untouched.
+	 */
+	private static Warning shift(Warning w, int delta)
+	{
+		Span span = w.getSpan();
+		if (span == null)
+			return w;
+
+		Span shifted = new Span(
+				shift(span.getFrom(), delta),
+				shift(span.getTo(), delta),
+				span.getContent());
+
+		if (w instanceof OddSyntaxWarning)
+			return new OddSyntaxWarning((OddSyntaxWarning) w, shifted);
+		if (w instanceof LooksLikeWarning)
+			return new LooksLikeWarning((LooksLikeWarning) w, shifted);
+		if (w instanceof TreeBuilderWarning)
+			return new TreeBuilderWarning((TreeBuilderWarning) w, shifted);
+		return w;
+	}
+}
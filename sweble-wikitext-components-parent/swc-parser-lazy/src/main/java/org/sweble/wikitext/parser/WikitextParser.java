@@ -25,6 +25,7 @@ import org.sweble.wikitext.parser.nodes.WtNode;
 import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
 import org.sweble.wikitext.parser.parser.RatsWikitextParser;
 import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
+import org.sweble.wikitext.parser.utils.ParserStats;
 
 import de.fau.cs.osr.ptk.common.ParserCommon;
 import xtc.parser.ParseError;
@@ -40,6 +41,10 @@ public class WikitextParser
 
 	private RatsWikitextParser parser;
 
+	private boolean collectStats;
+
+	private ParserStats stats;
+
 	// =========================================================================
 
 	public WikitextParser(ParserConfig config)
@@ -55,6 +60,29 @@ public class WikitextParser
 		return config;
 	}
 
+	/**
+	 * Whether to collect statistics of the memoized productions. The
+	 * statistics of the last parse are available from {@link #getStats()}.
+	 */
+	public void setCollectStats(boolean collectStats)
+	{
+		this.collectStats = collectStats;
+	}
+
+	public boolean isCollectStats()
+	{
+		return collectStats;
+	}
+
+	/**
+	 * The statistics of the last parse or {@code null} if no statistics were
+	 * collected.
+	 */
+	public ParserStats getStats()
+	{
+		return stats;
+	}
+
 	// =========================================================================
 
 	@Override
@@ -78,14 +106,18 @@ public class WikitextParser
 
 		parser.setNodeFactory(config.getNodeFactory());
 
-		Result r = null;
+		if (collectStats)
+			parser.enableStats();
+
+		Result r = this.parser.pArticle(0);
 
-		//RatsWikitextParser.enableStats();
+		stats = parser.getStats();
+		if (stats != null)
 		{
-			r = this.parser.pArticle(0);
+			stats.setMemoTableStats(
+					parser.getMemoTable().size(),
+					parser.getMemoTable().getEvictions());
 		}
-		if (RatsWikitextParser.isStatsEnabled())
-			RatsWikitextParser.getStats().dump(System.err);
 
 		if (r.hasValue())
 		{
@@ -25,6 +25,8 @@ public class WikitextPostprocessor
 {
 	private final ParserConfig config;
 
+	private boolean fused = false;
+
 	// =========================================================================
 
 	public WikitextPostprocessor(ParserConfig config)
@@ -34,8 +36,29 @@ public class WikitextPostprocessor
 
 	// =========================================================================
 
+	public boolean isFused()
+	{
+		return fused;
+	}
+
+	/**
+	 * Whether the ticks are resolved while the tree is built instead of in a
+	 * separate pass over the whole AST. Both produce the same AST.
+	 * 
+	 * @see TreeBuilder#processWithTicks(ParserConfig, WtNode)
+	 */
+	public void setFused(boolean fused)
+	{
+		this.fused = fused;
+	}
+
+	// =========================================================================
+
 	public WtNode postprocess(WtNode ast, String title)
 	{
+		if (fused)
+			return TreeBuilder.processWithTicks(config, ast);
+
 		WtNode result = ast;
 
 		result = TicksAnalyzer.process(config, result);
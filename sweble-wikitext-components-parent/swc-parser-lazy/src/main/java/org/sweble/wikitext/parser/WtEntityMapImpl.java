@@ -17,15 +17,213 @@
 
 package org.sweble.wikitext.parser;
 
-import org.sweble.wikitext.parser.nodes.WtNode;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
-import de.fau.cs.osr.ptk.common.AstEntityMapImpl;
+import org.sweble.wikitext.parser.nodes.WtNode;
 
+/**
+ * Entity map which stores the entities in an array indexed by their id.
+ *
+ * Ids are allocated sequentially starting at zero. Looking up an entity
+ * therefore neither requires hashing nor boxing the id. The map views
+ * returned by {@link #getMap()} and {@link #getEntities()} are read-only and
+ * backed by the array.
+ */
 public class WtEntityMapImpl
-		extends
-			AstEntityMapImpl<WtNode>
 		implements
-			WtEntityMap
+			WtEntityMap,
+			Serializable
 {
-	private static final long serialVersionUID = -5463361855129034446L;
+	private static final long serialVersionUID = 3179264457236170584L;
+
+	private static final int DEFAULT_CAPACITY = 16;
+
+	// =========================================================================
+
+	private WtNode[] entities;
+
+	private int size;
+
+	// =========================================================================
+
+	public WtEntityMapImpl()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param initialCapacity
+	 *            The number of entities that can be registered before the
+	 *            array has to grow.
+	 */
+	public WtEntityMapImpl(int initialCapacity)
+	{
+		if (initialCapacity < 0)
+			throw new IllegalArgumentException("Initial capacity must not be negative");
+		this.entities = new WtNode[initialCapacity];
+	}
+
+	// =========================================================================
+
+	@Override
+	public int registerEntity(WtNode entity)
+	{
+		if (size == entities.length)
+			entities = Arrays.copyOf(entities, Math.max(DEFAULT_CAPACITY, size * 2));
+		entities[size] = entity;
+		return size++;
+	}
+
+	@Override
+	public WtNode getEntity(int id)
+	{
+		return (id >= 0 && id < size) ? entities[id] : null;
+	}
+
+	@Override
+	public Set<Entry<Integer, WtNode>> getEntities()
+	{
+		return getMap().entrySet();
+	}
+
+	@Override
+	public Map<Integer, WtNode> getMap()
+	{
+		return new EntityMapView();
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * The number of registered entities.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	// =========================================================================
+
+	@Override
+	public String toString()
+	{
+		return "EntityMap" + getMap();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + getMap().hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		WtEntityMapImpl other = (WtEntityMapImpl) obj;
+		if (size != other.size)
+			return false;
+		for (int i = 0; i < size; ++i)
+		{
+			WtNode a = entities[i];
+			WtNode b = other.entities[i];
+			if (a == null ? b != null : !a.equals(b))
+				return false;
+		}
+		return true;
+	}
+
+	// =========================================================================
+
+	private final class EntityMapView
+			extends
+				AbstractMap<Integer, WtNode>
+	{
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		@Override
+		public boolean containsKey(Object key)
+		{
+			return (key instanceof Integer)
+					&& ((Integer) key) >= 0
+					&& ((Integer) key) < size;
+		}
+
+		@Override
+		public WtNode get(Object key)
+		{
+			return (key instanceof Integer) ? getEntity((Integer) key) : null;
+		}
+
+		@Override
+		public Set<Entry<Integer, WtNode>> entrySet()
+		{
+			return new AbstractSet<Entry<Integer, WtNode>>()
+			{
+				@Override
+				public int size()
+				{
+					return size;
+				}
+
+				@Override
+				public Iterator<Entry<Integer, WtNode>> iterator()
+				{
+					return new EntryIterator();
+				}
+			};
+		}
+	}
+
+	private final class EntryIterator
+			implements
+				Iterator<Entry<Integer, WtNode>>
+	{
+		private int next = 0;
+
+		@Override
+		public boolean hasNext()
+		{
+			return next < size;
+		}
+
+		@Override
+		public Entry<Integer, WtNode> next()
+		{
+			if (next >= size)
+				throw new NoSuchElementException();
+			int id = next++;
+			return new AbstractMap.SimpleImmutableEntry<Integer, WtNode>(id, entities[id]);
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+	}
 }
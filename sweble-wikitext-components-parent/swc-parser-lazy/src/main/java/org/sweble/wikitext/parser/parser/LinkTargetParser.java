@@ -120,6 +120,24 @@ public class LinkTargetParser
 	// =========================================================================
 
 	public void parse(ParserConfig config, final String target) throws LinkTargetException
+	{
+		if (isNormalizedPlainTitle(target))
+		{
+			// Nothing to decode, strip or split off: only spaces have to be
+			// replaced by underscores.
+			this.title = target.replace(' ', '_');
+		}
+		else
+		{
+			parseFull(config, target);
+		}
+	}
+
+	/**
+	 * Runs all steps of the link target parser regardless of whether the
+	 * target is already a normalized plain title.
+	 */
+	void parseFull(ParserConfig config, final String target) throws LinkTargetException
 	{
 		String result = target;
 
@@ -305,6 +323,80 @@ public class LinkTargetParser
 		return result;
 	}
 
+	/**
+	 * Determines whether the given target can be parsed without running the
+	 * decoding steps and regular expressions of {@link #parse}. This is the
+	 * case if the target is not empty, does not start or end with a space or
+	 * underscore, does not contain runs of spaces or underscores and contains
+	 * none of the characters which trigger decoding, namespace or fragment
+	 * extraction, the sanity checks or whitespace normalization. For such
+	 * targets the full parse would only replace spaces with underscores.
+	 */
+	static boolean isNormalizedPlainTitle(String target)
+	{
+		int length = target.length();
+		if (length == 0)
+			return false;
+
+		char first = target.charAt(0);
+		char last = target.charAt(length - 1);
+		if (first == ' ' || first == '_' || first == '.' || last == ' ' || last == '_')
+			return false;
+
+		char prev = 0;
+		for (int i = 0; i < length; ++i)
+		{
+			char ch = target.charAt(i);
+			if (ch < 0x80)
+			{
+				switch (ch)
+				{
+					case ' ':
+					case '_':
+						if (prev == ' ' || prev == '_')
+							return false;
+						break;
+					case '.':
+						if (prev == '/')
+							return false;
+						break;
+					case '%':
+					case '&':
+					case '#':
+					case ':':
+					case '~':
+					case '<':
+					case '>':
+					case '{':
+					case '}':
+					case '|':
+					case '[':
+					case ']':
+					case '\u007F':
+						return false;
+					default:
+						if (ch < 0x20)
+							return false;
+						break;
+				}
+			}
+			else if (ch == '\u00A0'
+					|| ch == '\u1680'
+					|| ch == '\u180E'
+					|| (ch >= '\u2000' && ch <= '\u202F')
+					|| ch == '\u205F'
+					|| ch == '\u3000'
+					|| ch == '\uFFFD'
+					|| Character.isWhitespace(ch))
+			{
+				// Unicode spaces, bidi characters and the replacement char
+				return false;
+			}
+			prev = ch;
+		}
+		return true;
+	}
+
 	private static String urlDecode(String text)
 	{
 		// It's intentional that only '%' characters trigger the decoding.
@@ -0,0 +1,235 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.parser;
+
+import java.util.Arrays;
+
+import xtc.parser.Result;
+
+/**
+ * Memoizes the results of productions whose outcome depends on the parser
+ * context. An entry is identified by the position in the input, the
+ * production and the key of the context the production was invoked in (see
+ * {@link WikitextParserContext#getMemoKey()}). Productions that do not
+ * depend on the context are stored with a context key of zero.
+ * 
+ * The entries are kept in a single open addressing table with linear probing
+ * instead of per-position objects. The table grows up to a maximum capacity.
+ * Once it is full, the half of the entries with the lowest positions is
+ * evicted. The parser only rarely backtracks that far and an evicted result
+ * is simply computed again.
+ */
+public final class StateAwareMemoTable
+{
+	public static final int DEFAULT_MAX_CAPACITY = 1 << 18;
+
+	private static final int INITIAL_CAPACITY = 1 << 8;
+
+	// =========================================================================
+
+	private final int maxCapacity;
+
+	/**
+	 * Position and production of an entry. A key of zero marks an empty
+	 * slot.
+	 */
+	private long[] keys;
+
+	private long[] contexts;
+
+	private Result[] results;
+
+	private int size;
+
+	private int evictions;
+
+	// =========================================================================
+
+	public StateAwareMemoTable()
+	{
+		this(DEFAULT_MAX_CAPACITY);
+	}
+
+	/**
+	 * @param maxCapacity
+	 *            The maximum number of slots in the table. Must be a power
+	 *            of two.
+	 */
+	public StateAwareMemoTable(int maxCapacity)
+	{
+		if (maxCapacity < 2 || Integer.bitCount(maxCapacity) != 1)
+			throw new IllegalArgumentException("Maximum capacity must be a power of two");
+
+		this.maxCapacity = maxCapacity;
+		allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+	}
+
+	// =========================================================================
+
+	public int size()
+	{
+		return size;
+	}
+
+	public int getCapacity()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * How often entries had to be evicted because the table was full.
+	 */
+	public int getEvictions()
+	{
+		return evictions;
+	}
+
+	// =========================================================================
+
+	/**
+	 * @return The memoized result or {@code null} if the production was not
+	 *         parsed at the given position in the given context yet or the
+	 *         result was evicted.
+	 */
+	public Result get(int position, int production, long context)
+	{
+		long key = key(position, production);
+		int mask = keys.length - 1;
+		for (int i = slot(key, context, mask); keys[i] != 0; i = (i + 1) & mask)
+		{
+			if (keys[i] == key && contexts[i] == context)
+				return results[i];
+		}
+		return null;
+	}
+
+	/**
+	 * Memoizes a result.
+	 * 
+	 * @return The given result.
+	 */
+	public Result put(int position, int production, long context, Result result)
+	{
+		if (size >= threshold())
+			makeRoom();
+
+		insert(key(position, production), context, result);
+		return result;
+	}
+
+	public void clear()
+	{
+		allocate(Math.min(INITIAL_CAPACITY, maxCapacity));
+	}
+
+	// =========================================================================
+
+	private static long key(int position, int production)
+	{
+		if (production < 0 || production > 0xFF)
+			throw new IllegalArgumentException("Production id out of range");
+
+		// Shifted by one so that no key is zero
+		return ((position + 1L) << 8) | production;
+	}
+
+	private static int position(long key)
+	{
+		return (int) ((key >>> 8) - 1);
+	}
+
+	private static int slot(long key, long context, int mask)
+	{
+		long h = (key * 0x9E3779B97F4A7C15L) ^ context;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		h ^= h >>> 32;
+		return (int) h & mask;
+	}
+
+	private int threshold()
+	{
+		// Load factor of 0.75
+		return keys.length - (keys.length >> 2);
+	}
+
+	private void allocate(int capacity)
+	{
+		keys = new long[capacity];
+		contexts = new long[capacity];
+		results = new Result[capacity];
+		size = 0;
+	}
+
+	private void insert(long key, long context, Result result)
+	{
+		int mask = keys.length - 1;
+		int i = slot(key, context, mask);
+		while (keys[i] != 0)
+		{
+			if (keys[i] == key && contexts[i] == context)
+			{
+				results[i] = result;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+
+		keys[i] = key;
+		contexts[i] = context;
+		results[i] = result;
+		++size;
+	}
+
+	private void makeRoom()
+	{
+		long[] oldKeys = keys;
+		long[] oldContexts = contexts;
+		Result[] oldResults = results;
+
+		int cutoff = 0;
+		if (oldKeys.length < maxCapacity)
+		{
+			allocate(oldKeys.length * 2);
+		}
+		else
+		{
+			int[] positions = new int[size];
+			int n = 0;
+			for (long key : oldKeys)
+			{
+				if (key != 0)
+					positions[n++] = position(key);
+			}
+			Arrays.sort(positions);
+
+			// Always make progress, even if all entries are at one position
+			cutoff = Math.max(positions[size / 2], positions[0] + 1);
+
+			allocate(oldKeys.length);
+			++evictions;
+		}
+
+		for (int i = 0; i < oldKeys.length; ++i)
+		{
+			long key = oldKeys[i];
+			if (key != 0 && position(key) >= cutoff)
+				insert(key, oldContexts[i], oldResults[i]);
+		}
+	}
+}
@@ -85,6 +85,17 @@ public class WikitextParserContext
 		this.linkBuilder = new LinkBuilder(parserConfig, target);
 	}
 
+	/**
+	 * Returns a value which is equal for two contexts if and only if the two
+	 * contexts are equal. Unlike the context itself the key does not change
+	 * when the context is modified afterwards.
+	 */
+	public final long getMemoKey()
+	{
+		long s = (scope == null) ? 0 : scope.ordinal() + 1;
+		return (s << 32) | (stickingScopes & 0xFFFFFFFFL);
+	}
+
 	// =========================================================================
 
 	@Override
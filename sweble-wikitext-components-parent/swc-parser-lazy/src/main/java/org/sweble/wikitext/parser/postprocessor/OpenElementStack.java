@@ -0,0 +1,298 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.postprocessor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.sweble.wikitext.parser.nodes.WtNode;
+
+/**
+ * The stack of open elements of the {@link TreeBuilder}.
+ *
+ * Elements are stored in an array with the bottommost element (the page) at
+ * index 0 and the current node at index <code>size() - 1</code>. The
+ * {@link ElementType} of each element is determined once when the element is
+ * pushed. For every element type the stack keeps the index of the topmost
+ * element of that type and, for every element, the index of the next element
+ * of the same type further down. This way the scope checks of the tree
+ * builder no longer have to walk the stack and determine the type of each
+ * element they pass.
+ *
+ * Pushing and popping elements takes constant time. Inserting, removing or
+ * replacing an element in the middle of the stack (adoption agency) rebuilds
+ * the index in linear time.
+ */
+final class OpenElementStack
+{
+	private static final int INITIAL_CAPACITY = 32;
+
+	private static final ElementType[] ELEMENT_TYPES = ElementType.values();
+
+	/** Slot used for elements whose type is not known. */
+	private static final int NULL_SLOT = ELEMENT_TYPES.length;
+
+	/** The element types which delimit each stack scope. */
+	private static final ElementType[][] SCOPE_TYPES;
+
+	static
+	{
+		StackScope[] scopes = StackScope.values();
+		SCOPE_TYPES = new ElementType[scopes.length][];
+		for (StackScope scope : scopes)
+		{
+			List<ElementType> types = new ArrayList<ElementType>();
+			for (ElementType type : ELEMENT_TYPES)
+			{
+				if (scope.isInList(type))
+					types.add(type);
+			}
+			SCOPE_TYPES[scope.ordinal()] = types.toArray(new ElementType[types.size()]);
+		}
+	}
+
+	// =========================================================================
+
+	private WtNode[] nodes = new WtNode[INITIAL_CAPACITY];
+
+	private ElementType[] types = new ElementType[INITIAL_CAPACITY];
+
+	/** Index of the next element of the same type further down, or -1. */
+	private int[] belowOfSameType = new int[INITIAL_CAPACITY];
+
+	/** Index of the topmost element of each type, or -1. */
+	private final int[] topmostOfType = new int[NULL_SLOT + 1];
+
+	private int size;
+
+	// =========================================================================
+
+	public OpenElementStack()
+	{
+		Arrays.fill(topmostOfType, -1);
+	}
+
+	// =========================================================================
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	/**
+	 * @param index
+	 *            The index of the element counted from the bottom of the
+	 *            stack.
+	 */
+	public WtNode get(int index)
+	{
+		checkIndex(index);
+		return nodes[index];
+	}
+
+	/**
+	 * The type of an element as determined by
+	 * {@link TreeBuilder#getNodeType(WtNode)} when it was put on the stack.
+	 */
+	public ElementType getType(int index)
+	{
+		checkIndex(index);
+		return types[index];
+	}
+
+	/**
+	 * Returns the current node or <code>null</code> if the stack is empty.
+	 */
+	public WtNode peek()
+	{
+		return (size == 0) ? null : nodes[size - 1];
+	}
+
+	public WtNode getBottom()
+	{
+		if (size == 0)
+			throw new NoSuchElementException();
+		return nodes[0];
+	}
+
+	public void push(WtNode node)
+	{
+		ensureCapacity(size + 1);
+		ElementType type = TreeBuilder.getNodeType(node);
+		int slot = slot(type);
+		nodes[size] = node;
+		types[size] = type;
+		belowOfSameType[size] = topmostOfType[slot];
+		topmostOfType[slot] = size;
+		++size;
+	}
+
+	public WtNode pop()
+	{
+		if (size == 0)
+			throw new NoSuchElementException();
+		--size;
+		WtNode node = nodes[size];
+		topmostOfType[slot(types[size])] = belowOfSameType[size];
+		nodes[size] = null;
+		types[size] = null;
+		return node;
+	}
+
+	/**
+	 * Inserts an element at the given index. The element formerly at that
+	 * index and all elements above it move up by one.
+	 */
+	public void insert(int index, WtNode node)
+	{
+		if (index < 0 || index > size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		ensureCapacity(size + 1);
+		System.arraycopy(nodes, index, nodes, index + 1, size - index);
+		System.arraycopy(types, index, types, index + 1, size - index);
+		nodes[index] = node;
+		types[index] = TreeBuilder.getNodeType(node);
+		++size;
+		reindex();
+	}
+
+	public WtNode remove(int index)
+	{
+		checkIndex(index);
+		WtNode node = nodes[index];
+		int moved = size - index - 1;
+		System.arraycopy(nodes, index + 1, nodes, index, moved);
+		System.arraycopy(types, index + 1, types, index, moved);
+		--size;
+		nodes[size] = null;
+		types[size] = null;
+		reindex();
+		return node;
+	}
+
+	public void set(int index, WtNode node)
+	{
+		checkIndex(index);
+		ElementType type = TreeBuilder.getNodeType(node);
+		nodes[index] = node;
+		if (type != types[index])
+		{
+			types[index] = type;
+			reindex();
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the index of the given element (compared by reference) or -1 if
+	 * the element is not on the stack.
+	 */
+	public int indexOf(WtNode node)
+	{
+		for (int i = size - 1; i >= 0; --i)
+		{
+			if (nodes[i] == node)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the topmost element of the given type or -1 if
+	 * there is no such element on the stack.
+	 */
+	public int getTopmostIndexOf(ElementType type)
+	{
+		return topmostOfType[slot(type)];
+	}
+
+	/**
+	 * Returns the index of the topmost element that has one of the given
+	 * types or -1 if there is no such element on the stack.
+	 */
+	public int getTopmostIndexOf(ElementType... types)
+	{
+		int topmost = -1;
+		for (ElementType type : types)
+			topmost = Math.max(topmost, topmostOfType[slot(type)]);
+		return topmost;
+	}
+
+	/**
+	 * Returns the index of the next element below the element at the given
+	 * index that has the same type or -1 if there is no such element.
+	 */
+	public int getBelowOfSameType(int index)
+	{
+		checkIndex(index);
+		return belowOfSameType[index];
+	}
+
+	/**
+	 * Returns the index of the topmost element that is one of the element
+	 * types delimiting the given scope or -1 if there is no such element on
+	 * the stack.
+	 */
+	public int getScopeBoundary(StackScope scope)
+	{
+		return getTopmostIndexOf(SCOPE_TYPES[scope.ordinal()]);
+	}
+
+	// =========================================================================
+
+	private static int slot(ElementType type)
+	{
+		return (type == null) ? NULL_SLOT : type.ordinal();
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > nodes.length)
+		{
+			int newCapacity = Math.max(capacity, nodes.length * 2);
+			nodes = Arrays.copyOf(nodes, newCapacity);
+			types = Arrays.copyOf(types, newCapacity);
+			belowOfSameType = Arrays.copyOf(belowOfSameType, newCapacity);
+		}
+	}
+
+	private void reindex()
+	{
+		Arrays.fill(topmostOfType, -1);
+		for (int i = 0; i < size; ++i)
+		{
+			int slot = slot(types[i]);
+			belowOfSameType[i] = topmostOfType[slot];
+			topmostOfType[slot] = i;
+		}
+	}
+}
@@ -22,7 +22,7 @@ import static org.sweble.wikitext.parser.postprocessor.IntermediateTags.ITALICS;
 
 import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ListIterator;
 
 import org.sweble.wikitext.parser.ParserConfig;
 import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
@@ -68,7 +68,7 @@ public class TicksAnalyzer
 
 	public WtNode process(WtNode a)
 	{
-		LinkedList<Line> lines = new LinkedList<Line>();
+		ArrayList<Line> lines = new ArrayList<Line>();
 
 		new LineAnalyzer(lines).go(a);
 
@@ -80,9 +80,36 @@ public class TicksAnalyzer
 		return (WtNode) new TicksConverter(lines).go(a);
 	}
 
+	/**
+	 * Analyzes the ticks of a page without converting them.
+	 * 
+	 * The returned converter converts the top-level nodes of the page one at
+	 * a time. This allows the tree builder to convert a node right before it
+	 * processes it instead of having the converter traverse the whole page
+	 * up front. Nodes which the converter would leave unchanged are not
+	 * traversed at all. The result is the same as that of
+	 * {@link #process(WtNode)}.
+	 * 
+	 * @return The converter or <code>null</code> if the page contains no
+	 *         ticks and {@link #process(WtNode)} would not change it.
+	 */
+	PageConverter analyzePage(WtNodeList page)
+	{
+		ArrayList<Line> lines = new ArrayList<Line>();
+
+		boolean[] converted = new LineAnalyzer(lines).goTopLevel(page);
+
+		if (lines.isEmpty())
+			return null;
+
+		analyzeOddTicksCombos(lines);
+
+		return new PageConverter(new TicksConverter(lines), converted);
+	}
+
 	// =========================================================================
 
-	private void analyzeOddTicksCombos(LinkedList<Line> lines)
+	private void analyzeOddTicksCombos(ArrayList<Line> lines)
 	{
 		for (Line line : lines)
 		{
@@ -176,7 +203,7 @@ public class TicksAnalyzer
 			extends
 				AstVisitor<WtNode>
 	{
-		private final LinkedList<Line> lines;
+		private final ArrayList<Line> lines;
 
 		private ArrayList<LineEntry> ticks;
 
@@ -186,11 +213,37 @@ public class TicksAnalyzer
 
 		private WtNode previous = null;
 
-		public LineAnalyzer(LinkedList<Line> lines)
+		/** Whether the TicksConverter would change the visited nodes. */
+		private boolean convertible = false;
+
+		public LineAnalyzer(ArrayList<Line> lines)
 		{
 			this.lines = lines;
 		}
 
+		/**
+		 * Analyzes the given page like {@link #go(WtNode)} but records for
+		 * each top-level node whether it contains ticks or i/b tags.
+		 */
+		public boolean[] goTopLevel(WtNodeList page)
+		{
+			boolean[] result = new boolean[page.size()];
+
+			previous = null;
+			for (int i = 0; i < result.length; ++i)
+			{
+				WtNode n = page.get(i);
+				convertible = false;
+				dispatch(n);
+				result[i] = convertible;
+				previous = n;
+			}
+			previous = null;
+
+			finishLine();
+			return result;
+		}
+
 		@Override
 		protected Object after(WtNode node, Object result)
 		{
@@ -277,8 +330,23 @@ public class TicksAnalyzer
 			// Nothing to do here
 		}
 
+		public void visit(WtXmlStartTag n)
+		{
+			if (isItalicsOrBold(n.getName()))
+				convertible = true;
+			iterate(n);
+		}
+
+		public void visit(WtXmlEndTag n)
+		{
+			if (isItalicsOrBold(n.getName()))
+				convertible = true;
+		}
+
 		public void visit(WtTicks n)
 		{
+			convertible = true;
+
 			if (ticks == null)
 				ticks = new ArrayList<TicksAnalyzer.LineEntry>();
 
@@ -359,13 +427,39 @@ public class TicksAnalyzer
 		
 		private boolean elementStartedBold = false;
 		
-		public TicksConverter(LinkedList<Line> lines)
+		public TicksConverter(ArrayList<Line> lines)
 		{
 			this.lineIter = lines.iterator();
 			if (lineIter.hasNext())
 				this.entryIter = lineIter.next().ticks.iterator();
 		}
 
+		/**
+		 * Converts the node at the given index of the given list like
+		 * {@link #mapInPlace(WtNode)} would.
+		 * 
+		 * @return The index of the node following the converted node(s).
+		 */
+		public int convert(WtNodeList list, int index)
+		{
+			ListIterator<WtNode> i = list.listIterator(index);
+			WtNode n = i.next();
+			WtNode result = (WtNode) dispatch(n);
+			if (result != n)
+			{
+				if (result.getNodeType() == WtNode.NT_NODE_LIST)
+				{
+					i.remove();
+					i.add(result);
+				}
+				else
+				{
+					i.set(result);
+				}
+			}
+			return i.nextIndex();
+		}
+
 		public WtNode visit(WtNode n)
 		{
 			mapInPlace(n);
@@ -711,6 +805,55 @@ public class TicksAnalyzer
 
 	// =========================================================================
 
+	/**
+	 * Converts the ticks of a page one top-level node at a time.
+	 * 
+	 * @see TicksAnalyzer#analyzePage(WtNodeList)
+	 */
+	final class PageConverter
+	{
+		private final TicksConverter converter;
+
+		private final boolean[] convertible;
+
+		private int next = 0;
+
+		private PageConverter(TicksConverter converter, boolean[] convertible)
+		{
+			this.converter = converter;
+			this.convertible = convertible;
+		}
+
+		/**
+		 * Converts the next top-level node of the page. The nodes have to be
+		 * converted in order.
+		 * 
+		 * @param page
+		 *            The page given to {@link TicksAnalyzer#analyzePage}.
+		 * @param index
+		 *            The current index of the next top-level node. Since a
+		 *            node can be replaced by a list of nodes this index is
+		 *            different from the node's original index.
+		 * @return The index of the node following the converted node(s).
+		 */
+		public int convert(WtNodeList page, int index)
+		{
+			// Without ticks or i/b tags the converter only closes formatting 
+			// which is still open from earlier nodes.
+			if (!convertible[next++] && converter.state == State.None)
+				return index + 1;
+
+			return converter.convert(page, index);
+		}
+	}
+
+	private static boolean isItalicsOrBold(String name)
+	{
+		return name.equalsIgnoreCase("i") || name.equalsIgnoreCase("b");
+	}
+
+	// =========================================================================
+
 	protected final static class Line
 	{
 		public final int numItalics;
@@ -45,9 +45,8 @@ import static org.sweble.wikitext.parser.postprocessor.StackScope.GENERAL_SCOPE;
 import static org.sweble.wikitext.parser.postprocessor.StackScope.LIST_ITEM_SCOPE;
 import static org.sweble.wikitext.parser.postprocessor.StackScope.TABLE_SCOPE;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.ListIterator;
 import java.util.Map;
 
@@ -127,11 +126,11 @@ public class TreeBuilder
 
 	private final AstVisitor<WtNode> inCellMode = new TreeBuilderInCell(logic, this);
 
-	private final LinkedList<WtNode> stack = new LinkedList<WtNode>();
+	private final OpenElementStack stack = new OpenElementStack();
 
-	private final LinkedList<WtNode> activeFormattingElements = new LinkedList<WtNode>();
+	private final ArrayList<WtNode> activeFormattingElements = new ArrayList<WtNode>();
 
-	private final LinkedList<Warning> errors = new LinkedList<Warning>();
+	private final ArrayList<Warning> errors = new ArrayList<Warning>();
 
 	private final ElementFactory factory;
 
@@ -147,6 +146,8 @@ public class TreeBuilder
 
 	private boolean fosterParentingMode = false;
 
+	private TicksAnalyzer.PageConverter ticksConverter = null;
+
 	private final WikitextNodeFactory nf;
 
 	// =========================================================================
@@ -158,6 +159,27 @@ public class TreeBuilder
 		return new TreeBuilder(config).go(ast);
 	}
 
+	/**
+	 * Resolves the ticks of the given page and builds the tree in one go.
+	 * 
+	 * The result is the same as that of calling {@link TicksAnalyzer#process}
+	 * followed by {@link #process}. However, the ticks of each top-level node
+	 * of the page are only converted right before the tree builder processes
+	 * the node, and nodes the ticks converter would not change are not
+	 * traversed by it at all.
+	 */
+	public static WtParsedWikitextPage processWithTicks(
+			ParserConfig config,
+			WtNode ast)
+	{
+		if (!(ast instanceof WtParsedWikitextPage))
+			return process(config, TicksAnalyzer.process(config, ast));
+
+		TreeBuilder tb = new TreeBuilder(config);
+		tb.ticksConverter = new TicksAnalyzer(config).analyzePage((WtParsedWikitextPage) ast);
+		return tb.go(ast);
+	}
+
 	// =========================================================================
 
 	public TreeBuilder(ParserConfig config)
@@ -281,7 +303,7 @@ public class TreeBuilder
 	{
 		// 1. Let last be false.
 		// 2. Let node be the last node in the stack of open elements.
-		for (WtNode node : stack)
+		for (int i = stack.size() - 1; i >= 0; --i)
 		{
 			// We have no fragment case:
 			//
@@ -293,7 +315,7 @@ public class TreeBuilder
 			// "in select" and abort these steps. 
 			// (fragment case)
 
-			switch (getNodeType(node))
+			switch (stack.getType(i))
 			{
 				case TD:
 				case TH:
@@ -388,11 +410,23 @@ public class TreeBuilder
 		this.rootNode = rootNode;
 	}
 
-	LinkedList<WtNode> getStack()
+	OpenElementStack getStack()
 	{
 		return stack;
 	}
 
+	/**
+	 * Returns the converter for the ticks of the page that is being processed
+	 * or <code>null</code> if the ticks were already converted. Only the
+	 * first caller receives the converter.
+	 */
+	TicksAnalyzer.PageConverter takeTicksConverter()
+	{
+		TicksAnalyzer.PageConverter converter = ticksConverter;
+		ticksConverter = null;
+		return converter;
+	}
+
 	WtNode getFormPointer()
 
 	{
@@ -794,17 +828,9 @@ public class TreeBuilder
 			StackScope scope,
 			ElementType targetType)
 	{
-		Iterator<WtNode> i = getStack().iterator();
-		while (i.hasNext())
-		{
-			ElementType nodeType = getNodeType(i.next());
-			if (nodeType == targetType)
-				return true;
-
-			if (scope.isInList(nodeType))
-				return false;
-		}
-		throw new AssertionError("This should never happen!");
+		return isInSpecificScope(
+				getStack().getTopmostIndexOf(targetType),
+				getStack().getScopeBoundary(scope));
 	}
 
 	boolean isElementTypeInScope(ElementType elementType)
@@ -831,17 +857,20 @@ public class TreeBuilder
 			StackScope scope,
 			ElementType... targetTypes)
 	{
-		Iterator<WtNode> i = getStack().iterator();
-		while (i.hasNext())
-		{
-			ElementType nodeType = getNodeType(i.next());
-			if (isTypeOneOf(nodeType, targetTypes))
-				return true;
+		return isInSpecificScope(
+				getStack().getTopmostIndexOf(targetTypes),
+				getStack().getScopeBoundary(scope));
+	}
 
-			if (scope.isInList(nodeType))
-				return false;
-		}
-		throw new AssertionError("This should never happen!");
+	/**
+	 * The walk described above terminates in a match state if the topmost
+	 * target is found before (or at) the topmost element of the scope's list.
+	 */
+	private static boolean isInSpecificScope(int target, int boundary)
+	{
+		if (target == -1 && boundary == -1)
+			throw new AssertionError("This should never happen!");
+		return target >= boundary;
 	}
 
 	boolean isOneOfElementTypesInScope(ElementType... targetTypes)
@@ -851,30 +880,27 @@ public class TreeBuilder
 
 	boolean isNodeInSpecificScope(StackScope scope, WtNode targetNode)
 	{
-		Iterator<WtNode> i = getStack().iterator();
-		while (true)
+		OpenElementStack stack = getStack();
+		ElementType targetType = getNodeType(targetNode);
+		int boundary = stack.getScopeBoundary(scope);
+		for (int i = stack.getTopmostIndexOf(targetType); i >= boundary && i >= 0; i = stack.getBelowOfSameType(i))
 		{
-			WtNode node = i.next();
-			if (isSameTag(node, targetNode))
+			if (isSameTag(stack.get(i), targetType, targetNode, targetType))
 				return true;
-
-			if (scope.isInList(getNodeType(node)))
-				return false;
 		}
+		return false;
 	}
 
 	boolean isNodeRefInSpecificScope(StackScope scope, WtNode targetNode)
 	{
-		Iterator<WtNode> i = getStack().iterator();
-		while (true)
+		OpenElementStack stack = getStack();
+		int boundary = stack.getScopeBoundary(scope);
+		for (int i = stack.size() - 1; i >= boundary && i >= 0; --i)
 		{
-			WtNode node = i.next();
-			if (node == targetNode)
+			if (stack.get(i) == targetNode)
 				return true;
-
-			if (scope.isInList(getNodeType(node)))
-				return false;
 		}
+		return false;
 	}
 
 	boolean isNodeRefInScope(WtNode targetNode)
@@ -886,36 +912,21 @@ public class TreeBuilder
 
 	void removeFromStack(WtNode node)
 	{
-		Iterator<WtNode> i = getStack().iterator();
-		while (i.hasNext())
-		{
-			if (i.next() == node)
-			{
-				i.remove();
-				return;
-			}
-		}
-		throw new AssertionError("Could not remove node from stack!");
+		int i = getStack().indexOf(node);
+		if (i == -1)
+			throw new AssertionError("Could not remove node from stack!");
+		getStack().remove(i);
 	}
 
 	boolean isInStackOfOpenElements(WtNode node)
 	{
-		for (WtNode e : getStack())
-		{
-			if (e == node)
-				return true;
-		}
-		return false;
+		return getStack().indexOf(node) != -1;
 	}
 
 	WtNode getFromStack(ElementType nodeType)
 	{
-		for (WtNode e : getStack())
-		{
-			if (getNodeType(e) == nodeType)
-				return e;
-		}
-		return null;
+		int i = getStack().getTopmostIndexOf(nodeType);
+		return (i == -1) ? null : getStack().get(i);
 	}
 
 	WtNode popFromStackUntilIncluding(WtNode nodeExample)
@@ -989,31 +1000,16 @@ public class TreeBuilder
 
 	WtNode getAboveOnStack(WtNode node)
 	{
-		Iterator<WtNode> i = getStack().iterator();
-		while (i.hasNext())
-		{
-			if (i.next() == node)
-			{
-				if (i.hasNext())
-					return i.next();
-			}
-		}
-		return null;
+		int i = getStack().indexOf(node);
+		return (i > 0) ? getStack().get(i - 1) : null;
 	}
 
 	void insertOnStackBelow(WtNode marker, WtNode node)
 	{
-		ListIterator<WtNode> i = getStack().listIterator();
-		while (i.hasNext())
-		{
-			if (i.next() == marker)
-			{
-				i.previous();
-				i.add(node);
-				return;
-			}
-		}
-		throw new AssertionError("Marker MUST exist in stack!");
+		int i = getStack().indexOf(marker);
+		if (i == -1)
+			throw new AssertionError("Marker MUST exist in stack!");
+		getStack().insert(i + 1, node);
 	}
 
 	void removeFromParent(WtNode node, WtNode parent)
@@ -1082,8 +1078,15 @@ public class TreeBuilder
 
 	static boolean isSameTag(WtNode n0, WtNode n1)
 	{
-		ElementType t0 = getNodeType(n0);
-		ElementType t1 = getNodeType(n1);
+		return isSameTag(n0, getNodeType(n0), n1, getNodeType(n1));
+	}
+
+	static boolean isSameTag(
+			WtNode n0,
+			ElementType t0,
+			WtNode n1,
+			ElementType t1)
+	{
 		if ((t0 == t1) && (t0 != UNKNOWN))
 		{
 			return true;
@@ -1111,11 +1114,12 @@ public class TreeBuilder
 
 	void pushActiveFormattingElements(WtNode node)
 	{
+		ArrayList<WtNode> list = activeFormattingElements;
+
 		int count = 0;
-		Iterator<WtNode> i = activeFormattingElements.descendingIterator();
-		while (i.hasNext())
+		for (int i = list.size() - 1; i >= 0; --i)
 		{
-			WtNode fe = i.next();
+			WtNode fe = list.get(i);
 			if (fe == MARKER)
 				break;
 
@@ -1124,11 +1128,11 @@ public class TreeBuilder
 
 			if (count == 3)
 			{
-				i.remove();
+				list.remove(i);
 				break;
 			}
 		}
-		activeFormattingElements.add(node);
+		list.add(node);
 	}
 
 	boolean isInListOfActiveFormattingElements(WtNode node)
@@ -1138,10 +1142,10 @@ public class TreeBuilder
 
 	WtNode getActiveFormattingElement(ElementType nodeType)
 	{
-		Iterator<WtNode> i = activeFormattingElements.descendingIterator();
-		while (i.hasNext())
+		ArrayList<WtNode> list = activeFormattingElements;
+		for (int i = list.size() - 1; i >= 0; --i)
 		{
-			WtNode node = i.next();
+			WtNode node = list.get(i);
 			if (node == MARKER)
 				return null;
 
@@ -1153,32 +1157,31 @@ public class TreeBuilder
 
 	void removeFromActiveFormattingElements(WtNode node)
 	{
-		Iterator<WtNode> i = activeFormattingElements.descendingIterator();
-		while (i.hasNext())
-		{
-			if (i.next() == node)
-			{
-				i.remove();
-				return;
-			}
-		}
-		throw new AssertionError("Could not remove formatting element");
+		int i = lastIndexOfActiveFormattingElement(node);
+		if (i == -1)
+			throw new AssertionError("Could not remove formatting element");
+		activeFormattingElements.remove(i);
 	}
 
 	void replaceInListOfActiveFormattingElements(
 			WtNode replacee,
 			WtNode replacement)
 	{
-		ListIterator<WtNode> i = activeFormattingElements.listIterator(activeFormattingElements.size());
-		while (i.hasPrevious())
+		int i = lastIndexOfActiveFormattingElement(replacee);
+		if (i == -1)
+			throw new AssertionError("Could not replace formatting element");
+		activeFormattingElements.set(i, replacement);
+	}
+
+	private int lastIndexOfActiveFormattingElement(WtNode node)
+	{
+		ArrayList<WtNode> list = activeFormattingElements;
+		for (int i = list.size() - 1; i >= 0; --i)
 		{
-			if (i.previous() == replacee)
-			{
-				i.set(replacement);
-				return;
-			}
+			if (list.get(i) == node)
+				return i;
 		}
-		throw new AssertionError("Could not replace formatting element");
+		return -1;
 	}
 
 	/**
@@ -1201,7 +1204,7 @@ public class TreeBuilder
 	 */
 	void reconstructActiveFormattingElements()
 	{
-		LinkedList<WtNode> list = activeFormattingElements;
+		ArrayList<WtNode> list = activeFormattingElements;
 
 		/* 1) If there are no entries in the list of active formatting elements, then
 		 * there is nothing to reconstruct; stop this algorithm.
@@ -1213,7 +1216,7 @@ public class TreeBuilder
 		 * elements is a marker, or if it is an element that is in the stack of open
 		 * elements, then there is nothing to reconstruct; stop this algorithm.
 		 */
-		WtNode last = list.getLast();
+		WtNode last = list.get(list.size() - 1);
 		if (last == MARKER || isInStackOfOpenElements(last))
 			return;
 
@@ -1276,27 +1279,23 @@ public class TreeBuilder
 
 	void insertMarkerInActiveFormattingElements()
 	{
-		this.activeFormattingElements.add(MARKER);
+		ArrayList<WtNode> list = activeFormattingElements;
+		list.add(MARKER);
 
 		// LctVarConv tags must be effective over marker boundaries in order
 		// to "leak" into tables
 
-		LinkedList<WtNode> list = activeFormattingElements;
-		ListIterator<WtNode> iter = list.listIterator(list.size());
-
 		// Skip the just inserted marker
-		iter.previous();
-
-		while (iter.hasPrevious())
+		for (int i = list.size() - 2; i >= 0; --i)
 		{
-			WtNode e = iter.previous();
+			WtNode e = list.get(i);
 			// We only look back to the last marker
 			if (e == MARKER)
 				break;
 			if (getNodeType(e) == LCT_VAR_CONV)
 			{
 				// Copy the LctVarConv tag after the marker
-				this.activeFormattingElements.add(e);
+				list.add(e);
 				break;
 			}
 		}
@@ -1304,11 +1303,10 @@ public class TreeBuilder
 
 	void clearActiveFormattingElementsToLastMarker()
 	{
-		Iterator<WtNode> i = this.activeFormattingElements.descendingIterator();
-		while (i.hasNext())
+		ArrayList<WtNode> list = activeFormattingElements;
+		while (!list.isEmpty())
 		{
-			WtNode fe = i.next();
-			i.remove();
+			WtNode fe = list.remove(list.size() - 1);
 			if (fe == MARKER)
 				break;
 		}
@@ -1316,45 +1314,28 @@ public class TreeBuilder
 
 	void placeBookmarkAfter(WtNode node)
 	{
-		ListIterator<WtNode> i = this.activeFormattingElements.listIterator(
-				this.activeFormattingElements.size());
-
-		while (i.hasPrevious())
-		{
-			WtNode fe = i.previous();
-			if (fe == node)
-			{
-				i.next();
-				i.add(BOOKMARK);
-				return;
-			}
-		}
-		throw new AssertionError("This method must only be called if there definitily is a bookmark!");
+		int i = lastIndexOfActiveFormattingElement(node);
+		if (i == -1)
+			throw new AssertionError("This method must only be called if there definitily is a bookmark!");
+		activeFormattingElements.add(i + 1, BOOKMARK);
 	}
 
 	void moveBookmarkAfter(WtNode node)
 	{
-		ListIterator<WtNode> i = this.activeFormattingElements.listIterator(
-				this.activeFormattingElements.size());
+		ArrayList<WtNode> list = activeFormattingElements;
 
-		while (i.hasPrevious())
+		// The old bookmark is only searched for below the new one
+		int i = lastIndexOfActiveFormattingElement(node);
+		if (i != -1)
 		{
-			WtNode fe = i.previous();
-			if (fe == node)
+			list.add(i + 1, BOOKMARK);
+			for (--i; i >= 0; --i)
 			{
-				i.next();
-				i.add(BOOKMARK);
-				i.previous();
-				break;
-			}
-		}
-		while (i.hasPrevious())
-		{
-			WtNode fe = i.previous();
-			if (fe == BOOKMARK)
-			{
-				i.remove();
-				return;
+				if (list.get(i) == BOOKMARK)
+				{
+					list.remove(i);
+					return;
+				}
 			}
 		}
 		throw new AssertionError("This method must only be called if there definitily is a bookmark!");
@@ -1362,26 +1343,19 @@ public class TreeBuilder
 
 	public void replaceBookmarkWithAndRemove(WtNode replacement, WtNode remove)
 	{
-		ListIterator<WtNode> i = this.activeFormattingElements.listIterator(
-				this.activeFormattingElements.size());
+		ArrayList<WtNode> list = activeFormattingElements;
 
-		while (i.hasPrevious())
+		int i = lastIndexOfActiveFormattingElement(BOOKMARK);
+		if (i != -1)
 		{
-			WtNode fe = i.previous();
-			if (fe == BOOKMARK)
+			list.set(i, replacement);
+			for (; i >= 0; --i)
 			{
-				i.remove();
-				i.add(replacement);
-				break;
-			}
-		}
-		while (i.hasPrevious())
-		{
-			WtNode fe = i.previous();
-			if (fe == remove)
-			{
-				i.remove();
-				return;
+				if (list.get(i) == remove)
+				{
+					list.remove(i);
+					return;
+				}
 			}
 		}
 		throw new AssertionError("This method must only be called if there definitily is a bookmark!");
@@ -1434,7 +1408,7 @@ public class TreeBuilder
 		}
 		else
 		{
-			getContentOfNodeForModification(getStack().getLast()).add(node);
+			getContentOfNodeForModification(getStack().getBottom()).add(node);
 		}
 	}
 
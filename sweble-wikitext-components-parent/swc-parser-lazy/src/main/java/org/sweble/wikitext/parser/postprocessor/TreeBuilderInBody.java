@@ -21,7 +21,6 @@ import de.fau.cs.osr.utils.visitor.VisitorLogic;
 import org.sweble.wikitext.parser.WtRtData;
 import org.sweble.wikitext.parser.nodes.*;
 
-import java.util.ListIterator;
 
 import static org.sweble.wikitext.parser.nodes.WtNode.*;
 import static org.sweble.wikitext.parser.postprocessor.ElementType.*;
@@ -509,7 +508,22 @@ public final class TreeBuilderInBody
 		tb.getStack().push(newNode);
 		tb.setRootNode((WtParsedWikitextPage) newNode);
 
-		iterate(n);
+		TicksAnalyzer.PageConverter ticks = tb.takeTicksConverter();
+		if (ticks == null)
+		{
+			iterate(n);
+		}
+		else
+		{
+			// Convert the ticks of each top-level node right before the node
+			// is processed. A node can be replaced by several nodes.
+			for (int i = 0; i < n.size();)
+			{
+				int end = ticks.convert(n, i);
+				for (; i < end; ++i)
+					dispatch(n.get(i));
+			}
+		}
 
 		// 12.2.5.4.7  R10
 		// 12.2.5.4.17 R05
@@ -518,9 +532,10 @@ public final class TreeBuilderInBody
 		if (!tb.isElementTypeInSpecificScope(GENERAL_SCOPE_WITHOUT_LAZY_PARSED_PAGE, PAGE))
 			tb.error(n, "12.2.5.4.7 R10 (1)");
 
-		for (WtNode node : tb.getStack())
+		OpenElementStack stack = tb.getStack();
+		for (int i = stack.size() - 1; i >= 0; --i)
 		{
-			switch (getNodeType(node))
+			switch (stack.getType(i))
 			{
 				case DD:
 				case DT:
@@ -989,9 +1004,10 @@ public final class TreeBuilderInBody
 	 */
 	private void startTagR16(WtNode n)
 	{
-		for (WtNode node : tb.getStack())
+		OpenElementStack stack = tb.getStack();
+		for (int i = stack.size() - 1; i >= 0; --i)
 		{
-			ElementType nodeType = getNodeType(node);
+			ElementType nodeType = stack.getType(i);
 			if (nodeType == LI)
 			{
 				dispatch(getFactory().createMissingRepairEndTag(LI));
@@ -1010,9 +1026,10 @@ public final class TreeBuilderInBody
 	 */
 	private void startTagR17(WtNode n)
 	{
-		for (WtNode node : tb.getStack())
+		OpenElementStack stack = tb.getStack();
+		for (int i = stack.size() - 1; i >= 0; --i)
 		{
-			ElementType nodeType = getNodeType(node);
+			ElementType nodeType = stack.getType(i);
 			if (isTypeOneOf(nodeType, DD, DT))
 			{
 				dispatch(getFactory().createMissingRepairEndTag(nodeType));
@@ -1359,30 +1376,18 @@ public final class TreeBuilderInBody
 				tb.error(n, "12.2.5.4.7 - R30 (3)");
 			}
 
-			ListIterator<WtNode> stackIter = tb.getStack().listIterator();
-
-			WtNode commonAncestor = null;
-			while (stackIter.hasNext())
-			{
-				WtNode e = stackIter.next();
-				if (e == fe)
-				{
-					commonAncestor = stackIter.next();
-					stackIter.previous();
-					stackIter.previous();
-					break;
-				}
-			}
+			OpenElementStack stack = tb.getStack();
+			int feIndex = stack.indexOf(fe);
 
-			if (commonAncestor == null)
-				throw new AssertionError();
+			WtNode commonAncestor = stack.get(feIndex - 1);
 
 			WtNode furthestBlock = null;
 			WtNode furthestBlockParent = fe;
-			while (stackIter.hasPrevious())
+			int stackIndex = feIndex + 1;
+			for (; stackIndex < stack.size(); ++stackIndex)
 			{
-				WtNode e = stackIter.previous();
-				if (getNodeType(e).isSpecial())
+				WtNode e = stack.get(stackIndex);
+				if (stack.getType(stackIndex).isSpecial())
 				{
 					furthestBlock = e;
 					break;
@@ -1403,10 +1408,8 @@ public final class TreeBuilderInBody
 			tb.placeBookmarkAfter(fe);
 
 			// Step 9
-			// Note: stackIter last returned furthestBlock after call to 
-			// previous. Make sure the next next() call will return the node 
-			// "above" furthestBlock.
-			stackIter.next();
+			// Note: stackIndex is the index of furthestBlock. Nodes "above"
+			// furthestBlock have lower indices.
 			WtNode node = furthestBlock;
 			WtNode lastNode = furthestBlock;
 			WtNode lastNodeParent = furthestBlockParent;
@@ -1415,15 +1418,15 @@ public final class TreeBuilderInBody
 				++j;
 
 				// Step 9.4
-				node = stackIter.next();
+				node = stack.get(--stackIndex);
 
 				// Step 9.5
 				if (!tb.isInListOfActiveFormattingElements(node))
 				{
 					// Node is guaranteed to be on stack. From here we 
-					// definitely get to step 9.4 next. Make sure, we know
-					// which node was "above" node before node was removed.
-					stackIter.remove();
+					// definitely get to step 9.4 next. Removing node does not
+					// change the index of the node "above" node.
+					stack.remove(stackIndex);
 					continue inner;
 				}
 				else if (node == fe)
@@ -1433,7 +1436,7 @@ public final class TreeBuilderInBody
 
 				WtNode replacement = getFactory().createRepairFormattingElement(node);
 				tb.replaceInListOfActiveFormattingElements(node, replacement);
-				stackIter.set(replacement);
+				stack.set(stackIndex, replacement);
 				node = replacement;
 
 				// Step 9.8
@@ -1561,9 +1564,13 @@ public final class TreeBuilderInBody
 	 */
 	private void endTagR52(WtNode n)
 	{
-		for (WtNode node : tb.getStack())
+		ElementType type = getNodeType(n);
+		OpenElementStack stack = tb.getStack();
+		for (int i = stack.size() - 1; i >= 0; --i)
 		{
-			if (TreeBuilder.isSameTag(node, n))
+			WtNode node = stack.get(i);
+			ElementType nodeType = stack.getType(i);
+			if (TreeBuilder.isSameTag(node, nodeType, n, type))
 			{
 				tb.generateImpliedEndTags(n);
 
@@ -1574,7 +1581,7 @@ public final class TreeBuilderInBody
 				addRtDataOfEndTag(node, n);
 				return;
 			}
-			else if (getNodeType(node).isSpecial())
+			else if (nodeType.isSpecial())
 			{
 				tb.error(n, "12.2.5.4.7 - R52 (2)");
 				tb.ignore(n);
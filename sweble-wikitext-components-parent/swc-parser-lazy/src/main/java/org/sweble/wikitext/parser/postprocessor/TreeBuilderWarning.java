@@ -45,6 +45,16 @@ public final class TreeBuilderWarning
 		this.trigger = trigger;
 	}
 
+	/**
+	 * Creates a copy of the given warning with a different span.
+	 */
+	public TreeBuilderWarning(TreeBuilderWarning other, Span span)
+	{
+		super(span, other.getOrigin(), other.getMessage());
+
+		this.trigger = other.trigger;
+	}
+
 	private static String makeMessage(WtNode trigger, String message)
 	{
 		return String.format("%s @ %s", message, trigger.getNodeName());
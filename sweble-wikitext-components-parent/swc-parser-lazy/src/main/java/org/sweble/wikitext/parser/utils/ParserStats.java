@@ -17,85 +17,277 @@
 
 package org.sweble.wikitext.parser.utils;
 
+import java.io.IOException;
 import java.io.PrintStream;
-import java.util.HashMap;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
-import org.sweble.wikitext.parser.parser.RatsWikitextParser;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
 
 import de.fau.cs.osr.utils.StringTools;
 
+/**
+ * Statistics of the memoized productions of a single parser run.
+ *
+ * An instance is created for each parse and only updated by the thread
+ * running the parser. Once the parser returned the statistics can be passed
+ * to other threads.
+ *
+ * Times are measured with {@link System#nanoTime()}. The time of a
+ * production includes the time spent in the productions it invokes. The
+ * self time excludes the time spent in nested memoized productions and is
+ * the better measure to find hot spots.
+ */
 public class ParserStats
+		implements
+			Serializable
 {
+	private static final long serialVersionUID = 1L;
+
+	private static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+
 	public static final class MemoizedProduction
+			implements
+				Serializable
 	{
-		public int called;
+		private static final long serialVersionUID = 1L;
 
-		public int failed;
+		/** Number of invocations. */
+		public int called;
 
+		/** Invocations answered from the memo table. */
 		public int reused;
 
+		/** Invocations which were not memoized yet and had to be parsed. */
 		public int parsed;
 
+		/** Invocations which failed and made the parser backtrack. */
+		public int failed;
+
+		/** Time spent parsing, in nanoseconds. */
+		public long time;
+
+		/** Time spent parsing without nested memoized productions. */
+		public long selfTime;
+
 		@Override
 		public String toString()
 		{
 			return String.format(
-					"MemoizedProduction [called=%5d, reused=%5d, parsed=%5d, failed=%5d]",
+					"MemoizedProduction [called=%5d, reused=%5d, parsed=%5d, failed=%5d, time=%8d us, self=%8d us]",
 					called,
 					reused,
 					parsed,
-					failed);
+					failed,
+					time / 1000,
+					selfTime / 1000);
 		}
 	}
 
-	private final Map<String, MemoizedProduction> memoizedProductions =
-			new HashMap<String, MemoizedProduction>();
+	// =========================================================================
 
+	private final String[] names;
+
+	private final MemoizedProduction[] productions;
+
+	private int memoTableSize;
+
+	private int memoTableEvictions;
+
+	/** Time spent in nested productions for each production being parsed. */
+	private transient long[] nestedTime = new long[16];
+
+	private transient int depth;
+
+	// =========================================================================
+
+	/**
+	 * @param names
+	 *            The names of the memoized productions indexed by the ids
+	 *            the parser uses to report them.
+	 */
+	public ParserStats(String[] names)
+	{
+		this.names = names.clone();
+		this.productions = new MemoizedProduction[names.length];
+		for (int i = 0; i < productions.length; ++i)
+			productions[i] = new MemoizedProduction();
+	}
+
+	// =========================================================================
+
+	/**
+	 * Returns the statistics of all productions that were invoked, ordered by
+	 * descending self time.
+	 */
 	public Map<String, MemoizedProduction> getMemoizedProductions()
 	{
-		return memoizedProductions;
+		List<Integer> ids = new ArrayList<Integer>();
+		for (int i = 0; i < productions.length; ++i)
+		{
+			if (productions[i].called > 0)
+				ids.add(i);
+		}
+
+		Collections.sort(ids, new Comparator<Integer>()
+		{
+			@Override
+			public int compare(Integer a, Integer b)
+			{
+				long x = productions[a].selfTime;
+				long y = productions[b].selfTime;
+				return (x > y) ? -1 : ((x < y) ? 1 : 0);
+			}
+		});
+
+		Map<String, MemoizedProduction> result =
+				new LinkedHashMap<String, MemoizedProduction>();
+		for (Integer i : ids)
+			result.put(names[i], productions[i]);
+		return result;
 	}
 
-	public void parsed(String prod)
+	/**
+	 * The number of results in the memo table at the end of the parse.
+	 */
+	public int getMemoTableSize()
 	{
-		getMemoizedProduction(prod).parsed++;
+		return memoTableSize;
 	}
 
-	public void failed(String prod)
+	/**
+	 * How often the memo table had to evict results during the parse.
+	 */
+	public int getMemoTableEvictions()
 	{
-		getMemoizedProduction(prod).failed++;
+		return memoTableEvictions;
 	}
 
-	public void called(String prod)
+	public void setMemoTableStats(int size, int evictions)
 	{
-		getMemoizedProduction(prod).called++;
+		this.memoTableSize = size;
+		this.memoTableEvictions = evictions;
 	}
 
-	public void reused(String prod)
+	// =========================================================================
+
+	/**
+	 * Records an invocation that was answered from the memo table.
+	 */
+	public void reused(int production, boolean failed)
 	{
-		getMemoizedProduction(prod).reused++;
+		MemoizedProduction p = productions[production];
+		++p.called;
+		++p.reused;
+		if (failed)
+			++p.failed;
 	}
 
-	private MemoizedProduction getMemoizedProduction(String prod)
+	/**
+	 * Must be called before a production is parsed. Every call has to be
+	 * matched by a call to {@link #parsed}, also if parsing the production
+	 * throws. Otherwise the self times of all enclosing productions are
+	 * wrong. Call {@link #parsed} in a finally block.
+	 *
+	 * @return The start time which has to be passed to {@link #parsed}.
+	 */
+	public long enter()
 	{
-		MemoizedProduction p = memoizedProductions.get(prod);
-		if (p == null)
+		if (depth == nestedTime.length)
 		{
-			p = new MemoizedProduction();
-			memoizedProductions.put(prod, p);
+			long[] grown = new long[depth * 2];
+			System.arraycopy(nestedTime, 0, grown, 0, depth);
+			nestedTime = grown;
 		}
-		return p;
+		nestedTime[depth++] = 0;
+		return System.nanoTime();
 	}
 
+	/**
+	 * Records an invocation that had to be parsed. An invocation that threw
+	 * counts as failed.
+	 */
+	public void parsed(int production, long start, boolean failed)
+	{
+		long elapsed = System.nanoTime() - start;
+
+		long nested = nestedTime[--depth];
+		if (depth > 0)
+			nestedTime[depth - 1] += elapsed;
+
+		MemoizedProduction p = productions[production];
+		++p.called;
+		++p.parsed;
+		if (failed)
+			++p.failed;
+		p.time += elapsed;
+		p.selfTime += elapsed - nested;
+	}
+
+	// =========================================================================
+
 	public void dump(PrintStream err)
 	{
-		for (Entry<String, MemoizedProduction> x : RatsWikitextParser.getStats().getMemoizedProductions().entrySet())
+		for (Entry<String, MemoizedProduction> x : getMemoizedProductions().entrySet())
 		{
 			err.print(x.getKey() + ":");
-			err.print(StringTools.strrep(' ', 20 - x.getKey().length()));
+			err.print(StringTools.strrep(' ', Math.max(1, 20 - x.getKey().length())));
 			err.println(x.getValue());
 		}
 	}
+
+	public String toJson()
+	{
+		return GSON.toJson(toJsonTree());
+	}
+
+	/**
+	 * Writes the statistics as JSON object. The productions are listed in
+	 * the same order as returned by {@link #getMemoizedProductions()}.
+	 */
+	public void writeJson(Appendable out) throws IOException
+	{
+		try
+		{
+			GSON.toJson(toJsonTree(), out);
+		}
+		catch (JsonIOException e)
+		{
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private JsonObject toJsonTree()
+	{
+		JsonArray productions = new JsonArray();
+		for (Entry<String, MemoizedProduction> x : getMemoizedProductions().entrySet())
+		{
+			MemoizedProduction p = x.getValue();
+			JsonObject production = new JsonObject();
+			production.addProperty("name", x.getKey());
+			production.addProperty("called", p.called);
+			production.addProperty("reused", p.reused);
+			production.addProperty("parsed", p.parsed);
+			production.addProperty("failed", p.failed);
+			production.addProperty("timeNanos", p.time);
+			production.addProperty("selfTimeNanos", p.selfTime);
+			productions.add(production);
+		}
+
+		JsonObject json = new JsonObject();
+		json.addProperty("memoTableSize", memoTableSize);
+		json.addProperty("memoTableEvictions", memoTableEvictions);
+		json.add("productions", productions);
+		return json;
+	}
 }
@@ -0,0 +1,201 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.IncrementalWikitextParser.Edit;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+public class IncrementalWikitextParserTest
+{
+	private static final String TITLE = "Test";
+
+	private static final String TEXT = ""
+			+ "Intro with a [[link]] and '''bold''' text.\n"
+			+ "\n"
+			+ "== First ==\n"
+			+ "Some text in the first section.\n"
+			+ "* item 1\n"
+			+ "* item 2\n"
+			+ "\n"
+			+ "=== Sub ===\n"
+			+ "{|\n"
+			+ "| cell || cell\n"
+			+ "|}\n"
+			+ "\n"
+			+ "== Second ==\n"
+			+ "<div class=\"box\">Text with <b>tags</b>.</div>\n"
+			+ " preformatted\n"
+			+ "\n"
+			+ "=== Sub 2 ===\n"
+			+ "Text with an [http://example.org external link].\n"
+			+ "\n"
+			+ "== Third ==\n"
+			+ "; term : definition\n"
+			+ "Last line.\n";
+
+	private static final String[] SNIPPETS = {
+			"x", "abc", "\n", "\n\n", "== H ==\n", "\n=== H ===\n", "\n= H =\n",
+			"{|", "|}", "[[", "]]", "''", "'''", "<div>", "</div>", "<b",
+			"* item\n", "=", "==", " ", "|", "\r\n", "----\n", "[[a|b\n" };
+
+	private final ParserConfig config = new SimpleParserConfig();
+
+	// =========================================================================
+
+	@Test
+	public void testEditInSectionOnlyReparsesThatSection() throws Exception
+	{
+		int start = TEXT.indexOf("definition");
+		Edit edit = new Edit(start, start, "short ");
+
+		IncrementalWikitextParser parser = new IncrementalWikitextParser(config);
+		assertReparsedEqualsFullParse(parser, TEXT, edit);
+
+		assertTrue(parser.getLastReparsedLength() < TEXT.length() / 4);
+	}
+
+	@Test
+	public void testInsertedLinesShiftFollowingSections() throws Exception
+	{
+		int start = TEXT.indexOf("Some text");
+		assertReparsedEqualsFullParse(new Edit(start, start, "one\ntwo\n\n"));
+	}
+
+	@Test
+	public void testRemovedLinesShiftFollowingSections() throws Exception
+	{
+		int start = TEXT.indexOf("* item 1");
+		int end = TEXT.indexOf("=== Sub ===");
+		assertReparsedEqualsFullParse(new Edit(start, end, ""));
+	}
+
+	@Test
+	public void testChangedSectionLevelIsNestedCorrectly() throws Exception
+	{
+		int start = TEXT.indexOf("== Second ==");
+		assertReparsedEqualsFullParse(new Edit(start, start + 12, "==== Second ===="));
+	}
+
+	@Test
+	public void testRemovedHeadingMergesSections() throws Exception
+	{
+		int start = TEXT.indexOf("== Second ==");
+		assertReparsedEqualsFullParse(new Edit(start, start + 13, ""));
+	}
+
+	@Test
+	public void testInsertedHeadingSplitsSection() throws Exception
+	{
+		int start = TEXT.indexOf("Text with an");
+		assertReparsedEqualsFullParse(new Edit(start, start, "= New =\n"));
+	}
+
+	@Test
+	public void testUnclosedLinkSpanningSections() throws Exception
+	{
+		IncrementalWikitextParser parser = new IncrementalWikitextParser(config);
+
+		int start = TEXT.indexOf("Some text");
+		String text = assertReparsedEqualsFullParse(parser, TEXT, new Edit(start, start, "[[a|b\n"));
+
+		// Closing the link turns the following sections into its title
+		int end = text.indexOf("Last line.");
+		assertReparsedEqualsFullParse(parser, text, new Edit(end, end, "]]"));
+	}
+
+	@Test
+	public void testUnclosedXmlTagSpanningSections() throws Exception
+	{
+		IncrementalWikitextParser parser = new IncrementalWikitextParser(config);
+
+		int start = TEXT.indexOf("=== Sub 2 ===");
+		String text = assertReparsedEqualsFullParse(parser, TEXT, new Edit(start, start, "<b\n"));
+
+		// The heading becomes part of the tag's attributes
+		int end = text.indexOf("Text with an");
+		assertReparsedEqualsFullParse(parser, text, new Edit(end, end, ">"));
+	}
+
+	@Test
+	public void testRandomEdits() throws Exception
+	{
+		Random random = new Random(42);
+		IncrementalWikitextParser parser = new IncrementalWikitextParser(config);
+
+		String text = TEXT;
+		WtParsedWikitextPage page = parser.parseArticle(text, TITLE);
+		for (int i = 0; i < 500; ++i)
+		{
+			int start = random.nextInt(text.length() + 1);
+			int end = Math.min(text.length(), start + random.nextInt(3) * random.nextInt(10));
+			String replacement = random.nextBoolean() ? SNIPPETS[random.nextInt(SNIPPETS.length)] : "";
+			Edit edit = new Edit(start, end, replacement);
+
+			String edited = edit.apply(text);
+			WtParsedWikitextPage reparsed = parser.reparse(page, text, edit, TITLE);
+
+			WtComparer.compareAndThrow(reparsed, parseFully(edited), true, true);
+
+			page = reparsed;
+			text = edited;
+		}
+	}
+
+	@Test
+	public void testDiffFindsSmallestEdit() throws Exception
+	{
+		Edit edit = Edit.diff("Hello World!", "Hello new World!");
+		assertEquals(6, edit.getStart());
+		assertEquals(6, edit.getEnd());
+		assertEquals("new ", edit.getReplacement());
+		assertEquals("Hello new World!", edit.apply("Hello World!"));
+	}
+
+	// =========================================================================
+
+	private void assertReparsedEqualsFullParse(Edit edit) throws Exception
+	{
+		assertReparsedEqualsFullParse(new IncrementalWikitextParser(config), TEXT, edit);
+	}
+
+	private String assertReparsedEqualsFullParse(
+			IncrementalWikitextParser parser,
+			String text,
+			Edit edit) throws Exception
+	{
+		WtParsedWikitextPage page = parser.parseArticle(text, TITLE);
+
+		String edited = edit.apply(text);
+		WtParsedWikitextPage reparsed = parser.reparse(page, text, edit, TITLE);
+
+		WtComparer.compareAndThrow(reparsed, parseFully(edited), true, true);
+		return edited;
+	}
+
+	private WtParsedWikitextPage parseFully(String text) throws Exception
+	{
+		return (WtParsedWikitextPage) new WikitextParser(config).parseArticle(text, TITLE);
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.comparer.WtComparer;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.preprocessor.PreprocessedWikitext;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+import de.fau.cs.osr.ptk.common.Warning;
+
+public class ParallelWikitextParserTest
+{
+	private static final String TITLE = "Test";
+
+	private final ParserConfig config = new SimpleParserConfig();
+
+	// =========================================================================
+
+	@Test
+	public void testSplitPageEqualsSequentialParse() throws Exception
+	{
+		String text = sections(20);
+
+		ParallelWikitextParser parser = createParser(false);
+		assertParsedEqualsSequentialParse(parser, text);
+
+		assertEquals(20, parser.getLastChunkCount());
+	}
+
+	@Test
+	public void testSmallPageIsNotSplit() throws Exception
+	{
+		String text = sections(20);
+
+		ParallelWikitextParser parser = new ParallelWikitextParser(config);
+		parser.setMinChunkSize(text.length());
+		assertParsedEqualsSequentialParse(parser, text);
+
+		assertEquals(1, parser.getLastChunkCount());
+	}
+
+	@Test
+	public void testUnclosedLinkSpanningSectionsIsNotSplit() throws Exception
+	{
+		String text = sections(3) + "[[a|b\n" + sections(3) + "]]\n" + sections(3);
+
+		ParallelWikitextParser parser = createParser(false);
+		assertParsedEqualsSequentialParse(parser, text);
+
+		assertTrue(parser.getLastChunkCount() < 9);
+	}
+
+	@Test
+	public void testHeadingInTableIsNotSplit() throws Exception
+	{
+		String text = sections(2) + "{|\n| cell\n== In table ==\n| cell\n|}\n" + sections(2);
+		assertParsedEqualsSequentialParse(createParser(false), text);
+	}
+
+	@Test
+	public void testSectionNestingAcrossChunks() throws Exception
+	{
+		String text = "Intro\n= One =\na\n=== Two ===\nb\n== Three ==\nc\n= Four =\nd\n==== Five ====\ne\n";
+		assertParsedEqualsSequentialParse(createParser(false), text);
+	}
+
+	@Test
+	public void testPostprocessedPageEqualsSequentialPostprocessing() throws Exception
+	{
+		String text = sections(5)
+				+ "<div>Open\n" + sections(3) + "Close</div>\n"
+				+ sections(5) + "''italic '''bold\n" + sections(5);
+
+		ParallelWikitextParser parser = createParser(true);
+		assertParsedEqualsSequentialParse(parser, text);
+
+		// The sections inside the div element are postprocessed together
+		assertTrue(parser.getLastChunkCount() > 1);
+		assertTrue(parser.getLastChunkCount() < 18);
+	}
+
+	@Test
+	public void testPostprocessedSubsectionsAreNotSplitFromParent() throws Exception
+	{
+		String text = "= One =\n<b>a\n=== Two ===\nb</b>\n== Three ==\n<i>c</i>\n= Four =\nd</p>\n";
+		assertParsedEqualsSequentialParse(createParser(true), text);
+	}
+
+	@Test
+	public void testPartsArePostprocessedSections() throws Exception
+	{
+		String text = "Intro\n" + sections(5) + "<div>Open\n" + sections(3) + "Close</div>\n" + sections(5);
+
+		final List<WtParsedWikitextPage> parts = new ArrayList<WtParsedWikitextPage>();
+		ParallelWikitextParser parser = createParser(false);
+		parser.parseAndPostprocessArticle(
+				new PreprocessedWikitext(text, new WtEntityMapImpl()),
+				TITLE,
+				new ParallelWikitextParser.PartCallback()
+				{
+					@Override
+					public void postprocessed(WtParsedWikitextPage part)
+					{
+						parts.add(part);
+					}
+				});
+
+		assertEquals(parser.getLastChunkCount(), parts.size());
+		assertTrue(parts.size() > 1);
+
+		// Every part but the first starts with a section
+		for (int k = 1; k < parts.size(); ++k)
+			assertTrue(parts.get(k).get(0).isNodeType(WtNode.NT_SECTION));
+
+		WtNode expected = new WikitextPostprocessor(config).postprocess(
+				new WikitextParser(config).parseArticle(text, TITLE),
+				TITLE);
+
+		List<WtNode> actual = new ArrayList<WtNode>();
+		for (WtParsedWikitextPage part : parts)
+			actual.addAll(part);
+
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < actual.size(); ++i)
+			WtComparer.compareAndThrow(actual.get(i), expected.get(i), true, true);
+	}
+
+	// =========================================================================
+
+	private ParallelWikitextParser createParser(boolean postprocess)
+	{
+		ParallelWikitextParser parser = new ParallelWikitextParser(config);
+		parser.setMinChunkSize(1);
+		parser.setPostprocess(postprocess);
+		return parser;
+	}
+
+	private static String sections(int count)
+	{
+		StringBuilder b = new StringBuilder();
+		for (int i = 0; i < count; ++i)
+		{
+			b.append("== Section ").append(i).append(" ==\n");
+			b.append("Text with a [[link]] and '''bold''' text.\n");
+			b.append("* item\n\n");
+		}
+		return b.toString();
+	}
+
+	private void assertParsedEqualsSequentialParse(
+			ParallelWikitextParser parser,
+			String text) throws Exception
+	{
+		WtNode expected = new WikitextParser(config).parseArticle(text, TITLE);
+		if (parser.isPostprocess())
+			expected = new WikitextPostprocessor(config).postprocess(expected, TITLE);
+
+		WtParsedWikitextPage actual = parser.parseArticle(text, TITLE);
+
+		// Tree builder warnings refer to the page they were created for
+		assertEquals(
+				toStrings(((WtParsedWikitextPage) expected).getWarnings()),
+				toStrings(actual.getWarnings()));
+		((WtParsedWikitextPage) expected).setWarnings(new ArrayList<Warning>());
+		actual.setWarnings(new ArrayList<Warning>());
+
+		WtComparer.compareAndThrow(actual, expected, true, true);
+	}
+
+	private static List<String> toStrings(List<Warning> warnings)
+	{
+		List<String> result = new ArrayList<String>();
+		for (Warning w : warnings)
+			result.add(w.toString());
+		return result;
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.utils.ParserStats;
+import org.sweble.wikitext.parser.utils.ParserStats.MemoizedProduction;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+public class ParserStatsTest
+{
+	private static final String TEXT =
+			"== Heading ==\n"
+					+ "Some [[link|text]] and [http://example.com more].\n"
+					+ "* item\n"
+					+ "{|\n| cell || cell\n|}\n";
+
+	private final ParserConfig config = new SimpleParserConfig();
+
+	// =========================================================================
+
+	@Test
+	public void testNoStatsAreCollectedByDefault() throws Exception
+	{
+		WikitextParser parser = new WikitextParser(config);
+		parser.parseArticle(TEXT, "Test");
+
+		assertNull(parser.getStats());
+	}
+
+	@Test
+	public void testStatsAreCollectedPerParse() throws Exception
+	{
+		WikitextParser parser = new WikitextParser(config);
+		parser.setCollectStats(true);
+
+		parser.parseArticle(TEXT, "Test");
+		ParserStats first = parser.getStats();
+		parser.parseArticle(TEXT, "Test");
+		ParserStats second = parser.getStats();
+
+		assertNotNull(first);
+		assertTrue(first != second);
+
+		Map<String, MemoizedProduction> a = first.getMemoizedProductions();
+		Map<String, MemoizedProduction> b = second.getMemoizedProductions();
+		assertEquals(a.keySet(), b.keySet());
+		for (String name : a.keySet())
+			assertEquals(name, a.get(name).called, b.get(name).called);
+
+		for (MemoizedProduction p : a.values())
+		{
+			assertEquals(p.called, p.reused + p.parsed);
+			assertTrue(p.failed <= p.called);
+			assertTrue(p.selfTime <= p.time);
+		}
+
+		assertTrue(a.containsKey("Table"));
+		assertTrue(a.containsKey("InternalLink"));
+		assertTrue(first.getMemoTableSize() > 0);
+	}
+
+	@Test
+	public void testStatsCanBeExportedAsJson() throws Exception
+	{
+		WikitextParser parser = new WikitextParser(config);
+		parser.setCollectStats(true);
+		parser.parseArticle(TEXT, "Test");
+
+		String json = parser.getStats().toJson();
+		assertTrue(json.startsWith("{\"memoTableSize\":"));
+		assertTrue(json.contains("{\"name\":\"Table\",\"called\":"));
+		assertTrue(json.endsWith("}]}"));
+	}
+}
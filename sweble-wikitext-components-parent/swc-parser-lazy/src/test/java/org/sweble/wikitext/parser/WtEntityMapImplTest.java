@@ -0,0 +1,103 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+public class WtEntityMapImplTest
+{
+	private final WikitextNodeFactory nf = new SimpleParserConfig().getNodeFactory();
+
+	// =========================================================================
+
+	@Test
+	public void testIdsAreAllocatedSequentially()
+	{
+		WtEntityMapImpl map = new WtEntityMapImpl(1);
+		assertTrue(map.isEmpty());
+
+		for (int i = 0; i < 100; ++i)
+			assertEquals(i, map.registerEntity(nf.text("e" + i)));
+
+		assertEquals(100, map.size());
+		assertFalse(map.isEmpty());
+		for (int i = 0; i < 100; ++i)
+			assertEquals(nf.text("e" + i), map.getEntity(i));
+
+		assertNull(map.getEntity(-1));
+		assertNull(map.getEntity(100));
+	}
+
+	@Test
+	public void testMapViewMatchesHashMap()
+	{
+		WtEntityMapImpl map = new WtEntityMapImpl();
+		Map<Integer, WtNode> expected = new HashMap<Integer, WtNode>();
+		for (int i = 0; i < 20; ++i)
+		{
+			WtNode n = nf.text("e" + i);
+			expected.put(map.registerEntity(n), n);
+		}
+
+		assertEquals(expected, map.getMap());
+		assertEquals(expected.hashCode(), map.getMap().hashCode());
+		assertEquals("EntityMap" + expected, map.toString());
+		assertSame(expected.get(7), map.getMap().get(7));
+		assertNull(map.getMap().get("7"));
+
+		int next = 0;
+		for (Entry<Integer, WtNode> e : map.getEntities())
+			assertEquals(next++, e.getKey().intValue());
+		assertEquals(20, next);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testMapViewIsReadOnly()
+	{
+		WtEntityMapImpl map = new WtEntityMapImpl();
+		map.getMap().put(0, nf.text("x"));
+	}
+
+	@Test
+	public void testEqualityDependsOnEntitiesOnly()
+	{
+		WtEntityMapImpl a = new WtEntityMapImpl(1);
+		WtEntityMapImpl b = new WtEntityMapImpl(64);
+		a.registerEntity(nf.text("x"));
+		b.registerEntity(nf.text("x"));
+
+		assertEquals(a, b);
+		assertEquals(a.hashCode(), b.hashCode());
+
+		b.registerEntity(nf.text("y"));
+		assertFalse(a.equals(b));
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.ParserConfig;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+public class LinkTargetParserTest
+{
+	private static final String[] SNIPPETS = {
+			"a", "Foo", "bar", "\u00E9", "\u4E2D", " ", "_", ".", "..", "/",
+			"-", "(", ")", "'", "!", ",", "~", "%41", "%", "&amp;", "&", ";",
+			"#", ":", "<", "]", "\t", "\u00A0", "\u2009", "\u200E", "\u3000",
+			"\uFFFD", "\u007F" };
+
+	private final ParserConfig config = new SimpleParserConfig();
+
+	// =========================================================================
+
+	@Test
+	public void testNormalizedPlainTitles()
+	{
+		assertTrue(LinkTargetParser.isNormalizedPlainTitle("Main Page"));
+		assertTrue(LinkTargetParser.isNormalizedPlainTitle("Main_Page"));
+		assertTrue(LinkTargetParser.isNormalizedPlainTitle("AC/DC"));
+		assertTrue(LinkTargetParser.isNormalizedPlainTitle("St. Louis"));
+		assertTrue(LinkTargetParser.isNormalizedPlainTitle("M\u00FCnchen"));
+	}
+
+	@Test
+	public void testTitlesWhichNeedTheFullParse()
+	{
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle(""));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle(" Main Page"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("Main Page_"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("Main  Page"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("Main _Page"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("Help:Contents"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("Page#Section"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("A%20B"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("A &amp; B"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("../Sub"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("A/./B"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("A\u00A0B"));
+		assertFalse(LinkTargetParser.isNormalizedPlainTitle("A\u200EB"));
+	}
+
+	@Test
+	public void testShortcutYieldsSameResultAsFullParse() throws Exception
+	{
+		Random random = new Random(11);
+		int plain = 0;
+		for (int i = 0; i < 20000; ++i)
+		{
+			StringBuilder b = new StringBuilder();
+			int length = 1 + random.nextInt(8);
+			for (int j = 0; j < length; ++j)
+				b.append(SNIPPETS[random.nextInt(SNIPPETS.length)]);
+
+			String target = b.toString();
+			if (!LinkTargetParser.isNormalizedPlainTitle(target))
+				continue;
+			++plain;
+
+			LinkTargetParser fast = new LinkTargetParser();
+			fast.parse(config, target);
+
+			LinkTargetParser full = new LinkTargetParser();
+			full.parseFull(config, target);
+
+			assertEquals(target, full.getTitle(), fast.getTitle());
+			assertEquals(target, full.getFragment(), fast.getFragment());
+			assertEquals(target, full.getNamespace(), fast.getNamespace());
+			assertEquals(target, full.getInterwiki(), fast.getInterwiki());
+			assertEquals(target, full.isInitialColon(), fast.isInitialColon());
+		}
+		assertTrue(plain > 1000);
+	}
+}
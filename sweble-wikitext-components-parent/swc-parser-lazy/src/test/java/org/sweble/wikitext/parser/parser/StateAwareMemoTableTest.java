@@ -0,0 +1,101 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import xtc.parser.Result;
+import xtc.parser.SemanticValue;
+
+public class StateAwareMemoTableTest
+{
+	@Test
+	public void testResultsAreKeptPerContext()
+	{
+		StateAwareMemoTable table = new StateAwareMemoTable();
+
+		Result a = result(3);
+		Result b = result(5);
+		assertSame(a, table.put(0, 1, 7, a));
+		table.put(0, 1, 8, b);
+
+		assertSame(a, table.get(0, 1, 7));
+		assertSame(b, table.get(0, 1, 8));
+		assertNull(table.get(0, 2, 7));
+		assertNull(table.get(1, 1, 7));
+		assertEquals(2, table.size());
+	}
+
+	@Test
+	public void testTableGrowsWithoutLosingEntries()
+	{
+		StateAwareMemoTable table = new StateAwareMemoTable();
+
+		for (int pos = 0; pos < 10000; ++pos)
+			table.put(pos, pos & 0xFF, pos % 3, result(pos));
+
+		assertEquals(0, table.getEvictions());
+		for (int pos = 0; pos < 10000; ++pos)
+			assertEquals(pos, table.get(pos, pos & 0xFF, pos % 3).index);
+	}
+
+	@Test
+	public void testLowestPositionsAreEvictedWhenFull()
+	{
+		StateAwareMemoTable table = new StateAwareMemoTable(64);
+
+		for (int pos = 0; pos < 1000; ++pos)
+			table.put(pos, 0, 0, result(pos));
+
+		assertTrue(table.getEvictions() > 0);
+		assertEquals(64, table.getCapacity());
+		assertTrue(table.size() <= 48);
+		assertNull(table.get(0, 0, 0));
+		assertNotNull(table.get(999, 0, 0));
+	}
+
+	@Test
+	public void testClearRemovesAllEntries()
+	{
+		StateAwareMemoTable table = new StateAwareMemoTable();
+		table.put(0, 0, 0, result(0));
+		table.clear();
+
+		assertEquals(0, table.size());
+		assertNull(table.get(0, 0, 0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxCapacityMustBePowerOfTwo()
+	{
+		new StateAwareMemoTable(100);
+	}
+
+	// =========================================================================
+
+	private static Result result(int index)
+	{
+		return new SemanticValue(null, index);
+	}
+}
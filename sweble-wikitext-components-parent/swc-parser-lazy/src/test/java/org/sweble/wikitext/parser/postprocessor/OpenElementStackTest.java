@@ -0,0 +1,126 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.postprocessor;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.sweble.wikitext.parser.nodes.WikitextNodeFactory;
+import org.sweble.wikitext.parser.nodes.WtNode;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+
+public class OpenElementStackTest
+{
+	private final WikitextNodeFactory nf = new SimpleParserConfig().getNodeFactory();
+
+	// =========================================================================
+
+	@Test
+	public void testPushAndPopTrackTopmostElementOfEachType()
+	{
+		OpenElementStack stack = new OpenElementStack();
+		WtNode page = nf.parsedPage(nf.list());
+		WtNode div0 = elem("div");
+		WtNode b = elem("b");
+		WtNode div1 = elem("DIV");
+
+		stack.push(page);
+		stack.push(div0);
+		stack.push(b);
+		stack.push(div1);
+
+		assertEquals(4, stack.size());
+		assertSame(div1, stack.peek());
+		assertSame(page, stack.getBottom());
+		assertEquals(ElementType.DIV, stack.getType(3));
+		assertEquals(3, stack.getTopmostIndexOf(ElementType.DIV));
+		assertEquals(1, stack.getBelowOfSameType(3));
+		assertEquals(3, stack.getTopmostIndexOf(ElementType.B, ElementType.DIV));
+
+		assertSame(div1, stack.pop());
+		assertEquals(1, stack.getTopmostIndexOf(ElementType.DIV));
+		assertSame(b, stack.pop());
+		assertEquals(-1, stack.getTopmostIndexOf(ElementType.B));
+	}
+
+	@Test
+	public void testScopeBoundaryIsTopmostElementOfScopeList()
+	{
+		OpenElementStack stack = new OpenElementStack();
+		stack.push(nf.parsedPage(nf.list()));
+		stack.push(elem("ul"));
+		stack.push(elem("li"));
+
+		assertEquals(0, stack.getScopeBoundary(StackScope.GENERAL_SCOPE));
+		assertEquals(1, stack.getScopeBoundary(StackScope.LIST_ITEM_SCOPE));
+		assertEquals(-1, stack.getScopeBoundary(StackScope.GENERAL_SCOPE_WITHOUT_LAZY_PARSED_PAGE));
+	}
+
+	@Test
+	public void testIndexIsRebuiltAfterModificationInTheMiddle()
+	{
+		OpenElementStack stack = new OpenElementStack();
+		WtNode page = nf.parsedPage(nf.list());
+		WtNode b0 = elem("b");
+		WtNode div = elem("div");
+		WtNode b1 = elem("b");
+
+		stack.push(page);
+		stack.push(b0);
+		stack.push(div);
+
+		stack.insert(3, b1);
+		assertEquals(3, stack.getTopmostIndexOf(ElementType.B));
+		assertEquals(1, stack.getBelowOfSameType(3));
+
+		assertSame(b0, stack.remove(1));
+		assertEquals(1, stack.indexOf(div));
+		assertEquals(2, stack.getTopmostIndexOf(ElementType.B));
+		assertEquals(-1, stack.getBelowOfSameType(2));
+
+		WtNode i = elem("i");
+		stack.set(2, i);
+		assertEquals(-1, stack.getTopmostIndexOf(ElementType.B));
+		assertEquals(2, stack.getTopmostIndexOf(ElementType.I));
+		assertEquals(-1, stack.indexOf(b1));
+	}
+
+	@Test
+	public void testStackGrows()
+	{
+		OpenElementStack stack = new OpenElementStack();
+		for (int i = 0; i < 100; ++i)
+			stack.push(elem("span"));
+
+		assertEquals(100, stack.size());
+		assertEquals(99, stack.getTopmostIndexOf(ElementType.SPAN));
+		for (int i = 0; i < 100; ++i)
+			stack.pop();
+		assertNull(stack.peek());
+		assertEquals(-1, stack.getTopmostIndexOf(ElementType.SPAN));
+	}
+
+	// =========================================================================
+
+	private WtNode elem(String name)
+	{
+		return nf.elem(name, nf.emptyAttrs(), nf.emptyBody());
+	}
+}
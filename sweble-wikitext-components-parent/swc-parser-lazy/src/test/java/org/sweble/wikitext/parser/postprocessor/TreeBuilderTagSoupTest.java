@@ -0,0 +1,146 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sweble.wikitext.parser.postprocessor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.sweble.wikitext.parser.ParserConfig;
+import org.sweble.wikitext.parser.WikitextParser;
+import org.sweble.wikitext.parser.WikitextPostprocessor;
+import org.sweble.wikitext.parser.nodes.WtParsedWikitextPage;
+import org.sweble.wikitext.parser.utils.SimpleParserConfig;
+import org.sweble.wikitext.parser.utils.WtAstPrinter;
+
+import de.fau.cs.osr.utils.visitor.VisitingException;
+
+/**
+ * Compares the trees built for random tag soups with digests of the trees
+ * (and warnings) that were built by the TreeBuilder before its stack of open
+ * elements became an {@link OpenElementStack}. The digests were generated
+ * with {@link #main(String[])} using the former LinkedList-based TreeBuilder.
+ */
+public class TreeBuilderTagSoupTest
+{
+	private static final String DIGESTS = "/nopkg-tree/tag-soup-digests.txt";
+
+	private static final int SOUPS = 3000;
+
+	private static final long SEED = 36;
+
+	private static final String TITLE = "Test";
+
+	private static final String[] SNIPPETS = {
+			"text ", "\n", "\n\n", "''", "'''",
+			"<b>", "</b>", "<i>", "</i>", "<u>", "</u>", "<s>", "</s>",
+			"<em>", "</em>", "<strong>", "</strong>", "<big>", "</big>",
+			"<small>", "</small>", "<font color=red>", "</font>",
+			"<tt>", "</tt>", "<code>", "</code>", "<span>", "</span>",
+			"<div>", "</div>", "<p>", "</p>", "<center>", "</center>",
+			"<blockquote>", "</blockquote>", "<h2>", "</h2>", "<pre>", "</pre>",
+			"<ul>", "</ul>", "<ol>", "</ol>", "<li>", "</li>",
+			"<dl>", "<dt>", "<dd>", "</dl>",
+			"<table>", "</table>", "<tr>", "</tr>", "<td>", "</td>",
+			"<th>", "</th>", "<caption>", "</caption>",
+			"<br>", "<hr>",
+			"{|", "\n|-", "\n|", "\n|}", "\n* ", "\n# ", "\n== h ==\n",
+			"[[a|", "]]" };
+
+	private static final ParserConfig config = new SimpleParserConfig();
+
+	// =========================================================================
+
+	@Test
+	public void testTagSoupsYieldSameTreesAndWarningsAsBefore() throws Exception
+	{
+		InputStream in = TreeBuilderTagSoupTest.class.getResourceAsStream(DIGESTS);
+		List<String> expected;
+		try
+		{
+			expected = IOUtils.readLines(in, "UTF-8");
+		}
+		finally
+		{
+			in.close();
+		}
+		assertEquals(SOUPS, expected.size());
+
+		Random random = new Random(SEED);
+		for (int i = 0; i < SOUPS; ++i)
+		{
+			String soup = makeSoup(random);
+			assertEquals(soup, expected.get(i), i + " " + digest(soup));
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Prints the digests of all soups in the format of the reference file.
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		Random random = new Random(SEED);
+		for (int i = 0; i < SOUPS; ++i)
+			System.out.println(i + " " + digest(makeSoup(random)));
+	}
+
+	private static String makeSoup(Random random)
+	{
+		StringBuilder b = new StringBuilder();
+		int length = 5 + random.nextInt(40);
+		for (int j = 0; j < length; ++j)
+			b.append(SNIPPETS[random.nextInt(SNIPPETS.length)]);
+		return b.toString();
+	}
+
+	private static String digest(String soup) throws Exception
+	{
+		String printed;
+		try
+		{
+			WikitextPostprocessor postprocessor = new WikitextPostprocessor(config);
+			WtParsedWikitextPage page = (WtParsedWikitextPage) postprocessor.postprocess(
+					new WikitextParser(config).parseArticle(soup, TITLE),
+					TITLE);
+
+			printed = WtAstPrinter.print(page) + "\n" + page.getWarnings();
+		}
+		catch (VisitingException e)
+		{
+			// Some soups make the tree builder fail, they have to keep
+			// failing the same way.
+			Throwable cause = e;
+			while (cause.getCause() != null)
+				cause = cause.getCause();
+			printed = "failed: " + cause.getClass().getName();
+		}
+
+		MessageDigest md5 = MessageDigest.getInstance("MD5");
+		StringBuilder b = new StringBuilder();
+		for (byte x : md5.digest(printed.getBytes("UTF-8")))
+			b.append(String.format("%02x", x & 0xFF));
+		return b.toString();
+	}
+}
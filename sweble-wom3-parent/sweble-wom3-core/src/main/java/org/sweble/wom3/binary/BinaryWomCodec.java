@@ -0,0 +1,169 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.wom3.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.sweble.wom3.impl.DocumentImpl;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * A binary format for WOM documents that can be loaded lazily.
+ * 
+ * A stream starts with a header (magic number and version) followed by a
+ * string table holding all element and attribute names, namespace URIs and
+ * short values. The string table is followed by the node records. The
+ * children of an element are prefixed with their total length in bytes. This
+ * allows a reader to skip them and only create the children of an element
+ * when they are accessed for the first time.
+ * 
+ * When decoding, only the top level nodes of a document are created right
+ * away. All other nodes are created on demand when a parent's children are
+ * first navigated to (e.g. by calling getFirstChild(), getChildNodes() or by
+ * evaluating an XPath expression). The buffer from which a document was
+ * decoded must therefore not be altered as long as the document is in use.
+ * Note that a lazily loaded document is not thread-safe, not even for
+ * reading.
+ * 
+ * The codec itself does not hold any per-stream state and can be shared.
+ */
+public class BinaryWomCodec
+{
+	static final int MAGIC = 0x53574F4D; // "SWOM"
+
+	static final int VERSION = 2;
+
+	// -- Node kinds -----------------------------------------------------------
+
+	static final int K_ELEMENT = 1;
+
+	static final int K_TEXT = 2;
+
+	static final int K_CDATA = 3;
+
+	static final int K_COMMENT = 4;
+
+	// -- String references ----------------------------------------------------
+
+	static final int STR_NULL = 0;
+
+	static final int STR_LITERAL = 1;
+
+	static final int STR_FIRST_ENTRY = 2;
+
+	// =========================================================================
+
+	private int maxInternedStringLength = 64;
+
+	// =========================================================================
+
+	public int getMaxInternedStringLength()
+	{
+		return maxInternedStringLength;
+	}
+
+	/**
+	 * Text and attribute values longer than the given length are not entered
+	 * into the string table but always written literally. Names and namespace
+	 * URIs are always entered into the table.
+	 */
+	public void setMaxInternedStringLength(int maxInternedStringLength)
+	{
+		this.maxInternedStringLength = maxInternedStringLength;
+	}
+
+	// =========================================================================
+
+	/**
+	 * @param node
+	 *            A document or an element.
+	 */
+	public byte[] encode(Node node) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		encode(node, baos);
+		return baos.toByteArray();
+	}
+
+	/**
+	 * Writes the given document or element to the stream. The stream is
+	 * flushed but not closed.
+	 */
+	public void encode(Node node, OutputStream out) throws IOException
+	{
+		BinaryWomWriter writer = new BinaryWomWriter(this);
+		writer.write(node);
+		writer.writeTo(out);
+		out.flush();
+	}
+
+	public Document decode(byte[] data) throws IOException
+	{
+		return decode(ByteBuffer.wrap(data));
+	}
+
+	public Document decode(ByteBuffer buffer) throws IOException
+	{
+		return decode(buffer, new DocumentImpl());
+	}
+
+	/**
+	 * Decodes the document starting at the buffer's current position into the
+	 * given empty document. The position of the given buffer is not altered.
+	 */
+	public Document decode(ByteBuffer buffer, DocumentImpl doc) throws IOException
+	{
+		if (doc.hasChildNodes())
+			throw new IllegalArgumentException("Document is not empty");
+
+		BinaryWomReader reader = new BinaryWomReader(buffer, doc);
+		reader.loadDocument();
+		return doc;
+	}
+
+	/**
+	 * Memory-maps the given file and decodes the document lazily.
+	 */
+	public Document open(File file) throws IOException
+	{
+		return open(file, new DocumentImpl());
+	}
+
+	public Document open(File file, DocumentImpl doc) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			// The mapping stays valid after the channel was closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return decode(buffer, doc);
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+}
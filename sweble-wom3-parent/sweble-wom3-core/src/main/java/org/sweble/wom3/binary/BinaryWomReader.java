@@ -0,0 +1,300 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.wom3.binary;
+
+import static org.sweble.wom3.binary.BinaryWomCodec.*;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.sweble.wom3.impl.BackboneWithChildren;
+import org.sweble.wom3.impl.ChildNodeLoader;
+import org.sweble.wom3.impl.DocumentImpl;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import de.fau.cs.osr.utils.WrappedException;
+
+/**
+ * Decodes the nodes of a document on demand. One reader is shared by all
+ * lazily loaded nodes of a document.
+ */
+final class BinaryWomReader
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteBuffer buf;
+
+	private final DocumentImpl doc;
+
+	private final String[] strings;
+
+	private final int bodyOffset;
+
+	private byte[] scratch = new byte[256];
+
+	// =========================================================================
+
+	public BinaryWomReader(ByteBuffer buffer, DocumentImpl doc) throws IOException
+	{
+		// Don't touch the position of the caller's buffer
+		this.buf = buffer.slice();
+		this.doc = doc;
+
+		try
+		{
+			if (buf.getInt() != MAGIC)
+				throw new BinaryWomFormatException("Not a binary WOM document");
+
+			int version = readVarint();
+			if (version != VERSION)
+				throw new BinaryWomFormatException("Unsupported version: " + version);
+
+			int count = readVarint();
+			if (count < 0 || count > buf.remaining())
+				throw new BinaryWomFormatException("Invalid string table size: " + count);
+
+			strings = new String[count];
+			for (int i = 0; i < count; ++i)
+				strings[i] = readUtf8();
+
+			bodyOffset = buf.position();
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new BinaryWomFormatException("Unexpected end of data", e);
+		}
+	}
+
+	// =========================================================================
+
+	/**
+	 * Creates the top level nodes of the document. All other nodes are created
+	 * on demand.
+	 */
+	public void loadDocument() throws IOException
+	{
+		buf.position(bodyOffset);
+
+		int count = readVarint();
+		if (count > 0)
+		{
+			// Skip length of children
+			buf.getInt();
+			appendChildren(doc, count);
+		}
+	}
+
+	private void appendChildren(Node parent, int count) throws IOException
+	{
+		boolean readOnly = doc.getReadOnly();
+		if (readOnly)
+			doc.setReadOnly(false);
+
+		try
+		{
+			// Decode all children before they are appended: Appending may
+			// trigger the loading of other nodes which moves the buffer's
+			// position.
+			Node[] children = new Node[count];
+			for (int i = 0; i < count; ++i)
+				children[i] = readNode();
+
+			for (int i = 0; i < count; ++i)
+				parent.appendChild(children[i]);
+		}
+		catch (BufferUnderflowException e)
+		{
+			throw new BinaryWomFormatException("Unexpected end of data", e);
+		}
+		catch (IndexOutOfBoundsException e)
+		{
+			throw new BinaryWomFormatException("Corrupt data", e);
+		}
+		finally
+		{
+			if (readOnly)
+				doc.setReadOnly(true);
+		}
+	}
+
+	// =========================================================================
+
+	private Node readNode() throws IOException
+	{
+		int kind = buf.get();
+		switch (kind)
+		{
+			case K_ELEMENT:
+				return readElement();
+			case K_TEXT:
+				return doc.createTextNode(readValue());
+			case K_CDATA:
+				return doc.createCDATASection(readValue());
+			case K_COMMENT:
+				return doc.createComment(readValue());
+			default:
+				throw new BinaryWomFormatException("Unknown node kind: " + kind);
+		}
+	}
+
+	private Node readElement() throws IOException
+	{
+		String nsUri = readName();
+		String qName = readName();
+		if (qName == null)
+			throw new BinaryWomFormatException("Element without name");
+
+		Element elem = (nsUri == null) ?
+				doc.createElement(qName) :
+				doc.createElementNS(nsUri, qName);
+
+		int attrCount = readVarint();
+		for (int i = 0; i < attrCount; ++i)
+		{
+			String attrNsUri = readName();
+			String attrQName = readName();
+			String value = readValue();
+			if (attrNsUri == null)
+			{
+				elem.setAttribute(attrQName, value);
+			}
+			else
+			{
+				elem.setAttributeNS(attrNsUri, attrQName, value);
+			}
+		}
+
+		int childCount = readVarint();
+		if (childCount > 0)
+		{
+			int length = buf.getInt();
+			int offset = buf.position();
+			if (length < 0 || length > buf.limit() - offset)
+				throw new BinaryWomFormatException("Invalid length of children: " + length);
+
+			if (elem instanceof BackboneWithChildren)
+			{
+				((BackboneWithChildren) elem).setChildNodeLoader(
+						new LazyChildren(offset, childCount));
+
+				buf.position(offset + length);
+			}
+			else
+			{
+				appendChildren(elem, childCount);
+			}
+		}
+
+		return elem;
+	}
+
+	// =========================================================================
+
+	private String readName() throws IOException
+	{
+		int ref = readVarint();
+		if (ref == STR_NULL)
+			return null;
+		return lookup(ref);
+	}
+
+	private String readValue() throws IOException
+	{
+		int ref = readVarint();
+		if (ref == STR_LITERAL)
+			return readUtf8();
+		return lookup(ref);
+	}
+
+	private String lookup(int ref) throws IOException
+	{
+		int index = ref - STR_FIRST_ENTRY;
+		if (index < 0 || index >= strings.length)
+			throw new BinaryWomFormatException("Invalid string reference: " + ref);
+		return strings[index];
+	}
+
+	private String readUtf8() throws IOException
+	{
+		int length = readVarint();
+		if (length < 0 || length > buf.remaining())
+			throw new BinaryWomFormatException("Invalid string length: " + length);
+
+		String s;
+		if (buf.hasArray())
+		{
+			s = new String(buf.array(), buf.arrayOffset() + buf.position(), length, UTF8);
+			buf.position(buf.position() + length);
+		}
+		else
+		{
+			if (scratch.length < length)
+				scratch = new byte[Math.max(length, scratch.length * 2)];
+			buf.get(scratch, 0, length);
+			s = new String(scratch, 0, length, UTF8);
+		}
+		return s;
+	}
+
+	private int readVarint() throws IOException
+	{
+		int value = 0;
+		for (int shift = 0; shift < 35; shift += 7)
+		{
+			int b = buf.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new BinaryWomFormatException("Malformed varint");
+	}
+
+	// =========================================================================
+
+	private final class LazyChildren
+			implements
+				ChildNodeLoader
+	{
+		private final int offset;
+
+		private final int count;
+
+		public LazyChildren(int offset, int count)
+		{
+			this.offset = offset;
+			this.count = count;
+		}
+
+		@Override
+		public void loadChildNodes(BackboneWithChildren parent)
+		{
+			try
+			{
+				buf.position(offset);
+				appendChildren(parent, count);
+			}
+			catch (IOException e)
+			{
+				throw new WrappedException("Failed to load children of " + parent.getNodeName(), e);
+			}
+		}
+	}
+}
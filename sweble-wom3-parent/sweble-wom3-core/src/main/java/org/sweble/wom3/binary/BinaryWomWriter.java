@@ -0,0 +1,267 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.wom3.binary;
+
+import static org.sweble.wom3.binary.BinaryWomCodec.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.w3c.dom.DOMException;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * Writes nodes into an in-memory buffer first since the length of an
+ * element's children has to be patched in after they were written and the
+ * string table has to precede the node records.
+ */
+final class BinaryWomWriter
+{
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final int maxInternedStringLength;
+
+	private final Map<String, Integer> stringTable = new HashMap<String, Integer>();
+
+	private final List<String> strings = new ArrayList<String>();
+
+	private byte[] buf = new byte[8192];
+
+	private int pos = 0;
+
+	// =========================================================================
+
+	public BinaryWomWriter(BinaryWomCodec codec)
+	{
+		this.maxInternedStringLength = codec.getMaxInternedStringLength();
+	}
+
+	// =========================================================================
+
+	public void write(Node node)
+	{
+		if (node.getNodeType() == Node.DOCUMENT_NODE)
+		{
+			writeChildren(node);
+		}
+		else
+		{
+			// Written as the only child of a document
+			writeVarint(1);
+			int lengthPos = reserveLength();
+			writeNode(node);
+			patchLength(lengthPos);
+		}
+	}
+
+	public void writeTo(OutputStream out) throws IOException
+	{
+		byte[] body = buf;
+		int bodyLength = pos;
+
+		buf = new byte[256];
+		pos = 0;
+
+		writeInt(MAGIC);
+		writeVarint(VERSION);
+		writeVarint(strings.size());
+		for (String s : strings)
+			writeUtf8(s);
+
+		out.write(buf, 0, pos);
+		out.write(body, 0, bodyLength);
+	}
+
+	// =========================================================================
+
+	private void writeNode(Node node)
+	{
+		switch (node.getNodeType())
+		{
+			case Node.ELEMENT_NODE:
+				writeElement(node);
+				break;
+
+			case Node.TEXT_NODE:
+				writeByte(K_TEXT);
+				writeValue(node.getNodeValue());
+				break;
+
+			case Node.CDATA_SECTION_NODE:
+				writeByte(K_CDATA);
+				writeValue(node.getNodeValue());
+				break;
+
+			case Node.COMMENT_NODE:
+				writeByte(K_COMMENT);
+				writeValue(node.getNodeValue());
+				break;
+
+			default:
+				throw new DOMException(
+						DOMException.NOT_SUPPORTED_ERR,
+						"Cannot serialize node of type " + node.getNodeType() + ": " + node.getNodeName());
+		}
+	}
+
+	private void writeElement(Node node)
+	{
+		writeByte(K_ELEMENT);
+		writeName(node.getNamespaceURI());
+		writeName(node.getNodeName());
+
+		NamedNodeMap attrs = node.getAttributes();
+		int attrCount = (attrs != null) ? attrs.getLength() : 0;
+		writeVarint(attrCount);
+		for (int i = 0; i < attrCount; ++i)
+		{
+			Node attr = attrs.item(i);
+			writeName(attr.getNamespaceURI());
+			writeName(attr.getNodeName());
+			writeValue(attr.getNodeValue());
+		}
+
+		writeChildren(node);
+	}
+
+	private void writeChildren(Node node)
+	{
+		int count = 0;
+		for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling())
+			++count;
+
+		writeVarint(count);
+		if (count == 0)
+			return;
+
+		int lengthPos = reserveLength();
+		for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling())
+			writeNode(n);
+		patchLength(lengthPos);
+	}
+
+	/**
+	 * Reserves space for the length of the children's records.
+	 */
+	private int reserveLength()
+	{
+		int lengthPos = pos;
+		writeInt(0);
+		return lengthPos;
+	}
+
+	private void patchLength(int lengthPos)
+	{
+		int length = pos - lengthPos - 4;
+		buf[lengthPos] = (byte) (length >>> 24);
+		buf[lengthPos + 1] = (byte) (length >>> 16);
+		buf[lengthPos + 2] = (byte) (length >>> 8);
+		buf[lengthPos + 3] = (byte) length;
+	}
+
+	// =========================================================================
+
+	private void writeName(String name)
+	{
+		if (name == null)
+		{
+			writeVarint(STR_NULL);
+		}
+		else
+		{
+			writeVarint(STR_FIRST_ENTRY + intern(name));
+		}
+	}
+
+	private void writeValue(String value)
+	{
+		if (value.length() <= maxInternedStringLength)
+		{
+			writeVarint(STR_FIRST_ENTRY + intern(value));
+		}
+		else
+		{
+			writeVarint(STR_LITERAL);
+			writeUtf8(value);
+		}
+	}
+
+	private int intern(String s)
+	{
+		Integer index = stringTable.get(s);
+		if (index == null)
+		{
+			index = strings.size();
+			stringTable.put(s, index);
+			strings.add(s);
+		}
+		return index;
+	}
+
+	private void writeUtf8(String s)
+	{
+		byte[] bytes = s.getBytes(UTF8);
+		writeVarint(bytes.length);
+		ensureCapacity(bytes.length);
+		System.arraycopy(bytes, 0, buf, pos, bytes.length);
+		pos += bytes.length;
+	}
+
+	private void writeVarint(int value)
+	{
+		ensureCapacity(5);
+		while ((value & ~0x7F) != 0)
+		{
+			buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buf[pos++] = (byte) value;
+	}
+
+	private void writeInt(int value)
+	{
+		ensureCapacity(4);
+		buf[pos++] = (byte) (value >>> 24);
+		buf[pos++] = (byte) (value >>> 16);
+		buf[pos++] = (byte) (value >>> 8);
+		buf[pos++] = (byte) value;
+	}
+
+	private void writeByte(int value)
+	{
+		ensureCapacity(1);
+		buf[pos++] = (byte) value;
+	}
+
+	private void ensureCapacity(int required)
+	{
+		if (pos + required > buf.length)
+		{
+			int newLength = Math.max(buf.length * 2, pos + required);
+			byte[] newBuf = new byte[newLength];
+			System.arraycopy(buf, 0, newBuf, 0, pos);
+			buf = newBuf;
+		}
+	}
+}
@@ -17,6 +17,8 @@
  */
 package org.sweble.wom3.impl;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -44,6 +46,12 @@ public abstract class BackboneWithChildren
 	 */
 	private Backbone lastChild;
 
+	/**
+	 * If not {@code null} the children of this node have not been loaded yet.
+	 * They will be loaded on first access.
+	 */
+	private transient ChildNodeLoader childNodeLoader;
+
 	// =========================================================================
 
 	public BackboneWithChildren(DocumentImpl owner)
@@ -61,6 +69,8 @@ public abstract class BackboneWithChildren
 	@Override
 	public Backbone getFirstChild()
 	{
+		if (childNodeLoader != null)
+			loadChildNodes();
 		return firstChild;
 	}
 
@@ -72,9 +82,47 @@ public abstract class BackboneWithChildren
 	@Override
 	public Backbone getLastChild()
 	{
+		if (childNodeLoader != null)
+			loadChildNodes();
 		return lastChild;
 	}
 
+	/**
+	 * Defers loading the children of this node until they are accessed for
+	 * the first time. This node must not have any children yet.
+	 */
+	public void setChildNodeLoader(ChildNodeLoader childNodeLoader)
+	{
+		if (childNodeLoader != null && (firstChild != null || this.childNodeLoader != null))
+			throw new IllegalStateException("Node already has children");
+		this.childNodeLoader = childNodeLoader;
+	}
+
+	/**
+	 * @return Whether the children of this node will be loaded on first
+	 *         access.
+	 */
+	public boolean hasPendingChildNodes()
+	{
+		return childNodeLoader != null;
+	}
+
+	private void loadChildNodes()
+	{
+		// Reset first, the loader appends the children through the usual
+		// methods which in turn access the first and last child.
+		ChildNodeLoader loader = childNodeLoader;
+		childNodeLoader = null;
+		loader.loadChildNodes(this);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException
+	{
+		if (childNodeLoader != null)
+			loadChildNodes();
+		out.defaultWriteObject();
+	}
+
 	/**
 	 * Called when a text node containing content whitespace is inserted into
 	 * this element.
@@ -0,0 +1,199 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.wom3.serialization;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.sweble.wom3.impl.DomImplementationImpl;
+import org.sweble.wom3.serialization.ScopeStack.Scope;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Base class for type adapters that write and read WOM documents directly
+ * to/from a JsonWriter/JsonReader without building an intermediate tree of
+ * JsonElements.
+ * 
+ * The streaming adapters produce exactly the same JSON as their tree based
+ * counterparts. When reading, however, they expect namespace declarations
+ * to precede the member holding an element's children, which is the order
+ * in which all Wom3 type adapters write them.
+ */
+public abstract class Wom3JsonStreamingTypeAdapterBase
+		extends
+			TypeAdapter<Node>
+{
+	private Document doc;
+
+	// =========================================================================
+
+	public Document getDoc()
+	{
+		if (doc == null)
+			// Create a generic document
+			doc = DomImplementationImpl.get().createDocument(null, null, null);
+
+		return doc;
+	}
+
+	public void setDoc(Document doc)
+	{
+		this.doc = doc;
+	}
+
+	// =========================================================================
+
+	@Override
+	public void write(JsonWriter out, Node value) throws IOException
+	{
+		if (value == null)
+		{
+			out.nullValue();
+			return;
+		}
+
+		write(out, value, new Context());
+	}
+
+	protected abstract void write(JsonWriter out, Node node, Context ctx) throws IOException;
+
+	@Override
+	public Node read(JsonReader in) throws IOException
+	{
+		if (in.peek() == JsonToken.NULL)
+		{
+			in.nextNull();
+			return null;
+		}
+
+		Document doc = getDoc();
+		Node node = read(in, doc, new ScopeStack());
+
+		Node fragment = doc.createDocumentFragment();
+		fragment.appendChild(node);
+		return fragment;
+	}
+
+	protected abstract Node read(
+			JsonReader in,
+			Document doc,
+			ScopeStack scopeStack) throws IOException;
+
+	// =========================================================================
+
+	/**
+	 * Writes the given members and clears the map afterwards. The map is
+	 * reused for all elements of a document since an element's attributes
+	 * are always written out before its children are visited.
+	 */
+	protected static void writeMembers(JsonWriter out, Map<String, String> members) throws IOException
+	{
+		for (Entry<String, String> e : members.entrySet())
+			out.name(e.getKey()).value(e.getValue());
+		members.clear();
+	}
+
+	protected static String nextString(JsonReader in, String memberName) throws IOException
+	{
+		switch (in.peek())
+		{
+			case STRING:
+			case NUMBER:
+				return in.nextString();
+			case BOOLEAN:
+				return String.valueOf(in.nextBoolean());
+			default:
+				throw new JsonParseException("Expected member '" + memberName + "' to be a string");
+		}
+	}
+
+	protected static boolean isNsDecl(String attrEntryName)
+	{
+		// Attribute entries start with ATTRIBUTE_PREFIX
+		return attrEntryName.startsWith(Wom3JsonTypeAdapterBase.XMLNS_PREFIX, 1) &&
+				((attrEntryName.length() == Wom3JsonTypeAdapterBase.XMLNS_PREFIX.length() + 1) ||
+				(attrEntryName.charAt(Wom3JsonTypeAdapterBase.XMLNS_PREFIX.length() + 1) == ':'));
+	}
+
+	/**
+	 * @param attrs
+	 *            Alternating attribute entry names and values or {@code null}.
+	 */
+	protected static Scope registerNsDecls(
+			ScopeStack scopeStack,
+			Scope scope,
+			List<String> attrs)
+	{
+		if (attrs == null)
+			return scope;
+		for (int i = 0; i < attrs.size(); i += 2)
+			scope = Wom3JsonTypeAdapterBase.registerNsDecl(scopeStack, scope, attrs.get(i), attrs.get(i + 1));
+		return scope;
+	}
+
+	/**
+	 * @param attrs
+	 *            Alternating attribute entry names and values.
+	 */
+	protected static void parseAttributes(
+			ScopeStack scopeStack,
+			Element elem,
+			List<String> attrs)
+	{
+		for (int i = 0; i < attrs.size(); i += 2)
+			Wom3JsonTypeAdapterBase.parseAttribute(scopeStack, elem, attrs.get(i), attrs.get(i + 1));
+	}
+
+	/**
+	 * Applies an attribute that was encountered after the element has already
+	 * been created.
+	 */
+	protected static void parseLateAttribute(
+			ScopeStack scopeStack,
+			Element elem,
+			String entryName,
+			String valueString)
+	{
+		if (isNsDecl(entryName))
+			throw new JsonParseException("Namespace declaration '" + entryName + "' must precede the element's children");
+		Wom3JsonTypeAdapterBase.parseAttribute(scopeStack, elem, entryName, valueString);
+	}
+
+	// =========================================================================
+
+	/**
+	 * State of a single write operation.
+	 */
+	protected static final class Context
+	{
+		public final ScopeStack scopeStack = new ScopeStack();
+
+		public final Map<String, String> members = new LinkedHashMap<String, String>();
+	}
+}
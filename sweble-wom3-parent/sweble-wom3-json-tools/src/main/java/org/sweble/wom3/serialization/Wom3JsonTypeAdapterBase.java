@@ -27,6 +27,7 @@ import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 import java.lang.reflect.Type;
+import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -106,58 +107,83 @@ public abstract class Wom3JsonTypeAdapterBase
 			JsonObject o,
 			Node node)
 	{
-		String localName = node.getLocalName();
-		if (localName != null)
+		String declName = getRequiredPrefixDecl(scopeStack, node);
+		if (declName != null)
 		{
-			String prefix = node.getPrefix();
-			if (XMLNS_PREFIX.equals(prefix))
-				// No need to declare xmlns: prefix itself
-				return scope;
+			String nsUri = getNamespaceUri(node);
+			scope = registerNsDecl(scopeStack, scope, declName, nsUri);
+			o.add(declName, new JsonPrimitive(nsUri));
+		}
+		return scope;
+	}
 
-			String nsUri = node.getNamespaceURI();
-			if (nsUri == null)
-				nsUri = "";
+	protected static Scope addPrefixDecls(
+			ScopeStack scopeStack,
+			Scope scope,
+			Map<String, String> members,
+			Node node)
+	{
+		String declName = getRequiredPrefixDecl(scopeStack, node);
+		if (declName != null)
+		{
+			String nsUri = getNamespaceUri(node);
+			scope = registerNsDecl(scopeStack, scope, declName, nsUri);
+			members.put(declName, nsUri);
+		}
+		return scope;
+	}
+
+	/**
+	 * Determines whether the namespace of the given node has to be declared
+	 * before the node can be written.
+	 * 
+	 * @return The name of the attribute member that declares the namespace or
+	 *         {@code null} if the namespace is already in scope.
+	 */
+	private static String getRequiredPrefixDecl(
+			ScopeStack scopeStack,
+			Node node)
+	{
+		String localName = node.getLocalName();
+		if (localName == null)
+			return null;
+
+		String prefix = node.getPrefix();
+		if (XMLNS_PREFIX.equals(prefix))
+			// No need to declare xmlns: prefix itself
+			return null;
+
+		String nsUri = getNamespaceUri(node);
 
-			if (XMLNS_PREFIX.equals(localName) && XMLNS_URI.equals(nsUri))
-				// No need to declare xmlns' namespace as default namespace
-				return scope;
+		if (XMLNS_PREFIX.equals(localName) && XMLNS_URI.equals(nsUri))
+			// No need to declare xmlns' namespace as default namespace
+			return null;
 
-			if (prefix == null || prefix.isEmpty())
+		if (prefix == null || prefix.isEmpty())
+		{
+			if (node.getNodeType() == Node.ATTRIBUTE_NODE)
 			{
-				if (node.getNodeType() == Node.ATTRIBUTE_NODE)
-				{
-					// Attributes without prefix are in no namespace (also not the default namespace)
-					if (!nsUri.isEmpty())
-						throw new JsonParseException(
-								"Attribute has namespace URI but no prefix: " + node.getNodeName());
-				}
-				else
-				{
-					String xmlns = scopeStack.getXmlns();
-					if (!nsUri.equals(xmlns))
-					{
-						if (scope == null)
-							scope = scopeStack.push();
-						scope.setXmlns(nsUri);
-						String declName = ATTRIBUTE_PREFIX + XMLNS_PREFIX;
-						o.add(declName, new JsonPrimitive(nsUri));
-					}
-				}
+				// Attributes without prefix are in no namespace (also not the default namespace)
+				if (!nsUri.isEmpty())
+					throw new JsonParseException(
+							"Attribute has namespace URI but no prefix: " + node.getNodeName());
 			}
-			else
+			else if (!nsUri.equals(scopeStack.getXmlns()))
 			{
-				String curNsUri = scopeStack.getNsUriForPrefix(prefix);
-				if (!nsUri.equals(curNsUri))
-				{
-					if (scope == null)
-						scope = scopeStack.push();
-					scope.put(prefix, nsUri);
-					String declName = ATTRIBUTE_PREFIX + XMLNS_COLON_PREFIX + prefix;
-					o.add(declName, new JsonPrimitive(nsUri));
-				}
+				return ATTRIBUTE_PREFIX + XMLNS_PREFIX;
 			}
 		}
-		return scope;
+		else if (!nsUri.equals(scopeStack.getNsUriForPrefix(prefix)))
+		{
+			return ATTRIBUTE_PREFIX + XMLNS_COLON_PREFIX + prefix;
+		}
+		return null;
+	}
+
+	private static String getNamespaceUri(Node node)
+	{
+		String nsUri = node.getNamespaceURI();
+		return (nsUri == null) ? "" : nsUri;
 	}
 
 	// =========================================================================
@@ -186,8 +212,16 @@ public abstract class Wom3JsonTypeAdapterBase
 		if (!entryValue.isJsonPrimitive())
 			throw new JsonParseException("Expected attribute '" + entryName + "' to be a string");
 
+		return registerNsDecl(scopeStack, scope, entryName, entryValue.getAsString());
+	}
+
+	protected static Scope registerNsDecl(
+			ScopeStack scopeStack,
+			Scope scope,
+			String entryName,
+			String valueString)
+	{
 		entryName = entryName.substring(1);
-		String valueString = entryValue.getAsString();
 		if (entryName.equals(XMLNS_PREFIX))
 		{
 			if (scope == null)
@@ -212,8 +246,16 @@ public abstract class Wom3JsonTypeAdapterBase
 	{
 		if (!entryValue.isJsonPrimitive())
 			throw new JsonParseException("Expected attribute '" + entryName + "' to be a string");
+		parseAttribute(scopeStack, elem, entryName, entryValue.getAsString());
+	}
+
+	protected static void parseAttribute(
+			ScopeStack scopeStack,
+			Element elem,
+			String entryName,
+			String valueString)
+	{
 		entryName = entryName.substring(1);
-		String valueString = entryValue.getAsString();
 		int i = entryName.indexOf(':');
 		if (i == -1)
 		{
@@ -0,0 +1,322 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.wom3.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.sweble.wom3.serialization.ScopeStack.Scope;
+import org.sweble.wom3.serialization.Wom3JsonTypeAdapterBase.ValueTypes;
+import org.sweble.wom3.util.Wom3Toolbox;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming variant of {@link Wom3NodeCompactJsonTypeAdapter}.
+ */
+public class Wom3NodeCompactJsonStreamingTypeAdapter
+		extends
+			Wom3JsonStreamingTypeAdapterBase
+{
+	private static final String ATTRIBUTE_PREFIX = Wom3JsonTypeAdapterBase.ATTRIBUTE_PREFIX;
+
+	private static final String SPECIAL_TYPE_PREFIX = Wom3JsonTypeAdapterBase.SPECIAL_TYPE_PREFIX;
+
+	private static final String ELEMENT_NAME_PREFIX = "!";
+
+	private static final String TYPE_COMMENT = SPECIAL_TYPE_PREFIX + "c";
+
+	private static final String TYPE_CDATA = SPECIAL_TYPE_PREFIX + "cd";
+
+	private static final String TYPE_ENTITY_REF = Wom3NodeCompactJsonTypeAdapter.TYPE_ENTITY_REF;
+
+	private static final String TYPE_TEXT = Wom3NodeCompactJsonTypeAdapter.TYPE_TEXT;
+
+	private static final String TYPE_RTD = Wom3NodeCompactJsonTypeAdapter.TYPE_RTD;
+
+	// =========================================================================
+
+	@Override
+	protected void write(JsonWriter out, Node node, Context ctx) throws IOException
+	{
+		write(out, node, true, ctx);
+	}
+
+	private static void write(
+			JsonWriter out,
+			Node node,
+			boolean first,
+			Context ctx) throws IOException
+	{
+		short nodeType = node.getNodeType();
+		switch (nodeType)
+		{
+			case Node.ELEMENT_NODE:
+				if (Wom3Toolbox.isRtdOrText(node))
+				{
+					writeTextOrRtd(out, node);
+				}
+				else
+				{
+					writeElem(out, node, ctx);
+				}
+				break;
+
+			case Node.TEXT_NODE:
+				out.value(node.getNodeValue());
+				break;
+
+			case Node.ENTITY_REFERENCE_NODE:
+				writeValueNode(out, node.getNodeValue(), TYPE_ENTITY_REF);
+				break;
+
+			case Node.CDATA_SECTION_NODE:
+				writeValueNode(out, node.getNodeValue(), TYPE_CDATA);
+				break;
+
+			case Node.COMMENT_NODE:
+				writeValueNode(out, node.getNodeValue(), TYPE_COMMENT);
+				break;
+
+			case Node.DOCUMENT_NODE:
+				if (first)
+				{
+					write(out, ((Document) node).getDocumentElement(), false, ctx);
+					break;
+				}
+
+				// FALL THROUGH
+
+			case Node.ATTRIBUTE_NODE:
+			case Node.ENTITY_NODE:
+			case Node.PROCESSING_INSTRUCTION_NODE:
+			case Node.DOCUMENT_TYPE_NODE:
+			case Node.DOCUMENT_FRAGMENT_NODE:
+			case Node.NOTATION_NODE:
+			default:
+				throw new UnsupportedNodeException(node);
+		}
+	}
+
+	private static void writeElem(
+			JsonWriter out,
+			Node node,
+			Context ctx) throws IOException
+	{
+		ScopeStack scopeStack = ctx.scopeStack;
+		Map<String, String> members = ctx.members;
+
+		Scope scope = null;
+
+		scope = Wom3JsonTypeAdapterBase.addPrefixDecls(scopeStack, scope, members, node);
+
+		NamedNodeMap attrs = node.getAttributes();
+		if (attrs != null)
+		{
+			// Document fragments don't have attributes
+
+			scope = Wom3JsonTypeAdapterBase.registerNsDecls(scopeStack, scope, attrs);
+
+			for (int i = 0, len = attrs.getLength(); i < len; ++i)
+			{
+				Node attr = attrs.item(i);
+				scope = Wom3JsonTypeAdapterBase.addPrefixDecls(scopeStack, scope, members, attr);
+				members.put(ATTRIBUTE_PREFIX + attr.getNodeName(), attr.getNodeValue());
+			}
+		}
+
+		out.beginObject();
+		writeMembers(out, members);
+
+		out.name(ELEMENT_NAME_PREFIX + node.getNodeName());
+		out.beginArray();
+		NodeList children = node.getChildNodes();
+		for (int i = 0, len = children.getLength(); i < len; ++i)
+			write(out, children.item(i), false, ctx);
+		out.endArray();
+
+		out.endObject();
+
+		if (scope != null)
+			// Pop scope if we opened one
+			scopeStack.pop();
+	}
+
+	private static void writeTextOrRtd(JsonWriter out, Node node) throws IOException
+	{
+		String name = null;
+		if (Wom3Toolbox.isRtd(node))
+			name = TYPE_RTD;
+		else if (Wom3Toolbox.isText(node))
+			name = TYPE_TEXT;
+		else
+			throw new InternalError();
+
+		writeValueNode(out, node.getTextContent(), name);
+	}
+
+	private static void writeValueNode(JsonWriter out, String value, String name) throws IOException
+	{
+		out.beginObject();
+		out.name(name).value(value);
+		out.endObject();
+	}
+
+	// =========================================================================
+
+	@Override
+	protected Node read(
+			JsonReader in,
+			Document doc,
+			ScopeStack scopeStack) throws IOException
+	{
+		JsonToken token = in.peek();
+		switch (token)
+		{
+			case STRING:
+			case NUMBER:
+			case BOOLEAN:
+				return doc.createTextNode(nextString(in, "#text"));
+			case BEGIN_OBJECT:
+				break;
+			default:
+				throw new JsonParseException("Expected JsonObject or JsonPrimitive");
+		}
+
+		in.beginObject();
+
+		Scope scope = null;
+		ArrayList<String> attrs = null;
+		Element elem = null;
+		ValueTypes valueType = null;
+		String valueTypeName = null;
+		String nodeValue = null;
+
+		while (in.hasNext())
+		{
+			String entryName = in.nextName();
+			if (entryName.startsWith(ELEMENT_NAME_PREFIX))
+			{
+				if (elem != null)
+					throw new JsonParseException("Node name field occurred repeatedly");
+				if (valueType != null)
+					throw new JsonParseException("Value type '" + valueTypeName + "' cannot have a node name");
+
+				String elemQName = entryName.substring(1);
+
+				scope = registerNsDecls(scopeStack, scope, attrs);
+				String defaultNsUri = scopeStack.getXmlns();
+				elem = Wom3JsonTypeAdapterBase.createElement(doc, scopeStack, defaultNsUri, elemQName);
+				if (attrs != null)
+					parseAttributes(scopeStack, elem, attrs);
+
+				if (in.peek() != JsonToken.BEGIN_ARRAY)
+					throw new JsonParseException("Expected member '" + entryName + "' to be an array.");
+
+				in.beginArray();
+				while (in.hasNext())
+					elem.appendChild(read(in, doc, scopeStack));
+				in.endArray();
+			}
+			else if (entryName.startsWith(SPECIAL_TYPE_PREFIX))
+			{
+				if (valueType != null)
+					throw new JsonParseException("Type name field occurred repeatedly");
+				if (elem != null)
+					throw new JsonParseException("Element '" + elem.getNodeName() + "' cannot have a type name field");
+
+				valueType = getValueType(entryName);
+				valueTypeName = entryName;
+				nodeValue = nextString(in, entryName);
+			}
+			else if (entryName.startsWith(ATTRIBUTE_PREFIX))
+			{
+				String valueString = nextString(in, entryName);
+				if (elem != null)
+				{
+					parseLateAttribute(scopeStack, elem, entryName, valueString);
+				}
+				else
+				{
+					if (attrs == null)
+						attrs = new ArrayList<String>();
+					attrs.add(entryName);
+					attrs.add(valueString);
+				}
+			}
+			else
+				throw new JsonParseException("Unexpected field: '" + entryName + "'");
+		}
+
+		in.endObject();
+
+		Node result;
+		if (elem != null)
+		{
+			result = elem;
+		}
+		else if (valueType != null)
+		{
+			if (attrs != null)
+				throw new JsonParseException("Value type '" + valueType + "' cannot have attributes");
+			result = valueType.create(doc, nodeValue);
+		}
+		else
+			throw new JsonParseException("Missing type name or node name");
+
+		if (scope != null)
+			scopeStack.pop();
+
+		return result;
+	}
+
+	private static ValueTypes getValueType(String entryName)
+	{
+		if (entryName.equals(TYPE_RTD))
+		{
+			return ValueTypes.RTD;
+		}
+		else if (entryName.equals(TYPE_TEXT))
+		{
+			return ValueTypes.TEXT;
+		}
+		else if (entryName.equals(TYPE_ENTITY_REF))
+		{
+			return ValueTypes.ENTITY_REF;
+		}
+		else if (entryName.equals(TYPE_COMMENT))
+		{
+			return ValueTypes.COMMENT;
+		}
+		else if (entryName.equals(TYPE_CDATA))
+		{
+			return ValueTypes.CDATA;
+		}
+		else
+			throw new JsonParseException("Unknown special type '" + entryName + "'");
+	}
+}
@@ -0,0 +1,334 @@
+/**
+ * Copyright 2011 The Open Source Research Group,
+ *                University of Erlangen-Nürnberg
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ */
+package org.sweble.wom3.serialization;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Map;
+
+import org.sweble.wom3.serialization.ScopeStack.Scope;
+import org.sweble.wom3.serialization.Wom3JsonTypeAdapterBase.ValueTypes;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Streaming variant of {@link Wom3NodeJsonTypeAdapter}.
+ */
+public class Wom3NodeJsonStreamingTypeAdapter
+		extends
+			Wom3JsonStreamingTypeAdapterBase
+{
+	private static final String ATTRIBUTE_PREFIX = Wom3JsonTypeAdapterBase.ATTRIBUTE_PREFIX;
+
+	private static final String SPECIAL_TYPE_PREFIX = Wom3JsonTypeAdapterBase.SPECIAL_TYPE_PREFIX;
+
+	private static final String PROPERTY_PREFIX = "!";
+
+	private static final String PROPERTY_TYPE = PROPERTY_PREFIX + "type";
+
+	private static final String PROPERTY_VALUE = PROPERTY_PREFIX + "value";
+
+	private static final String PROPERTY_CHILDREN = PROPERTY_PREFIX + "children";
+
+	private static final String TYPE_ENTITY_REF = SPECIAL_TYPE_PREFIX + "entity-reference";
+
+	// =========================================================================
+
+	@Override
+	protected void write(JsonWriter out, Node node, Context ctx) throws IOException
+	{
+		write(out, node, true, ctx);
+	}
+
+	private static void write(
+			JsonWriter out,
+			Node node,
+			boolean first,
+			Context ctx) throws IOException
+	{
+		switch (node.getNodeType())
+		{
+			case Node.ELEMENT_NODE:
+				writeElement(out, node, ctx);
+				break;
+
+			case Node.TEXT_NODE:
+			case Node.CDATA_SECTION_NODE:
+			case Node.COMMENT_NODE:
+				out.beginObject();
+				out.name(PROPERTY_TYPE).value(node.getNodeName());
+				out.name(PROPERTY_VALUE).value(node.getNodeValue());
+				out.endObject();
+				break;
+
+			case Node.ENTITY_REFERENCE_NODE:
+				out.beginObject();
+				out.name(PROPERTY_TYPE).value(TYPE_ENTITY_REF);
+				out.name(PROPERTY_VALUE).value(node.getNodeValue());
+				out.endObject();
+				break;
+
+			case Node.DOCUMENT_NODE:
+				if (first)
+				{
+					write(out, ((Document) node).getDocumentElement(), false, ctx);
+					break;
+				}
+
+				// FALL THROUGH
+
+			case Node.ATTRIBUTE_NODE:
+			case Node.ENTITY_NODE:
+			case Node.PROCESSING_INSTRUCTION_NODE:
+			case Node.DOCUMENT_TYPE_NODE:
+			case Node.NOTATION_NODE:
+			default:
+				throw new UnsupportedNodeException(node);
+		}
+	}
+
+	private static void writeElement(
+			JsonWriter out,
+			Node node,
+			Context ctx) throws IOException
+	{
+		ScopeStack scopeStack = ctx.scopeStack;
+		Map<String, String> members = ctx.members;
+
+		Scope scope = null;
+
+		NamedNodeMap attrs = node.getAttributes();
+		if (attrs != null)
+			// Document fragments don't have attributes
+			scope = Wom3JsonTypeAdapterBase.registerNsDecls(scopeStack, scope, attrs);
+
+		// Write node type and required required prefix declarations
+		out.beginObject();
+		out.name(PROPERTY_TYPE).value(node.getNodeName());
+		scope = Wom3JsonTypeAdapterBase.addPrefixDecls(scopeStack, scope, members, node);
+
+		// Write node attributes and required prefix declarations
+		if (attrs != null)
+		{
+			// Document fragments don't have attributes
+			for (int i = 0, len = attrs.getLength(); i < len; ++i)
+			{
+				Node attr = attrs.item(i);
+				scope = Wom3JsonTypeAdapterBase.addPrefixDecls(scopeStack, scope, members, attr);
+				members.put(ATTRIBUTE_PREFIX + attr.getNodeName(), attr.getNodeValue());
+			}
+		}
+		writeMembers(out, members);
+
+		// Write children
+		out.name(PROPERTY_CHILDREN);
+		out.beginArray();
+		NodeList children = node.getChildNodes();
+		for (int i = 0, len = children.getLength(); i < len; ++i)
+			write(out, children.item(i), false, ctx);
+		out.endArray();
+
+		out.endObject();
+
+		if (scope != null)
+			// Pop scope if we opened one
+			scopeStack.pop();
+	}
+
+	// =========================================================================
+
+	@Override
+	protected Node read(
+			JsonReader in,
+			Document doc,
+			ScopeStack scopeStack) throws IOException
+	{
+		// Get node object
+		if (in.peek() != JsonToken.BEGIN_OBJECT)
+			throw new JsonParseException("Expected JsonObject");
+		in.beginObject();
+
+		String typeQName = null;
+		ArrayList<String> attrs = null;
+
+		Element elem = null;
+		ValueTypes valueType = null;
+		Scope scope = null;
+		boolean resolved = false;
+
+		boolean hasChildren = false;
+		String nodeValue = null;
+
+		while (in.hasNext())
+		{
+			String entryName = in.nextName();
+			if (entryName.startsWith(ATTRIBUTE_PREFIX))
+			{
+				String valueString = nextString(in, entryName);
+				if (!resolved)
+				{
+					if (attrs == null)
+						attrs = new ArrayList<String>();
+					attrs.add(entryName);
+					attrs.add(valueString);
+				}
+				else
+				{
+					if (elem == null)
+						throw new JsonParseException("Node type '" + typeQName + "' cannot have attributes");
+					parseLateAttribute(scopeStack, elem, entryName, valueString);
+				}
+			}
+			else if (entryName.startsWith(PROPERTY_PREFIX))
+			{
+				if (entryName.equals(PROPERTY_TYPE))
+				{
+					if (typeQName != null)
+						throw new JsonParseException("Member '" + PROPERTY_TYPE + "' occurred repeatedly");
+					typeQName = nextString(in, entryName);
+				}
+				else if (entryName.equals(PROPERTY_VALUE))
+				{
+					if (nodeValue != null)
+						throw new JsonParseException("Member '" + PROPERTY_VALUE + "' occurred repeatedly");
+					nodeValue = nextString(in, entryName);
+				}
+				else if (entryName.equals(PROPERTY_CHILDREN))
+				{
+					if (hasChildren)
+						throw new JsonParseException("Member '" + PROPERTY_CHILDREN + "' occurred repeatedly");
+					hasChildren = true;
+
+					if (!resolved)
+					{
+						resolved = true;
+						valueType = getValueType(typeQName);
+						if (valueType == null)
+						{
+							scope = registerNsDecls(scopeStack, scope, attrs);
+							elem = createElement(doc, scopeStack, typeQName, attrs);
+						}
+					}
+
+					if (valueType != null)
+						throw new JsonParseException("Type '" + typeQName + "' cannot have children");
+					if (in.peek() != JsonToken.BEGIN_ARRAY)
+						throw new JsonParseException("Expected member '" + entryName + "' to be an array.");
+
+					in.beginArray();
+					while (in.hasNext())
+						elem.appendChild(read(in, doc, scopeStack));
+					in.endArray();
+				}
+				else
+				{
+					in.skipValue();
+				}
+			}
+			else
+				throw new JsonParseException("Unexpected field: '" + entryName + "'");
+		}
+
+		in.endObject();
+
+		if (!resolved)
+		{
+			valueType = getValueType(typeQName);
+			if (valueType == null)
+			{
+				scope = registerNsDecls(scopeStack, scope, attrs);
+				elem = createElement(doc, scopeStack, typeQName, attrs);
+			}
+		}
+
+		if (valueType != null)
+		{
+			if (attrs != null)
+				throw new JsonParseException("Node type '" + typeQName + "' cannot have attributes");
+		}
+		else if (nodeValue != null)
+		{
+			throw new JsonParseException("Type '" + typeQName + "' cannot have a value");
+		}
+
+		if (scope != null)
+			scopeStack.pop();
+
+		return (valueType != null) ?
+				valueType.create(doc, nodeValue) :
+				elem;
+	}
+
+	/**
+	 * @return The value type for special node types or {@code null} if the
+	 *         type denotes an element.
+	 */
+	private static ValueTypes getValueType(String typeQName)
+	{
+		if (typeQName == null)
+			throw new JsonParseException("Missing member '" + PROPERTY_TYPE + "'");
+
+		if (!typeQName.startsWith(SPECIAL_TYPE_PREFIX))
+			return null;
+
+		if (typeQName.equals("#text"))
+		{
+			return ValueTypes.XML_TEXT;
+		}
+		else if (typeQName.equals(TYPE_ENTITY_REF))
+		{
+			return ValueTypes.ENTITY_REF;
+		}
+		else if (typeQName.equals("#cdata-section"))
+		{
+			return ValueTypes.CDATA;
+		}
+		else if (typeQName.equals("#comment"))
+		{
+			return ValueTypes.COMMENT;
+		}
+		else
+		{
+			throw new JsonParseException("Unknown special type '" + typeQName + "'");
+		}
+	}
+
+	private static Element createElement(
+			Document doc,
+			ScopeStack scopeStack,
+			String typeQName,
+			ArrayList<String> attrs)
+	{
+		String defaultNsUri = scopeStack.getXmlns();
+		if (defaultNsUri != null && defaultNsUri.isEmpty())
+			defaultNsUri = null;
+
+		Element elem = Wom3JsonTypeAdapterBase.createElement(doc, scopeStack, defaultNsUri, typeQName);
+		if (attrs != null)
+			parseAttributes(scopeStack, elem, attrs);
+		return elem;
+	}
+}